@@ -0,0 +1,97 @@
+package com.example.therapyai.data.local.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.therapyai.data.local.db.AppDatabase;
+import com.example.therapyai.data.local.models.CardItem;
+import com.example.therapyai.data.local.models.CardMove;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link CardDao#applyMoves} writes only the moved card and the cards between its two
+ * positions. A temporary trigger records every row whose position is written.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CardDaoMoveTest {
+
+    private static final int CARD_COUNT = 10;
+
+    private AppDatabase database;
+    private CardDao cardDao;
+    private final List<Long> ids = new ArrayList<>(); // By initial position
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        cardDao = database.cardDao();
+        for (int i = 0; i < CARD_COUNT; i++) {
+            CardItem card = new CardItem("Card " + i, "");
+            card.setPosition(i);
+            cardDao.insertCard(card);
+            ids.add(card.getId());
+        }
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        db.execSQL("CREATE TEMP TABLE position_writes (cardId INTEGER NOT NULL)");
+        db.execSQL("CREATE TEMP TRIGGER record_position_writes AFTER UPDATE OF position ON card_items "
+                + "BEGIN INSERT INTO position_writes VALUES (NEW.id); END");
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testMoveDownWritesOnlyTheShiftedRange() {
+        cardDao.applyMoves(Collections.singletonList(new CardMove(ids.get(2), 2, 5)));
+
+        assertEquals(Arrays.asList(ids.get(2), ids.get(3), ids.get(4), ids.get(5)), writtenIds());
+        assertEquals(Arrays.asList(ids.get(0), ids.get(1), ids.get(3), ids.get(4), ids.get(5),
+                ids.get(2), ids.get(6), ids.get(7), ids.get(8), ids.get(9)), cardDao.getCardIdsInOrder());
+    }
+
+    @Test
+    public void testMoveUpWritesOnlyTheShiftedRange() {
+        cardDao.applyMoves(Collections.singletonList(new CardMove(ids.get(8), 8, 6)));
+
+        assertEquals(Arrays.asList(ids.get(6), ids.get(7), ids.get(8)), writtenIds());
+        assertEquals(Arrays.asList(ids.get(0), ids.get(1), ids.get(2), ids.get(3), ids.get(4),
+                ids.get(5), ids.get(8), ids.get(6), ids.get(7), ids.get(9)), cardDao.getCardIdsInOrder());
+    }
+
+    @Test
+    public void testNoOpMoveWritesNothing() {
+        cardDao.applyMoves(Collections.singletonList(new CardMove(ids.get(4), 4, 4)));
+        assertTrue(writtenIds().isEmpty());
+    }
+
+    private List<Long> writtenIds() {
+        List<Long> written = new ArrayList<>();
+        try (Cursor cursor = database.query("SELECT DISTINCT cardId FROM position_writes ORDER BY cardId", null)) {
+            while (cursor.moveToNext()) {
+                written.add(cursor.getLong(0));
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.therapyai.data.local.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Upgrades databases left at each earlier version to the current one and checks both the data
+ * the step carries over and, through {@link MigrationTestHelper}, that the result matches the
+ * exported schema Room expects.
+ *
+ * Schemas were only exported from version 7 on, so the older versions are created here from
+ * the tables Room generated for them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppDatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+    private static final int LATEST_VERSION = 7;
+
+    private static final String[] V3_SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS `card_items` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`title` TEXT, `description` TEXT, `sessionNotes` TEXT, `categories` TEXT, `type` TEXT, "
+                    + "`isSelected` INTEGER NOT NULL, `position` INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS `categories` (`name` TEXT NOT NULL, `isSelected` INTEGER NOT NULL, "
+                    + "`isDefault` INTEGER NOT NULL, `position` INTEGER NOT NULL, PRIMARY KEY(`name`))",
+    };
+
+    private static final String[] V4_SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS `card_items` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`title` TEXT, `description` TEXT, `sessionNotes` TEXT, `type` TEXT, "
+                    + "`isSelected` INTEGER NOT NULL, `position` INTEGER NOT NULL)",
+            V3_SCHEMA[1],
+            "CREATE TABLE IF NOT EXISTS `card_category` (`cardId` INTEGER NOT NULL, "
+                    + "`categoryName` TEXT NOT NULL, PRIMARY KEY(`cardId`, `categoryName`), "
+                    + "FOREIGN KEY(`cardId`) REFERENCES `card_items`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )",
+            "CREATE INDEX IF NOT EXISTS `index_card_category_categoryName` ON `card_category` (`categoryName`)",
+            "CREATE INDEX IF NOT EXISTS `index_card_category_cardId` ON `card_category` (`cardId`)",
+    };
+
+    private static final String[] V5_ADDITIONS = {
+            "CREATE VIRTUAL TABLE IF NOT EXISTS `card_items_fts` USING FTS4(`title` TEXT, `description` TEXT, "
+                    + "`sessionNotes` TEXT, tokenize=unicode61, content=`card_items`)",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_BEFORE_UPDATE BEFORE UPDATE ON `card_items` "
+                    + "BEGIN DELETE FROM `card_items_fts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_BEFORE_DELETE BEFORE DELETE ON `card_items` "
+                    + "BEGIN DELETE FROM `card_items_fts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_AFTER_UPDATE AFTER UPDATE ON `card_items` "
+                    + "BEGIN INSERT INTO `card_items_fts`(`docid`, `title`, `description`, `sessionNotes`) "
+                    + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`, NEW.`sessionNotes`); END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_AFTER_INSERT AFTER INSERT ON `card_items` "
+                    + "BEGIN INSERT INTO `card_items_fts`(`docid`, `title`, `description`, `sessionNotes`) "
+                    + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`, NEW.`sessionNotes`); END",
+    };
+
+    private static final String[] V6_ADDITIONS = {
+            "CREATE INDEX IF NOT EXISTS `index_card_items_position` ON `card_items` (`position`)",
+    };
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Before
+    public void setUp() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void testMigrate3To4MovesCategoriesIntoJoinTable() {
+        SupportSQLiteDatabase db = createDatabase(3, V3_SCHEMA);
+        db.execSQL("INSERT INTO card_items (id, title, description, sessionNotes, categories, type, isSelected, position) "
+                + "VALUES (1, 'Breathing', 'Box breathing', NULL, 'Anxiety,,,Sleep', 'Default Audio', 0, 0)");
+        db.execSQL("INSERT INTO card_items (id, title, description, sessionNotes, categories, type, isSelected, position) "
+                + "VALUES (2, 'Journal', 'Evening notes', 'Bring notebook', NULL, 'Default Audio', 1, 1)");
+        db.close();
+
+        db = migrateToLatest();
+        assertEquals(Arrays.asList("1:Anxiety", "1:Sleep"),
+                strings(db, "SELECT cardId || ':' || categoryName FROM card_category ORDER BY cardId, categoryName"));
+        assertEquals(Arrays.asList("Breathing", "Journal"),
+                strings(db, "SELECT title FROM card_items ORDER BY position"));
+        assertEquals("Bring notebook", strings(db, "SELECT sessionNotes FROM card_items WHERE id = 2").get(0));
+
+        // Deleting a card takes its links with it
+        db.execSQL("PRAGMA foreign_keys = ON");
+        db.execSQL("DELETE FROM card_items WHERE id = 1");
+        assertTrue(strings(db, "SELECT categoryName FROM card_category").isEmpty());
+        db.close();
+    }
+
+    @Test
+    public void testMigrate4To5BuildsFullTextIndexAndTriggers() {
+        SupportSQLiteDatabase db = createDatabase(4, V4_SCHEMA);
+        db.execSQL("INSERT INTO card_items (id, title, description, sessionNotes, type, isSelected, position) "
+                + "VALUES (1, 'Breathing', 'Box breathing for panic', NULL, 'Default Audio', 0, 0)");
+        db.close();
+
+        db = migrateToLatest();
+        assertEquals("Existing cards are indexed", Arrays.asList("1"),
+                strings(db, "SELECT rowid FROM card_items_fts WHERE card_items_fts MATCH 'panic'"));
+        assertEquals(4, strings(db, "SELECT name FROM sqlite_master WHERE type = 'trigger' "
+                + "AND name LIKE 'room_fts_content_sync_card_items_fts_%'").size());
+
+        // The triggers keep the index in step with later writes
+        db.execSQL("INSERT INTO card_items (id, title, description, sessionNotes, type, isSelected, position) "
+                + "VALUES (2, 'Grounding', '5-4-3-2-1 senses', NULL, 'Default Audio', 0, 1)");
+        db.execSQL("UPDATE card_items SET description = 'Slow breathing' WHERE id = 1");
+        assertEquals(Arrays.asList("2"), strings(db, "SELECT rowid FROM card_items_fts WHERE card_items_fts MATCH 'senses'"));
+        assertTrue(strings(db, "SELECT rowid FROM card_items_fts WHERE card_items_fts MATCH 'panic'").isEmpty());
+        db.execSQL("DELETE FROM card_items WHERE id = 2");
+        assertTrue(strings(db, "SELECT rowid FROM card_items_fts WHERE card_items_fts MATCH 'senses'").isEmpty());
+        db.close();
+    }
+
+    @Test
+    public void testMigrate5To6IndexesPositions() {
+        SupportSQLiteDatabase db = createDatabase(5, concat(V4_SCHEMA, V5_ADDITIONS));
+        db.execSQL("INSERT INTO card_items (id, title, description, sessionNotes, type, isSelected, position) "
+                + "VALUES (1, 'Breathing', NULL, NULL, 'Default Audio', 0, 3)");
+        db.close();
+
+        db = migrateToLatest();
+        // runMigrationsAndValidate has checked the index columns against the schema
+        assertEquals(Arrays.asList("index_card_items_position"),
+                strings(db, "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'card_items'"));
+        assertEquals(Arrays.asList("3"), strings(db, "SELECT position FROM card_items WHERE id = 1"));
+        db.close();
+    }
+
+    @Test
+    public void testMigrate6To7AddsResponseCache() {
+        SupportSQLiteDatabase db = createDatabase(6, concat(V4_SCHEMA, V5_ADDITIONS, V6_ADDITIONS));
+        db.close();
+
+        db = migrateToLatest();
+        db.execSQL("INSERT INTO http_response_cache (cacheKey, userId, etag, body, fetchedAt) "
+                + "VALUES ('user_1:profiles/me', 'user_1', '\"v1\"', x'00', 1)");
+        assertEquals(Arrays.asList("user_1"), strings(db, "SELECT userId FROM http_response_cache"));
+        db.close();
+    }
+
+    /**
+     * Creates {@link #TEST_DB} at {@code version} with the given tables and leaves it open for
+     * test rows.
+     */
+    private SupportSQLiteDatabase createDatabase(int version, String... schema) {
+        SupportSQLiteOpenHelper openHelper = new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(context)
+                        .name(TEST_DB)
+                        .callback(new SupportSQLiteOpenHelper.Callback(version) {
+                            @Override
+                            public void onCreate(SupportSQLiteDatabase db) {
+                                for (String statement : schema) {
+                                    db.execSQL(statement);
+                                }
+                            }
+
+                            @Override
+                            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                                throw new AssertionError("Test database already exists");
+                            }
+                        })
+                        .build());
+        return openHelper.getWritableDatabase();
+    }
+
+    private SupportSQLiteDatabase migrateToLatest() {
+        return helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+                AppDatabase.MIGRATION_2_3, AppDatabase.MIGRATION_3_4, AppDatabase.MIGRATION_4_5,
+                AppDatabase.MIGRATION_5_6, AppDatabase.MIGRATION_6_7);
+    }
+
+    private static List<String> strings(SupportSQLiteDatabase db, String query) {
+        List<String> values = new ArrayList<>();
+        try (Cursor cursor = db.query(query)) {
+            while (cursor.moveToNext()) {
+                values.add(cursor.getString(0));
+            }
+        }
+        return values;
+    }
+
+    private static String[] concat(String[]... parts) {
+        List<String> all = new ArrayList<>();
+        for (String[] part : parts) {
+            all.addAll(Arrays.asList(part));
+        }
+        return all.toArray(new String[0]);
+    }
+}
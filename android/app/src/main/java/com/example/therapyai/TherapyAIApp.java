@@ -6,6 +6,7 @@ import android.util.Log;
 import androidx.room.Room;
 
 import com.example.therapyai.data.local.EphemeralPrefs;
+import com.example.therapyai.data.local.ResponseCache;
 import com.example.therapyai.data.local.LocalStorageManager;
 import com.example.therapyai.data.local.SessionManager;
 import com.example.therapyai.data.local.dao.CardDao;
@@ -64,6 +65,7 @@ public class TherapyAIApp extends Application {
         Log.i(TAG, "Firebase Initialization Attempt Complete. Success = " + firebaseInitialized);        
         SessionManager.init(this);
         EphemeralPrefs.init(this);
+        ResponseCache.init(this);
         LocalStorageManager.init(this);        LocalStorageManager.getInstance().applyThemeFromPreferences();
 
         initRepositories(false); // TODO: change to false when adding api source
@@ -0,0 +1,80 @@
+package com.example.therapyai.data.local;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small LRU cache of decrypted EphemeralPrefs values so hot reads (session token, user id/type)
+ * skip the Base64 decode and Keystore decrypt. Values are held as char arrays that are zeroed
+ * when an entry expires, is evicted, replaced or wiped; callers still receive a String, as the
+ * EphemeralPrefs API always has.
+ *
+ * Thread-safe; all methods synchronize on the cache.
+ */
+final class DecryptedValueCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    DecryptedValueCache(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(maxEntries, 0.75f, true); // Access order for LRU
+    }
+
+    /**
+     * @return The cached value, or null if absent or expired.
+     */
+    synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.storedAt > ttlNanos) {
+            entries.remove(key);
+            entry.wipe();
+            return null;
+        }
+        return new String(entry.value);
+    }
+
+    synchronized void put(String key, String value) {
+        Entry previous = entries.put(key, new Entry(value.toCharArray(), System.nanoTime()));
+        if (previous != null) previous.wipe();
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next().getValue().wipe();
+            eldest.remove();
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) entry.wipe();
+    }
+
+    /**
+     * Zeroes and drops every value.
+     */
+    synchronized void wipe() {
+        for (Entry entry : entries.values()) {
+            entry.wipe();
+        }
+        entries.clear();
+    }
+
+    private static final class Entry {
+        final char[] value;
+        final long storedAt;
+
+        Entry(char[] value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+
+        void wipe() {
+            Arrays.fill(value, '\0');
+        }
+    }
+}
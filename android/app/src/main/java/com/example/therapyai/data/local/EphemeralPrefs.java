@@ -2,6 +2,9 @@ package com.example.therapyai.data.local;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.security.keystore.KeyPermanentlyInvalidatedException;
 import android.security.keystore.UserNotAuthenticatedException;
 import android.util.Base64;
 import android.util.Log;
@@ -9,13 +12,37 @@ import android.util.Log;
 import com.example.therapyai.util.AESUtil;
 import com.example.therapyai.util.HIPAAKeyManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.crypto.AEADBadTagException;
 import javax.crypto.SecretKey;
 
+/**
+ * Keystore-encrypted preferences for tokens and user details.
+ *
+ * Decrypted values are kept briefly in a {@link DecryptedValueCache} so repeated reads skip the
+ * Keystore; the cache is wiped on {@link #clearAll()}, when the Keystore key fails or is
+ * invalidated, and via {@link #wipeDecryptedCache()} on session timeout. The password is never
+ * cached. Writes update the cache at once and are encrypted to disk in order on a background
+ * thread; a read that misses the cache waits for queued writes first. {@link #clearAll()} and
+ * the final store of each write take the same lock, so no write started before a clear can land
+ * after it.
+ */
 public class EphemeralPrefs {
     private static final String TAG = "EphemeralPrefs";
     private static final String PREF_NAME = "ephemeral_prefs";
 
+    // Shorter than the inactivity timeout, so cached values never outlive an idle session
+    private static final long CACHE_TTL_MINUTES = 5;
+    private static final int CACHE_MAX_ENTRIES = 16;
+
     // Keys for tokens
     private static final String KEY_SESSION_TOKEN = "encrypted_session_token";
     private static final String KEY_REFRESH_TOKEN = "encrypted_refresh_token";
@@ -29,11 +56,41 @@ public class EphemeralPrefs {
     private static final String KEY_USER_DATE_BIRTH = "encrypted_user_date_birth";
     private static final String KEY_USER_PASSWORD = "encrypted_user_password";
 
+    /**
+     * Supplies the key values are encrypted under: the Keystore master key in the app.
+     */
+    interface MasterKeySource {
+        SecretKey getKey() throws Exception;
+    }
+
     private static EphemeralPrefs instance;
     private final SharedPreferences sharedPreferences;
+    private final MasterKeySource masterKeySource;
+    private final DecryptedValueCache valueCache =
+            new DecryptedValueCache(CACHE_MAX_ENTRIES, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+    private final ExecutorService writeExecutor;
+    private volatile Thread writerThread;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    // Bumped by every write, so a slow read cannot cache a value a newer write replaced
+    private final AtomicLong writeSequence = new AtomicLong();
+    // Bumped by clearAll, so writes queued before it are dropped instead of re-creating the key
+    private final AtomicLong clearGeneration = new AtomicLong();
+    // Held by clearAll and by the final store of a write, so the two cannot interleave
+    private final Object storeLock = new Object();
 
     private EphemeralPrefs(Context context) {
-        sharedPreferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        this(context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE), HIPAAKeyManager::getOrCreateKey);
+    }
+
+    EphemeralPrefs(SharedPreferences sharedPreferences, MasterKeySource masterKeySource) {
+        this.sharedPreferences = sharedPreferences;
+        this.masterKeySource = masterKeySource;
+        writeExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "EphemeralPrefsWriter");
+            writerThread = thread;
+            return thread;
+        });
     }
 
     public static synchronized void init(Context context) {
@@ -49,10 +106,40 @@ public class EphemeralPrefs {
         return instance;
     }
 
+    /**
+     * Replaces the instance, or clears it with null. JVM tests cannot run {@link #init(Context)},
+     * so they install one over in-memory preferences instead.
+     */
+    static synchronized void setInstance(EphemeralPrefs prefs) {
+        instance = prefs;
+    }
+
 
     public void putEncrypted(String key, String plainValue) {
+        writeSequence.incrementAndGet();
+        if (plainValue == null || !isCacheable(key)) {
+            valueCache.remove(key);
+        } else {
+            valueCache.put(key, plainValue);
+        }
+        long generation = clearGeneration.get();
+        pendingWrites.incrementAndGet();
+        writeExecutor.execute(() -> {
+            try {
+                if (generation != clearGeneration.get()) {
+                    Log.d(TAG, "Dropping write queued before clearAll for key: " + key);
+                    return;
+                }
+                writeEncrypted(key, plainValue, generation);
+            } finally {
+                pendingWrites.decrementAndGet();
+            }
+        });
+    }
+
+    private void writeEncrypted(String key, String plainValue, long generation) {
         if (plainValue == null) {
-            sharedPreferences.edit().remove(key).apply();
+            store(key, null, generation);
             return;
         }
 
@@ -61,51 +148,89 @@ public class EphemeralPrefs {
             if (ephemeralKey == null) {
                 Log.e(TAG, "No master key available. Cannot encrypt. Requesting re-auth.");
                 // If key isn't even available, re-auth might help re-create/unlock it.
-                SessionManager.getInstance().requestReAuthentication();
+                onKeyUnusable(false);
                 return;
             }
-            byte[] encrypted = AESUtil.encryptAesGcm(plainValue.getBytes("UTF-8"), ephemeralKey);
+            byte[] plainBytes = plainValue.getBytes(StandardCharsets.UTF_8);
+            byte[] encrypted = AESUtil.encryptAesGcm(plainBytes, ephemeralKey);
+            Arrays.fill(plainBytes, (byte) 0);
             String base64 = Base64.encodeToString(encrypted, Base64.NO_WRAP);
-            sharedPreferences.edit().putString(key, base64).apply();
+            store(key, base64, generation);
         } catch (UserNotAuthenticatedException unae) {
             Log.e(TAG, "Encryption failed: User not authenticated for Keystore key. Requesting re-auth.", unae);
-            SessionManager.getInstance().requestReAuthentication();
+            onKeyUnusable(false);
+        } catch (KeyPermanentlyInvalidatedException kpie) {
+            Log.e(TAG, "Encryption failed: Keystore key permanently invalidated. Forcing logout.", kpie);
+            onKeyUnusable(true);
         } catch (AEADBadTagException ae) { // Catch specific crypto exception that often indicates auth issues with GCM
             Log.e(TAG, "Encryption failed: AEADBadTagException, possibly due to Keystore auth issue. Requesting re-auth.", ae);
-            SessionManager.getInstance().requestReAuthentication();
+            onKeyUnusable(false);
         }
         catch (Exception e) { // Catch other crypto or general exceptions
             Log.e(TAG, "Encryption failed with general exception: " + e.getMessage() + ". Forcing logout.", e);
-            SessionManager.getInstance().forceLogout(); // For other unexpected errors, logout might be safer
+            onKeyUnusable(true); // For other unexpected errors, logout might be safer
+        }
+    }
+
+    /**
+     * Stores an encrypted value (or removes the key if null) unless clearAll ran since the write
+     * was queued. Encryption happens outside the lock; only this check and the store are inside.
+     */
+    private void store(String key, String base64, long generation) {
+        synchronized (storeLock) {
+            if (generation != clearGeneration.get()) {
+                Log.d(TAG, "Dropping write overtaken by clearAll for key: " + key);
+                return;
+            }
+            if (base64 == null) {
+                sharedPreferences.edit().remove(key).apply();
+            } else {
+                sharedPreferences.edit().putString(key, base64).apply();
+            }
         }
     }
 
+    /**
+     * The Keystore key could not be used: cached plaintext must not outlive it. Session callbacks
+     * run on the main thread, since the failure may surface on the writer thread.
+     */
+    private void onKeyUnusable(boolean forceLogout) {
+        valueCache.wipe();
+        mainHandler.post(() -> {
+            if (forceLogout) {
+                SessionManager.getInstance().forceLogout();
+            } else {
+                SessionManager.getInstance().requestReAuthentication();
+            }
+        });
+    }
+
     public String getDecrypted(String key) {
+        String cached = valueCache.get(key);
+        if (cached != null) return cached;
+        awaitPendingWrites();
+
+        long sequence = writeSequence.get();
         String base64 = sharedPreferences.getString(key, null);
         if (base64 == null) return null;
 
-        // DIAGNOSTIC: Log the decryption attempt context
-        Log.d(TAG, "DIAGNOSTIC: Attempting to decrypt key: " + key);
-        Log.d(TAG, "DIAGNOSTIC: Current thread: " + Thread.currentThread().getName());
-        Log.d(TAG, "DIAGNOSTIC: App process PID: " + android.os.Process.myPid());
-        
+        Log.d(TAG, "Cache miss, decrypting key: " + key);
         try {
             SecretKey ephemeralKey = getMasterKey();
             if (ephemeralKey == null) {
                 Log.e(TAG, "DIAGNOSTIC: No master key found for decryption. Requesting re-auth.");
-                SessionManager.getInstance().requestReAuthentication();
+                onKeyUnusable(false);
                 return null;
             }
             
-            // DIAGNOSTIC: Log key state before decryption
-            Log.d(TAG, "DIAGNOSTIC: Master key obtained successfully. Key algorithm: " + ephemeralKey.getAlgorithm());
-            
             byte[] cipherData = Base64.decode(base64, Base64.NO_WRAP);
-            Log.d(TAG, "DIAGNOSTIC: Cipher data length: " + cipherData.length);
-            
             byte[] decrypted = AESUtil.decryptAesGcm(cipherData, ephemeralKey);
-            Log.d(TAG, "DIAGNOSTIC: Decryption successful for key: " + key);
-            return new String(decrypted, "UTF-8");
+            String value = new String(decrypted, StandardCharsets.UTF_8);
+            Arrays.fill(decrypted, (byte) 0);
+            if (isCacheable(key) && sequence == writeSequence.get()) {
+                valueCache.put(key, value);
+            }
+            return value;
         } catch (UserNotAuthenticatedException unae) {
             Log.e(TAG, "DIAGNOSTIC: UserNotAuthenticatedException - Keystore key not authenticated for key: " + key, unae);
             Log.e(TAG, "DIAGNOSTIC: This usually means the 12-hour authentication period expired");
@@ -117,8 +242,14 @@ public class EphemeralPrefs {
             } catch (Exception e) {
                 Log.e(TAG, "DIAGNOSTIC: Could not get last activity time", e);
             }
+            valueCache.wipe();
             SessionManager.getInstance().requestReAuthentication();
             return null;
+        } catch (KeyPermanentlyInvalidatedException kpie) {
+            Log.e(TAG, "DIAGNOSTIC: Keystore key permanently invalidated while decrypting key: " + key, kpie);
+            clearAll(); // Nothing encrypted under the old key can be read again
+            SessionManager.getInstance().forceLogout();
+            return null;
         } catch (AEADBadTagException ae) { // Catch specific crypto exception
             Log.e(TAG, "DIAGNOSTIC: AEADBadTagException for key: " + key + " - GCM tag verification failed.", ae);
             Log.e(TAG, "DIAGNOSTIC: This typically indicates:");
@@ -132,6 +263,7 @@ public class EphemeralPrefs {
             } catch (Exception e) {
                 Log.e(TAG, "DIAGNOSTIC: Could not get timing info", e);
             }
+            valueCache.wipe();
             
             // Handle the case where the key was recreated after app crash but encrypted data still exists
             if (shouldClearDataAndForceLogout(key)) {
@@ -145,10 +277,39 @@ public class EphemeralPrefs {
         }
         catch (Exception e) { // Catch other crypto or general exceptions
             Log.e(TAG, "DIAGNOSTIC: General decryption exception: " + e.getClass().getSimpleName() + " - " + e.getMessage(), e);
+            valueCache.wipe();
             SessionManager.getInstance().forceLogout(); // For other unexpected errors, logout might be safer
             return null;
         }
     }
+
+    /**
+     * Blocks until queued writes have reached SharedPreferences, so a cache miss reads the
+     * latest value. Usually returns at once: writes take a single encrypt.
+     */
+    private void awaitPendingWrites() {
+        if (pendingWrites.get() == 0 || Thread.currentThread() == writerThread) return;
+        try {
+            writeExecutor.submit(() -> { }).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            Log.w(TAG, "Waiting for pending writes failed", ee);
+        }
+    }
+
+    private static boolean isCacheable(String key) {
+        return !KEY_USER_PASSWORD.equals(key); // Only read on re-login; not worth keeping in memory
+    }
+
+    /**
+     * Zeroes and drops all cached plaintext. Encrypted values on disk are untouched, so the next
+     * read decrypts again.
+     */
+    public void wipeDecryptedCache() {
+        valueCache.wipe();
+    }
+
     /**
      * Determine if we should attempt session recovery based on the key being decrypted
      * and whether we're currently in a session or just restarted from a crash
@@ -223,8 +384,8 @@ public class EphemeralPrefs {
     /**
      * Master Key from Keystore
      */
-    private static SecretKey getMasterKey() throws Exception {
-        return HIPAAKeyManager.getOrCreateKey();
+    private SecretKey getMasterKey() throws Exception {
+        return masterKeySource.getKey();
     }
 
     public String[] getUserFromMemory() {
@@ -306,6 +467,11 @@ public class EphemeralPrefs {
      * Clear everything stored
      */
     public void clearAll() {
-        sharedPreferences.edit().clear().apply();
+        synchronized (storeLock) {
+            clearGeneration.incrementAndGet();
+            writeSequence.incrementAndGet();
+            valueCache.wipe();
+            sharedPreferences.edit().clear().apply();
+        }
     }
 }
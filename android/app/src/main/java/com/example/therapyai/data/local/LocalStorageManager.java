@@ -17,6 +17,7 @@ import android.view.Window;
 import androidx.core.view.WindowInsetsControllerCompat;
 
 import com.example.therapyai.R;
+import com.example.therapyai.util.AudioFormatUtil;
 
 public class LocalStorageManager {
     private static final String PREF_NAME = "LocalStorage";
@@ -24,6 +25,11 @@ public class LocalStorageManager {
     private static final String KEY_NOTIF_VIBRATE_ENABLED = "notificationVibrationEnabled";
     private static final String KEY_NOTIF_SOUND_ENABLED = "notificationSoundEnabled";
     private static final String KEY_NOTIF_POPUP_ENABLED = "notificationPopupEnabled"; // Heads-up
+    private static final String KEY_UPLOAD_CURSOR_FINGERPRINT = "uploadCursorFingerprint";
+    private static final String KEY_UPLOAD_CURSOR_ID = "uploadCursorId";
+    private static final String KEY_UPLOAD_CURSOR_OFFSET = "uploadCursorOffset";
+    private static final String KEY_AUDIO_ENCODING = "audioEncoding";
+    private static final String KEY_CAPTURE_PROFILE = "captureProfile";
     private static LocalStorageManager instance;
     private final SharedPreferences prefs;
 
@@ -177,4 +183,64 @@ public class LocalStorageManager {
     public void setBoolean(String key, boolean value) {
         prefs.edit().putBoolean(key, value).apply();
     }
+
+    /**
+     * Encoding used for new recordings (WAV by default; FLAC roughly halves storage and upload size).
+     */
+    public void setAudioEncoding(AudioFormatUtil.AudioEncoding encoding) {
+        prefs.edit().putString(KEY_AUDIO_ENCODING, encoding.getMetadataTag()).apply();
+    }
+
+    public AudioFormatUtil.AudioEncoding getAudioEncoding() {
+        return AudioFormatUtil.AudioEncoding.fromMetadataTag(prefs.getString(KEY_AUDIO_ENCODING, null));
+    }
+
+    /**
+     * Capture profile for new recordings ({@link AudioFormatUtil.CaptureProfile#DEFAULT} until one is chosen).
+     */
+    public void setCaptureProfile(AudioFormatUtil.CaptureProfile profile) {
+        prefs.edit().putString(KEY_CAPTURE_PROFILE, profile.getMetadataTag()).apply();
+    }
+
+    public AudioFormatUtil.CaptureProfile getCaptureProfile() {
+        return AudioFormatUtil.CaptureProfile.fromMetadataTag(prefs.getString(KEY_CAPTURE_PROFILE, null));
+    }
+
+    /**
+     * Persist the resumable upload cursor for a recording. The fingerprint identifies the
+     * set of encrypted segments, so a stale cursor is never applied to a different recording.
+     * Only the server-side upload id and acknowledged offset are stored, no session data.
+     */
+    public void saveUploadCursor(String fingerprint, String uploadId, long acknowledgedOffset) {
+        prefs.edit()
+                .putString(KEY_UPLOAD_CURSOR_FINGERPRINT, fingerprint)
+                .putString(KEY_UPLOAD_CURSOR_ID, uploadId)
+                .putLong(KEY_UPLOAD_CURSOR_OFFSET, acknowledgedOffset)
+                .apply();
+    }
+
+    /**
+     * @return The upload id saved for this fingerprint, or null if there is none.
+     */
+    public String getUploadCursorId(String fingerprint) {
+        if (fingerprint == null || !fingerprint.equals(prefs.getString(KEY_UPLOAD_CURSOR_FINGERPRINT, null))) {
+            return null;
+        }
+        return prefs.getString(KEY_UPLOAD_CURSOR_ID, null);
+    }
+
+    public long getUploadCursorOffset(String fingerprint) {
+        if (getUploadCursorId(fingerprint) == null) {
+            return 0;
+        }
+        return prefs.getLong(KEY_UPLOAD_CURSOR_OFFSET, 0);
+    }
+
+    public void clearUploadCursor() {
+        prefs.edit()
+                .remove(KEY_UPLOAD_CURSOR_FINGERPRINT)
+                .remove(KEY_UPLOAD_CURSOR_ID)
+                .remove(KEY_UPLOAD_CURSOR_OFFSET)
+                .apply();
+    }
 }
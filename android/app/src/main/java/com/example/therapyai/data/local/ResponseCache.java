@@ -0,0 +1,187 @@
+package com.example.therapyai.data.local;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.therapyai.data.local.dao.CachedResponseDao;
+import com.example.therapyai.data.local.db.AppDatabase;
+import com.example.therapyai.data.local.models.CachedResponse;
+import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.HIPAAKeyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypted on-disk copy of GET responses (profile, session lists, session details), keyed by
+ * user and request path, so screens can render the last known data at once and revalidate it
+ * with the stored ETag.
+ *
+ * Bodies are sealed with the HIPAA Keystore key, the same one EphemeralPrefs uses. Logout
+ * deletes that key and {@link #purge()}s the table; a row that no longer decrypts is dropped on
+ * read. Writes are skipped once the user they belong to is no longer signed in, so a response
+ * that lands after logout is not stored.
+ *
+ * The read/write methods block; run them through {@link #execute(Runnable)}, which keeps all
+ * cache work in order on one background thread.
+ */
+public class ResponseCache {
+    private static final String TAG = "ResponseCache";
+
+    // Older copies are not worth showing, even offline
+    private static final long MAX_STALE_MS = TimeUnit.DAYS.toMillis(7);
+
+    private static ResponseCache instance;
+    private final Context appContext;
+    private final EphemeralPrefs.MasterKeySource keySource;
+    private final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor();
+    private CachedResponseDao dao; // Opened lazily on the cache thread
+
+    private ResponseCache(Context context) {
+        this(context.getApplicationContext(), null, HIPAAKeyManager::getOrCreateKey);
+    }
+
+    /**
+     * Over a given DAO and key, for JVM tests.
+     */
+    ResponseCache(CachedResponseDao dao, EphemeralPrefs.MasterKeySource keySource) {
+        this(null, dao, keySource);
+    }
+
+    private ResponseCache(Context appContext, CachedResponseDao dao, EphemeralPrefs.MasterKeySource keySource) {
+        this.appContext = appContext;
+        this.dao = dao;
+        this.keySource = keySource;
+        execute(this::pruneExpired);
+    }
+
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            instance = new ResponseCache(context);
+        }
+    }
+
+    public static synchronized ResponseCache getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("ResponseCache not initialized!");
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the instance, or clears it with null; see {@link EphemeralPrefs#setInstance}.
+     */
+    static synchronized void setInstance(ResponseCache cache) {
+        instance = cache;
+    }
+
+    /**
+     * A decrypted cached response.
+     */
+    public static final class Entry {
+        private final String etag;
+        private final String json;
+        private final long fetchedAt;
+
+        Entry(String etag, String json, long fetchedAt) {
+            this.etag = etag;
+            this.json = json;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public String getEtag() { return etag; }
+        public String getJson() { return json; }
+        public long getFetchedAt() { return fetchedAt; }
+
+        /**
+         * @return True if the server confirmed this copy less than {@code maxAgeMs} ago.
+         */
+        public boolean isFresh(long maxAgeMs) {
+            return System.currentTimeMillis() - fetchedAt < maxAgeMs;
+        }
+    }
+
+    public void execute(Runnable task) {
+        cacheExecutor.execute(task);
+    }
+
+    /**
+     * @return The cached response for this user and path, or null if absent, too old or no
+     * longer decryptable.
+     */
+    public Entry read(String userId, String path) {
+        String cacheKey = cacheKey(userId, path);
+        CachedResponse row = dao().get(cacheKey);
+        if (row == null || row.getBody() == null) return null;
+        if (System.currentTimeMillis() - row.getFetchedAt() > MAX_STALE_MS) {
+            dao().delete(cacheKey);
+            return null;
+        }
+        try {
+            byte[] plain = AESUtil.decryptAesGcm(row.getBody(), keySource.getKey());
+            return new Entry(row.getEtag(), new String(plain, StandardCharsets.UTF_8), row.getFetchedAt());
+        } catch (Exception e) {
+            // Sealed under a deleted key, or the key needs user authentication again
+            Log.w(TAG, "Dropping unreadable cached response for " + path + ": " + e.getClass().getSimpleName());
+            dao().delete(cacheKey);
+            return null;
+        }
+    }
+
+    public void write(String userId, String path, String etag, String json) {
+        if (!isCurrentUser(userId)) {
+            Log.d(TAG, "Not caching " + path + ": user no longer signed in.");
+            return;
+        }
+        try {
+            byte[] sealed = AESUtil.encryptAesGcm(json.getBytes(StandardCharsets.UTF_8), keySource.getKey());
+            dao().put(new CachedResponse(cacheKey(userId, path), userId, etag, sealed, System.currentTimeMillis()));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to cache response for " + path, e);
+        }
+    }
+
+    /**
+     * Records a 304 Not Modified for the cached copy.
+     */
+    public void markRevalidated(String userId, String path) {
+        if (!isCurrentUser(userId)) return;
+        dao().markRevalidated(cacheKey(userId, path), System.currentTimeMillis());
+    }
+
+    public void remove(String userId, String path) {
+        dao().delete(cacheKey(userId, path));
+    }
+
+    /**
+     * Deletes every cached response. Queued behind any pending cache work.
+     */
+    public void purge() {
+        execute(() -> {
+            dao().deleteAll();
+            Log.i(TAG, "Response cache purged.");
+        });
+    }
+
+    private void pruneExpired() {
+        int removed = dao().deleteOlderThan(System.currentTimeMillis() - MAX_STALE_MS);
+        if (removed > 0) Log.d(TAG, "Pruned " + removed + " expired cached responses.");
+    }
+
+    private CachedResponseDao dao() {
+        if (dao == null) {
+            dao = AppDatabase.getDatabase(appContext).cachedResponseDao();
+        }
+        return dao;
+    }
+
+    private static boolean isCurrentUser(String userId) {
+        return userId != null && userId.equals(EphemeralPrefs.getInstance().getUserId());
+    }
+
+    private static String cacheKey(String userId, String path) {
+        return userId + ":" + path;
+    }
+}
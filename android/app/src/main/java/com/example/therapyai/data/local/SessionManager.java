@@ -7,9 +7,11 @@ import android.os.Looper;
 import android.util.Log;
 
 import com.example.therapyai.data.repository.NotificationRepository;
+import com.example.therapyai.data.repository.SearchRepository;
 import com.example.therapyai.ui.welcome.WelcomeActivity;
 import com.example.therapyai.util.AppStateTracker;
 import com.example.therapyai.util.HIPAAKeyManager;
+import com.example.therapyai.util.QrKeyDerivationService;
 
 /**
  * SessionManager handles user session state, timeouts, and forced logout.
@@ -169,6 +171,8 @@ public class SessionManager {
             Log.d(TAG, "notifyTimeoutWarning: Timer is paused. Aborting warning and delayed logout.");
             return;
         }
+        // Idle long enough to warn: don't keep decrypted tokens in memory meanwhile
+        EphemeralPrefs.getInstance().wipeDecryptedCache();
         if (timeoutListener != null) {
             timeoutListener.onSessionTimeoutWarning();
         }
@@ -243,8 +247,11 @@ public class SessionManager {
             Log.e(TAG, "Error deleting HIPAA Keystore key during logout", e);
         }
 
-        // 2. Clean ephemeral data
+        // 2. Clean ephemeral data and this user's cached API responses
         EphemeralPrefs.getInstance().clearAll();
+        ResponseCache.getInstance().purge();
+        SearchRepository.getInstance().clearLocalData();
+        QrKeyDerivationService.getInstance().clearCache();
 
         // 3. Cancel any queued warnings or logouts
         if (inactivityRunnable != null) {
@@ -0,0 +1,35 @@
+package com.example.therapyai.data.local.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.therapyai.data.local.models.CachedResponse;
+
+@Dao
+public interface CachedResponseDao {
+    @Query("SELECT * FROM http_response_cache WHERE cacheKey = :cacheKey LIMIT 1")
+    CachedResponse get(String cacheKey);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(CachedResponse response);
+
+    /**
+     * Records a 304: the stored body is still current as of {@code :fetchedAt}.
+     */
+    @Query("UPDATE http_response_cache SET fetchedAt = :fetchedAt WHERE cacheKey = :cacheKey")
+    void markRevalidated(String cacheKey, long fetchedAt);
+
+    @Query("DELETE FROM http_response_cache WHERE cacheKey = :cacheKey")
+    void delete(String cacheKey);
+
+    /**
+     * Drops rows older than {@code :cutoff}, keeping each user's recent screens.
+     */
+    @Query("DELETE FROM http_response_cache WHERE fetchedAt < :cutoff")
+    int deleteOlderThan(long cutoff);
+
+    @Query("DELETE FROM http_response_cache")
+    void deleteAll();
+}
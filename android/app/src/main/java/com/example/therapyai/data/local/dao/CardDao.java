@@ -1,45 +1,111 @@
 package com.example.therapyai.data.local.dao;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import com.example.therapyai.data.local.models.CardCategoryCrossRef;
 import com.example.therapyai.data.local.models.CardItem;
+import com.example.therapyai.data.local.models.CardMove;
+import com.example.therapyai.data.local.models.CardWithCategories;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Card rows live in {@code card_items}; their categories live in {@code card_category}.
+ * The CardItem-level methods keep both tables in step inside one transaction.
+ */
 @Dao
 public interface CardDao {
-    @Query("SELECT * FROM card_items ORDER BY position ASC")
-    List<CardItem> getAllCards();
+    @Transaction
+    @Query("SELECT * FROM card_items ORDER BY position ASC, id ASC")
+    List<CardWithCategories> getAllCardsWithCategories();
 
+    @Transaction
     @Query("SELECT * FROM card_items WHERE id = :id LIMIT 1")
-    CardItem getCardById(long id);
+    CardWithCategories getCardWithCategoriesById(long id);
 
-    @Query("SELECT * FROM card_items WHERE " +
-            "',' || categories || ',' LIKE '%,' || :categoryName || ',%' ")
-    List<CardItem> getCardsByCategory(String categoryName);
+    @Transaction
+    @Query("SELECT card_items.* FROM card_items " +
+            "INNER JOIN card_category ON card_category.cardId = card_items.id " +
+            "WHERE card_category.categoryName = :categoryName " +
+            "ORDER BY card_items.position ASC, card_items.id ASC")
+    List<CardWithCategories> getCardsWithCategoriesByCategory(String categoryName);
 
+    @Transaction
     @Query("SELECT * FROM card_items WHERE title = :title LIMIT 1")
-    CardItem getCardByTitle(String title);
-
-    @Insert
-    void insertCards(CardItem... cardItems);
+    CardWithCategories getCardWithCategoriesByTitle(String title);
+
+    // --- Observable queries: Room re-runs these on its query executor whenever card_items or
+    // card_category change, so observers get fresh lists without explicit reloads. ---
+
+    @Transaction
+    @Query("SELECT * FROM card_items ORDER BY position ASC, id ASC")
+    LiveData<List<CardWithCategories>> observeAllCardsWithCategories();
+
+    @Transaction
+    @Query("SELECT card_items.* FROM card_items " +
+            "INNER JOIN card_category ON card_category.cardId = card_items.id " +
+            "WHERE card_category.categoryName = :categoryName " +
+            "ORDER BY card_items.position ASC, card_items.id ASC")
+    LiveData<List<CardWithCategories>> observeCardsWithCategoriesByCategory(String categoryName);
+
+    // --- Full-text search over card_items_fts. :match and :titleMatch are FTS4 MATCH
+    // expressions (see CardRepository#toMatchExpression); title hits rank first. ---
+
+    @Transaction
+    @Query("SELECT card_items.* FROM card_items " +
+            "INNER JOIN card_items_fts ON card_items_fts.rowid = card_items.id " +
+            "WHERE card_items_fts MATCH :match " +
+            "ORDER BY card_items.id IN (SELECT rowid FROM card_items_fts WHERE card_items_fts MATCH :titleMatch) DESC, " +
+            "card_items.position ASC, card_items.id ASC LIMIT :limit")
+    List<CardWithCategories> searchCardsWithCategories(String match, String titleMatch, int limit);
+
+    @Transaction
+    @Query("SELECT card_items.* FROM card_items " +
+            "INNER JOIN card_items_fts ON card_items_fts.rowid = card_items.id " +
+            "INNER JOIN card_category ON card_category.cardId = card_items.id " +
+            "WHERE card_items_fts MATCH :match AND card_category.categoryName = :categoryName " +
+            "ORDER BY card_items.id IN (SELECT rowid FROM card_items_fts WHERE card_items_fts MATCH :titleMatch) DESC, " +
+            "card_items.position ASC, card_items.id ASC LIMIT :limit")
+    List<CardWithCategories> searchCardsWithCategoriesInCategory(String match, String titleMatch,
+                                                                 String categoryName, int limit);
+
+    default List<CardItem> getAllCards() {
+        return CardWithCategories.toCardItems(getAllCardsWithCategories());
+    }
+
+    default CardItem getCardById(long id) {
+        CardWithCategories row = getCardWithCategoriesById(id);
+        return row != null ? row.toCardItem() : null;
+    }
+
+    default List<CardItem> getCardsByCategory(String categoryName) {
+        return CardWithCategories.toCardItems(getCardsWithCategoriesByCategory(categoryName));
+    }
+
+    default CardItem getCardByTitle(String title) {
+        CardWithCategories row = getCardWithCategoriesByTitle(title);
+        return row != null ? row.toCardItem() : null;
+    }
+
+    // --- Card rows ---
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertCard(CardItem cardItem);
-
-    @Update
-    void updateCard(CardItem card);
+    long insertCardRow(CardItem cardItem);
 
     @Update
-    void updateCards(List<CardItem> cards);
+    void updateCardRows(List<CardItem> cards);
 
     @Delete
-    void deleteCards(List<CardItem> cards);
+    void deleteCards(List<CardItem> cards); // card_category rows cascade
 
     @Delete
     void deleteCard(CardItem card);
@@ -47,5 +113,120 @@ public interface CardDao {
     @Query("SELECT IFNULL(MAX(position), -1) FROM card_items")
     int getMaxPosition();
 
+    /**
+     * Moves one card to {@code :toPosition} and shifts every other card in {@code [:low, :high]}
+     * by {@code :shift} in a single statement; see {@link CardMove}.
+     */
+    @Query("UPDATE card_items SET position = CASE WHEN id = :cardId THEN :toPosition ELSE position + :shift END " +
+            "WHERE id = :cardId OR (position BETWEEN :low AND :high AND id != :cardId)")
+    void shiftCardPosition(long cardId, int toPosition, int shift, int low, int high);
+
+    /**
+     * Applies drag moves in order inside one transaction: one statement per move, regardless of
+     * how many cards the list holds.
+     */
+    @Transaction
+    default void applyMoves(List<CardMove> moves) {
+        for (CardMove move : moves) {
+            if (move.getFromPosition() == move.getToPosition()) continue;
+            shiftCardPosition(move.getCardId(), move.getToPosition(), move.getShift(),
+                    move.getLowPosition(), move.getHighPosition());
+        }
+        if (countDuplicatePositions() > 0) {
+            renumberPositions();
+        }
+    }
+
+    @Query("SELECT COUNT(*) - COUNT(DISTINCT position) FROM card_items")
+    int countDuplicatePositions();
+
+    @Query("SELECT id FROM card_items ORDER BY position ASC, id ASC")
+    List<Long> getCardIdsInOrder();
+
+    @Query("UPDATE card_items SET position = :position WHERE id = :cardId")
+    void setCardPosition(long cardId, int position);
+
+    /**
+     * Rewrites positions as 0..n-1 in the current display order (ties by id). Shared positions
+     * (e.g. from cards inserted with explicit positions) would otherwise make drops ambiguous.
+     * One statement per card, so it only runs when duplicates are found.
+     */
+    @Transaction
+    default void renumberPositions() {
+        List<Long> ids = getCardIdsInOrder();
+        for (int i = 0; i < ids.size(); i++) {
+            setCardPosition(ids.get(i), i);
+        }
+    }
+
+    // --- Category links ---
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertCategoryRefs(List<CardCategoryCrossRef> refs);
+
+    @Query("DELETE FROM card_category WHERE cardId = :cardId")
+    void deleteCategoryRefsForCard(long cardId);
+
+    /**
+     * Renames a category on every card at once. Cards that already carry the new name keep a
+     * single link.
+     *
+     * @return Number of links renamed.
+     */
+    @Query("UPDATE OR REPLACE card_category SET categoryName = :newName WHERE categoryName = :oldName")
+    int renameCategory(String oldName, String newName);
+
+    /**
+     * @return Number of links removed.
+     */
+    @Query("DELETE FROM card_category WHERE categoryName = :categoryName")
+    int removeCategory(String categoryName);
+
+    // --- CardItem writes (row + category links) ---
+
+    @Transaction
+    default void insertCards(CardItem... cardItems) {
+        for (CardItem card : cardItems) {
+            insertCard(card);
+        }
+    }
+
+    /**
+     * Inserts (or replaces) the card and its category links; sets the generated id on the card.
+     */
+    @Transaction
+    default void insertCard(CardItem cardItem) {
+        long id = insertCardRow(cardItem);
+        cardItem.setId(id);
+        replaceCategoryRefs(id, cardItem.getCategories());
+    }
+
+    @Transaction
+    default void updateCard(CardItem card) {
+        List<CardItem> single = new ArrayList<>(1);
+        single.add(card);
+        updateCards(single);
+    }
+
+    @Transaction
+    default void updateCards(List<CardItem> cards) {
+        updateCardRows(cards);
+        for (CardItem card : cards) {
+            replaceCategoryRefs(card.getId(), card.getCategories());
+        }
+    }
+
+    default void replaceCategoryRefs(long cardId, Set<String> categories) {
+        deleteCategoryRefsForCard(cardId);
+        if (categories == null || categories.isEmpty()) {
+            return;
+        }
+        List<CardCategoryCrossRef> refs = new ArrayList<>(categories.size());
+        for (String category : categories) {
+            if (category != null && !category.trim().isEmpty()) {
+                refs.add(new CardCategoryCrossRef(cardId, category));
+            }
+        }
+        insertCategoryRefs(refs);
+    }
 }
-
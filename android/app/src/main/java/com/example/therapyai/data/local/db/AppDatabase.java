@@ -1,6 +1,7 @@
 package com.example.therapyai.data.local.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -10,22 +11,33 @@ import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
+import com.example.therapyai.data.local.dao.CachedResponseDao;
 import com.example.therapyai.data.local.dao.CardDao;
 import com.example.therapyai.data.local.dao.CategoryDao;
 import com.example.therapyai.data.local.db.converters.CategorySetConverter;
+import com.example.therapyai.data.local.models.CachedResponse;
+import com.example.therapyai.data.local.models.CardCategoryCrossRef;
+import com.example.therapyai.data.local.models.CardFts;
 import com.example.therapyai.data.local.models.CardItem;
 import com.example.therapyai.data.local.models.CategoryItem;
 
+import java.util.Set;
+
 @Database(entities = {
         CardItem.class,
         CategoryItem.class,
-        }, version = 3,
-        exportSchema = false)
+        CardCategoryCrossRef.class,
+        CardFts.class,
+        CachedResponse.class,
+        }, version = 7,
+        exportSchema = true) // Written to app/schemas for the migration tests
 @TypeConverters({CategorySetConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
     public abstract CardDao cardDao();
     public abstract CategoryDao categoryDao();
+    public abstract CachedResponseDao cachedResponseDao();
 
     private static volatile AppDatabase INSTANCE;
 
@@ -46,13 +58,111 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    /**
+     * Moves card categories out of the denormalized card_items.categories string into the
+     * indexed card_category table. SQLite cannot drop a column on older Android releases, so
+     * card_items is rebuilt without it.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.i("DB_MIGRATION", "Running Migration from V3 to V4 for card_category table.");
+            database.execSQL("ALTER TABLE card_items RENAME TO card_items_old");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `card_items` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`title` TEXT, `description` TEXT, `sessionNotes` TEXT, `type` TEXT, "
+                    + "`isSelected` INTEGER NOT NULL, `position` INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO card_items (id, title, description, sessionNotes, type, isSelected, position) "
+                    + "SELECT id, title, description, sessionNotes, type, isSelected, position FROM card_items_old");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `card_category` (`cardId` INTEGER NOT NULL, "
+                    + "`categoryName` TEXT NOT NULL, PRIMARY KEY(`cardId`, `categoryName`), "
+                    + "FOREIGN KEY(`cardId`) REFERENCES `card_items`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_card_category_categoryName` ON `card_category` (`categoryName`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_card_category_cardId` ON `card_category` (`cardId`)");
+
+            int links = 0;
+            SupportSQLiteStatement insert = database.compileStatement(
+                    "INSERT OR IGNORE INTO card_category (cardId, categoryName) VALUES (?, ?)");
+            try (Cursor cursor = database.query("SELECT id, categories FROM card_items_old WHERE categories IS NOT NULL")) {
+                while (cursor.moveToNext()) {
+                    long cardId = cursor.getLong(0);
+                    Set<String> categories = CategorySetConverter.toSet(cursor.getString(1));
+                    for (String category : categories) {
+                        if (category == null || category.trim().isEmpty()) continue;
+                        insert.bindLong(1, cardId);
+                        insert.bindString(2, category);
+                        insert.executeInsert();
+                        insert.clearBindings();
+                        links++;
+                    }
+                }
+            }
+            database.execSQL("DROP TABLE card_items_old");
+            Log.i("DB_MIGRATION", "Migration V3 to V4 completed successfully. Category links: " + links);
+        }
+    };
+
+    /**
+     * Adds the card_items_fts search index with the content-sync triggers Room generates for
+     * {@link CardFts}, then builds it from the existing cards.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.i("DB_MIGRATION", "Running Migration from V4 to V5 for card full-text index.");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `card_items_fts` USING FTS4("
+                    + "`title` TEXT, `description` TEXT, `sessionNotes` TEXT, "
+                    + "tokenize=unicode61, content=`card_items`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `card_items` BEGIN DELETE FROM `card_items_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `card_items` BEGIN DELETE FROM `card_items_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `card_items` BEGIN INSERT INTO `card_items_fts`(`docid`, `title`, `description`, `sessionNotes`) "
+                    + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`, NEW.`sessionNotes`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_card_items_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `card_items` BEGIN INSERT INTO `card_items_fts`(`docid`, `title`, `description`, `sessionNotes`) "
+                    + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`, NEW.`sessionNotes`); END");
+            database.execSQL("INSERT INTO card_items_fts(card_items_fts) VALUES('rebuild')");
+            Log.i("DB_MIGRATION", "Migration V4 to V5 completed successfully.");
+        }
+    };
+
+    /**
+     * Indexes card_items.position so ordered reads and the range shift of a card move touch only
+     * the affected rows.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.i("DB_MIGRATION", "Running Migration from V5 to V6 for card position index.");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_card_items_position` ON `card_items` (`position`)");
+            Log.i("DB_MIGRATION", "Migration V5 to V6 completed successfully.");
+        }
+    };
+
+    /**
+     * Adds http_response_cache, the encrypted offline copy of profile and session responses.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.i("DB_MIGRATION", "Running Migration from V6 to V7 for HTTP response cache.");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `http_response_cache` (`cacheKey` TEXT NOT NULL, "
+                    + "`userId` TEXT NOT NULL, `etag` TEXT, `body` BLOB, `fetchedAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`cacheKey`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_http_response_cache_userId` ON `http_response_cache` (`userId`)");
+            Log.i("DB_MIGRATION", "Migration V6 to V7 completed successfully.");
+        }
+    };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "therapy_ai_database")
-                            .addMigrations(MIGRATION_2_3)
+                            .addMigrations(MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7)
                             .fallbackToDestructiveMigrationOnDowngrade()
                             .build();
                 }
@@ -0,0 +1,49 @@
+package com.example.therapyai.data.local.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One cached API response for one user. {@code body} is the JSON body sealed with the HIPAA
+ * Keystore key, so rows are unreadable once that key is deleted at logout; {@code etag} is what
+ * the server sent with it and is echoed back in If-None-Match to revalidate.
+ */
+@Entity(tableName = "http_response_cache", indices = {@Index("userId")})
+public class CachedResponse {
+    @PrimaryKey
+    @NonNull
+    private String cacheKey; // userId + request path
+    @NonNull
+    private String userId;
+    private String etag;
+    private byte[] body;
+    private long fetchedAt; // Wall-clock millis of the last 200 or 304
+
+    public CachedResponse(@NonNull String cacheKey, @NonNull String userId, String etag,
+                          byte[] body, long fetchedAt) {
+        this.cacheKey = cacheKey;
+        this.userId = userId;
+        this.etag = etag;
+        this.body = body;
+        this.fetchedAt = fetchedAt;
+    }
+
+    @NonNull
+    public String getCacheKey() { return cacheKey; }
+    public void setCacheKey(@NonNull String cacheKey) { this.cacheKey = cacheKey; }
+
+    @NonNull
+    public String getUserId() { return userId; }
+    public void setUserId(@NonNull String userId) { this.userId = userId; }
+
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+
+    public byte[] getBody() { return body; }
+    public void setBody(byte[] body) { this.body = body; }
+
+    public long getFetchedAt() { return fetchedAt; }
+    public void setFetchedAt(long fetchedAt) { this.fetchedAt = fetchedAt; }
+}
@@ -0,0 +1,37 @@
+package com.example.therapyai.data.local.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * One row per (card, category) pair. Both columns are indexed, so filtering a category and
+ * renaming or dropping it are single indexed statements instead of scans over every card.
+ * Rows go away with their card; category names are not foreign keys because cards may carry
+ * names that were never added to the categories table.
+ */
+@Entity(tableName = "card_category",
+        primaryKeys = {"cardId", "categoryName"},
+        foreignKeys = @ForeignKey(entity = CardItem.class,
+                parentColumns = "id",
+                childColumns = "cardId",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index("categoryName"), @Index("cardId")})
+public class CardCategoryCrossRef {
+    private long cardId;
+    @NonNull
+    private String categoryName;
+
+    public CardCategoryCrossRef(long cardId, @NonNull String categoryName) {
+        this.cardId = cardId;
+        this.categoryName = categoryName;
+    }
+
+    public long getCardId() { return cardId; }
+    public void setCardId(long cardId) { this.cardId = cardId; }
+
+    @NonNull
+    public String getCategoryName() { return categoryName; }
+    public void setCategoryName(@NonNull String categoryName) { this.categoryName = categoryName; }
+}
@@ -0,0 +1,27 @@
+package com.example.therapyai.data.local.models;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * External-content FTS4 index over the searchable text of {@code card_items}. Room installs
+ * triggers that keep it in step with the card table, and the FTS rowid is the card id.
+ * Only queried through {@link com.example.therapyai.data.local.dao.CardDao}; never instantiated.
+ */
+@Fts4(contentEntity = CardItem.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "card_items_fts")
+public class CardFts {
+    private String title;
+    private String description;
+    private String sessionNotes;
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public String getSessionNotes() { return sessionNotes; }
+    public void setSessionNotes(String sessionNotes) { this.sessionNotes = sessionNotes; }
+}
@@ -2,6 +2,7 @@ package com.example.therapyai.data.local.models;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.annotation.NonNull;
 
@@ -9,13 +10,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import androidx.room.TypeConverters;
-import com.example.therapyai.data.local.db.converters.CategorySetConverter;
 import java.util.HashSet;
 import java.util.Set;
 
-@Entity(tableName = "card_items")
-@TypeConverters({CategorySetConverter.class})
+@Entity(tableName = "card_items", indices = {@Index("position")})
 public class CardItem implements Serializable {
     @Ignore
     private static final long serialVersionUID = 1L;
@@ -25,7 +23,8 @@ public class CardItem implements Serializable {
     private String title;
     private String description;
     private String sessionNotes;
-    private Set<String> categories;
+    @Ignore
+    private Set<String> categories; // Stored in card_category, see CardWithCategories
     private String type;
     private boolean isSelected;
     private int position;
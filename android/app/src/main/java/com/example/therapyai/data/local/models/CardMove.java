@@ -0,0 +1,63 @@
+package com.example.therapyai.data.local.models;
+
+import androidx.annotation.Nullable;
+
+/**
+ * A card moved from one stored position to another. Every card between the two positions
+ * shifts by one towards the vacated slot, so relative order elsewhere is unchanged.
+ *
+ * Positions need not be contiguous or unique. Gaps simply shift along. Cards sharing the target
+ * position shift together, so the moved card lands on the far side of all of them; cards sharing
+ * the source position stay put. CardDao renumbers duplicates after writing a batch of moves.
+ */
+public final class CardMove {
+    private final long cardId;
+    private final int fromPosition;
+    private final int toPosition;
+
+    public CardMove(long cardId, int fromPosition, int toPosition) {
+        this.cardId = cardId;
+        this.fromPosition = fromPosition;
+        this.toPosition = toPosition;
+    }
+
+    public long getCardId() { return cardId; }
+    public int getFromPosition() { return fromPosition; }
+    public int getToPosition() { return toPosition; }
+
+    /** Lowest stored position of the cards that shift. The source position itself never shifts. */
+    public int getLowPosition() { return toPosition > fromPosition ? fromPosition + 1 : toPosition; }
+
+    /** Highest stored position of the cards that shift. */
+    public int getHighPosition() { return toPosition > fromPosition ? toPosition : fromPosition - 1; }
+
+    /** Shift applied to the cards between the two positions: -1 moving down the list, +1 moving up. */
+    public int getShift() { return toPosition > fromPosition ? -1 : 1; }
+
+    /**
+     * The stored position a card at {@code position} ends up at after this move.
+     */
+    public int apply(long id, int position) {
+        if (id == cardId) return toPosition;
+        if (fromPosition != toPosition && position >= getLowPosition() && position <= getHighPosition()) {
+            return position + getShift();
+        }
+        return position;
+    }
+
+    /**
+     * This move followed by {@code next} as a single move, or null if they cannot be combined.
+     * Only a further move of the same card from where this one left it can be combined. The
+     * result equals the two moves in turn as long as no two cards share a position.
+     */
+    @Nullable
+    public CardMove followedBy(CardMove next) {
+        if (next.cardId != cardId || next.fromPosition != toPosition) return null;
+        return new CardMove(cardId, fromPosition, next.toPosition);
+    }
+
+    @Override
+    public String toString() {
+        return "CardMove{" + cardId + ": " + fromPosition + " -> " + toPosition + "}";
+    }
+}
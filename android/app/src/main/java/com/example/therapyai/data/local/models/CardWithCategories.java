@@ -0,0 +1,37 @@
+package com.example.therapyai.data.local.models;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A card row together with its category names from {@code card_category}.
+ */
+public class CardWithCategories {
+    @Embedded
+    public CardItem card;
+
+    @Relation(parentColumn = "id",
+            entityColumn = "cardId",
+            entity = CardCategoryCrossRef.class,
+            projection = {"categoryName"})
+    public List<String> categoryNames;
+
+    public CardItem toCardItem() {
+        card.setCategories(categoryNames != null ? new HashSet<>(categoryNames) : new HashSet<>());
+        return card;
+    }
+
+    public static List<CardItem> toCardItems(List<CardWithCategories> rows) {
+        List<CardItem> cards = new ArrayList<>(rows != null ? rows.size() : 0);
+        if (rows != null) {
+            for (CardWithCategories row : rows) {
+                cards.add(row.toCardItem());
+            }
+        }
+        return cards;
+    }
+}
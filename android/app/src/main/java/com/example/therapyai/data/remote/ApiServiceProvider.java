@@ -1,5 +1,10 @@
 package com.example.therapyai.data.remote;
 
+import com.example.therapyai.data.local.models.FinalSessionDetail;
+import com.example.therapyai.data.local.models.TranscriptDetail;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 import java.util.Collections;
 import okhttp3.CipherSuite;
 import okhttp3.ConnectionSpec;
@@ -9,14 +14,28 @@ import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
- * Provides a singleton instance of {@link TherapyApiService} that automatically
- * refreshes the token on 401 responses, thanks to the {@link TokenAuthenticator}.
+ * Provides a singleton instance of {@link TherapyApiService} that attaches the access token to
+ * every request ({@link AuthInterceptor}) and automatically refreshes it on 401 responses,
+ * thanks to the {@link TokenAuthenticator}.
  */
 public class ApiServiceProvider {
     private static TherapyApiService instance;       // Main service (with TokenAuthenticator)
     private static TherapyApiService authlessService; // For refresh calls only
     private static final String BASE_URL = "https://therapyaiapp-chgaenawcmgcfkev.israelcentral-01.azurewebsites.net";
 
+    // Reflection for most bodies; the large detail payloads are streamed straight into domain models
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(FinalSessionDetail.class, new SessionDetailTypeAdapter().nullSafe())
+            .registerTypeAdapter(TranscriptDetail.class, new TranscriptDetailTypeAdapter().nullSafe())
+            .create();
+
+    /**
+     * The Gson used for API bodies, also for cached copies of them.
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
     public static synchronized TherapyApiService getInstance() {
         if (instance == null) {
             authlessService = buildApiServiceWithoutAuth();
@@ -35,6 +54,7 @@ public class ApiServiceProvider {
                                     )
                                     .build()
                     ))
+                    .addInterceptor(new AuthInterceptor())
                     .authenticator(new TokenAuthenticator(authlessService))
                     .build();
 
@@ -42,7 +62,7 @@ public class ApiServiceProvider {
             Retrofit retrofit = new Retrofit.Builder()
                     .baseUrl(BASE_URL)
                     .client(okHttpClient)
-                    .addConverterFactory(GsonConverterFactory.create())
+                    .addConverterFactory(GsonConverterFactory.create(GSON))
                     .build();
 
             instance = retrofit.create(TherapyApiService.class);
@@ -58,7 +78,7 @@ public class ApiServiceProvider {
     private static TherapyApiService buildApiServiceWithoutAuth() {
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create(GSON))
                 .build();
         return retrofit.create(TherapyApiService.class);
     }
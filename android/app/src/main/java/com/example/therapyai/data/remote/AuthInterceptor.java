@@ -0,0 +1,64 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.EphemeralPrefs;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+/**
+ * Adds "Authorization: Bearer &lt;access token&gt;" to every request of the main client, so API
+ * methods no longer take a token. The token comes from {@link EphemeralPrefs}, whose in-memory
+ * cache makes this a map lookup rather than a Keystore decrypt. Endpoints annotated
+ * {@link NoAuth} (login, password reset) are sent without it. The marker travels as the request's
+ * Retrofit {@link Invocation} tag rather than a header, so no client can leak it to the server.
+ *
+ * Expired tokens are handled by {@link TokenAuthenticator}, which replays the request with the
+ * refreshed token.
+ */
+public class AuthInterceptor implements Interceptor {
+
+    static final String AUTHORIZATION = "Authorization";
+    static final String BEARER_PREFIX = "Bearer ";
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (isAuthless(request)) {
+            return chain.proceed(request);
+        }
+        if (request.header(AUTHORIZATION) != null) {
+            return chain.proceed(request); // Set explicitly by the caller
+        }
+        String token = EphemeralPrefs.getInstance().getSessionToken();
+        if (token == null || token.isEmpty()) {
+            return chain.proceed(request); // Server answers 401; TokenAuthenticator decides
+        }
+        return chain.proceed(withBearer(request, token));
+    }
+
+    /**
+     * True for requests made through a {@link NoAuth} endpoint. The tag survives
+     * {@code newBuilder()}, so this also holds for replays built from a response.
+     */
+    static boolean isAuthless(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        return invocation != null && invocation.method().isAnnotationPresent(NoAuth.class);
+    }
+
+    static Request withBearer(Request request, String token) {
+        return request.newBuilder().header(AUTHORIZATION, BEARER_PREFIX + token).build();
+    }
+
+    /**
+     * @return The bearer token a request was sent with, or null.
+     */
+    static String bearerOf(Request request) {
+        String header = request.header(AUTHORIZATION);
+        if (header == null || !header.startsWith(BEARER_PREFIX)) return null;
+        return header.substring(BEARER_PREFIX.length());
+    }
+}
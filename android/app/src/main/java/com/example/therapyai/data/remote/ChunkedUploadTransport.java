@@ -0,0 +1,26 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
+import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
+
+import java.io.IOException;
+
+/**
+ * The resumable (chunked) upload endpoints, served by the API or by {@link MockChunkedUploadServer}.
+ *
+ * Calls block and must be made from a background thread. A request the server refused is
+ * reported as {@link HttpStatusException}; any other IOException means the connection failed
+ * and the request may or may not have reached the server.
+ */
+public interface ChunkedUploadTransport {
+
+    ChunkedUploadResponse startChunkedUpload(ChunkedUploadInitRequest request) throws IOException;
+
+    ChunkedUploadResponse getChunkedUploadStatus(String uploadId) throws IOException;
+
+    ChunkedUploadResponse uploadChunk(String uploadId, long offset,
+                                      byte[] data, int length, String checksum) throws IOException;
+
+    SessionSubmissionResponse completeChunkedUpload(String uploadId) throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.example.therapyai.data.remote;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the synchronous (blocking) API calls when the server answered with a non-2xx status.
+ * Plain {@link IOException}s from those calls mean the connection itself failed.
+ */
+public class HttpStatusException extends IOException {
+    private final int code;
+
+    public HttpStatusException(int code, String message) {
+        super("HTTP " + code + " " + message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.therapyai.data.remote;
+
+import android.util.Log;
+
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
+import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
+import com.example.therapyai.util.AudioFormatUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * In-process stand-in for the chunked upload endpoints, used by {@link TherapyApiImpl} in mock mode.
+ *
+ * Mirrors the server contract (offset check, checksum check, acknowledged next offset) and
+ * drops "connections" at random so the resume logic in ResumableUploader gets exercised:
+ * sometimes before the chunk is stored, sometimes after it was stored but before the ack
+ * reaches the client. Received bytes are written straight to a file, so memory stays constant.
+ */
+public class MockChunkedUploadServer implements ChunkedUploadTransport {
+
+    private static final String TAG = "MockChunkedUploadServer";
+
+    public static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+
+    private final File outputDir;
+    private final double dropProbability;
+    private final Random random;
+    private final Map<String, MockUpload> uploads = new HashMap<>();
+
+    private static class MockUpload {
+        final File file;
+        final long totalSize;
+        long nextOffset;
+        SessionSubmissionResponse completedResponse; // Kept so a retried "complete" is idempotent
+
+        MockUpload(File file, long totalSize) {
+            this.file = file;
+            this.totalSize = totalSize;
+        }
+    }
+
+    /**
+     * @param outputDir       Where the reassembled uploads are written.
+     * @param dropProbability Chance (0..1) that any single request fails with a dropped connection.
+     * @param random          Source of randomness; pass a seeded instance for reproducible runs.
+     */
+    public MockChunkedUploadServer(File outputDir, double dropProbability, Random random) {
+        this.outputDir = outputDir;
+        this.dropProbability = dropProbability;
+        this.random = random;
+    }
+
+    @Override
+    public synchronized ChunkedUploadResponse startChunkedUpload(ChunkedUploadInitRequest request) throws IOException {
+        maybeDrop("start");
+        String uploadId = "mock-upload-" + UUID.randomUUID();
+        String extension = AudioFormatUtil.getAudioFileExtensionForMimeType(request.getContentType());
+        File file = new File(outputDir, "mock_upload_" + System.currentTimeMillis() + extension + ".part");
+        uploads.put(uploadId, new MockUpload(file, request.getTotalSize()));
+        Log.d(TAG, "Started " + uploadId + " (" + request.getTotalSize() + " bytes) -> " + file.getName());
+        return new ChunkedUploadResponse(uploadId, 0, request.getTotalSize(), STATUS_IN_PROGRESS);
+    }
+
+    @Override
+    public synchronized ChunkedUploadResponse getChunkedUploadStatus(String uploadId) throws IOException {
+        maybeDrop("status");
+        MockUpload upload = requireUpload(uploadId);
+        return new ChunkedUploadResponse(uploadId, upload.nextOffset, upload.totalSize, STATUS_IN_PROGRESS);
+    }
+
+    @Override
+    public synchronized ChunkedUploadResponse uploadChunk(String uploadId, long offset, byte[] data, int length, String checksum) throws IOException {
+        boolean dropAfterStore = false;
+        if (random.nextDouble() < dropProbability) {
+            // Half of the drops happen after the server already stored the chunk (lost ack).
+            if (random.nextBoolean()) {
+                throw new SocketException("Mock connection reset before chunk at offset " + offset + " was received");
+            }
+            dropAfterStore = true;
+        }
+
+        MockUpload upload = requireUpload(uploadId);
+        if (offset != upload.nextOffset) {
+            throw new HttpStatusException(409, "Offset mismatch: expected " + upload.nextOffset + ", got " + offset);
+        }
+        if (offset + length > upload.totalSize) {
+            throw new HttpStatusException(400, "Chunk exceeds declared upload size");
+        }
+        if (!TherapyApiImpl.chunkChecksumHeader(data, length).equals(checksum)) {
+            throw new HttpStatusException(422, "Checksum mismatch for chunk at offset " + offset);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(upload.file, "rw")) {
+            raf.seek(offset);
+            raf.write(data, 0, length);
+        }
+        upload.nextOffset = offset + length;
+
+        if (dropAfterStore) {
+            throw new SocketException("Mock connection reset after chunk at offset " + offset + " was stored");
+        }
+        return new ChunkedUploadResponse(uploadId, upload.nextOffset, upload.totalSize, STATUS_IN_PROGRESS);
+    }
+
+    @Override
+    public synchronized SessionSubmissionResponse completeChunkedUpload(String uploadId) throws IOException {
+        maybeDrop("complete");
+        MockUpload upload = requireUpload(uploadId);
+        if (upload.completedResponse != null) {
+            return upload.completedResponse;
+        }
+        if (upload.nextOffset != upload.totalSize) {
+            throw new HttpStatusException(409, "Upload incomplete: " + upload.nextOffset + " of " + upload.totalSize + " bytes received");
+        }
+        String partName = upload.file.getName();
+        File finalFile = new File(outputDir, partName.substring(0, partName.length() - ".part".length()));
+        if (!upload.file.renameTo(finalFile)) {
+            finalFile = upload.file;
+        }
+        String message = "Mock chunked upload successful. Final audio saved to: " + finalFile.getName();
+        Log.i(TAG, message + " (Size: " + finalFile.length() + " bytes)");
+        upload.completedResponse = new SessionSubmissionResponse("mock-session-" + UUID.randomUUID(), message);
+
+        // Drop the ack of a completed upload too; the client must retry and get the same answer.
+        maybeDrop("complete acknowledgement");
+        return upload.completedResponse;
+    }
+
+    private MockUpload requireUpload(String uploadId) throws IOException {
+        MockUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new HttpStatusException(404, "Unknown upload: " + uploadId);
+        }
+        return upload;
+    }
+
+    private void maybeDrop(String operation) throws IOException {
+        if (random.nextDouble() < dropProbability) {
+            throw new SocketException("Mock connection reset during " + operation);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.therapyai.data.remote;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link TherapyApiService} endpoint that must be sent without the bearer token
+ * (login, password reset, refresh). {@link AuthInterceptor} reads it from the
+ * {@link retrofit2.Invocation} tag Retrofit attaches to every request, so nothing about it goes
+ * over the wire.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface NoAuth {
+}
@@ -0,0 +1,220 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.models.FinalSessionDetail;
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+import com.example.therapyai.data.local.models.TimedNote;
+import com.example.therapyai.data.remote.models.FinalSessionDetailResponse;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the /sessions/{id}/details body straight into a {@link FinalSessionDetail} in one pass,
+ * instead of building a {@link FinalSessionDetailResponse} graph and mapping it again. A long
+ * session has one transcript entry per sentence, so skipping the intermediate objects matters.
+ *
+ * The wire format is the one {@link FinalSessionDetailResponse} describes. {@link #write} emits
+ * it too, so cached copies read back through this adapter. Unknown fields are skipped. Like the
+ * old mapping, only patient sentences keep a sentiment score.
+ */
+final class SessionDetailTypeAdapter extends TypeAdapter<FinalSessionDetail> {
+
+    @Override
+    public FinalSessionDetail read(JsonReader in) throws IOException {
+        String sessionId = null, therapistName = null, therapistEmail = null;
+        String patientId = null, patientName = null, patientEmail = null, sessionDate = null;
+        String summary = null;
+        double positive = 0, neutral = 0, negative = 0;
+        List<String> generalNotes = new ArrayList<>();
+        List<TimedNote> timedNotes = new ArrayList<>();
+        List<FinalTranscriptEntry> transcriptEntries = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "sessionId": sessionId = in.nextString(); break;
+                case "therapist_name": therapistName = in.nextString(); break;
+                case "therapist_email": therapistEmail = in.nextString(); break;
+                case "patient_id": patientId = in.nextString(); break;
+                case "patient_name": patientName = in.nextString(); break;
+                case "patient_email": patientEmail = in.nextString(); break;
+                case "session_date": sessionDate = in.nextString(); break;
+                case "summary": summary = in.nextString(); break;
+                case "positive": positive = in.nextDouble(); break;
+                case "neutral": neutral = in.nextDouble(); break;
+                case "negative": negative = in.nextDouble(); break;
+                case "general_notes": readStrings(in, generalNotes); break;
+                case "timed_notes": readTimedNotes(in, timedNotes); break;
+                case "sentiment_scores": readTranscript(in, transcriptEntries); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+
+        return new FinalSessionDetail(
+                sessionId,
+                null,
+                therapistName,
+                therapistEmail,
+                patientId,
+                patientName,
+                patientEmail,
+                sessionDate,
+                generalNotes,
+                timedNotes,
+                summary != null ? summary : "",
+                positive,
+                neutral,
+                negative,
+                transcriptEntries
+        );
+    }
+
+    @Override
+    public void write(JsonWriter out, FinalSessionDetail detail) throws IOException {
+        out.beginObject();
+        out.name("sessionId").value(detail.getId());
+        out.name("therapist_name").value(detail.getTherapistName());
+        out.name("therapist_email").value(detail.getTherapistEmail());
+        out.name("patient_id").value(detail.getPatientId());
+        out.name("patient_name").value(detail.getPatientName());
+        out.name("patient_email").value(detail.getPatientEmail());
+        out.name("session_date").value(detail.getTreatmentDate());
+        out.name("summary").value(detail.getSummary());
+        out.name("positive").value(detail.getPositive());
+        out.name("neutral").value(detail.getNeutral());
+        out.name("negative").value(detail.getNegative());
+
+        out.name("general_notes").beginArray();
+        if (detail.getGeneralNotes() != null) {
+            for (String note : detail.getGeneralNotes()) {
+                out.value(note);
+            }
+        }
+        out.endArray();
+
+        out.name("timed_notes").beginArray();
+        if (detail.getTimedNotes() != null) {
+            for (TimedNote note : detail.getTimedNotes()) {
+                out.beginObject();
+                out.name("timestamp").value(note.getTime());
+                out.name("content").value(note.getNote());
+                out.endObject();
+            }
+        }
+        out.endArray();
+
+        out.name("sentiment_scores").beginArray();
+        if (detail.getTranscriptEntries() != null) {
+            for (FinalTranscriptEntry entry : detail.getTranscriptEntries()) {
+                out.beginObject();
+                out.name("speaker").value(entry.getSpeaker());
+                out.name("text").value(entry.getText());
+                out.name("timestamp").value(entry.getTimestamp());
+                SentimentScore score = entry.getSentimentScore();
+                if (score != null) {
+                    out.name("positive").value(score.getPositive());
+                    out.name("neutral").value(score.getNeutral());
+                    out.name("negative").value(score.getNegative());
+                }
+                out.endObject();
+            }
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private static void readStrings(JsonReader in, List<String> into) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            into.add(in.nextString());
+        }
+        in.endArray();
+    }
+
+    private static void readTimedNotes(JsonReader in, List<TimedNote> into) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            String time = null, note = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if ("timestamp".equals(name)) {
+                    time = in.nextString();
+                } else if ("content".equals(name)) {
+                    note = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            into.add(new TimedNote(time, note));
+        }
+        in.endArray();
+    }
+
+    private static void readTranscript(JsonReader in, List<FinalTranscriptEntry> into) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            String speaker = null, text = null, timestamp = null;
+            double positive = 0, neutral = 0, negative = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "speaker": speaker = canonicalSpeaker(in.nextString()); break;
+                    case "text": text = in.nextString(); break;
+                    case "timestamp": timestamp = in.nextString(); break;
+                    case "positive": positive = in.nextDouble(); break;
+                    case "neutral": neutral = in.nextDouble(); break;
+                    case "negative": negative = in.nextDouble(); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            SentimentScore score = "Patient".equalsIgnoreCase(speaker)
+                    ? new SentimentScore((float) positive, (float) neutral, (float) negative)
+                    : null; // Therapist sentences are not scored
+            into.add(new FinalTranscriptEntry(speaker, text, timestamp, score));
+        }
+        in.endArray();
+    }
+
+    /**
+     * Shares one String per speaker across all entries rather than keeping a copy per sentence.
+     */
+    static String canonicalSpeaker(String speaker) {
+        if ("Patient".equals(speaker)) return "Patient";
+        if ("Therapist".equals(speaker)) return "Therapist";
+        return speaker;
+    }
+}
@@ -4,14 +4,19 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
-import android.widget.Toast;
 
 import com.example.therapyai.TherapyAIApp;
 import com.example.therapyai.data.local.EphemeralPrefs;
+import com.example.therapyai.data.local.ResponseCache;
 import com.example.therapyai.data.local.SessionManager;
+import com.example.therapyai.data.local.models.FinalSessionDetail;
+import com.example.therapyai.data.local.models.TranscriptDetail;
 // Import NEW response/request models
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
 import com.example.therapyai.data.remote.models.ProfileResponse;
 import com.example.therapyai.data.remote.models.FinalSessionDetailResponse;
+import com.example.therapyai.data.remote.models.SessionSummaryPageResponse;
 import com.example.therapyai.data.remote.models.SessionSummaryResponse;
 // Import necessary existing models
 import com.example.therapyai.data.remote.models.DeviceRegistrationRequest;
@@ -24,39 +29,55 @@ import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
 import com.example.therapyai.data.remote.models.TranscriptSentenceResponse;
 import com.example.therapyai.data.remote.models.TranscriptDetailResponse;
 import com.google.gson.Gson; // Keep if used for metadata/mocking
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
-import okhttp3.MultipartBody;
+import okhttp3.MediaType;
 import okhttp3.RequestBody;
-import okio.Buffer;
+import okio.ByteString;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
-public class TherapyApiImpl {
+public class TherapyApiImpl implements ChunkedUploadTransport {
 
     private static final String TAG = "TherapyApiImpl";
     private static final String MOCK_TAG = "TherapyApiImpl_Mock";
+    private static final double MOCK_CHUNK_DROP_PROBABILITY = 0.15; // Simulated flaky Wi-Fi for resumable uploads
+    // A cached response confirmed this recently is shown without asking the server again
+    private static final long CACHE_FRESH_MS = 30_000;
     private static TherapyApiImpl instance;
     private final TherapyApiService apiService;
     private final boolean useMockData;
     private final Handler mockHandler = new Handler(Looper.getMainLooper());
-    private final ExecutorService mockExecutor = Executors.newSingleThreadExecutor();
-    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
-    private final Gson gson = new Gson();
+    private final Executor mainThread; // Delivers cached responses
+    private final Gson gson = ApiServiceProvider.getGson();
+    private MockChunkedUploadServer mockChunkedUploadServer;
 
     private TherapyApiImpl(TherapyApiService apiService, boolean useMockData) {
+        this(apiService, useMockData, new Handler(Looper.getMainLooper())::post);
+    }
+
+    /**
+     * With {@code mainThread} in place of the main looper, for JVM tests.
+     */
+    TherapyApiImpl(TherapyApiService apiService, boolean useMockData, Executor mainThread) {
         this.apiService = apiService;
         this.useMockData = useMockData;
+        this.mainThread = mainThread;
     }
 
     public static synchronized TherapyApiImpl getInstance(boolean useMockData) {
@@ -66,6 +87,14 @@ public class TherapyApiImpl {
         return instance;
     }
 
+    /**
+     * A separate (non-singleton) instance over the given service, e.g. one pointed at a local
+     * test server.
+     */
+    public static TherapyApiImpl forService(TherapyApiService apiService) {
+        return new TherapyApiImpl(apiService, false);
+    }
+
     public interface ApiCallback<T> {
         void onSuccess(T result);
         void onError(String error);
@@ -116,6 +145,11 @@ public class TherapyApiImpl {
 
             @Override
             public void onFailure(Call<T> call, Throwable t) {
+                if (call.isCanceled()) {
+                    // Cancelled by the caller (e.g. a superseded search); it no longer wants a result
+                    Log.d(TAG, "API call '" + methodName + "' cancelled.");
+                    return;
+                }
                 String networkErrorMsg = "Network error during API call '" + methodName + "': " + t.getMessage();
                 Log.e(TAG, networkErrorMsg, t);
                 customCallback.onError(networkErrorMsg);
@@ -125,6 +159,99 @@ public class TherapyApiImpl {
 
 
 
+    /**
+     * Offline-first GET with stale-while-revalidate: the user's cached copy (if any) is delivered
+     * first, then the request goes out with its ETag in If-None-Match unless the copy is fresher
+     * than {@link #CACHE_FRESH_MS}. A 304 only refreshes the copy's timestamp; a 200 is cached and
+     * delivered again if the body changed. While a cached copy is on screen, network failures are
+     * logged instead of reported, except 401 which still logs out.
+     *
+     * {@code callback.onSuccess} can therefore run twice, cached then fresh, on the main thread.
+     */
+    private <T> void enqueueCached(String path, Type type, Function<String, Call<T>> callFactory,
+                                   ApiCallback<T> callback, String methodName) {
+        String userId = EphemeralPrefs.getInstance().getUserId();
+        if (userId == null) {
+            callFactory.apply(null).enqueue(createRetrofitCallback(callback, methodName));
+            return;
+        }
+        ResponseCache cache = ResponseCache.getInstance();
+        cache.execute(() -> {
+            ResponseCache.Entry entry = cache.read(userId, path);
+            T cachedValue = null;
+            if (entry != null) {
+                try {
+                    cachedValue = gson.fromJson(entry.getJson(), type);
+                } catch (JsonParseException e) {
+                    Log.w(TAG, "Ignoring unparseable cached response for " + methodName, e);
+                }
+            }
+            final T cached = cachedValue;
+            final ResponseCache.Entry cachedEntry = cached != null ? entry : null;
+            mainThread.execute(() -> {
+                if (cached != null) {
+                    Log.d(TAG, methodName + ": serving cached copy.");
+                    callback.onSuccess(cached);
+                    if (cachedEntry.isFresh(CACHE_FRESH_MS)) return;
+                }
+                enqueueRevalidation(path, type, callFactory, callback, methodName, userId, cachedEntry);
+            });
+        });
+    }
+
+    private <T> void enqueueRevalidation(String path, Type type, Function<String, Call<T>> callFactory,
+                                         ApiCallback<T> callback, String methodName,
+                                         String userId, ResponseCache.Entry cachedEntry) {
+        ResponseCache cache = ResponseCache.getInstance();
+        Callback<T> networkCallback = createRetrofitCallback(callback, methodName);
+        callFactory.apply(cachedEntry != null ? cachedEntry.getEtag() : null).enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (response.code() == 304 && cachedEntry != null) {
+                    cache.execute(() -> cache.markRevalidated(userId, path));
+                    return;
+                }
+                if (response.isSuccessful() && response.body() != null) {
+                    T body = response.body();
+                    String json = gson.toJson(body, type);
+                    String etag = response.headers().get("ETag");
+                    cache.execute(() -> cache.write(userId, path, etag, json));
+                    if (cachedEntry == null || !json.equals(cachedEntry.getJson())) {
+                        callback.onSuccess(body);
+                    }
+                    return;
+                }
+                if (cachedEntry != null) {
+                    if (response.code() == 403 || response.code() == 404) {
+                        cache.execute(() -> cache.remove(userId, path)); // No longer ours to show
+                    } else if (response.code() != 401) {
+                        Log.w(TAG, methodName + ": revalidation failed with HTTP " + response.code() + ", keeping cached copy.");
+                        return;
+                    }
+                }
+                networkCallback.onResponse(call, response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                if (cachedEntry != null) {
+                    Log.w(TAG, methodName + ": offline, keeping cached copy. " + t.getMessage());
+                    return;
+                }
+                networkCallback.onFailure(call, t);
+            }
+        });
+    }
+
+    /**
+     * Cheap logged-in check before queueing a call; the header itself is added by
+     * {@link AuthInterceptor}.
+     */
+    private static boolean hasSessionToken() {
+        String token = EphemeralPrefs.getInstance().getSessionToken();
+        return token != null && !token.isEmpty();
+    }
+
     public void loginUser(String username, String password, ApiCallback<LoginResponse> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for loginUser.");
@@ -144,7 +271,7 @@ public class TherapyApiImpl {
         apiService.forgotPassword(email).enqueue(createRetrofitCallback(callback, "forgotPassword"));
     }
 
-    public void changePassword(String token, String secToken, String newPassword, ApiCallback<PasswordResetResponse> callback) {
+    public void changePassword(String secToken, String newPassword, ApiCallback<PasswordResetResponse> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for changePassword.");
             mockHandler.postDelayed(() -> callback.onSuccess(getMockPasswordResetResponse()), 300);
@@ -153,11 +280,11 @@ public class TherapyApiImpl {
         PasswordChangeRequest request = new PasswordChangeRequest();
         request.setTokenSec(secToken);
         request.setNewPassword(newPassword);
-        apiService.changePassword("Bearer " + token, request)
+        apiService.changePassword(request)
                 .enqueue(createRetrofitCallback(callback, "changePassword"));
     }
 
-    public void registerDevice(String token, DeviceRegistrationRequest request, ApiCallback<Void> callback) {
+    public void registerDevice(DeviceRegistrationRequest request, ApiCallback<Void> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for registerDevice. User: " + request.getUser_id());
             mockHandler.postDelayed(() -> {
@@ -166,10 +293,14 @@ public class TherapyApiImpl {
             }, 400);
             return;
         }
-        apiService.registerDevice("Bearer " + token, request).enqueue(createRetrofitCallback(callback, "registerDevice"));
+        apiService.registerDevice(request).enqueue(createRetrofitCallback(callback, "registerDevice"));
     }
 
-    public void unregisterDevice(String token, String userId, ApiCallback<Void> callback) {
+    /**
+     * Unlike other calls this one carries its own token: it is sent during logout, after which
+     * AuthInterceptor would find the session token already cleared.
+     */
+    public void unregisterDevice(String sessionToken, String userId, ApiCallback<Void> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for unregisterDevice. User: " + userId);
             mockHandler.postDelayed(() -> {
@@ -178,40 +309,48 @@ public class TherapyApiImpl {
             }, 300);
             return;
         }
-        apiService.unregisterDevice("Bearer " + token, userId).enqueue(createRetrofitCallback(callback, "unregisterDevice"));
+        apiService.unregisterDevice(
+                sessionToken != null ? AuthInterceptor.BEARER_PREFIX + sessionToken : null, userId).enqueue(createRetrofitCallback(callback, "unregisterDevice"));
     }
 
     // --- Search Methods ---
 
-    public void searchProfiles(String query, ApiCallback<List<ProfileResponse>> callback) {
+    /**
+     * @return The enqueued call, so a superseded search can be cancelled; null when no request
+     * was sent (mock data or not logged in). A cancelled call does not invoke the callback.
+     */
+    public Call<List<ProfileResponse>> searchProfiles(String query, ApiCallback<List<ProfileResponse>> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for searchProfiles.");
             mockHandler.postDelayed(() -> callback.onSuccess(getMockProfiles(query)), 500);
-            return;
+            return null;
         }
-        String token = EphemeralPrefs.getInstance().getSessionToken(); // Check if still valid approach
-        if (token == null || token.isEmpty()) {
+        if (!hasSessionToken()) {
             callback.onError("Authentication token not found. Please log in.");
-            return;
+            return null;
         }
-        apiService.searchProfiles("Bearer " + token, query)
-                .enqueue(createRetrofitCallback(callback, "searchProfiles"));
+        Call<List<ProfileResponse>> call = apiService.searchProfiles(query);
+        call.enqueue(createRetrofitCallback(callback, "searchProfiles"));
+        return call;
     }
 
-    public void searchSessions(String query, ApiCallback<List<SessionSummaryResponse>> callback) {
+    /**
+     * @return The enqueued call, or null; see {@link #searchProfiles}.
+     */
+    public Call<List<SessionSummaryResponse>> searchSessions(String query, ApiCallback<List<SessionSummaryResponse>> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for searchSessions.");
             mockHandler.postDelayed(() -> callback.onSuccess(getMockSessionSummaries(query)), 600);
-            return;
+            return null;
         }
-        String token = EphemeralPrefs.getInstance().getSessionToken();
-        if (token == null || token.isEmpty()) {
+        if (!hasSessionToken()) {
             callback.onError("Authentication token not found. Please log in.");
-            return;
+            return null;
         }
         // Call the updated API endpoint
-        apiService.searchSessions("Bearer " + token, query)
-                .enqueue(createRetrofitCallback(callback, "searchSessions"));
+        Call<List<SessionSummaryResponse>> call = apiService.searchSessions(query);
+        call.enqueue(createRetrofitCallback(callback, "searchSessions"));
+        return call;
     }
 
     public void getOwnProfile(ApiCallback<ProfileResponse> callback) {
@@ -222,13 +361,12 @@ public class TherapyApiImpl {
             mockHandler.postDelayed(() -> callback.onSuccess(getMockOwnProfile(mockPatientId)), 350);
             return;
         }
-        String token = EphemeralPrefs.getInstance().getSessionToken();
-        if (token == null || token.isEmpty()) {
+        if (!hasSessionToken()) {
             callback.onError("Authentication token not found. Please log in.");
             return;
         }
-        apiService.getOwnProfile("Bearer " + token)
-                .enqueue(createRetrofitCallback(callback, "getOwnProfile"));
+        enqueueCached("profiles/me", ProfileResponse.class,
+                apiService::getOwnProfile, callback, "getOwnProfile");
     }
 
     public void getOwnSessions(ApiCallback<List<SessionSummaryResponse>> callback) {
@@ -239,125 +377,183 @@ public class TherapyApiImpl {
             mockHandler.postDelayed(() -> callback.onSuccess(getMockOwnSessions(mockPatientId)), 550);
             return;
         }
-        String token = EphemeralPrefs.getInstance().getSessionToken();
-        if (token == null || token.isEmpty()) {
+        if (!hasSessionToken()) {
+            callback.onError("Authentication token not found. Please log in.");
+            return;
+        }
+        enqueueCached("sessions/me", new TypeToken<List<SessionSummaryResponse>>() {}.getType(),
+                apiService::getOwnSessions, callback, "getOwnSessions");
+    }
+
+    /**
+     * One page of the user's own sessions, newest first. The first page ({@code cursor} null) is
+     * served offline-first like {@link #getOwnSessions}, so its callback may fire twice.
+     */
+    public void getOwnSessionsPage(int limit, String cursor, ApiCallback<SessionSummaryPageResponse> callback) {
+        if (useMockData) {
+            Log.d(MOCK_TAG, "Using mock data for getOwnSessionsPage (cursor: " + cursor + ").");
+            String mockPatientId = "patient_mockUser123";
+            mockHandler.postDelayed(() -> deliverMockPage(getMockOwnSessions(mockPatientId), limit, cursor, callback, "getOwnSessionsPage"), 400);
+            return;
+        }
+        if (!hasSessionToken()) {
+            callback.onError("Authentication token not found. Please log in.");
+            return;
+        }
+        if (cursor == null) {
+            enqueueCached("sessions/me?limit=" + limit, SessionSummaryPageResponse.class,
+                    etag -> apiService.getOwnSessionsPage(etag, limit, null), callback, "getOwnSessionsPage");
+        } else {
+            apiService.getOwnSessionsPage(null, limit, cursor)
+                    .enqueue(createRetrofitCallback(callback, "getOwnSessionsPage"));
+        }
+    }
+
+    /**
+     * One page of session search results, newest first; pass the previous page's
+     * {@code nextCursor} to continue.
+     */
+    public void searchSessionsPage(String query, int limit, String cursor, ApiCallback<SessionSummaryPageResponse> callback) {
+        if (useMockData) {
+            Log.d(MOCK_TAG, "Using mock data for searchSessionsPage (cursor: " + cursor + ").");
+            mockHandler.postDelayed(() -> deliverMockPage(getMockSessionSummaries(query), limit, cursor, callback, "searchSessionsPage"), 450);
+            return;
+        }
+        if (!hasSessionToken()) {
             callback.onError("Authentication token not found. Please log in.");
             return;
         }
-        apiService.getOwnSessions("Bearer " + token)
-                .enqueue(createRetrofitCallback(callback, "getOwnSessions"));
+        apiService.searchSessionsPage(query, limit, cursor)
+                .enqueue(createRetrofitCallback(callback, "searchSessionsPage"));
     }
 
     // --- Session Detail Method ---
 
     public void getSessionDetails(String sessionId,
-                                  ApiCallback<FinalSessionDetailResponse> callback) {
+                                  ApiCallback<FinalSessionDetail> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for getSessionDetails (ID: " + sessionId + ").");
-            mockHandler.postDelayed(() -> callback.onSuccess(getMockSessionDetail(sessionId)), 700);
+            mockHandler.postDelayed(() -> callback.onSuccess(
+                    fromWireModel(getMockSessionDetail(sessionId), FinalSessionDetail.class)), 700);
             return;
         }
-        String token = EphemeralPrefs.getInstance().getSessionToken();
-        if (token == null || token.isEmpty()) {
+        if (!hasSessionToken()) {
             callback.onError("Authentication token not found. Please log in.");
             return;
         }
-        apiService.getSessionDetails("Bearer " + token, sessionId)
-                .enqueue(createRetrofitCallback(callback, "getSessionDetails"));
+        enqueueCached("sessions/" + sessionId + "/details", FinalSessionDetail.class,
+                etag -> apiService.getSessionDetails(etag, sessionId), callback, "getSessionDetails");
     }
 
-    // --- Session Submission Method ---
-    
-    public void uploadSessionData(String token,
-                                  MultipartBody.Part file,
-                                  RequestBody metadata,
-                                  ApiCallback<SessionSubmissionResponse> callback) {
-        if (useMockData) {
-            Log.d(MOCK_TAG, "Using MOCK data for uploadSessionData. WILL SAVE FINAL AUDIO TO LOCAL FILE.");
-
-            // Execute the entire mock process on a background thread.
-            mockExecutor.execute(() -> {
-                try {
-                    // This logic is now running in the background.
-                    Context context = TherapyAIApp.getInstance();
-                    if (context == null) {
-                        throw new IllegalStateException("Context is null in EphemeralPrefs. Cannot save mock file.");
-                    }
-                    File outputDir = context.getExternalCacheDir();
-                    if (outputDir == null) outputDir = context.getCacheDir();
+    // --- Resumable (chunked) Session Upload ---
+    // These calls are blocking and must be made from a background thread. The caller drives the
+    // chunk loop and needs each acknowledgement before deciding what to send next.
 
-                    File outputFile = new File(outputDir, "mock_upload_" + System.currentTimeMillis() + ".wav");
-                    Log.d(MOCK_TAG, "Background task: Saving mock upload to: " + outputFile.getAbsolutePath());
+    @Override
+    public ChunkedUploadResponse startChunkedUpload(ChunkedUploadInitRequest request) throws IOException {
+        if (useMockData) {
+            return getMockChunkedUploadServer().startChunkedUpload(request);
+        }
+        return executeBlocking(apiService.startChunkedUpload(request), "startChunkedUpload");
+    }
 
-                    Buffer buffer = new Buffer();
+    @Override
+    public ChunkedUploadResponse getChunkedUploadStatus(String uploadId) throws IOException {
+        if (useMockData) {
+            return getMockChunkedUploadServer().getChunkedUploadStatus(uploadId);
+        }
+        return executeBlocking(apiService.getChunkedUploadStatus(uploadId), "getChunkedUploadStatus");
+    }
 
-                    // CRITICAL: This blocking call now runs on the background thread.
-                    // The progress callbacks inside it will call LiveData.postValue(),
-                    // which is thread-safe and will trigger UI updates on the main thread.
-                    file.body().writeTo(buffer);
+    @Override
+    public ChunkedUploadResponse uploadChunk(String uploadId, long offset,
+                                             byte[] data, int length, String checksum) throws IOException {
+        if (useMockData) {
+            return getMockChunkedUploadServer().uploadChunk(uploadId, offset, data, length, checksum);
+        }
+        RequestBody chunkBody = RequestBody.create(MediaType.parse("application/offset+octet-stream"), data, 0, length);
+        return executeBlocking(apiService.uploadChunk(uploadId, offset, checksum, chunkBody), "uploadChunk");
+    }
 
-                    // Save the result to a file.
-                    try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                        fos.write(buffer.readByteArray());
-                    }
+    @Override
+    public SessionSubmissionResponse completeChunkedUpload(String uploadId) throws IOException {
+        if (useMockData) {
+            return getMockChunkedUploadServer().completeChunkedUpload(uploadId);
+        }
+        return executeBlocking(apiService.completeChunkedUpload(uploadId), "completeChunkedUpload");
+    }
 
-                    String successMsg = "Mock upload successful. Final audio saved to: " + outputFile.getName();
-                    Log.i(MOCK_TAG, successMsg + " (Size: " + outputFile.length() + " bytes)");
-
-                    // Post the SUCCESS result back to the main UI thread.
-                    mainThreadHandler.post(() -> {
-                        Toast.makeText(context, "Mock Success: Audio saved.", Toast.LENGTH_SHORT).show();
-                        SessionSubmissionResponse mockResponse = new SessionSubmissionResponse(
-                                "mock-session-" + UUID.randomUUID().toString(),
-                                successMsg
-                        );
-                        callback.onSuccess(mockResponse);
-                    });
-
-                } catch (Exception e) {
-                    Log.e(MOCK_TAG, "Failed to save mock upload to file", e);
-                    // Post the ERROR result back to the main UI thread.
-                    mainThreadHandler.post(() -> callback.onError("Mock upload failed: " + e.getMessage()));
-                }
-            });
+    /**
+     * Value for the Upload-Checksum header: "sha256 &lt;base64 digest&gt;" of the chunk bytes.
+     * Encoded with Okio rather than android.util.Base64 so JVM tests see the real header.
+     */
+    public static String chunkChecksumHeader(byte[] data, int length) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length);
+            return "sha256 " + ByteString.of(digest.digest()).base64();
+        } catch (Exception e) {
+            throw new IOException("SHA-256 not available for chunk checksum", e);
+        }
+    }
 
-            return; // Return immediately, the work is happening in the background.
+    private <T> T executeBlocking(Call<T> call, String methodName) throws IOException {
+        Response<T> response = call.execute();
+        if (response.isSuccessful() && response.body() != null) {
+            return response.body();
+        }
+        String errorBodyContent = "";
+        if (response.errorBody() != null) {
+            try {
+                errorBodyContent = response.errorBody().string();
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading error body for " + methodName, e);
+            }
         }
+        Log.e(TAG, "API call '" + methodName + "' failed: HTTP " + response.code() + " " + errorBodyContent);
+        throw new HttpStatusException(response.code(), response.message() + (errorBodyContent.isEmpty() ? "" : " - Body: " + errorBodyContent));
+    }
 
-        apiService.uploadSessionData("Bearer " + token, file, metadata)
-                .enqueue(createRetrofitCallback(callback, "uploadSessionData"));
+    private synchronized MockChunkedUploadServer getMockChunkedUploadServer() {
+        if (mockChunkedUploadServer == null) {
+            Context context = TherapyAIApp.getInstance();
+            File outputDir = context.getExternalCacheDir();
+            if (outputDir == null) outputDir = context.getCacheDir();
+            mockChunkedUploadServer = new MockChunkedUploadServer(outputDir, MOCK_CHUNK_DROP_PROBABILITY, new Random());
+        }
+        return mockChunkedUploadServer;
     }
 
-    public void refreshPendingData(String token, final ApiCallback<List<ProcessedDataEntryResponse>> callback) {
+    public void refreshPendingData(final ApiCallback<List<ProcessedDataEntryResponse>> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for refreshPendingData.");
             mockHandler.postDelayed(() -> callback.onSuccess(getMockPendingDataList()), 600);
             return;
         }
-        apiService.getPendingData(token).enqueue(createRetrofitCallback(callback, "refreshPendingData"));
+        apiService.getPendingData().enqueue(createRetrofitCallback(callback, "refreshPendingData"));
     }
 
 
     // --- Transcript Editing ---
 
-    public void getSessionTranscriptDetail(String token,
-                                           String dataId,
-                                           final ApiCallback<TranscriptDetailResponse> callback) {
+    public void getSessionTranscriptDetail(String dataId,
+                                           final ApiCallback<TranscriptDetail> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for getSessionTranscriptDetail (ID: " + dataId + ").");
-            mockHandler.postDelayed(() -> callback.onSuccess(getMockTranscriptDetailResponse(dataId)), 800);
+            mockHandler.postDelayed(() -> callback.onSuccess(
+                    fromWireModel(getMockTranscriptDetailResponse(dataId), TranscriptDetail.class)), 800);
             return;
         }
-        apiService.getSessionTranscriptDetail("Bearer " + token, dataId).enqueue(createRetrofitCallback(callback, "getSessionTranscriptDetail"));
+        apiService.getSessionTranscriptDetail(dataId).enqueue(createRetrofitCallback(callback, "getSessionTranscriptDetail"));
     }
 
-    public void submitFinalTranscript(String token, String dataId, List<TranscriptSentenceResponse> transcriptList, final ApiCallback<Void> callback) {
+    public void submitFinalTranscript(String dataId, List<TranscriptSentenceResponse> transcriptList, final ApiCallback<Void> callback) {
         if (useMockData) {
             Log.d(MOCK_TAG, "Using mock data for submitFinalTranscript (ID: " + dataId + ").");
             mockHandler.postDelayed(() -> callback.onSuccess(null), 400);
             return;
         }
-        apiService.submitFinalTranscript("Bearer " + token, dataId, transcriptList).enqueue(createRetrofitCallback(callback, "submitFinalTranscript"));
+        apiService.submitFinalTranscript(dataId, transcriptList).enqueue(createRetrofitCallback(callback, "submitFinalTranscript"));
     }
 
 
@@ -465,6 +661,39 @@ public class TherapyApiImpl {
         return mockSessions;
     }
 
+    /**
+     * Serves one page of {@code all}, or fails as the server does (HTTP 400) for a cursor it
+     * never issued. Mock cursors are plain offsets.
+     */
+    private void deliverMockPage(List<SessionSummaryResponse> all, int limit, String cursor,
+                                 ApiCallback<SessionSummaryPageResponse> callback, String methodName) {
+        int from = parseMockCursor(cursor);
+        if (from < 0) {
+            callback.onError("API call '" + methodName + "' failed: HTTP 400 Bad Request - Body: Invalid cursor: " + cursor);
+            return;
+        }
+        callback.onSuccess(getMockPage(all, limit, from));
+    }
+
+    /**
+     * @return The offset a mock cursor stands for, 0 for none, or -1 if it is not one.
+     */
+    private static int parseMockCursor(String cursor) {
+        if (cursor == null) return 0;
+        try {
+            int offset = Integer.parseInt(cursor);
+            return offset >= 0 ? offset : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private SessionSummaryPageResponse getMockPage(List<SessionSummaryResponse> all, int limit, int from) {
+        int to = Math.min(all.size(), from + limit);
+        String nextCursor = to < all.size() ? String.valueOf(to) : null;
+        return new SessionSummaryPageResponse(new ArrayList<>(all.subList(Math.min(from, to), to)), nextCursor);
+    }
+
     private List<SessionSummaryResponse> getMockSessionSummaries(String query) {
         List<SessionSummaryResponse> mockEntries = new ArrayList<>();
         int count = query.isEmpty() ? 8 : 3;
@@ -504,6 +733,14 @@ public class TherapyApiImpl {
         return mockEntries;
     }
 
+    /**
+     * Mocks are built as wire models; round-tripping them through the API Gson gives them the
+     * same parsing path as real responses.
+     */
+    private <T> T fromWireModel(Object wireModel, Class<T> type) {
+        return wireModel != null ? gson.fromJson(gson.toJson(wireModel), type) : null;
+    }
+
     private FinalSessionDetailResponse getMockSessionDetail(String sessionId) {
         FinalSessionDetailResponse detail = new FinalSessionDetailResponse();
         detail.setSessionId(sessionId);
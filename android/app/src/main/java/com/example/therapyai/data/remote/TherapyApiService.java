@@ -1,6 +1,10 @@
 package com.example.therapyai.data.remote;
 
+import com.example.therapyai.data.local.models.FinalSessionDetail;
+import com.example.therapyai.data.local.models.TranscriptDetail;
 
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
 import com.example.therapyai.data.remote.models.DeviceRegistrationRequest;
 import com.example.therapyai.data.remote.models.LoginRequest;
 import com.example.therapyai.data.remote.models.LoginResponse;
@@ -10,46 +14,48 @@ import com.example.therapyai.data.remote.models.ProcessedDataEntryResponse;
 import com.example.therapyai.data.remote.models.ProfileResponse;
 import com.example.therapyai.data.remote.models.RefreshTokenRequest;
 import com.example.therapyai.data.remote.models.RefreshTokenResponse;
-import com.example.therapyai.data.remote.models.FinalSessionDetailResponse;
 import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
+import com.example.therapyai.data.remote.models.SessionSummaryPageResponse;
 import com.example.therapyai.data.remote.models.SessionSummaryResponse;
-import com.example.therapyai.data.remote.models.TranscriptDetailResponse;
 import com.example.therapyai.data.remote.models.TranscriptSentenceResponse;
 
 import java.util.List;
 
-import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.GET;
 import retrofit2.http.Header;
-import retrofit2.http.Multipart;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
-import retrofit2.http.Part;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
 
+/**
+ * The Authorization header is added by {@link AuthInterceptor}; endpoints that must go out
+ * without it are annotated {@link NoAuth}.
+ */
 public interface TherapyApiService {
 
     // --- Auth ---
+    @NoAuth
     @POST("auth/login")
     Call<LoginResponse> login(
             @Body LoginRequest request
     );
 
+    @NoAuth
     @POST("auth/forgot-password") //NOTE: not used, needs to be adjusted based on the facility final DB and auth settings!
     Call<PasswordResetResponse> forgotPassword(
             @Query("email") String email);
 
     @POST("auth/change-password") //NOTE: not used, needs to be adjusted based on the facility final DB and auth settings!
     Call<PasswordResetResponse> changePassword(
-            @Header("Authorization") String token,
             @Body PasswordChangeRequest request
     );
 
     // Refresh endpoint
+    @NoAuth
     @POST("auth/refresh")
     Call<RefreshTokenResponse> refreshToken(
             @Body RefreshTokenRequest request
@@ -57,69 +63,93 @@ public interface TherapyApiService {
 
     @POST("devices/register")
     Call<Void> registerDevice(
-            @Header("Authorization") String token,
             @Body DeviceRegistrationRequest request
     );
 
     @POST("devices/unregister/{userId}")
     Call<Void> unregisterDevice(
-            @Header("Authorization") String token,
+            @Header("Authorization") String token, // Captured before logout clears it; see TherapyApiImpl
             @Path("userId") String userId);
 
     // --- Browse - profiles & sessions ---
 
     @GET("profiles/search")
     Call<List<ProfileResponse>> searchProfiles(
-            @Header("Authorization") String token,
             @Query("query") String query);
 
+    // Cached GETs: pass the stored ETag (or null) to get 304 Not Modified when nothing changed
+
     @GET("profiles/me")
     Call<ProfileResponse> getOwnProfile(
-            @Header("Authorization") String token
-    );
+            @Header("If-None-Match") String etag);
 
     @GET("sessions/me")
     Call<List<SessionSummaryResponse>> getOwnSessions(
-            @Header("Authorization") String token
-    );
+            @Header("If-None-Match") String etag);
 
     @GET("sessions/search")
     Call<List<SessionSummaryResponse>> searchSessions(
-            @Header("Authorization") String token,
             @Query("query") String query);
 
+    // Paged session lists: a null cursor asks for the first page
+
+    @GET("sessions/me")
+    Call<SessionSummaryPageResponse> getOwnSessionsPage(
+            @Header("If-None-Match") String etag,
+            @Query("limit") int limit,
+            @Query("cursor") String cursor);
+
+    @GET("sessions/search")
+    Call<SessionSummaryPageResponse> searchSessionsPage(
+            @Query("query") String query,
+            @Query("limit") int limit,
+            @Query("cursor") String cursor);
+
+    // Detail bodies are streamed into the domain models; see ApiServiceProvider
+
     @GET("sessions/{sessionId}/details")
-    Call<FinalSessionDetailResponse> getSessionDetails(
-            @Header("Authorization") String token,
-            @Path("sessionId") String sessionId
-    );
+    Call<FinalSessionDetail> getSessionDetails(
+            @Header("If-None-Match") String etag,
+            @Path("sessionId") String sessionId);
 
 
     // --- Sessions - Upload ---
 
-    @Multipart
-    @POST("sessions/upload")
-    Call<SessionSubmissionResponse> uploadSessionData(
-            @Header("Authorization") String token,
-            @Part MultipartBody.Part file,
-            @Part("metadata") RequestBody metadata);
+    // Resumable upload: the WAV stream is sent as fixed-size chunks, each tagged with its
+    // byte offset and a checksum. The server acknowledges every chunk with the next offset
+    // it expects, so a retry only needs to resend what is missing.
+    @POST("sessions/upload/chunked")
+    Call<ChunkedUploadResponse> startChunkedUpload(
+            @Body ChunkedUploadInitRequest request);
+
+    @GET("sessions/upload/chunked/{uploadId}")
+    Call<ChunkedUploadResponse> getChunkedUploadStatus(
+            @Path("uploadId") String uploadId);
+
+    @PUT("sessions/upload/chunked/{uploadId}")
+    Call<ChunkedUploadResponse> uploadChunk(
+            @Path("uploadId") String uploadId,
+            @Header("Upload-Offset") long offset,
+            @Header("Upload-Checksum") String checksum,
+            @Body RequestBody chunk);
+
+    @POST("sessions/upload/chunked/{uploadId}/complete")
+    Call<SessionSubmissionResponse> completeChunkedUpload(
+            @Path("uploadId") String uploadId);
 
 
 
     // --- Inbox ---
     @GET("data/pending") // Returns list of items needing review
-    Call<List<ProcessedDataEntryResponse>> getPendingData(
-            @Header("Authorization") String token);
+    Call<List<ProcessedDataEntryResponse>> getPendingData();
 
     // --- Transcript Editing ---
     @GET("data/transcript/{dataId}")
-    Call<TranscriptDetailResponse> getSessionTranscriptDetail(
-            @Header("Authorization") String token,
+    Call<TranscriptDetail> getSessionTranscriptDetail(
             @Path("dataId") String dataId);
 
     @PUT("data/transcript/{dataId}")
     Call<Void> submitFinalTranscript(
-            @Header("Authorization") String token,
             @Path("dataId") String dataId,
             @Body List<TranscriptSentenceResponse> transcriptList);
 
@@ -17,12 +17,19 @@ import retrofit2.Call;
 /**
  * Automatically handles 401 responses by refreshing the token (if possible)
  * and retrying the original request with the new access token.
+ *
+ * Refreshes are single-flight: when several requests fail with the same expired token, the
+ * first one refreshes while the others wait on {@link #refreshLock}, then replay with the token
+ * it obtained instead of refreshing again. A refresh token the server rejected is not retried.
  */
 public class TokenAuthenticator implements Authenticator {
 
     private static final String TAG = "TokenAuthenticator";
 
     private final TherapyApiService apiService;
+    private final Object refreshLock = new Object();
+    // Guarded by refreshLock
+    private String rejectedRefreshToken;
 
     public TokenAuthenticator(TherapyApiService apiService) {
         this.apiService = apiService;
@@ -37,12 +44,42 @@ public class TokenAuthenticator implements Authenticator {
             return null;
         }
 
+        if (AuthInterceptor.isAuthless(response.request())) {
+            return null; // Login or refresh rejected: there is no token to refresh
+        }
+
+        String failedToken = AuthInterceptor.bearerOf(response.request());
+        synchronized (refreshLock) {
+            String currentToken = EphemeralPrefs.getInstance().getSessionToken();
+            if (currentToken != null && !currentToken.equals(failedToken)) {
+                // Another request refreshed while this one was in flight
+                Log.d(TAG, "Token already refreshed by a concurrent request. Replaying.");
+                return AuthInterceptor.withBearer(response.request(), currentToken);
+            }
+            String newAccessToken = refreshLocked();
+            if (newAccessToken == null) {
+                return null;
+            }
+            return AuthInterceptor.withBearer(response.request(), newAccessToken);
+        }
+    }
+
+    /**
+     * Calls the refresh endpoint and stores the new tokens. Caller holds {@link #refreshLock}.
+     *
+     * @return The new access token, or null if no refresh was possible.
+     */
+    private String refreshLocked() {
         // Get the stored refresh token
         String refreshToken = EphemeralPrefs.getInstance().getRefreshToken();
         if (refreshToken == null) {
             Log.w(TAG, "No refresh token stored. Cannot refresh. Logging out user...");
             return null;
         }
+        if (refreshToken.equals(rejectedRefreshToken)) {
+            Log.w(TAG, "Refresh token was already rejected. Not retrying.");
+            return null;
+        }
 
         // Attempt to refresh synchronously
         RefreshTokenRequest refreshRequest = new RefreshTokenRequest(refreshToken);
@@ -52,6 +89,9 @@ public class TokenAuthenticator implements Authenticator {
             retrofit2.Response<RefreshTokenResponse> refreshResponse = refreshCall.execute();
             if (!refreshResponse.isSuccessful() || refreshResponse.body() == null) {
                 Log.e(TAG, "Token refresh failed: HTTP " + refreshResponse.code());
+                if (refreshResponse.code() == 400 || refreshResponse.code() == 401 || refreshResponse.code() == 403) {
+                    rejectedRefreshToken = refreshToken;
+                }
                 return null;
             }
 
@@ -65,14 +105,12 @@ public class TokenAuthenticator implements Authenticator {
                 return null;
             }
 
+            // Visible to other threads at once through the EphemeralPrefs cache
             EphemeralPrefs.getInstance().storeSessionToken(newAccessToken);
             if (newRefreshToken != null) {
                 EphemeralPrefs.getInstance().storeRefreshToken(newRefreshToken);
             }
-
-            return response.request().newBuilder()
-                    .header("Authorization", "Bearer " + newAccessToken)
-                    .build();
+            return newAccessToken;
 
         } catch (Exception e) {
             // Network/IO or other errors during refresh
@@ -0,0 +1,95 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.models.TranscriptDetail;
+import com.example.therapyai.data.local.models.TranscriptItem;
+import com.example.therapyai.data.remote.models.TranscriptDetailResponse;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the data/transcript/{id} body straight into a {@link TranscriptDetail} in one pass; see
+ * {@link SessionDetailTypeAdapter}. The wire format is the one {@link TranscriptDetailResponse}
+ * describes, and {@link #write} emits it.
+ */
+final class TranscriptDetailTypeAdapter extends TypeAdapter<TranscriptDetail> {
+
+    @Override
+    public TranscriptDetail read(JsonReader in) throws IOException {
+        String patientName = null, sessionDate = null, summary = null;
+        List<TranscriptItem> items = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "patientName": patientName = in.nextString(); break;
+                case "sessionDate": sessionDate = in.nextString(); break;
+                case "summary": summary = in.nextString(); break;
+                case "transcript": readTranscript(in, items); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+
+        return new TranscriptDetail(patientName, sessionDate, summary, items);
+    }
+
+    @Override
+    public void write(JsonWriter out, TranscriptDetail detail) throws IOException {
+        out.beginObject();
+        out.name("patientName").value(detail.getPatientName());
+        out.name("sessionDate").value(detail.getSessionDate());
+        out.name("summary").value(detail.getSummary());
+        out.name("transcript").beginArray();
+        if (detail.getTranscriptItems() != null) {
+            for (TranscriptItem item : detail.getTranscriptItems()) {
+                out.beginObject();
+                out.name("speaker").value(item.getSpeaker());
+                out.name("text").value(item.getText());
+                out.name("timestamp").value(item.getTimestamp());
+                out.endObject();
+            }
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private static void readTranscript(JsonReader in, List<TranscriptItem> into) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            String speaker = null, text = null, timestamp = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if ("speaker".equals(name)) {
+                    speaker = SessionDetailTypeAdapter.canonicalSpeaker(in.nextString());
+                } else if ("text".equals(name)) {
+                    text = in.nextString();
+                } else if ("timestamp".equals(name)) {
+                    timestamp = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            into.add(new TranscriptItem(speaker, text, timestamp));
+        }
+        in.endArray();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.therapyai.data.remote.models;
+
+import com.google.gson.annotations.SerializedName;
+
+public class ChunkedUploadInitRequest {
+    @SerializedName("file_name")
+    private String fileName;
+
+    @SerializedName("content_type")
+    private String contentType;
+
+    @SerializedName("total_size")
+    private long totalSize;
+
+    @SerializedName("chunk_size")
+    private int chunkSize;
+
+    @SerializedName("metadata")
+    private String metadata;
+
+    public ChunkedUploadInitRequest() {
+    }
+
+    public ChunkedUploadInitRequest(String fileName, String contentType, long totalSize, int chunkSize, String metadata) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.metadata = metadata;
+    }
+
+    public String getFileName() { return fileName; }
+    public String getContentType() { return contentType; }
+    public long getTotalSize() { return totalSize; }
+    public int getChunkSize() { return chunkSize; }
+    public String getMetadata() { return metadata; }
+}
@@ -0,0 +1,36 @@
+package com.example.therapyai.data.remote.models;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Server view of a resumable upload. Returned when the upload is created, after every
+ * acknowledged chunk and by the status endpoint used to resync after a dropped connection.
+ */
+public class ChunkedUploadResponse {
+    @SerializedName("upload_id")
+    private String uploadId;
+
+    @SerializedName("next_offset")
+    private long nextOffset;
+
+    @SerializedName("total_size")
+    private long totalSize;
+
+    @SerializedName("status")
+    private String status;
+
+    public ChunkedUploadResponse() {
+    }
+
+    public ChunkedUploadResponse(String uploadId, long nextOffset, long totalSize, String status) {
+        this.uploadId = uploadId;
+        this.nextOffset = nextOffset;
+        this.totalSize = totalSize;
+        this.status = status;
+    }
+
+    public String getUploadId() { return uploadId; }
+    public long getNextOffset() { return nextOffset; }
+    public long getTotalSize() { return totalSize; }
+    public String getStatus() { return status; }
+}
@@ -0,0 +1,28 @@
+package com.example.therapyai.data.remote.models;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+/**
+ * One page of session summaries, newest first. {@code nextCursor} is opaque; send it back to get
+ * the following page. It is null on the last page.
+ */
+public class SessionSummaryPageResponse {
+    @SerializedName("items")
+    private List<SessionSummaryResponse> items;
+
+    @SerializedName("nextCursor")
+    private String nextCursor;
+
+    public SessionSummaryPageResponse() {
+    }
+
+    public SessionSummaryPageResponse(List<SessionSummaryResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<SessionSummaryResponse> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
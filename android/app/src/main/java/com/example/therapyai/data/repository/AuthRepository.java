@@ -147,8 +147,8 @@ public class AuthRepository {
      * Changes the password using a token from the user,
      * plus a secondary token or code, and the new password itself.
      */
-    public void changePassword(String token, String securityToken, String newPassword, PasswordResetCallback callback) {
-        apiImpl.changePassword(token, securityToken, newPassword, new TherapyApiImpl.ApiCallback<PasswordResetResponse>() {
+    public void changePassword(String securityToken, String newPassword, PasswordResetCallback callback) {
+        apiImpl.changePassword(securityToken, newPassword, new TherapyApiImpl.ApiCallback<PasswordResetResponse>() {
             @Override
             public void onSuccess(PasswordResetResponse result) {
                 callback.onSuccess(result);
@@ -6,26 +6,47 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 
 import com.example.therapyai.TherapyAIApp;
 import com.example.therapyai.data.local.dao.CardDao;
 import com.example.therapyai.data.local.db.AppDatabase;
 import com.example.therapyai.data.local.models.CardItem;
+import com.example.therapyai.data.local.models.CardMove;
+import com.example.therapyai.data.local.models.CardWithCategories;
 
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CardRepository {
 
     private static final String TAG = "CardRepository";
 
+    static final long SEARCH_DEBOUNCE_MS = 150;
+    static final int SEARCH_RESULT_LIMIT = 500;
+    static final long MOVE_COALESCE_MS = 300;
+
     private final CardDao cardDao;
-    private final ExecutorService databaseExecutor;
+    // Scheduled so coalesced card moves can be flushed on the same thread as every other write
+    private final ScheduledExecutorService databaseExecutor;
+    // Searches run on their own thread so keystrokes never queue behind writes
+    private final ScheduledExecutorService searchExecutor;
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private final Object searchLock = new Object();
+    private ScheduledFuture<?> pendingSearch;
+    private final Object moveLock = new Object();
+    private final List<CardMove> pendingMoves = new ArrayList<>();
+    private final List<OperationCallback> pendingMoveCallbacks = new ArrayList<>();
+    private ScheduledFuture<?> pendingMoveFlush;
 
     // LiveData to hold the cards - could be managed here or passed from ViewModel
     // For simplicity now, let ViewModel manage the LiveData observation lifecycle
@@ -52,12 +73,36 @@ public class CardRepository {
     private CardRepository(CardDao cardDao) {
         this.cardDao = cardDao;
         // Using a single thread executor is generally safer for sequential DB operations
-        this.databaseExecutor = Executors.newSingleThreadExecutor();
+        this.databaseExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.searchExecutor = Executors.newSingleThreadScheduledExecutor();
+        // Drags assume each card has its own position; repair older data before the first one.
+        databaseExecutor.execute(() -> {
+            try {
+                if (cardDao.countDuplicatePositions() > 0) {
+                    Log.w(TAG, "Repo: Renumbering card positions with duplicates");
+                    cardDao.renumberPositions();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Repo: Error checking card positions", e);
+            }
+        });
         Log.d(TAG, "Repository initialized.");
     }
 
     // --- Public Data Access Methods ---
 
+    /**
+     * Observes the cards of a category. Backed by Room's invalidation tracker, so the list is
+     * re-emitted after any write to the card tables and callers never need to reload by hand.
+     * @param category The category name ("All" for all).
+     */
+    public LiveData<List<CardItem>> observeCardsByCategory(@NonNull String category) {
+        LiveData<List<CardWithCategories>> rows = "All".equalsIgnoreCase(category)
+                ? cardDao.observeAllCardsWithCategories()
+                : cardDao.observeCardsWithCategoriesByCategory(category);
+        return Transformations.map(rows, CardWithCategories::toCardItems);
+    }
+
     /**
      * Loads cards for a specific category asynchronously.
      * Uses a callback to return the result to the caller (e.g., ViewModel).
@@ -84,6 +129,81 @@ public class CardRepository {
         });
     }
 
+    /**
+     * Full-text searches title, description and session notes, matching each word as a prefix.
+     * Calls are debounced: a search only runs once no newer one has arrived for
+     * {@link #SEARCH_DEBOUNCE_MS}, and a search overtaken while running never reaches its callback.
+     * @param query Raw user input.
+     * @param category The category name ("All" for all).
+     * @param callback Receives matching cards, title matches first, on the search thread.
+     */
+    public void searchCards(@NonNull String query, @NonNull String category, @NonNull LoadCardsCallback callback) {
+        long generation = searchGeneration.incrementAndGet();
+        synchronized (searchLock) {
+            if (pendingSearch != null) {
+                pendingSearch.cancel(false);
+            }
+            pendingSearch = searchExecutor.schedule(() -> runSearch(generation, query, category, callback),
+                    SEARCH_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drops any pending or running search; its callback will not be invoked.
+     */
+    public void cancelSearch() {
+        searchGeneration.incrementAndGet();
+        synchronized (searchLock) {
+            if (pendingSearch != null) {
+                pendingSearch.cancel(false);
+                pendingSearch = null;
+            }
+        }
+    }
+
+    private void runSearch(long generation, String query, String category, LoadCardsCallback callback) {
+        if (generation != searchGeneration.get()) return; // Overtaken before it started
+        String match = toMatchExpression(query, null);
+        if (match == null) {
+            callback.onCardsLoaded(new ArrayList<>());
+            return;
+        }
+        String titleMatch = toMatchExpression(query, "title");
+        try {
+            List<CardWithCategories> rows = "All".equalsIgnoreCase(category)
+                    ? cardDao.searchCardsWithCategories(match, titleMatch, SEARCH_RESULT_LIMIT)
+                    : cardDao.searchCardsWithCategoriesInCategory(match, titleMatch, category, SEARCH_RESULT_LIMIT);
+            if (generation != searchGeneration.get()) {
+                Log.d(TAG, "Repo: Dropping results of overtaken search '" + query + "'");
+                return;
+            }
+            callback.onCardsLoaded(CardWithCategories.toCardItems(rows));
+        } catch (Exception e) {
+            Log.e(TAG, "Repo: Error searching cards for '" + query + "'", e);
+            if (generation == searchGeneration.get()) callback.onError(e);
+        }
+    }
+
+    /**
+     * Turns user input into an FTS4 MATCH expression: every word becomes a prefix term and all
+     * terms must match. Punctuation (quotes, '-', '*', ':') splits words and terms are lower-cased,
+     * so nothing in the input is parsed as an FTS operator.
+     * @param column Restricts every term to this column, or null for any indexed column.
+     * @return The expression, or null if the input has no searchable words.
+     */
+    @Nullable
+    static String toMatchExpression(String query, @Nullable String column) {
+        if (query == null) return null;
+        StringBuilder match = new StringBuilder();
+        for (String token : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            if (column != null) match.append(column).append(':');
+            match.append(token).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
     /**
      * Saves (inserts or updates) a card asynchronously.
      * @param card The card to save.
@@ -165,6 +285,7 @@ public class CardRepository {
 
     /**
      * Updates the order (position field) of multiple cards asynchronously.
+     * Rewrites every given row; drags should use {@link #moveCard} instead.
      * @param orderedCards List of cards in the new order.
      * @param callback Optional callback for success/failure notification.
      */
@@ -192,91 +313,143 @@ public class CardRepository {
     }
 
     /**
-     * Removes a specific category from a list of cards asynchronously.     * 
+     * Moves a card between stored positions, shifting the cards in between by one. Moves arriving
+     * within {@link #MOVE_COALESCE_MS} of each other are written together in one transaction, and
+     * consecutive moves of the same card collapse into one, so a drag costs one UPDATE however
+     * large the list is.
+     * @param cardId The dragged card.
+     * @param fromPosition Its stored position before the move.
+     * @param toPosition The stored position it was dropped at.
+     * @param callback Optional callback, invoked once the batch holding this move is written.
+     */
+    public void moveCard(long cardId, int fromPosition, int toPosition, @Nullable OperationCallback callback) {
+        if (fromPosition == toPosition) {
+            if (callback != null) callback.onSuccess();
+            return;
+        }
+        synchronized (moveLock) {
+            CardMove move = new CardMove(cardId, fromPosition, toPosition);
+            int last = pendingMoves.size() - 1;
+            CardMove combined = last >= 0 ? pendingMoves.get(last).followedBy(move) : null;
+            if (combined != null) {
+                pendingMoves.set(last, combined);
+            } else {
+                pendingMoves.add(move);
+            }
+            if (callback != null) pendingMoveCallbacks.add(callback);
+            if (pendingMoveFlush != null) {
+                pendingMoveFlush.cancel(false);
+            }
+            pendingMoveFlush = databaseExecutor.schedule(this::flushMoves, MOVE_COALESCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushMoves() {
+        List<CardMove> moves;
+        List<OperationCallback> callbacks;
+        synchronized (moveLock) {
+            moves = new ArrayList<>(pendingMoves);
+            callbacks = new ArrayList<>(pendingMoveCallbacks);
+            pendingMoves.clear();
+            pendingMoveCallbacks.clear();
+            pendingMoveFlush = null;
+        }
+        if (moves.isEmpty()) return;
+        try {
+            Log.d(TAG, "Repo: Writing " + moves.size() + " coalesced card move(s) on thread: " + Thread.currentThread().getName());
+            cardDao.applyMoves(moves);
+            for (OperationCallback callback : callbacks) callback.onSuccess();
+        } catch (Exception e) {
+            Log.e(TAG, "Repo: Error writing card moves " + moves, e);
+            for (OperationCallback callback : callbacks) callback.onError(e);
+        }
+    }
+
+    /**
+     * Removes a category from every card that carries it, as one indexed delete on card_category.
      * @param categoryName Category to remove.
-     * @param cardsToUpdate List of cards potentially containing the category.
      * @param callback Optional callback for success/failure notification.
      */
-    public void removeCategoryFromCards(String categoryName, List<CardItem> cardsToUpdate, @Nullable OperationCallback callback) {
-        if (cardsToUpdate == null || categoryName == null) {
+    public void removeCategory(String categoryName, @Nullable OperationCallback callback) {
+        if (categoryName == null) {
             if (callback != null) callback.onError(new IllegalArgumentException("Invalid arguments for category removal"));
             return;
         }
-        // If the list is empty, it's a valid case - just nothing to do
-        if (cardsToUpdate.isEmpty()) {
-            Log.d(TAG, "Repo: No cards to update for category removal: " + categoryName);
-            if (callback != null) callback.onSuccess();
+        databaseExecutor.execute(() -> {
+            try {
+                int removed = cardDao.removeCategory(categoryName);
+                Log.d(TAG, "Repo: Category '" + categoryName + "' removed from " + removed + " cards.");
+                if (callback != null) callback.onSuccess();
+            } catch (Exception e) {
+                Log.e(TAG, "Repo: Error removing category '" + categoryName + "' from cards", e);
+                if (callback != null) callback.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Renames a category on every card that carries it, as one indexed update on card_category.
+     * @param oldName The original category name.
+     * @param newName The new category name.
+     * @param callback Optional callback for success/failure notification.
+     */
+    public void renameCategory(String oldName, String newName, @Nullable OperationCallback callback) {
+        if (oldName == null || newName == null || oldName.equals(newName)) {
+            if (callback != null) callback.onError(new IllegalArgumentException("Invalid arguments for category rename"));
             return;
         }
         databaseExecutor.execute(() -> {
-            Log.d(TAG, "Repo: Removing category '" + categoryName + "' from " + cardsToUpdate.size() + " cards.");
-            List<CardItem> actuallyModified = new ArrayList<>();
-            for (CardItem card : cardsToUpdate) {
-                Set<String> cats = card.getCategories();
-                if (cats != null && cats.remove(categoryName)) {
-                    card.setCategories(cats);
-                    actuallyModified.add(card);
-                }
-            }
-            if (!actuallyModified.isEmpty()) {
-                try {
-                    cardDao.updateCards(actuallyModified);
-                    Log.d(TAG, "Repo: Category '" + categoryName + "' removed from " + actuallyModified.size() + " cards.");
-                    if (callback != null) callback.onSuccess();
-                } catch (Exception e) {
-                    Log.e(TAG, "Repo: Error updating cards after removing category '" + categoryName + "'", e);
-                    if (callback != null) callback.onError(e);
-                }
-            } else {
-                Log.d(TAG, "Repo: No cards needed updating for category removal: " + categoryName);
-                if (callback != null) callback.onSuccess(); // Still success if nothing needed changing
+            try {
+                int renamed = cardDao.renameCategory(oldName, newName);
+                Log.d(TAG, "Repo: Category renamed from '" + oldName + "' to '" + newName + "' in " + renamed + " cards.");
+                if (callback != null) callback.onSuccess();
+            } catch (Exception e) {
+                Log.e(TAG, "Repo: Error renaming category '" + oldName + "' in cards", e);
+                if (callback != null) callback.onError(e);
             }
         });
     }
 
     /**
-     * Renames a category within the category sets of affected cards asynchronously.
+     * Removes a specific category from cards asynchronously. The database side is a single
+     * {@link #removeCategory} over all cards; the given card objects are updated in place so
+     * callers holding them stay consistent.
+     * @param categoryName Category to remove.
+     * @param cardsToUpdate Loaded cards potentially containing the category.
+     * @param callback Optional callback for success/failure notification.
+     */
+    public void removeCategoryFromCards(String categoryName, List<CardItem> cardsToUpdate, @Nullable OperationCallback callback) {
+        if (cardsToUpdate == null || categoryName == null) {
+            if (callback != null) callback.onError(new IllegalArgumentException("Invalid arguments for category removal"));
+            return;
+        }
+        for (CardItem card : cardsToUpdate) {
+            card.removeCategory(categoryName);
+        }
+        removeCategory(categoryName, callback);
+    }
+
+    /**
+     * Renames a category within cards asynchronously. The database side is a single
+     * {@link #renameCategory} over all cards; the given card objects are updated in place.
      * @param oldName The original category name.
      * @param newName The new category name.
-     * @param cardsToUpdate List of cards potentially containing the old category.
+     * @param cardsToUpdate Loaded cards potentially containing the old category.
      * @param callback Optional callback for success/failure notification.
-     */    
+     */
     public void renameCategoryInCards(String oldName, String newName, List<CardItem> cardsToUpdate, @Nullable OperationCallback callback) {
         if (cardsToUpdate == null || oldName == null || newName == null || oldName.equals(newName)) {
             if (callback != null) callback.onError(new IllegalArgumentException("Invalid arguments for category rename"));
             return;
         }
-        // If the list is empty, it's a valid case - just nothing to do
-        if (cardsToUpdate.isEmpty()) {
-            Log.d(TAG, "Repo: No cards to update for category rename: " + oldName + " -> " + newName);
-            if (callback != null) callback.onSuccess();
-            return;
-        }
-        databaseExecutor.execute(() -> {
-            Log.d(TAG, "Repo: Renaming category '" + oldName + "' to '" + newName + "' in " + cardsToUpdate.size() + " cards.");
-            List<CardItem> actuallyModified = new ArrayList<>();
-            for (CardItem card : cardsToUpdate) {
-                Set<String> cats = card.getCategories();
-                if (cats != null && cats.remove(oldName)) {
-                    cats.add(newName);
-                    card.setCategories(cats);
-                    actuallyModified.add(card);
-                }
-            }
-            if (!actuallyModified.isEmpty()) {
-                try {
-                    cardDao.updateCards(actuallyModified);
-                    Log.d(TAG, "Repo: Category renamed from '" + oldName + "' to '" + newName + "' in " + actuallyModified.size() + " cards.");
-                    if (callback != null) callback.onSuccess();
-                } catch (Exception e) {
-                    Log.e(TAG, "Repo: Error updating cards after renaming category '" + oldName + "'", e);
-                    if (callback != null) callback.onError(e);
-                }
-            } else {
-                Log.d(TAG, "Repo: No cards needed updating for category rename: " + oldName);
-                if (callback != null) callback.onSuccess(); // Still success if nothing needed changing
+        for (CardItem card : cardsToUpdate) {
+            Set<String> cats = card.getCategories();
+            if (cats != null && cats.remove(oldName)) {
+                cats.add(newName);
+                card.setCategories(cats);
             }
-        });
+        }
+        renameCategory(oldName, newName, callback);
     }
 
 
@@ -293,6 +466,13 @@ public class CardRepository {
 
     public void close() {
         Log.d(TAG, "Shutting down repository database executor.");
+        cancelSearch();
+        searchExecutor.shutdown();
+        synchronized (moveLock) {
+            if (pendingMoveFlush != null && pendingMoveFlush.cancel(false)) {
+                databaseExecutor.execute(this::flushMoves); // Don't lose a drag made just before shutdown
+            }
+        }
         databaseExecutor.shutdown();
     }
 }
\ No newline at end of file
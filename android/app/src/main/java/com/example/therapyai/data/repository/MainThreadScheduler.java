@@ -0,0 +1,47 @@
+package com.example.therapyai.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * The main-thread handler and clock behind {@link SearchEngine} and {@link SessionHistoryPager}.
+ * JVM tests supply one that runs tasks when told to and keeps its own time.
+ */
+interface MainThreadScheduler {
+    void post(Runnable task);
+
+    void postDelayed(Runnable task, long delayMs);
+
+    void removeCallbacks(Runnable task);
+
+    /**
+     * @return Milliseconds on a monotonic clock, as {@link SystemClock#elapsedRealtime()}.
+     */
+    long now();
+
+    static MainThreadScheduler mainLooper() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        return new MainThreadScheduler() {
+            @Override
+            public void post(Runnable task) {
+                handler.post(task);
+            }
+
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+
+            @Override
+            public long now() {
+                return SystemClock.elapsedRealtime();
+            }
+        };
+    }
+}
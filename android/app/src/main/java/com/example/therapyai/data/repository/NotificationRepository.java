@@ -83,7 +83,7 @@ public class NotificationRepository {
         );
 
         Log.d(TAG, "Attempting to register device token (Attempt " + (attempt + 1) + ")");
-        apiImpl.registerDevice(authToken, request, new TherapyApiImpl.ApiCallback<Void>() {
+        apiImpl.registerDevice(request, new TherapyApiImpl.ApiCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
                 Log.i(TAG, "Device token registered/updated successfully on server.");
@@ -106,11 +106,12 @@ public class NotificationRepository {
     }
 
     public void unregisterDevice() {
-        unregisterDeviceInternal(0); // Start unregistration with attempt 0
+        // Logout clears the session right after this call, so capture the token now for every attempt
+        String authToken = EphemeralPrefs.getInstance().getSessionToken();
+        unregisterDeviceInternal(authToken, 0); // Start unregistration with attempt 0
     }
 
-    private void unregisterDeviceInternal(final int attempt) {
-        String authToken = EphemeralPrefs.getInstance().getSessionToken();
+    private void unregisterDeviceInternal(final String authToken, final int attempt) {
         // Allow unregistration attempt without token, change later if needed
         // if (authToken == null) {
         //     Log.d(TAG, "No auth token, skipping device unregistration");
@@ -123,10 +124,8 @@ public class NotificationRepository {
             return;
         }
 
-        String bearerToken = (authToken != null) ? authToken : null;
-
         Log.d(TAG, "Attempting to unregister device token (Attempt " + (attempt + 1) + ")");
-        apiImpl.unregisterDevice(bearerToken, userId, new TherapyApiImpl.ApiCallback<Void>() {
+        apiImpl.unregisterDevice(authToken, userId, new TherapyApiImpl.ApiCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
                 Log.i(TAG, "Device token unregistered successfully on server.");
@@ -139,7 +138,7 @@ public class NotificationRepository {
                     // Schedule retry
                     retryHandler.postDelayed(() -> {
                         Log.i(TAG, "Retrying device token unregistration...");
-                        unregisterDeviceInternal(attempt + 1);
+                        unregisterDeviceInternal(authToken, attempt + 1);
                     }, RETRY_DELAY_MS);
                 } else {
                     Log.e(TAG, "Max retries reached for device token unregistration. Giving up.");
@@ -11,7 +11,6 @@ import com.example.therapyai.data.local.models.TranscriptItem;
 import com.example.therapyai.data.remote.TherapyApiImpl;
 import com.example.therapyai.data.remote.models.ProcessedDataEntryResponse;
 import com.example.therapyai.data.remote.models.TranscriptSentenceResponse;
-import com.example.therapyai.data.remote.models.TranscriptDetailResponse;
 import com.google.gson.Gson;
 
 import java.util.ArrayList;
@@ -86,7 +85,7 @@ public class ProcessedDataRepository {
         isLoading.postValue(true);
         errorState.postValue(null);
 
-        apiImpl.refreshPendingData("Bearer " + token, new TherapyApiImpl.ApiCallback<List<ProcessedDataEntryResponse>>() {
+        apiImpl.refreshPendingData(new TherapyApiImpl.ApiCallback<List<ProcessedDataEntryResponse>>() {
             @Override
             public void onSuccess(List<ProcessedDataEntryResponse> result) {
                 isLoading.postValue(false);
@@ -122,13 +121,12 @@ public class ProcessedDataRepository {
         isLoading.postValue(true);
         errorState.postValue(null);
 
-        apiImpl.getSessionTranscriptDetail(token, dataId, new TherapyApiImpl.ApiCallback<TranscriptDetailResponse>() {
+        apiImpl.getSessionTranscriptDetail(dataId, new TherapyApiImpl.ApiCallback<TranscriptDetail>() {
             @Override
-            public void onSuccess(TranscriptDetailResponse result) {
+            public void onSuccess(TranscriptDetail result) {
                 isLoading.postValue(false);
                 if (result != null) {
-                    TranscriptDetail detail = toTranscriptDetail(result);
-                    currentTranscriptDetail.postValue(detail);
+                    currentTranscriptDetail.postValue(result);
                     Log.d(TAG, "Transcript detail loaded successfully for ID: " + dataId);
                 } else {
                     Log.e(TAG, "Received null transcript detail response for ID: " + dataId);
@@ -166,7 +164,7 @@ public class ProcessedDataRepository {
                 })
                 .collect(Collectors.toList());
 
-        apiImpl.submitFinalTranscript(token, dataId, submissionList, new TherapyApiImpl.ApiCallback<Void>() {
+        apiImpl.submitFinalTranscript(dataId, submissionList, new TherapyApiImpl.ApiCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
                 isLoading.postValue(false);
@@ -194,34 +192,6 @@ public class ProcessedDataRepository {
         );
     }
 
-    private static TranscriptItem toTranscriptItem(TranscriptSentenceResponse response) {
-        if (response == null) return null;
-        return new TranscriptItem(
-                response.getSpeaker(),
-                response.getText(),
-                response.getTimestamp()
-        );
-    }
-
-    private static TranscriptDetail toTranscriptDetail(TranscriptDetailResponse response) {
-        if (response == null) return null;
-
-        List<TranscriptItem> items = new ArrayList<>();
-        if (response.getTranscript() != null) {
-            items = response.getTranscript().stream()
-                    .map(ProcessedDataRepository::toTranscriptItem)
-                    .collect(Collectors.toList());
-        }
-
-        return new TranscriptDetail(
-                response.getPatientName(),
-                response.getSessionDate(),
-                response.getSummary(),
-                items
-        );
-    }
-
-
     public interface OperationCallback {
         void onSuccess();
         void onError(String errorMessage);
@@ -0,0 +1,111 @@
+package com.example.therapyai.data.repository;
+
+import com.example.therapyai.data.local.models.Profile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over profiles the app has already fetched, so a search can show
+ * matches before the server answers. Names, emails and ids are split into words on anything
+ * that is not a letter or digit, and queries are split the same way; a profile matches when
+ * every query word is a prefix of one of its words ("jo sm" finds "John Smith", "smith-j" and
+ * "john.smith@" find the same profile).
+ *
+ * Holds at most {@link #MAX_PROFILES}, dropping the least recently indexed. Cleared on logout.
+ * Thread-safe; all methods synchronize on the index.
+ */
+final class ProfilePrefixIndex {
+    private static final int MAX_PROFILES = 1000;
+    private static final int MAX_RESULTS = 50;
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final LinkedHashMap<String, Profile> profilesById = new LinkedHashMap<>(64, 0.75f, true);
+    private final TreeMap<String, Set<String>> idsByToken = new TreeMap<>();
+
+    synchronized void addAll(Collection<Profile> profiles) {
+        for (Profile profile : profiles) {
+            if (profile == null || profile.getId() == null) continue;
+            Profile previous = profilesById.put(profile.getId(), profile);
+            if (previous != null) unindex(previous);
+            for (String token : tokensOf(profile)) {
+                idsByToken.computeIfAbsent(token, t -> new HashSet<>()).add(profile.getId());
+            }
+        }
+        Iterator<Profile> eldest = profilesById.values().iterator();
+        while (profilesById.size() > MAX_PROFILES && eldest.hasNext()) {
+            Profile evicted = eldest.next();
+            eldest.remove();
+            unindex(evicted);
+        }
+    }
+
+    /**
+     * @return Indexed profiles matching every word of {@code query}, sorted by name; empty for a
+     * blank query.
+     */
+    synchronized List<Profile> lookup(String query) {
+        List<Profile> results = new ArrayList<>();
+        Set<String> matches = null;
+        for (String word : words(query)) {
+            Set<String> ids = new HashSet<>();
+            for (Set<String> tokenIds : idsByToken.subMap(word, true, word + Character.MAX_VALUE, true).values()) {
+                ids.addAll(tokenIds);
+            }
+            if (matches == null) {
+                matches = ids;
+            } else {
+                matches.retainAll(ids);
+            }
+            if (matches.isEmpty()) break;
+        }
+        if (matches == null) return results;
+        for (String id : matches) {
+            Profile profile = profilesById.get(id);
+            if (profile != null) results.add(profile);
+        }
+        results.sort((a, b) -> String.valueOf(a.getFullName()).compareToIgnoreCase(String.valueOf(b.getFullName())));
+        return results.size() > MAX_RESULTS ? new ArrayList<>(results.subList(0, MAX_RESULTS)) : results;
+    }
+
+    synchronized void clear() {
+        profilesById.clear();
+        idsByToken.clear();
+    }
+
+    private void unindex(Profile profile) {
+        for (String token : tokensOf(profile)) {
+            Set<String> ids = idsByToken.get(token);
+            if (ids == null) continue;
+            ids.remove(profile.getId());
+            if (ids.isEmpty()) idsByToken.remove(token);
+        }
+    }
+
+    private static Set<String> tokensOf(Profile profile) {
+        Set<String> tokens = new HashSet<>();
+        tokens.addAll(words(profile.getFullName()));
+        tokens.addAll(words(profile.getEmail()));
+        tokens.addAll(words(profile.getId()));
+        return tokens;
+    }
+
+    /** Lower-cased words of {@code text}; the one tokenizer for both profiles and queries. */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        for (String word : WORD_SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+}
@@ -2,15 +2,17 @@ package com.example.therapyai.data.repository;
 
 import android.content.Context;
 import android.security.keystore.UserNotAuthenticatedException; // Important
+import android.text.TextUtils;
 import android.util.Base64;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-
 import com.example.therapyai.data.local.EphemeralPrefs;
+import com.example.therapyai.data.local.LocalStorageManager;
 import com.example.therapyai.data.local.models.NoteCard;
+import com.example.therapyai.data.remote.HttpStatusException;
 import com.example.therapyai.data.remote.TherapyApiImpl;
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
 import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
 import com.example.therapyai.util.AESUtil;
 import com.example.therapyai.util.AudioFormatUtil;
@@ -20,38 +22,42 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays; // For clearing sensitive byte arrays
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.crypto.AEADBadTagException; // Important
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
-import okhttp3.MediaType;
-import okhttp3.MultipartBody;
-import okhttp3.RequestBody;
-import okio.BufferedSink; // Correct import for BufferedSink
-
 public class RecordingRepository {
     private static final String TAG = "RecordingRepository";
 
+    // Resumable upload tuning
+    private static final int UPLOAD_CHUNK_SIZE = 1024 * 1024; // 1 MiB of the audio stream per request
+    private static final int MAX_CHUNK_ATTEMPTS = 6;          // Consecutive failures before giving up
+    private static final long RETRY_BACKOFF_BASE_MS = 500;    // Doubled per attempt, capped below
+    private static final long RETRY_BACKOFF_MAX_MS = 8000;
+
     private static RecordingRepository instance;
-    private final TherapyApiImpl apiImpl;
     private final EphemeralPrefs ephemeralPrefs;
     private final Gson gson;
+    private final ExecutorService uploadExecutor = Executors.newSingleThreadExecutor();
+    private final ResumableUploader uploader;
 
     private RecordingRepository(TherapyApiImpl apiImpl) {
         this.ephemeralPrefs = EphemeralPrefs.getInstance();
-        this.apiImpl = apiImpl;
         this.gson = new Gson();
+        this.uploader = new ResumableUploader(apiImpl, UPLOAD_CHUNK_SIZE, MAX_CHUNK_ATTEMPTS,
+                RETRY_BACKOFF_BASE_MS, RETRY_BACKOFF_MAX_MS);
     }
 
     public static synchronized void init(boolean useMockData) {
@@ -76,210 +82,206 @@ public class RecordingRepository {
         void onProgress(int progressPercent, String statusMessage);
     }
 
+    /**
+     * Uploads a recorded session. The audio stream (WAV header + decrypted segments, or the
+     * decrypted FLAC segments as-is) is sent in {@link #UPLOAD_CHUNK_SIZE} chunks, each with its offset and a SHA-256
+     * checksum. The acknowledged offset is persisted after every chunk, so if the connection drops
+     * (or the app is restarted) a retry asks the server where it stopped and only decrypts and
+     * resends from there. Runs on a background thread; callbacks are invoked from that thread.
+     */
+    public void uploadRecordingSessionResumable(List<String> encryptedAudioFilePaths,
+                                                String encryptedDekBase64, // KEK-encrypted DEK (IV + Ciphertext), Base64
+                                                AudioFormatUtil.AudioEncoding audioEncoding, // null = PCM/WAV
+                                                AudioFormatUtil.CaptureProfile captureProfile, // null = CaptureProfile.DEFAULT
+                                                String patientInfo,
+                                                String therapistInfo,
+                                                List<NoteCard> noteCards,
+                                                RecordingSubmissionCallback callback,
+                                                UploadProgressCallback progressCallback) {
+        final AudioFormatUtil.CaptureProfile profile =
+                captureProfile != null ? captureProfile : AudioFormatUtil.CaptureProfile.DEFAULT;
+        if (!AudioFormatUtil.validateAudioConfiguration(profile)) {
+            Log.e(TAG, "HIPAA Compliance Error: Audio configuration validation failed");
+            callback.onFailure("Audio configuration does not meet security requirements.");
+            logAuditEvent("SESSION_UPLOAD_ERROR_CONFIG", "Audio configuration failed HIPAA validation");
+            return;
+        }
+        if (encryptedAudioFilePaths == null || encryptedAudioFilePaths.isEmpty()) {
+            Log.e(TAG, "No encrypted audio segments to upload.");
+            callback.onFailure("Encrypted audio file not found or is invalid.");
+            logAuditEvent("SESSION_UPLOAD_ERROR_FILE", "Encrypted segment list missing/empty");
+            return;
+        }
+        if (encryptedDekBase64 == null || encryptedDekBase64.isEmpty()) {
+            Log.e(TAG, "Encrypted Data Encryption Key (DEK) is missing.");
+            callback.onFailure("Session encryption key is missing.");
+            logAuditEvent("SESSION_UPLOAD_ERROR_DEK", "Encrypted DEK missing.");
+            return;
+        }
 
-    public void uploadRecordingSession(List<String> encryptedAudioFilePaths,
-                                       String encryptedDekBase64, // KEK-encrypted DEK (IV + Ciphertext), Base64
-                                       String patientInfo,
-                                       String therapistInfo,
-                                       List<NoteCard> noteCards,
-                                       RecordingSubmissionCallback callback,
-                                       UploadProgressCallback progressCallback)
-    {
-
+        final AudioFormatUtil.AudioEncoding encoding =
+                audioEncoding != null ? audioEncoding : AudioFormatUtil.AudioEncoding.PCM_WAV;
+        uploadExecutor.execute(() -> runResumableUpload(encryptedAudioFilePaths, encryptedDekBase64, encoding, profile,
+                patientInfo, therapistInfo, noteCards, callback, progressCallback));
+    }
 
-        byte[] plaintextDekBytes = null;      // Intermediate byte array for DEK
+    private void runResumableUpload(List<String> encryptedAudioFilePaths,
+                                    String encryptedDekBase64,
+                                    AudioFormatUtil.AudioEncoding encoding,
+                                    AudioFormatUtil.CaptureProfile profile,
+                                    String patientInfo,
+                                    String therapistInfo,
+                                    List<NoteCard> noteCards,
+                                    RecordingSubmissionCallback callback,
+                                    UploadProgressCallback progressCallback) {
+        byte[] plaintextDekBytes = null;
+        SessionAudioSource source = null;
+        LocalStorageManager storage = LocalStorageManager.getInstance();
 
         try {
-            // HIPAA Compliance: Validate audio configuration before processing
-            if (!AudioFormatUtil.validateAudioConfiguration()) {
-                Log.e(TAG, "HIPAA Compliance Error: Audio configuration validation failed");
-                callback.onFailure("Audio configuration does not meet security requirements.");
-                logAuditEvent("SESSION_UPLOAD_ERROR_CONFIG", "Audio configuration failed HIPAA validation");
+            // The header itself is added by AuthInterceptor on every request
+            if (TextUtils.isEmpty(ephemeralPrefs.getSessionToken())) {
+                callback.onFailure("User session token is missing. Please log in again.");
                 return;
             }
 
-            if (encryptedAudioFilePaths == null || encryptedAudioFilePaths.isEmpty()) {
-                Log.e(TAG, "Encrypted audio file is missing or too small: " + encryptedAudioFilePaths +
-                    " (exists: " + encryptedAudioFilePaths + ", length: " +
-                    (encryptedAudioFilePaths == null ? encryptedAudioFilePaths.size() : "N/A") + ")");
-                callback.onFailure("Encrypted audio file not found or is invalid.");
-                logAuditEvent("SESSION_UPLOAD_ERROR_FILE", "Encrypted file missing/invalid: " + encryptedAudioFilePaths);
-                return;
-            }
-            if (encryptedDekBase64 == null || encryptedDekBase64.isEmpty()) {
-                Log.e(TAG, "Encrypted Data Encryption Key (DEK) is missing.");
-                callback.onFailure("Session encryption key is missing.");
-                logAuditEvent("SESSION_UPLOAD_ERROR_DEK", "Encrypted DEK missing.");
-                return;
+            plaintextDekBytes = decryptSessionDek(encryptedDekBase64);
+            SecretKey plaintextSessionDEK = new SecretKeySpec(plaintextDekBytes, "AES");
+
+            // Exact plaintext size per segment (container footer, or IV + ciphertext + tag for legacy).
+            List<File> segmentFiles = new ArrayList<>();
+            long[] segmentLengths = new long[encryptedAudioFilePaths.size()];
+            long decryptedSize = 0;
+            for (int i = 0; i < encryptedAudioFilePaths.size(); i++) {
+                File segmentFile = new File(encryptedAudioFilePaths.get(i));
+                if (!segmentFile.exists()) {
+                    throw new IOException("Encrypted segment missing: " + segmentFile.getName());
+                }
+                segmentFiles.add(segmentFile);
+                segmentLengths[i] = AESUtil.getDecryptedLength(segmentFile);
+                decryptedSize += segmentLengths[i];
             }
-
-
-            Log.i(TAG, "Preparing to upload session. Audio File: " + encryptedAudioFilePaths + ", Size: " + encryptedAudioFilePaths.size());
-            Log.d(TAG, "Encrypted DEK (b64 prefix for log): " + (encryptedDekBase64.length() > 16 ? encryptedDekBase64.substring(0,16) : encryptedDekBase64));
-
-            // --- 1. Decrypt the DEK using KEK from Keystore ---
-            SecretKey kek = HIPAAKeyManager.getOrCreateKey();
-            byte[] combinedIvAndEncryptedDek = Base64.decode(encryptedDekBase64, Base64.NO_WRAP);
-            plaintextDekBytes = AESUtil.decryptAesGcm(combinedIvAndEncryptedDek, kek);
-            final SecretKey plaintextSessionDEK = new SecretKeySpec(plaintextDekBytes, "AES");
-
-
-            RequestBody requestFile = new RequestBody() {
-                @Nullable
-                @Override
-                public MediaType contentType() {
-                    return MediaType.parse(AudioFormatUtil.getAudioMimeType());
+            final long totalSize = AudioFormatUtil.getUploadStreamSize(encoding, decryptedSize);
+            final String fingerprint = computeUploadFingerprint(segmentFiles);
+
+            // --- Resume from the persisted cursor, or open a new upload ---
+            String uploadId = storage.getUploadCursorId(fingerprint);
+            long offset = 0;
+            if (uploadId != null) {
+                try {
+                    offset = uploader.fetchServerOffset(uploadId);
+                    Log.i(TAG, "Resuming upload " + uploadId + " at offset " + offset + " of " + totalSize);
+                    logAuditEvent("SESSION_UPLOAD_RESUMED", "Upload " + uploadId + " at offset " + offset);
+                } catch (HttpStatusException e) {
+                    Log.w(TAG, "Stored upload " + uploadId + " is no longer usable (" + e.getMessage() + "). Starting over.");
+                    storage.clearUploadCursor();
+                    uploadId = null;
+                    offset = 0;
                 }
+            }
+            if (uploadId == null) {
+                String fileName = "session_audio_" + UUID.randomUUID().toString() + AudioFormatUtil.getAudioFileExtension(encoding);
+                ChunkedUploadInitRequest initRequest = new ChunkedUploadInitRequest(fileName,
+                        AudioFormatUtil.getAudioMimeType(encoding), totalSize, uploader.getChunkSize(),
+                        prepareMetadata(noteCards, patientInfo, therapistInfo, encoding, profile));
+                ChunkedUploadResponse started = uploader.start(initRequest);
+                uploadId = started.getUploadId();
+                offset = started.getNextOffset();
+                Log.i(TAG, "Started resumable upload " + uploadId + " (" + totalSize + " bytes, " + segmentFiles.size() + " segments)");
+            }
+            storage.saveUploadCursor(fingerprint, uploadId, offset);
 
-                @Override
-                public long contentLength() {
-                    return -1; // Use chunked transfer encoding
-                }
+            // --- Chunk loop ---
+            source = new SessionAudioSource(segmentFiles, segmentLengths, plaintextSessionDEK, encoding, profile);
+            final String cursorUploadId = uploadId;
+            uploader.send(uploadId, offset, totalSize, source, new ResumableUploader.Listener() {
+                private int lastReportedProgress = -1;
 
                 @Override
-                public void writeTo(@NonNull BufferedSink sink) throws IOException {
-                    Log.d(TAG, "RequestBody.writeTo: Starting SEQUENTIAL on-the-fly decryption of " + encryptedAudioFilePaths.size() + " segments.");
-
-                    final int totalFiles = encryptedAudioFilePaths.size();
-                    if (totalFiles == 0) return;
-
-//                    // --- STAGED PROGRESS CONFIGURATION ---
-//                    final int PREPARATION_PROGRESS_MAX = 70; // Use 0-70% for the preparation stage
-//                    final int UPLOAD_STAGE_PROGRESS = 85;    // Jump to 85% when upload begins
-
-                    long estimatedDecryptedSize = 0;
-                    for (String path : encryptedAudioFilePaths) {
-                        long fileLen = new File(path).length();
-                        // Subtract the IV length from each file's size for an accurate estimate.
-                        estimatedDecryptedSize += Math.max(0, fileLen - AESUtil.GCM_IV_LENGTH);
-                    }
-                    if (estimatedDecryptedSize <= 0) {
-                        Log.w(TAG, "Estimated decrypted size is zero. Cannot report progress accurately.");
-                        // Fallback to a simple message.
-                        if (progressCallback != null) {
-                            progressCallback.onProgress(50, "Processing...");
+                public void onAcknowledged(long acknowledged) {
+                    storage.saveUploadCursor(fingerprint, cursorUploadId, acknowledged);
+                    if (progressCallback != null) {
+                        // Clamp progress to 99% max. The final 100% is set on API success response.
+                        int progress = (int) Math.min(99, (acknowledged * 100) / totalSize);
+                        if (progress != lastReportedProgress) {
+                            progressCallback.onProgress(progress, "Uploading...");
+                            lastReportedProgress = progress;
                         }
                     }
+                }
 
-                    OutputStream networkOutputStream = sink.outputStream();
-                    long totalBytesProcessed = 0;
-                    int lastReportedProgress = -1;
-
-                    try {
-                        // 2. Write the single WAV header to the network stream once at the start.
-                        AudioFormatUtil.writeWavHeader(networkOutputStream, estimatedDecryptedSize);
-
-                        byte[] buffer = new byte[8192]; // A reusable buffer for reading chunks.
-                        int bytesRead;
-
-                        // 3. Loop through each segment file, processing one at a time sequentially.
-                        for (String path : encryptedAudioFilePaths) {
-                            File segmentFile = new File(path);
-                            Log.d(TAG, "Processing segment: " + segmentFile.getName());
-
-                            // Use try-with-resources to ensure each file's streams are closed, freeing memory.
-                            try (FileInputStream fis = new FileInputStream(segmentFile);
-                                 InputStream cis = AESUtil.createDecryptingInputStream(fis, plaintextSessionDEK)) {
-
-                                // 4. Read decrypted chunks from the current file until it's finished.
-                                while ((bytesRead = cis.read(buffer)) != -1) {
-                                    // Write the decrypted chunk to the network.
-                                    networkOutputStream.write(buffer, 0, bytesRead);
-                                    totalBytesProcessed += bytesRead;
-
-                                    // 5. Calculate and report progress.
-                                    if (estimatedDecryptedSize > 0 && progressCallback != null) {
-                                        int progress = (int) ((totalBytesProcessed * 100) / estimatedDecryptedSize);
-
-                                        // Only report when the percentage value actually changes to avoid spamming the UI thread.
-                                        if (progress > lastReportedProgress) {
-                                            // Clamp progress to 99% max. The final 100% is set on API success response.
-                                            int displayProgress = Math.min(progress, 99);
-                                            progressCallback.onProgress(displayProgress, "Uploading...");
-                                            lastReportedProgress = progress;
-                                        }
-                                    }
-                                }
-                            } // <- fis and cis for this segment are closed here.
-                        }
-
-                        sink.flush();
-                        Log.i(TAG, "Successfully streamed all segments. Total bytes processed: " + totalBytesProcessed);
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error during sequential streaming decryption", e);
-                        throw new IOException("Failed to decrypt and stream audio segments: " + e.getMessage(), e);
+                @Override
+                public void onRetrying(long failedOffset, int attempt, IOException cause) {
+                    if (progressCallback != null) {
+                        progressCallback.onProgress(Math.max(lastReportedProgress, 0), "Connection lost, resuming...");
                     }
                 }
-            };
-
-            // --- 3. Prepare metadata and execute API call (same as before) ---
-            String originalFileName = "session_audio_" + UUID.randomUUID().toString() + AudioFormatUtil.getAudioFileExtension();
-            MultipartBody.Part filePart = MultipartBody.Part.createFormData("audio_file", originalFileName, requestFile);
-
-            String metadataJson = prepareMetadata(noteCards, patientInfo, therapistInfo);
-            RequestBody metadataBody = RequestBody.create(MediaType.parse("application/json"), metadataJson);
-
-            String token = ephemeralPrefs.getSessionToken();
-            if (token == null || token.isEmpty()) {
-                callback.onFailure("User session token is missing. Please log in again.");
-                return;
+            });
+
+            SessionSubmissionResponse result = uploader.complete(uploadId);
+            storage.clearUploadCursor();
+            Log.i(TAG, "Resumable session upload successful. Session ID: " + result.getSessionId());
+            logAuditEvent("SESSION_UPLOAD_SUCCESS", "Session ID: " + result.getSessionId());
+            if (progressCallback != null) {
+                progressCallback.onProgress(100, "Upload completed successfully!");
             }
-
-            apiImpl.uploadSessionData(
-                    token,
-                    filePart,
-                    metadataBody,
-                    new TherapyApiImpl.ApiCallback<SessionSubmissionResponse>() {
-                        @Override
-                        public void onSuccess(SessionSubmissionResponse result) {
-                            Log.i(TAG, "Session upload (DEK decrypted stream) successful. Session ID: " + result.getSessionId());
-                            logAuditEvent("SESSION_UPLOAD_SUCCESS", "Session ID: " + result.getSessionId());
-                            if (progressCallback != null) {
-                                progressCallback.onProgress(100, "Upload completed successfully!");
-                            }
-                            callback.onSuccess(result);
-                            // File cleanup is handled by SessionHostActivity after success dialog
-                        }
-
-                        @Override
-                        public void onError(String error) {
-                            Log.e(TAG, "Session upload (DEK decrypted stream) API call failed. Error: " + error);
-                            logAuditEvent("SESSION_UPLOAD_FAILURE_API", "API Error: " + error);
-                            if (progressCallback != null) {
-                                progressCallback.onProgress(0, "Upload failed: " + error);
-                            }
-                            callback.onFailure("Upload failed: " + error);
-                            // File cleanup is NOT done here on failure, allowing for retry. SessionHostActivity handles cleanup.
-                        }
-                    });
+            callback.onSuccess(result);
 
         } catch (UserNotAuthenticatedException unae) {
             Log.e(TAG, "Keystore key authentication required to decrypt DEK.", unae);
-            // This specific message is crucial for SessionHostActivity to trigger re-auth
             callback.onFailure("Key authentication required: User not authenticated for Keystore key operation.");
             logAuditEvent("SESSION_UPLOAD_ERROR_KEK_AUTH", unae.getMessage());
         } catch (AEADBadTagException ae) {
             Log.e(TAG, "AEADBadTagException while decrypting DEK. Likely KEK auth issue, corrupted DEK, or wrong key.", ae);
-            // This also often indicates an issue with the KEK (e.g., auth expired, or key changed/invalidated)
             callback.onFailure("Key authentication error or session key corrupt: AEADBadTagException.");
             logAuditEvent("SESSION_UPLOAD_ERROR_DEK_DECRYPT_AEAD", ae.getMessage());
-        } catch (Exception e) { // Catch other general exceptions during setup
-            Log.e(TAG, "General error during upload preparation (DEK decryption or initial setup).", e);
-            callback.onFailure("Error preparing upload: " + e.getMessage());
-            logAuditEvent("SESSION_UPLOAD_PREPARATION_ERROR_GENERAL", e.getMessage());
+        } catch (Exception e) {
+            // The cursor is kept (unless the server rejected the upload), so the next retry resumes.
+            if (e instanceof HttpStatusException && ((HttpStatusException) e).getCode() == 404) {
+                storage.clearUploadCursor();
+            }
+            Log.e(TAG, "Resumable session upload failed.", e);
+            logAuditEvent("SESSION_UPLOAD_FAILURE_API", "Resumable upload error: " + e.getMessage());
+            if (progressCallback != null) {
+                progressCallback.onProgress(0, "Upload failed: " + e.getMessage());
+            }
+            callback.onFailure("Upload failed: " + e.getMessage());
         } finally {
-            // Securely clear the plaintext DEK bytes from memory
             if (plaintextDekBytes != null) {
                 Arrays.fill(plaintextDekBytes, (byte) 0);
-                Log.d(TAG, "Plaintext DEK bytes cleared from repository memory.");
             }
-            // The SecretKey object plaintextSessionDEK will be garbage collected.
+            if (source != null) {
+                source.close();
+            }
+            AESUtil.releaseThreadCiphers(); // uploadExecutor outlives the session
         }
     }
 
+    /**
+     * Decrypts the KEK-wrapped session DEK. Callers must zero the returned bytes when done.
+     */
+    private byte[] decryptSessionDek(String encryptedDekBase64) throws Exception {
+        SecretKey kek = HIPAAKeyManager.getOrCreateKey();
+        byte[] combinedIvAndEncryptedDek = Base64.decode(encryptedDekBase64, Base64.NO_WRAP);
+        return AESUtil.decryptAesGcm(combinedIvAndEncryptedDek, kek);
+    }
+
+    /**
+     * Identifies a recording by its segment names and sizes, so a saved cursor is only reused
+     * for exactly the same set of encrypted files.
+     */
+    private String computeUploadFingerprint(List<File> segmentFiles) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (File segmentFile : segmentFiles) {
+            digest.update(segmentFile.getName().getBytes("UTF-8"));
+            digest.update(Long.toString(segmentFile.length()).getBytes("UTF-8"));
+        }
+        return Base64.encodeToString(digest.digest(), Base64.NO_WRAP);
+    }
 
-    private String prepareMetadata(List<NoteCard> noteCards, String patientData, String therapistData) {
+    private String prepareMetadata(List<NoteCard> noteCards, String patientData, String therapistData,
+                                   AudioFormatUtil.AudioEncoding audioEncoding,
+                                   AudioFormatUtil.CaptureProfile captureProfile) {
         JsonObject metadata = new JsonObject();
         JsonArray generalNotesArray = new JsonArray();
         JsonArray timedNotesArray = new JsonArray();
@@ -308,6 +310,10 @@ public class RecordingRepository {
         metadata.addProperty("patient", patientObject.toString());
         metadata.addProperty("session_date", currentDate);
         metadata.addProperty("summary", summaryContent);
+        metadata.addProperty("audio_encoding", audioEncoding.getMetadataTag());
+        metadata.addProperty("capture_profile", captureProfile.getMetadataTag());
+        metadata.addProperty("sample_rate", captureProfile.getSampleRate());
+        metadata.addProperty("channels", captureProfile.getChannels());
 //        Log.d(TAG, "general_notes are: " + generalNotesArray.toString());
 //        Log.d(TAG, "timed_notes are: " + timedNotesArray.toString());
         if (generalNotesArray.size() > 0) metadata.add("general_notes", generalNotesArray);
@@ -0,0 +1,154 @@
+package com.example.therapyai.data.repository;
+
+import android.util.Log;
+
+import com.example.therapyai.data.remote.ChunkedUploadTransport;
+import com.example.therapyai.data.remote.HttpStatusException;
+import com.example.therapyai.data.remote.TherapyApiImpl;
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
+import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The chunk loop of a resumable upload, kept apart from key handling and cursor storage so it
+ * can run against {@link com.example.therapyai.data.remote.MockChunkedUploadServer}.
+ *
+ * Each chunk is sent with its offset and checksum. A dropped connection is retried with
+ * exponential backoff; before the retry the server is asked for its offset, because the chunk
+ * may have been stored even though the acknowledgement was lost. If the server's offset does not
+ * move forward for {@code maxAttempts} rounds in a row (it keeps acknowledging the same or an
+ * earlier offset, or keeps answering 409), the upload fails instead of looping.
+ */
+final class ResumableUploader {
+    private static final String TAG = "ResumableUploader";
+
+    interface Listener {
+        /** Everything before {@code offset} is stored on the server. */
+        void onAcknowledged(long offset);
+
+        /** The chunk at {@code offset} failed and will be retried after a backoff. */
+        void onRetrying(long offset, int attempt, IOException cause);
+    }
+
+    private final ChunkedUploadTransport transport;
+    private final int chunkSize;
+    private final int maxAttempts;        // Consecutive failures, or rounds without progress, before giving up
+    private final long backoffBaseMs;     // Doubled per attempt, capped at backoffMaxMs
+    private final long backoffMaxMs;
+
+    ResumableUploader(ChunkedUploadTransport transport, int chunkSize, int maxAttempts,
+                      long backoffBaseMs, long backoffMaxMs) {
+        this.transport = transport;
+        this.chunkSize = chunkSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    ChunkedUploadResponse start(ChunkedUploadInitRequest request) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transport.startChunkedUpload(request);
+            } catch (IOException e) {
+                if (isFatalUploadError(e) || attempt >= maxAttempts) throw e;
+                Log.w(TAG, "Starting upload failed (attempt " + attempt + "): " + e.getMessage());
+                sleepBeforeRetry(attempt);
+            }
+        }
+    }
+
+    /**
+     * Where the server wants the next chunk of an upload that was already started.
+     */
+    long fetchServerOffset(String uploadId) throws IOException {
+        return transport.getChunkedUploadStatus(uploadId).getNextOffset();
+    }
+
+    /**
+     * Sends {@code source} from {@code offset} until the server holds all {@code totalSize} bytes.
+     */
+    void send(String uploadId, long offset, long totalSize, SessionAudioSource source, Listener listener) throws Exception {
+        byte[] chunk = new byte[chunkSize];
+        try {
+            int failedAttempts = 0;
+            int stalledRounds = 0;
+            while (offset < totalSize) {
+                long roundStart = offset;
+                int length = (int) Math.min(chunkSize, totalSize - offset);
+                source.readFully(offset, chunk, length);
+                String checksum = TherapyApiImpl.chunkChecksumHeader(chunk, length);
+                try {
+                    ChunkedUploadResponse ack = transport.uploadChunk(uploadId, offset, chunk, length, checksum);
+                    offset = ack.getNextOffset();
+                    failedAttempts = 0;
+                } catch (IOException e) {
+                    failedAttempts++;
+                    if (isFatalUploadError(e) || failedAttempts >= maxAttempts) {
+                        throw e;
+                    }
+                    Log.w(TAG, "Chunk at offset " + offset + " failed (attempt " + failedAttempts + "): " + e.getMessage());
+                    listener.onRetrying(offset, failedAttempts, e);
+                    sleepBeforeRetry(failedAttempts);
+                    // The chunk may have been stored even though the ack was lost, so ask the server.
+                    try {
+                        offset = fetchServerOffset(uploadId);
+                    } catch (HttpStatusException statusError) {
+                        throw statusError;
+                    } catch (IOException statusError) {
+                        Log.w(TAG, "Could not resync offset, retrying same chunk: " + statusError.getMessage());
+                    }
+                }
+                listener.onAcknowledged(offset);
+                if (offset > roundStart) {
+                    stalledRounds = 0;
+                } else if (++stalledRounds >= maxAttempts) {
+                    throw new IOException("Upload " + uploadId + " made no progress past offset " + roundStart
+                            + " in " + stalledRounds + " attempts (server is at " + offset + ")");
+                }
+            }
+        } finally {
+            Arrays.fill(chunk, (byte) 0);
+        }
+    }
+
+    SessionSubmissionResponse complete(String uploadId) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transport.completeChunkedUpload(uploadId);
+            } catch (IOException e) {
+                if (isFatalUploadError(e) || attempt >= maxAttempts) throw e;
+                Log.w(TAG, "Completing upload " + uploadId + " failed (attempt " + attempt + "): " + e.getMessage());
+                sleepBeforeRetry(attempt);
+            }
+        }
+    }
+
+    /**
+     * Dropped connections, timeouts, 5xx, offset conflicts (409) and checksum rejections (422)
+     * are retried. Anything else (auth, unknown upload, bad request) will not succeed on retry.
+     */
+    static boolean isFatalUploadError(IOException e) {
+        if (!(e instanceof HttpStatusException)) {
+            return false;
+        }
+        int code = ((HttpStatusException) e).getCode();
+        return code != 409 && code != 422 && code != 408 && code != 429 && code < 500;
+    }
+
+    private void sleepBeforeRetry(int attempt) throws IOException {
+        long delay = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt - 1, 10));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.therapyai.data.repository;
+
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import retrofit2.Call;
+
+/**
+ * Search-as-you-type front end for one kind of result (profiles or sessions).
+ *
+ * <ul>
+ *   <li>Debounce: typing only sends a request once input has paused for the debounce delay.</li>
+ *   <li>Cancellation: starting a request for a new query cancels the previous {@link Call}, and
+ *       results for anything but the latest query are never delivered, so they cannot arrive
+ *       out of order.</li>
+ *   <li>Deduplication: a query that is already in flight is not sent again.</li>
+ *   <li>Recent results: the last {@link #RECENT_QUERY_LIMIT} results are kept for
+ *       {@link #RECENT_QUERY_TTL_MS} and served without a request.</li>
+ *   <li>Local results: an optional {@link LocalSource} answers at once from already-fetched data
+ *       while the request is pending.</li>
+ * </ul>
+ *
+ * Queries are compared trimmed, lower-cased and with whitespace collapsed; the server matches
+ * case-insensitively. Main thread only; listener calls arrive on the main thread.
+ */
+public class SearchEngine<T> {
+    private static final String TAG = "SearchEngine";
+
+    public static final long DEFAULT_DEBOUNCE_MS = 300;
+    private static final int RECENT_QUERY_LIMIT = 20;
+    private static final long RECENT_QUERY_TTL_MS = 60_000;
+
+    public interface Source<T> {
+        /**
+         * Starts a search.
+         *
+         * @return A handle to cancel it, or null if it cannot be cancelled.
+         */
+        Call<?> search(String query, SearchCallback<T> callback);
+    }
+
+    public interface SearchCallback<T> {
+        void onResults(List<T> results);
+        void onError(String error);
+    }
+
+    public interface LocalSource<T> {
+        List<T> lookup(String query);
+    }
+
+    public interface Listener<T> {
+        /**
+         * Instant matches from already-fetched data; server results for the same query follow.
+         */
+        void onLocalResults(String query, List<T> results);
+        void onResults(String query, List<T> results);
+        void onError(String query, String error);
+    }
+
+    private final MainThreadScheduler mainThread;
+    private final Source<T> source;
+    private final LocalSource<T> localSource;
+    private final Listener<T> listener;
+    private final long debounceMs;
+    private final LinkedHashMap<String, RecentResult<T>> recentResults =
+            new LinkedHashMap<String, RecentResult<T>>(RECENT_QUERY_LIMIT, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RecentResult<T>> eldest) {
+                    return size() > RECENT_QUERY_LIMIT;
+                }
+            };
+
+    private String currentQuery;   // Latest query asked for; only its results are delivered
+    private String inFlightQuery;
+    private Call<?> inFlightCall;
+    private long requestGeneration; // Bumped per request and on cancel, so stale callbacks are ignored
+    private Runnable pendingRequest;
+
+    /**
+     * @param localSource May be null.
+     */
+    public SearchEngine(Source<T> source, LocalSource<T> localSource, long debounceMs, Listener<T> listener) {
+        this(source, localSource, debounceMs, listener, MainThreadScheduler.mainLooper());
+    }
+
+    SearchEngine(Source<T> source, LocalSource<T> localSource, long debounceMs, Listener<T> listener,
+                 MainThreadScheduler mainThread) {
+        this.mainThread = mainThread;
+        this.source = source;
+        this.localSource = localSource;
+        this.debounceMs = debounceMs;
+        this.listener = listener;
+    }
+
+    /**
+     * Debounced search for text as it is typed. A blank query cancels any pending search.
+     */
+    public void search(String query) {
+        submit(query, false, false);
+    }
+
+    /**
+     * Searches without waiting, e.g. on submit. {@code refresh} skips the recent results and
+     * always asks the server.
+     */
+    public void searchNow(String query, boolean refresh) {
+        submit(query, true, refresh);
+    }
+
+    /**
+     * Drops the pending and in-flight search; nothing more is delivered until the next search.
+     */
+    public void cancel() {
+        currentQuery = null;
+        clearPendingRequest();
+        cancelInFlight();
+    }
+
+    public void clearRecentResults() {
+        recentResults.clear();
+    }
+
+    private void submit(String rawQuery, boolean immediate, boolean refresh) {
+        String query = normalize(rawQuery);
+        if (query.isEmpty()) {
+            cancel();
+            return;
+        }
+        currentQuery = query;
+        clearPendingRequest();
+
+        if (!refresh) {
+            RecentResult<T> recent = recentResults.get(query);
+            if (recent != null && mainThread.now() - recent.storedAt < RECENT_QUERY_TTL_MS) {
+                cancelInFlight();
+                listener.onResults(query, recent.results);
+                return;
+            }
+        }
+
+        if (localSource != null) {
+            listener.onLocalResults(query, localSource.lookup(query));
+        }
+        if (!refresh && query.equals(inFlightQuery)) {
+            return; // Already asked; its result will be delivered as the current query's
+        }
+        if (immediate) {
+            startRequest(query);
+        } else {
+            pendingRequest = () -> {
+                pendingRequest = null;
+                startRequest(query);
+            };
+            mainThread.postDelayed(pendingRequest, debounceMs);
+        }
+    }
+
+    private void startRequest(String query) {
+        cancelInFlight();
+        final long generation = ++requestGeneration;
+        inFlightQuery = query;
+        Call<?> call = source.search(query, new SearchCallback<T>() {
+            @Override
+            public void onResults(List<T> results) {
+                mainThread.post(() -> {
+                    if (generation != requestGeneration) return; // Superseded or cancelled
+                    finishRequest();
+                    recentResults.put(query, new RecentResult<>(results, mainThread.now()));
+                    if (query.equals(currentQuery)) {
+                        listener.onResults(query, results);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                mainThread.post(() -> {
+                    if (generation != requestGeneration) return;
+                    finishRequest();
+                    if (query.equals(currentQuery)) {
+                        listener.onError(query, error);
+                    }
+                });
+            }
+        });
+        if (generation == requestGeneration && inFlightQuery != null) {
+            inFlightCall = call;
+        }
+    }
+
+    private void finishRequest() {
+        inFlightQuery = null;
+        inFlightCall = null;
+    }
+
+    private void cancelInFlight() {
+        requestGeneration++;
+        if (inFlightCall != null) {
+            Log.d(TAG, "Cancelling superseded search for: " + inFlightQuery);
+            inFlightCall.cancel();
+        }
+        finishRequest();
+    }
+
+    private void clearPendingRequest() {
+        if (pendingRequest != null) {
+            mainThread.removeCallbacks(pendingRequest);
+            pendingRequest = null;
+        }
+    }
+
+    static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class RecentResult<T> {
+        final List<T> results;
+        final long storedAt;
+
+        RecentResult(List<T> results, long storedAt) {
+            this.results = results;
+            this.storedAt = storedAt;
+        }
+    }
+}
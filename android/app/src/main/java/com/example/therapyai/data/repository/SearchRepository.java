@@ -5,11 +5,8 @@ import android.util.Log;
 import com.example.therapyai.data.local.models.Profile;
 import com.example.therapyai.data.local.models.FinalSessionDetail;
 import com.example.therapyai.data.local.models.SessionSummary;
-import com.example.therapyai.data.local.models.SentimentScore;
-import com.example.therapyai.data.local.models.TimedNote;
-import com.example.therapyai.data.local.models.FinalTranscriptEntry;
 import com.example.therapyai.data.remote.models.ProfileResponse;
-import com.example.therapyai.data.remote.models.FinalSessionDetailResponse;
+import com.example.therapyai.data.remote.models.SessionSummaryPageResponse;
 import com.example.therapyai.data.remote.models.SessionSummaryResponse;
 import com.example.therapyai.data.remote.TherapyApiImpl;
 
@@ -18,11 +15,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import retrofit2.Call;
+
 public class SearchRepository {
 
     private static final String TAG = "SearchRepository";
     private static SearchRepository instance;
     private final TherapyApiImpl apiImpl;
+    private final ProfilePrefixIndex profileIndex = new ProfilePrefixIndex(); // Every profile search result
 
     private SearchRepository(TherapyApiImpl apiImpl) {
         this.apiImpl = apiImpl;
@@ -54,6 +54,12 @@ public class SearchRepository {
         void onError(String error);
     }
 
+    // Callback for one page of session summaries; nextCursor is null on the last page
+    public interface SessionPageCallback {
+        void onPageLoaded(List<SessionSummary> sessionSummaries, String nextCursor);
+        void onError(String error);
+    }
+
     // Callback for fetching full session details
     public interface SessionDetailCallback {
         void onSessionDetailFound(FinalSessionDetail finalSessionDetail);
@@ -68,8 +74,74 @@ public class SearchRepository {
 
 
 
-    public void performProfileSearch(String query, ProfileSearchCallback callback) {
-        apiImpl.searchProfiles(query, new TherapyApiImpl.ApiCallback<List<ProfileResponse>>() {
+    /**
+     * Search-as-you-type over profiles, answering first from profiles already fetched.
+     * Main thread only; see {@link SearchEngine}.
+     */
+    public SearchEngine<Profile> newProfileSearchEngine(SearchEngine.Listener<Profile> listener) {
+        return new SearchEngine<>(
+                (query, callback) -> performProfileSearch(query, new ProfileSearchCallback() {
+                    @Override
+                    public void onProfilesFound(List<Profile> profiles) {
+                        callback.onResults(profiles);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                }),
+                profileIndex::lookup, SearchEngine.DEFAULT_DEBOUNCE_MS, listener);
+    }
+
+    /**
+     * Search-as-you-type over session summaries. Main thread only; see {@link SearchEngine}.
+     */
+    public SearchEngine<SessionSummary> newSessionSearchEngine(SearchEngine.Listener<SessionSummary> listener) {
+        return new SearchEngine<>(
+                (query, callback) -> performSessionSearch(query, new SessionSearchCallback() {
+                    @Override
+                    public void onSessionsFound(List<SessionSummary> sessionSummaries) {
+                        callback.onResults(sessionSummaries);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                }),
+                null, SearchEngine.DEFAULT_DEBOUNCE_MS, listener);
+    }
+
+    /**
+     * The logged-in patient's session history, a page at a time. Main thread only; see
+     * {@link SessionHistoryPager}.
+     */
+    public SessionHistoryPager newPatientSessionPager(SessionHistoryPager.Listener listener) {
+        return new SessionHistoryPager(this::getPatientSessionsPage, listener);
+    }
+
+    /**
+     * Session search results (e.g. one patient's history for a therapist), a page at a time.
+     */
+    public SessionHistoryPager newSessionSearchPager(String query, SessionHistoryPager.Listener listener) {
+        return new SessionHistoryPager(
+                (cursor, pageSize, callback) -> performSessionSearchPage(query, cursor, pageSize, callback),
+                listener);
+    }
+
+    /**
+     * Forgets the profiles indexed for local search; called on logout.
+     */
+    public void clearLocalData() {
+        profileIndex.clear();
+    }
+
+    /**
+     * @return The request, so it can be cancelled, or null if none was sent.
+     */
+    public Call<?> performProfileSearch(String query, ProfileSearchCallback callback) {
+        return apiImpl.searchProfiles(query, new TherapyApiImpl.ApiCallback<List<ProfileResponse>>() {
             @Override
             public void onSuccess(List<ProfileResponse> result) {
                 if (result == null) {
@@ -78,6 +150,7 @@ public class SearchRepository {
                     return;
                 }
                 List<Profile> profiles = convertToProfiles(result);
+                profileIndex.addAll(profiles);
                 Log.d(TAG, "Profile search success. Found " + profiles.size() + " profiles.");
                 callback.onProfilesFound(profiles);
             }
@@ -90,8 +163,11 @@ public class SearchRepository {
         });
     }
 
-    public void performSessionSearch(String query, SessionSearchCallback callback) {
-        apiImpl.searchSessions(query, new TherapyApiImpl.ApiCallback<List<SessionSummaryResponse>>() {
+    /**
+     * @return The request, so it can be cancelled, or null if none was sent.
+     */
+    public Call<?> performSessionSearch(String query, SessionSearchCallback callback) {
+        return apiImpl.searchSessions(query, new TherapyApiImpl.ApiCallback<List<SessionSummaryResponse>>() {
             @Override
             public void onSuccess(List<SessionSummaryResponse> result) {
                 if (result == null) {
@@ -112,23 +188,25 @@ public class SearchRepository {
         });
     }
 
+    public void performSessionSearchPage(String query, String cursor, int pageSize, SessionPageCallback callback) {
+        apiImpl.searchSessionsPage(query, pageSize, cursor, pageCallback(callback, "Session search"));
+    }
+
+    /**
+     * Served offline-first: the callback may fire twice, with the cached copy and then with the
+     * server's if it changed. Same for the patient profile and session list below.
+     */
     public void getSessionDetails(String sessionId, SessionDetailCallback callback) {
-        apiImpl.getSessionDetails(sessionId, new TherapyApiImpl.ApiCallback<FinalSessionDetailResponse>() {
+        apiImpl.getSessionDetails(sessionId, new TherapyApiImpl.ApiCallback<FinalSessionDetail>() {
             @Override
-            public void onSuccess(FinalSessionDetailResponse result) {
+            public void onSuccess(FinalSessionDetail result) {
                 if (result == null) {
                     Log.e(TAG, "getSessionDetails returned null for ID: " + sessionId);
                     callback.onError("Failed to retrieve session details (null response).");
                     return;
                 }
-                try {
-                    FinalSessionDetail detail = convertToSessionDetail(result);
-                    Log.d(TAG, "Session detail fetch success for ID: " + sessionId);
-                    callback.onSessionDetailFound(detail);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error converting SessionDetailResponse to SessionDetail for ID: " + sessionId, e);
-                    callback.onError("Failed to process session details: " + e.getMessage());
-                }
+                Log.d(TAG, "Session detail fetch success for ID: " + sessionId);
+                callback.onSessionDetailFound(result);
             }
 
             @Override
@@ -198,6 +276,34 @@ public class SearchRepository {
         });
     }
 
+    /**
+     * The first page is served offline-first like {@link #getPatientSessions}.
+     */
+    public void getPatientSessionsPage(String cursor, int pageSize, SessionPageCallback callback) {
+        apiImpl.getOwnSessionsPage(pageSize, cursor, pageCallback(callback, "Patient session"));
+    }
+
+    private TherapyApiImpl.ApiCallback<SessionSummaryPageResponse> pageCallback(SessionPageCallback callback, String label) {
+        return new TherapyApiImpl.ApiCallback<SessionSummaryPageResponse>() {
+            @Override
+            public void onSuccess(SessionSummaryPageResponse result) {
+                if (result == null) {
+                    Log.w(TAG, label + " page returned null.");
+                    callback.onPageLoaded(new ArrayList<>(), null);
+                    return;
+                }
+                List<SessionSummary> summaries = convertToSessionSummaries(result.getItems());
+                Log.d(TAG, label + " page success. Found " + summaries.size() + " summaries, more: " + (result.getNextCursor() != null));
+                callback.onPageLoaded(summaries, result.getNextCursor());
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                Log.e(TAG, label + " page failed: " + errorMsg);
+                callback.onError(errorMsg);
+            }
+        };
+    }
 
 
 
@@ -235,63 +341,4 @@ public class SearchRepository {
                 ))
                 .collect(Collectors.toList());
     }
-
-    private FinalSessionDetail convertToSessionDetail(FinalSessionDetailResponse response) {
-        if (response == null) {
-            throw new IllegalArgumentException("Cannot convert null SessionDetailResponse");
-        }
-
-        List<String> generalNotes = new ArrayList<>();
-        List<TimedNote> timedNotes = new ArrayList<>();
-        String summary = response.getSummary() != null ? response.getSummary() : "";
-
-        if (response.getGeneral_notes() != null) {
-            generalNotes.addAll(response.getGeneral_notes());
-        }
-        if (response.getTimedNotes() != null) {
-            timedNotes = response.getTimedNotes().stream()
-                    .map(tn -> new TimedNote(tn.getTime(), tn.getNote()))
-                    .collect(Collectors.toList());
-        }
-
-        List<FinalTranscriptEntry> transcriptEntries = new ArrayList<>();
-        if (response.getSentiment_scores() != null) {
-            transcriptEntries = response.getSentiment_scores().stream()
-                    .map(apiEntry -> {
-                        SentimentScore score = null;
-                        if ("Patient".equalsIgnoreCase(apiEntry.getSpeaker())) {
-                            score = new SentimentScore(
-                                    (float) apiEntry.getPositive(),
-                                    (float) apiEntry.getNeutral(),
-                                    (float) apiEntry.getNegative()
-                            );
-                        }
-                        return new FinalTranscriptEntry(
-                                apiEntry.getSpeaker(),
-                                apiEntry.getText(),
-                                apiEntry.getTimestamp(),
-                                score // This can be null if speaker is Therapist
-                        );
-                    })
-                    .collect(Collectors.toList());
-        }
-
-        return new FinalSessionDetail(
-                response.getSessionId(),
-                null,
-                response.getTherapist_name(),
-                response.getTherapist_email(),
-                response.getPatient_id(),
-                response.getPatient_name(),
-                response.getPatient_email(),
-                response.getSession_date(),
-                generalNotes,
-                timedNotes,
-                summary,
-                response.getPositive(), // Overall session positive
-                response.getNeutral(),  // Overall session neutral
-                response.getNegative(), // Overall session negative
-                transcriptEntries
-        );
-    }
 }
\ No newline at end of file
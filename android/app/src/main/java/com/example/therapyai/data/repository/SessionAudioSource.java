@@ -0,0 +1,121 @@
+package com.example.therapyai.data.repository;
+
+import android.util.Log;
+
+import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.AudioFormatUtil;
+import com.example.therapyai.util.SegmentDecryptionPipeline;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Random-access view of the logical upload stream: the decrypted segments, wrapped for WAV
+ * sessions by {@link AudioFormatUtil#openWavStreamKnownSize} (FLAC sessions are sent as-is), so
+ * the header and the length check are the ones the one-pass WAV mode uses. Sequential reads are served by a
+ * {@link SegmentDecryptionPipeline}, so the next segments are decrypted while the current chunk
+ * is on the network. A seek (after a resume or resync) restarts the pipeline at the segment that
+ * holds the offset; only the chunk (container) or segment (legacy) up to it is decrypted again.
+ */
+final class SessionAudioSource implements Closeable {
+    private static final String TAG = "SessionAudioSource";
+
+    private final List<File> segmentFiles;
+    private final long[] segmentLengths;
+    private final SecretKey dek;
+    private final AudioFormatUtil.CaptureProfile wavProfile; // Null when no header is added
+    private final int headerLength;
+    private final long pcmSize;
+
+    private long position = -1;
+    private int startSegment = 0;         // Where the next pipeline starts
+    private long startSegmentOffset = 0;
+    private SegmentDecryptionPipeline pipeline;
+    private InputStream stream;
+
+    SessionAudioSource(List<File> segmentFiles, long[] segmentLengths, SecretKey dek,
+                       AudioFormatUtil.AudioEncoding encoding, AudioFormatUtil.CaptureProfile profile) {
+        this.segmentFiles = segmentFiles;
+        this.segmentLengths = segmentLengths;
+        this.dek = dek;
+        this.wavProfile = encoding.needsWavHeader() ? profile : null;
+        this.headerLength = encoding.needsWavHeader() ? AudioFormatUtil.WAV_HEADER_SIZE : 0;
+        long total = 0;
+        for (long length : segmentLengths) {
+            total += length;
+        }
+        this.pcmSize = total;
+    }
+
+    void readFully(long offset, byte[] dst, int length) throws Exception {
+        if (offset != position) {
+            seek(offset);
+        }
+        int filled = 0;
+        while (filled < length) {
+            int read = uploadStream().read(dst, filled, length - filled);
+            if (read == -1) {
+                throw new EOFException("Upload stream ended at offset " + position);
+            }
+            filled += read;
+            position += read;
+        }
+    }
+
+    private void seek(long offset) throws EOFException {
+        closePipeline();
+        position = offset;
+        startSegment = 0;
+        startSegmentOffset = 0;
+        if (offset <= headerLength) {
+            return;
+        }
+        long segmentStart = headerLength;
+        while (startSegment < segmentFiles.size() && offset >= segmentStart + segmentLengths[startSegment]) {
+            segmentStart += segmentLengths[startSegment];
+            startSegment++;
+        }
+        if (startSegment >= segmentFiles.size()) {
+            throw new EOFException("Offset " + offset + " is beyond the end of the recording");
+        }
+        startSegmentOffset = offset - segmentStart;
+    }
+
+    private InputStream uploadStream() throws IOException {
+        if (stream == null) {
+            final int first = startSegment;
+            final long firstOffset = startSegmentOffset;
+            Log.d(TAG, "Decrypting from segment " + first + " at " + firstOffset + " of " + segmentFiles.size());
+            // Container segments start at the chunk holding the offset; legacy ones decrypt up to it.
+            pipeline = new SegmentDecryptionPipeline(segmentFiles.size() - first,
+                    i -> AESUtil.createDecryptingInputStream(segmentFiles.get(first + i), dek, i == 0 ? firstOffset : 0),
+                    SegmentDecryptionPipeline.DEFAULT_WORKERS,
+                    SegmentDecryptionPipeline.DEFAULT_BUFFERS_PER_WORKER,
+                    SegmentDecryptionPipeline.DEFAULT_BUFFER_SIZE);
+            InputStream decrypted = pipeline.openStream();
+            stream = wavProfile != null
+                    ? AudioFormatUtil.openWavStreamKnownSize(decrypted, pcmSize, wavProfile, position)
+                    : decrypted;
+        }
+        return stream;
+    }
+
+    private void closePipeline() {
+        if (pipeline != null) {
+            pipeline.close(); // Stops the workers and clears their buffers
+            pipeline = null;
+            stream = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closePipeline();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.therapyai.data.repository;
+
+import android.util.Log;
+
+import com.example.therapyai.data.local.models.SessionSummary;
+
+import java.util.List;
+
+/**
+ * Loads a session history a page at a time, newest first, so a long-term patient's profile
+ * opens after one small request instead of the whole history.
+ *
+ * <ul>
+ *   <li>Prefetch: the next page is requested once the list is scrolled to within
+ *       {@link #PREFETCH_DISTANCE} items of the end, see {@link #onLastVisiblePosition(int)}.</li>
+ *   <li>One request at a time; a failed page is retried on a later scroll, no sooner than
+ *       {@link #RETRY_DELAY_MS}.</li>
+ *   <li>The first page may arrive twice (cached copy, then the server's if it changed). Each
+ *       arrival replaces what was loaded, and a next page requested before it is dropped.</li>
+ * </ul>
+ *
+ * Main thread only; listener calls arrive on the main thread.
+ */
+public class SessionHistoryPager {
+    private static final String TAG = "SessionHistoryPager";
+
+    public static final int PAGE_SIZE = 20;
+    public static final int PREFETCH_DISTANCE = 5;
+    private static final long RETRY_DELAY_MS = 5_000;
+
+    public interface PageSource {
+        void loadPage(String cursor, int pageSize, SearchRepository.SessionPageCallback callback);
+    }
+
+    public interface Listener {
+        /**
+         * The first page; replaces anything shown before.
+         */
+        void onFirstPage(List<SessionSummary> sessions, boolean hasMore);
+
+        /**
+         * A following page, to be appended. May be empty when it is the last one.
+         */
+        void onNextPage(List<SessionSummary> sessions, boolean hasMore);
+
+        void onError(String error, boolean firstPage);
+    }
+
+    private final MainThreadScheduler mainThread;
+    private final PageSource source;
+    private final Listener listener;
+
+    private int loadedCount;
+    private String nextCursor;
+    private boolean loading;
+    private long retryNotBefore;
+    private long loadGeneration; // Bumped by loadFirstPage and cancel, so stale callbacks are ignored
+    private long pageGeneration; // Bumped on each first page, so next pages asked for before it are dropped
+
+    public SessionHistoryPager(PageSource source, Listener listener) {
+        this(source, listener, MainThreadScheduler.mainLooper());
+    }
+
+    SessionHistoryPager(PageSource source, Listener listener, MainThreadScheduler mainThread) {
+        this.mainThread = mainThread;
+        this.source = source;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts over from the newest session.
+     */
+    public void loadFirstPage() {
+        final long generation = ++loadGeneration;
+        loadedCount = 0;
+        nextCursor = null;
+        retryNotBefore = 0;
+        loading = true;
+        source.loadPage(null, PAGE_SIZE, new SearchRepository.SessionPageCallback() {
+            @Override
+            public void onPageLoaded(List<SessionSummary> sessionSummaries, String cursor) {
+                mainThread.post(() -> {
+                    if (generation != loadGeneration) return;
+                    pageGeneration++;
+                    loading = false;
+                    loadedCount = sessionSummaries.size();
+                    nextCursor = cursor;
+                    listener.onFirstPage(sessionSummaries, hasMore());
+                    if (sessionSummaries.isEmpty() && hasMore()) {
+                        loadNextPage(); // Nothing to scroll, so nothing would ask for it
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                mainThread.post(() -> {
+                    if (generation != loadGeneration) return;
+                    loading = false;
+                    listener.onError(error, true);
+                });
+            }
+        });
+    }
+
+    /**
+     * Call as the list scrolls; loads the next page when {@code position} is near the end.
+     */
+    public void onLastVisiblePosition(int position) {
+        if (loading || !hasMore() || position < loadedCount - 1 - PREFETCH_DISTANCE) return;
+        if (mainThread.now() < retryNotBefore) return;
+        loadNextPage();
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Drops the pending request; nothing more is delivered until {@link #loadFirstPage()}.
+     */
+    public void cancel() {
+        loadGeneration++;
+        loading = false;
+    }
+
+    private void loadNextPage() {
+        final long generation = loadGeneration;
+        final long page = pageGeneration;
+        loading = true;
+        Log.d(TAG, "Loading next page after " + loadedCount + " sessions.");
+        source.loadPage(nextCursor, PAGE_SIZE, new SearchRepository.SessionPageCallback() {
+            @Override
+            public void onPageLoaded(List<SessionSummary> sessionSummaries, String cursor) {
+                mainThread.post(() -> {
+                    if (generation != loadGeneration || page != pageGeneration) return;
+                    loading = false;
+                    loadedCount += sessionSummaries.size();
+                    nextCursor = cursor;
+                    listener.onNextPage(sessionSummaries, hasMore());
+                    if (sessionSummaries.isEmpty() && hasMore()) {
+                        loadNextPage();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                mainThread.post(() -> {
+                    if (generation != loadGeneration || page != pageGeneration) return;
+                    loading = false;
+                    retryNotBefore = mainThread.now() + RETRY_DELAY_MS;
+                    listener.onError(error, false);
+                });
+            }
+        });
+    }
+}
@@ -12,30 +12,51 @@ import android.widget.TextView;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.therapyai.R;
 import com.example.therapyai.data.local.models.SentimentScore;
 import com.example.therapyai.data.local.models.TimedNote;
 import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.util.TranscriptNoteIndex;
 
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Locale;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 
 public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscriptAdapter.TranscriptViewHolder> {
 
-    private List<FinalTranscriptEntry> transcriptEntries = new ArrayList<>();
-    private List<TimedNote> timedNotes = new ArrayList<>();
-    private final Map<FinalTranscriptEntry, List<TimedNote>> entryToNotesMap = new HashMap<>();
+    private static final String TAG = "FinalTranscriptAdapter";
+    private static final Executor BUILD_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static final DiffUtil.ItemCallback<Row> DIFF_CALLBACK = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row oldRow, @NonNull Row newRow) {
+            return oldRow.entry == newRow.entry
+                    || (Objects.equals(oldRow.entry.getSpeaker(), newRow.entry.getSpeaker())
+                    && Objects.equals(oldRow.entry.getTimestamp(), newRow.entry.getTimestamp()));
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Row oldRow, @NonNull Row newRow) {
+            return Objects.equals(oldRow.entry.getText(), newRow.entry.getText())
+                    && Objects.equals(oldRow.entry.getSentimentScore(), newRow.entry.getSentimentScore())
+                    && Objects.equals(oldRow.notes, newRow.notes);
+        }
+    };
+
+    private final AsyncListDiffer<Row> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final Context context;
     private OnTranscriptItemClickListener listener; // Listener not currently used but kept
 
@@ -99,6 +120,16 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
 
 
     public void setData(List<FinalTranscriptEntry> entries, List<TimedNote> notes) {
+        setData(entries, notes, null);
+    }
+
+    /**
+     * Shows {@code entries} with {@code notes} attached, once the note index (built here) and the
+     * diff against the displayed transcript (by the {@link AsyncListDiffer}) have been computed
+     * off the main thread. {@code onApplied} runs on the main thread after the adapter has been
+     * updated; neither happens if a newer call arrives first.
+     */
+    public void setData(List<FinalTranscriptEntry> entries, List<TimedNote> notes, Runnable onApplied) {
         int oldHighlight = highlightedPosition;
         if (clearHighlightRunnable != null) {
             highlightHandler.removeCallbacks(clearHighlightRunnable);
@@ -109,57 +140,22 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
             notifyItemChanged(oldHighlight, "CLEAR_HIGHLIGHT");
         }
 
-        this.transcriptEntries = (entries != null) ? new ArrayList<>(entries) : new ArrayList<>();
-        List<TimedNote> timedNotes = (notes != null) ? new ArrayList<>(notes) : new ArrayList<>();
-        entryToNotesMap.clear();
-
-        // If there are no entries or notes, just update the UI and return.
-        if (this.transcriptEntries.isEmpty() || timedNotes.isEmpty()) {
-            notifyDataSetChanged();
-            return;
-        }
+        List<FinalTranscriptEntry> newEntries = (entries != null) ? new ArrayList<>(entries) : new ArrayList<>();
+        List<TimedNote> newNoteList = (notes != null) ? new ArrayList<>(notes) : new ArrayList<>();
 
-        // Filter to get only patient entries, as they are the only ones notes can be attached to.
-        List<FinalTranscriptEntry> patientEntries = this.transcriptEntries.stream()
-                .filter(e -> "Patient".equalsIgnoreCase(e.getSpeaker()))
-                .collect(Collectors.toList());
-
-        if (patientEntries.isEmpty()) {
-            notifyDataSetChanged(); // No patient entries to attach notes to.
-            return;
-        }
-
-        // For each note, find the correct patient entry to attach it to.
-        for (TimedNote note : timedNotes) {
-            float noteTime = parseTimeToSeconds(note.getTime());
-            if (noteTime < 0) continue; // Skip notes with invalid timestamps.
-
-            FinalTranscriptEntry bestMatchEntry = null;
-            float bestMatchTime = -1f;
-
-            // Find the patient entry with the latest timestamp that is less than or equal to the note's time.
-            for (FinalTranscriptEntry patientEntry : patientEntries) {
-                float entryTime = parseTimeToSeconds(patientEntry.getTimestamp());
-                if (entryTime >= 0 && entryTime <= noteTime) {
-                    if (entryTime > bestMatchTime) {
-                        bestMatchTime = entryTime;
-                        bestMatchEntry = patientEntry;
-                    }
-                }
-            }
-
-            // If a suitable entry was found, associate the note with it.
-            if (bestMatchEntry != null) {
-                entryToNotesMap.computeIfAbsent(bestMatchEntry, k -> new ArrayList<>()).add(note);
+        BUILD_EXECUTOR.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<List<TimedNote>> newNotes = TranscriptNoteIndex.attachNotes(newEntries, newNoteList);
+            List<Row> rows = new ArrayList<>(newEntries.size());
+            for (int i = 0; i < newEntries.size(); i++) {
+                rows.add(new Row(newEntries.get(i), newNotes.get(i)));
             }
-        }
-
-        // (Optional) Sort notes within each entry's list by time for consistent display order.
-        for (List<TimedNote> noteList : entryToNotesMap.values()) {
-            noteList.sort(Comparator.comparing(n -> parseTimeToSeconds(n.getTime())));
-        }
-
-        notifyDataSetChanged();
+            Log.d(TAG, "Built transcript of " + newEntries.size() + " entries with " + newNoteList.size()
+                    + " notes in " + (SystemClock.elapsedRealtime() - start) + " ms.");
+            // Builds finish in call order, so the differ sees lists in call order and drops
+            // (without running onApplied) any that a later one overtakes.
+            mainHandler.post(() -> differ.submitList(rows, onApplied));
+        });
     }
 
     @NonNull
@@ -173,10 +169,9 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
     @Override
     public void onBindViewHolder(@NonNull TranscriptViewHolder holder,
                                  int position) {
-        FinalTranscriptEntry entry = transcriptEntries.get(position);
-        List<TimedNote> relevantNotes = entryToNotesMap.get(entry);
+        Row row = differ.getCurrentList().get(position);
         boolean shouldHighlight = (position == highlightedPosition);
-        holder.bind(entry, relevantNotes, listener, shouldHighlight,
+        holder.bind(row.entry, row.notes, listener, shouldHighlight,
                 therapistColor, patientColor, positiveSentimentColor, neutralSentimentColor, negativeSentimentColor, mixedSentimentColor, defaultSpeakerColor);
     }
 
@@ -207,7 +202,7 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
 
     @Override
     public int getItemCount() {
-        return transcriptEntries.size();
+        return differ.getCurrentList().size();
     }
 
 //    private List<TimedNote> findNotesForEntry(FinalTranscriptEntry entry) {
@@ -231,27 +226,6 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
 //                .collect(Collectors.toList());
 //    }
 
-    private float parseTimeToSeconds(String timeStr) {
-        try {
-            if (timeStr == null || timeStr.isEmpty()) return -1f;
-            // Handle formats: HH:mm:ss.SSS, mm:ss.SSS, ss.SSS
-            String[] parts = timeStr.split(":");
-            if (parts.length == 3) { // HH:mm:ss.SSS or HH:mm:ss
-                return Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60 + Float.parseFloat(parts[2]);
-            } else if (parts.length == 2) { // mm:ss.SSS or mm:ss
-                return Integer.parseInt(parts[0]) * 60 + Float.parseFloat(parts[1]);
-            } else if (parts.length == 1) { // ss.SSS or ss
-                return Float.parseFloat(parts[0]);
-            } else {
-                return -1f;
-            }
-        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-            Log.w("FinalTranscriptAdapter", "Failed to parse time: " + timeStr, e);
-            return -1f;
-        }
-    }
-
-
     public void setHighlightPosition(int position) {
         if (position < 0 || position >= getItemCount()) {
             // If out of bounds, effectively clear highlight.
@@ -296,6 +270,17 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
     }
 
 
+    /** A transcript entry with the timed notes attached to it. */
+    private static final class Row {
+        final FinalTranscriptEntry entry;
+        final List<TimedNote> notes;
+
+        Row(FinalTranscriptEntry entry, List<TimedNote> notes) {
+            this.entry = entry;
+            this.notes = notes;
+        }
+    }
+
     static class TranscriptViewHolder extends RecyclerView.ViewHolder {
         TextView tvSpeakerLabel, tvSpeakerTime, tvSpeakerSentence;
         LinearLayout timedNotesContainer;
@@ -375,26 +360,8 @@ public class FinalTranscriptAdapter extends RecyclerView.Adapter<FinalTranscript
             }
         }
 
-        private float parseTimeToSeconds(String timeStr) { // Duplicated from adapter, consider utility class
-            try {
-                if (timeStr == null || timeStr.isEmpty()) return -1f;
-                String[] parts = timeStr.split(":");
-                if (parts.length == 3) {
-                    return Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60 + Float.parseFloat(parts[2]);
-                } else if (parts.length == 2) {
-                    return Integer.parseInt(parts[0]) * 60 + Float.parseFloat(parts[1]);
-                } else if (parts.length == 1) {
-                    return Float.parseFloat(parts[0]);
-                } else {
-                    return -1f;
-                }
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                return -1f;
-            }
-        }
-
         private String formatTime(String timeStr) {
-            float seconds = parseTimeToSeconds(timeStr);
+            float seconds = TranscriptNoteIndex.parseTimeToSeconds(timeStr);
             if (seconds < 0) return (timeStr != null && !timeStr.isEmpty()) ? timeStr : "--:--"; // Show original if parsing failed but not empty
             int minutes = (int) (seconds / 60);
             int secsPart = (int) (seconds % 60);
@@ -49,7 +49,7 @@ public class ProfileSessionAdapter extends RecyclerView.Adapter<ProfileSessionAd
     }
 
     public void setData(List<SessionSummary> scores) {
-        this.sessionScores = (scores != null) ? scores : new ArrayList<>();
+        this.sessionScores = (scores != null) ? new ArrayList<>(scores) : new ArrayList<>(); // Own copy, appendData grows it
 
         int oldHighlight = highlightedPosition;
         if (clearHighlightRunnable != null) {
@@ -61,6 +61,16 @@ public class ProfileSessionAdapter extends RecyclerView.Adapter<ProfileSessionAd
         notifyDataSetChanged(); // Refresh the whole list
     }
 
+    /**
+     * Adds a further page of sessions at the end without rebinding the rows already shown.
+     */
+    public void appendData(List<SessionSummary> moreScores) {
+        if (moreScores == null || moreScores.isEmpty()) return;
+        int start = sessionScores.size();
+        sessionScores.addAll(moreScores);
+        notifyItemRangeInserted(start, moreScores.size());
+    }
+
     public void setHighlightPosition(int position) {
         if (position < 0 || position >= getItemCount()) {
             position = RecyclerView.NO_POSITION;
@@ -16,18 +16,86 @@ import android.widget.TextView;
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.therapyai.R;
 import com.example.therapyai.data.local.models.CardItem;
+import com.example.therapyai.data.local.models.CardMove;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Card list whose {@link AsyncListDiffer} diffs every new list (from Room or a search) against
+ * the displayed one on a background thread and rebinds only the changed rows. Drags and swipes
+ * edit the displayed list directly and notify synchronously, as ItemTouchHelper requires; the
+ * edited list is handed to the differ silently (see {@link #replaceDisplayed}), which also
+ * supersedes any diff still in flight.
+ */
 public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.CardViewHolder> {
-    private List<CardItem> cardItems = new ArrayList<>();
+    private static final String PAYLOAD_SELECTION_CHANGED = "PAYLOAD_SELECTION_CHANGED";
+    private static final String PAYLOAD_EDIT_MODE_CHANGED = "PAYLOAD_EDIT_MODE_CHANGED";
+
+    private static final DiffUtil.ItemCallback<CardItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<CardItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CardItem oldItem, @NonNull CardItem newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CardItem oldItem, @NonNull CardItem newItem) {
+            // Position only orders the list; a move is dispatched without rebinding the row.
+            return oldItem.isSelected() == newItem.isSelected()
+                    && Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && Objects.equals(oldItem.getType(), newItem.getType())
+                    && Objects.equals(oldItem.getSessionNotes(), newItem.getSessionNotes())
+                    && Objects.equals(oldItem.getCategories(), newItem.getCategories());
+        }
+    };
+
+    private final ListUpdateCallback adapterUpdates = new AdapterListUpdateCallback(this);
+    // Set while a direct edit is handed to the differ; the caller has already notified it
+    private boolean installingEdit = false;
+    private final AsyncListDiffer<CardItem> differ = new AsyncListDiffer<>(new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            if (!installingEdit) adapterUpdates.onInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (!installingEdit) adapterUpdates.onRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            if (!installingEdit) adapterUpdates.onMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            if (!installingEdit) adapterUpdates.onChanged(position, count, payload);
+        }
+    }, new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
+
     private List<CardItem> allCardItems = new ArrayList<>();
+    @Nullable
+    private List<CardItem> searchResults = null;
+    // While a drag is active or its move is unwritten, lists from Room are stale; keep the latest.
+    private boolean holdingUpdates = false;
+    @Nullable
+    private List<CardItem> heldItems = null;
+    // Set by applyMove while holding; the held lists may predate the write
+    private boolean movedWhileHolding = false;
     private Context context;
     private boolean isEditMode = false;
 
@@ -64,11 +132,11 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull CardViewHolder holder, int position) {
-        if (position < 0 || position >= cardItems.size()) {
+        if (position < 0 || position >= getItemCount()) {
             Log.e("SessionCardAdapter", "Invalid position in onBindViewHolder: " + position);
             return; // Avoid crash
         }        
-        CardItem item = cardItems.get(position);
+        CardItem item = getItem(position);
 
         // Set basic content
         holder.titleTextView.setText(item.getTitle());
@@ -84,17 +152,10 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
         }
 
         // Configure visibility based on edit mode
-        holder.dragHandle.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
-        holder.editButton.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
-        holder.deleteButton.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
-        holder.checkBox.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
+        bindEditMode(holder);
 
         TypedValue typedValue = new TypedValue();
         Resources.Theme theme = context.getTheme();
-        theme.resolveAttribute(R.attr.colorPrimaryBackground, typedValue, true);
-        @ColorInt int colorPriBackground = typedValue.data;
-        theme.resolveAttribute(R.attr.colorSecondaryBackground, typedValue, true);
-        @ColorInt int colorSecBackground = typedValue.data;
         theme.resolveAttribute(R.attr.colorOnPrimaryBackground, typedValue, true);
         @ColorInt int colorOnPrimaryBackground = typedValue.data;
 
@@ -110,15 +171,13 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
         }
 
         // Set selection state
-        holder.checkBox.setChecked(item.isSelected());
-        holder.itemView.setBackgroundColor(item.isSelected() && isEditMode ?
-                colorSecBackground : colorPriBackground);
+        bindSelection(holder, item);
 
         // Set click listeners
         holder.itemView.setOnClickListener(v -> {
             int currentPosition = holder.getBindingAdapterPosition();
             if (listener != null && currentPosition != RecyclerView.NO_POSITION) {
-                listener.onCardClick(currentPosition, cardItems.get(currentPosition));
+                listener.onCardClick(currentPosition, getItem(currentPosition));
             }
         });
 
@@ -130,7 +189,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
                     toggleSelection(currentPosition);
                 } else {
                     // Or maybe treat it like a normal click if not in edit mode?
-                    listener.onCardClick(currentPosition, cardItems.get(currentPosition));
+                    listener.onCardClick(currentPosition, getItem(currentPosition));
                 }
             }
         });
@@ -138,7 +197,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
         holder.itemView.setOnLongClickListener(v -> {
             int currentPosition = holder.getBindingAdapterPosition();
             if (listener != null && currentPosition != RecyclerView.NO_POSITION) {
-                listener.onCardLongClick(currentPosition, cardItems.get(currentPosition));
+                listener.onCardLongClick(currentPosition, getItem(currentPosition));
                 return true; // Consume long click
             }
             return false;
@@ -154,22 +213,37 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
         holder.editButton.setOnClickListener(v -> {
             int currentPosition = holder.getBindingAdapterPosition();
             if (listener != null && currentPosition != RecyclerView.NO_POSITION) {
-                listener.onEditClick(currentPosition, cardItems.get(currentPosition));
+                listener.onEditClick(currentPosition, getItem(currentPosition));
             }
         });
 
         holder.deleteButton.setOnClickListener(v -> {
             int currentPosition = holder.getBindingAdapterPosition();
             if (listener != null && currentPosition != RecyclerView.NO_POSITION) {
-                listener.onDeleteClick(currentPosition, cardItems.get(currentPosition));
+                listener.onDeleteClick(currentPosition, getItem(currentPosition));
             }
         });
     }
 
-    @Override
-    public int getItemCount() {
-        return cardItems.size();
+    private void bindEditMode(@NonNull CardViewHolder holder) {
+        holder.dragHandle.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
+        holder.editButton.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
+        holder.deleteButton.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
+        holder.checkBox.setVisibility(isEditMode ? View.VISIBLE : View.GONE);
+    }
+
+    private void bindSelection(@NonNull CardViewHolder holder, @NonNull CardItem item) {
+        TypedValue typedValue = new TypedValue();
+        Resources.Theme theme = context.getTheme();
+        theme.resolveAttribute(R.attr.colorPrimaryBackground, typedValue, true);
+        @ColorInt int colorPriBackground = typedValue.data;
+        theme.resolveAttribute(R.attr.colorSecondaryBackground, typedValue, true);
+        @ColorInt int colorSecBackground = typedValue.data;
+        holder.checkBox.setChecked(item.isSelected());
+        holder.itemView.setBackgroundColor(item.isSelected() && isEditMode ?
+                colorSecBackground : colorPriBackground);
     }
+
     public boolean isEditMode() {
         return isEditMode;
     }
@@ -187,26 +261,29 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
             // Clear selections when exiting edit mode
             clearSelectionsInternal();
         }
-        notifyDataSetChanged(); // Update visibility of checkboxes, buttons etc.
+        // Only the edit controls and selection change; rows keep their content
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_EDIT_MODE_CHANGED);
     }
 
 
     /**
      * Sets the complete list of items received from the ViewModel.
-     * Updates both the master list and the currently displayed list.
+     * Updates the master list and, unless search results are showing, displays it; the diff
+     * against the displayed list runs off the main thread.
      * @param newItems The new list of items.
      */
     public void setItems(List<CardItem> newItems) {
+        if (holdingUpdates) {
+            heldItems = newItems != null ? newItems : new ArrayList<>();
+            Log.d("SessionCardAdapter", "setItems held until the pending drag is written.");
+            return;
+        }
         // Store the full list from the source
-        this.allCardItems.clear();
-        this.allCardItems.addAll(newItems != null ? newItems : new ArrayList<>());
-
-        // Initially display the full list (filtering happens separately if needed)
-        this.cardItems.clear();
-        this.cardItems.addAll(this.allCardItems);
-
-        Log.d("SessionCardAdapter", "setItems called. allCardItems: " + allCardItems.size() + ", cardItems: " + cardItems.size());
-        notifyDataSetChanged(); // Refresh the entire view
+        this.allCardItems = new ArrayList<>(newItems != null ? newItems : new ArrayList<>());
+        Log.d("SessionCardAdapter", "setItems called. allCardItems: " + allCardItems.size());
+        if (searchResults == null) {
+            submitList(new ArrayList<>(allCardItems));
+        }
     }
 
     /**
@@ -215,10 +292,10 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
      * @param position The adapter position of the item to toggle.
      */
     public void toggleSelection(int position) {
-        if (isEditMode && position >= 0 && position < cardItems.size()) {
-            CardItem item = cardItems.get(position);
+        if (isEditMode && position >= 0 && position < getItemCount()) {
+            CardItem item = getItem(position);
             item.setSelected(!item.isSelected());
-            notifyItemChanged(position, "PAYLOAD_SELECTION_CHANGED");
+            notifyItemChanged(position, PAYLOAD_SELECTION_CHANGED);
         }
     }
 
@@ -228,9 +305,9 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
      * @param position The adapter position of the item to select.
      */
     public void selectItem(int position) {
-        if (position >= 0 && position < cardItems.size()) {
-            cardItems.get(position).setSelected(true);
-            notifyItemChanged(position, "PAYLOAD_SELECTION_CHANGED");
+        if (position >= 0 && position < getItemCount()) {
+            getItem(position).setSelected(true);
+            notifyItemChanged(position, PAYLOAD_SELECTION_CHANGED);
         }
     }
 
@@ -240,7 +317,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
      */
     public List<CardItem> getSelectedItems() {
         List<CardItem> selectedItems = new ArrayList<>();
-        for (CardItem item : cardItems) { // Check only currently displayed items
+        for (CardItem item : getCurrentList()) { // Check only currently displayed items
             if (item.isSelected()) {
                 selectedItems.add(item);
             }
@@ -253,7 +330,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
      * @return True if at least one item is selected, false otherwise.
      */
     public boolean hasSelectedItems() {
-        for (CardItem item : cardItems) {
+        for (CardItem item : getCurrentList()) {
             if (item.isSelected()) {
                 return true;
             }
@@ -262,12 +339,20 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
     }
 
     public void removeSelectedItems() {
-        for (int i = cardItems.size() - 1; i >= 0; i--) {
-            if (cardItems.get(i).isSelected()) {
-                cardItems.remove(i);
-                notifyItemRemoved(i);
+        List<CardItem> remaining = new ArrayList<>(getCurrentList());
+        allCardItems.removeIf(CardItem::isSelected);
+        if (searchResults != null) searchResults.removeIf(CardItem::isSelected);
+        List<Integer> removed = new ArrayList<>();
+        for (int i = remaining.size() - 1; i >= 0; i--) {
+            if (remaining.get(i).isSelected()) {
+                remaining.remove(i);
+                removed.add(i);
             }
         }
+        replaceDisplayed(remaining);
+        for (int index : removed) { // Descending, so earlier indices stay valid
+            notifyItemRemoved(index);
+        }
     }
 
     /**
@@ -276,7 +361,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
     private void clearSelectionsInternal() {
 //        boolean changed = false;
         // Clear selection in the currently displayed list
-        for (CardItem item : cardItems) {
+        for (CardItem item : getCurrentList()) {
             if (item.isSelected()) {
                 item.setSelected(false);
 //                changed = true;
@@ -300,33 +385,56 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
 //    }
 
     /**
-     * Swaps items at two positions within the adapter's *display* list.
-     * This is for the UI effect of dragging. Persistence is handled separately.
+     * The stored position a card dragged from {@code fromIndex} to {@code toIndex} should take:
+     * that of the neighbour it was dropped next to. Works when only a category or search subset
+     * is displayed, since hidden cards in between shift along with the visible ones.
+     * Call after the drag's swaps, before {@link #applyMove}.
+     */
+    public int dropPosition(int fromIndex, int toIndex) {
+        List<CardItem> displayed = getCurrentList();
+        CardItem neighbour = displayed.get(toIndex > fromIndex ? toIndex - 1 : toIndex + 1);
+        return neighbour.getPosition();
+    }
+
+    /**
+     * Applies a move to the stored positions of the loaded cards, matching what the database
+     * will hold once the move is written, so a second drag before Room re-emits computes the
+     * right positions.
+     */
+    public void applyMove(CardMove move) {
+        if (holdingUpdates) movedWhileHolding = true;
+        for (CardItem item : allCardItems) {
+            item.setPosition(move.apply(item.getId(), item.getPosition()));
+        }
+        if (searchResults != null) {
+            for (CardItem item : searchResults) {
+                if (!allCardItems.contains(item)) {
+                    item.setPosition(move.apply(item.getId(), item.getPosition()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves an item within the adapter's *display* list and notifies the move synchronously, as
+     * ItemTouchHelper.onMove requires. Persistence is handled separately.
      * @param fromPosition Starting position.
      * @param toPosition Ending position.
      */
     public void swapItems(int fromPosition, int toPosition) {
-        if (fromPosition >= 0 && fromPosition < cardItems.size() &&
-                toPosition >= 0 && toPosition < cardItems.size())
+        int count = getItemCount();
+        if (fromPosition >= 0 && fromPosition < count &&
+                toPosition >= 0 && toPosition < count)
         {
             if (fromPosition == toPosition) return;
-            Collections.swap(cardItems, fromPosition, toPosition);
+            List<CardItem> reordered = new ArrayList<>(getCurrentList());
+            // Remove and insert rather than swap: that is what notifyItemMoved describes, and
+            // the two only agree when ItemTouchHelper reports adjacent positions.
+            reordered.add(toPosition, reordered.remove(fromPosition));
+            replaceDisplayed(reordered);
+            // Stored positions are left alone until the drop; see applyMove.
             notifyItemMoved(fromPosition, toPosition);
 
-            // Update positions *within the adapter's current view* after move.
-            // This helps if the fragment reads positions immediately after a move
-            // before the DB update happens. Recalculate based on index.
-            // Note: This doesn't persist the order, clearView in ItemTouchHelper does.
-            int start = Math.min(fromPosition, toPosition);
-            int end = Math.max(fromPosition, toPosition);
-            for(int i = start; i <= end; i++) {
-                if (i < cardItems.size()) { // Boundary check
-                     cardItems.get(i).setPosition(i);
-                }
-            }
-            // Trigger update for the moved items to potentially redraw if needed
-             notifyItemRangeChanged(start, end - start + 1, "PAYLOAD_POSITION_CHANGED"); // Optional payload
-
         } else {
             Log.w("SessionCardAdapter", "Invalid positions for swap: " + fromPosition + ", " + toPosition);
         }
@@ -347,28 +455,24 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
 //    }
 
     /**
-     * Filters the displayed list based on a text query in title or description.
-     * Uses the 'allCardItems' list as the source.
-     * @param query The text to search for (case-insensitive). Null or empty shows all.
+     * Shows search results (from the full-text index) in place of the full list until
+     * {@link #clearSearchResults()} is called. Results must come from the current master list's
+     * source so selection and drag state stay consistent.
      */
-    public void filter(String query) {
-        String lowerCaseQuery = (query == null) ? "" : query.toLowerCase().trim();
-        List<CardItem> filteredList = new ArrayList<>();
+    public void showSearchResults(List<CardItem> results) {
+        searchResults = new ArrayList<>(results != null ? results : new ArrayList<>());
+        Log.d("SessionCardAdapter", "Showing search results: " + searchResults.size());
+        submitList(new ArrayList<>(searchResults)); // Only rows entering or leaving the result are touched
+    }
 
-        if (lowerCaseQuery.isEmpty()) {
-            filteredList.addAll(allCardItems); // Show all from master list
-        } else {
-            for (CardItem item : allCardItems) { // Filter from master list
-                if ((item.getTitle() != null && item.getTitle().toLowerCase().contains(lowerCaseQuery)) ||
-                        (item.getDescription() != null && item.getDescription().toLowerCase().contains(lowerCaseQuery))) {
-                    filteredList.add(item);
-                }
-            }
-        }
-        cardItems.clear();
-        cardItems.addAll(filteredList);
-        Log.d("SessionCardAdapter", "Filtered. Query: '" + query + "', Displaying: " + cardItems.size());
-        notifyDataSetChanged(); // Refresh UI with filtered list
+    public void clearSearchResults() {
+        if (searchResults == null) return;
+        searchResults = null;
+        submitList(new ArrayList<>(allCardItems));
+    }
+
+    public boolean isShowingSearchResults() {
+        return searchResults != null;
     }
 
     public void filterCategory(String category) {
@@ -384,9 +488,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
                 }
             }
         }
-        cardItems.clear();
-        cardItems.addAll(filteredList);
-        notifyDataSetChanged();
+        submitList(filteredList);
     }
 
     /**
@@ -396,7 +498,7 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
      */
     @Nullable
     public CardItem getItemAt(int position) {
-        return (position >= 0 && position < cardItems.size()) ? cardItems.get(position) : null;
+        return (position >= 0 && position < getItemCount()) ? getItem(position) : null;
     }
 
     /**
@@ -404,27 +506,102 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
      * @return A new list containing the currently displayed items.
      */
     public List<CardItem> getCurrentItems() {
-        return new ArrayList<>(cardItems); // Return a copy
+        return new ArrayList<>(getCurrentList()); // Return a copy
     }
 
     public void addItem(CardItem item) {
         allCardItems.add(item);
-        cardItems.add(item);
-        notifyItemInserted(cardItems.size() - 1);
+        List<CardItem> updated = new ArrayList<>(getCurrentList());
+        updated.add(item);
+        replaceDisplayed(updated);
+        notifyItemInserted(updated.size() - 1);
     }
 
     public void removeItem(int position) {
-        if (position < cardItems.size()) {
-            CardItem item = cardItems.get(position);
+        if (position >= 0 && position < getItemCount()) {
+            CardItem item = getItem(position);
             allCardItems.remove(item);
-            cardItems.remove(position);
+            if (searchResults != null) searchResults.remove(item);
+            List<CardItem> updated = new ArrayList<>(getCurrentList());
+            updated.remove(position);
+            replaceDisplayed(updated);
             notifyItemRemoved(position);
         }
     }
 
+    @Override
+    public int getItemCount() {
+        return getCurrentList().size();
+    }
 
     public CardItem getItem(int position) {
-        return position < cardItems.size() ? cardItems.get(position) : null;
+        return position >= 0 && position < getItemCount() ? getCurrentList().get(position) : null;
+    }
+
+    private List<CardItem> getCurrentList() {
+        return differ.getCurrentList();
+    }
+
+    /**
+     * Shows {@code newList} once its diff against the displayed list has been computed off the
+     * main thread. Dropped if a newer list or a direct edit arrives first.
+     */
+    private void submitList(List<CardItem> newList) {
+        differ.submitList(new ArrayList<>(newList));
+    }
+
+    /**
+     * Installs a directly edited list; the caller notifies the matching change. Clearing and
+     * resubmitting are both synchronous in the differ, and its notifications are swallowed, so
+     * the next diff starts from the list the RecyclerView actually shows.
+     */
+    private void replaceDisplayed(List<CardItem> edited) {
+        installingEdit = true;
+        try {
+            differ.submitList(null);
+            differ.submitList(edited);
+        } finally {
+            installingEdit = false;
+        }
+    }
+
+    /**
+     * Holds lists from {@link #setItems} while a drag is in progress or its move has not been
+     * written yet; releasing shows the latest held list. Room may not have re-emitted since the
+     * write, so if moves were applied while holding, the held list first takes the stored
+     * positions {@link #applyMove} gave the loaded cards. That is a no-op for a list read after
+     * the write, and keeps a list read before it from jumping the dropped card back.
+     */
+    public void setHoldUpdates(boolean hold) {
+        if (holdingUpdates == hold) return;
+        holdingUpdates = hold;
+        if (hold) return;
+        List<CardItem> latest = heldItems;
+        heldItems = null;
+        if (latest != null && movedWhileHolding) {
+            latest = withAppliedPositions(latest);
+        }
+        movedWhileHolding = false;
+        if (latest != null) {
+            setItems(latest);
+        }
+    }
+
+    private List<CardItem> withAppliedPositions(List<CardItem> items) {
+        Map<Long, Integer> applied = new HashMap<>();
+        for (CardItem item : allCardItems) {
+            applied.put(item.getId(), item.getPosition());
+        }
+        List<CardItem> folded = new ArrayList<>(items);
+        for (CardItem item : folded) {
+            Integer position = applied.get(item.getId());
+            if (position != null) item.setPosition(position);
+        }
+        // Same order as the card queries
+        folded.sort((a, b) -> a.getPosition() != b.getPosition()
+                ? Integer.compare(a.getPosition(), b.getPosition())
+                : Long.compare(a.getId(), b.getId()));
+        return folded;
     }
 
     public List<CardItem> getAllItems() {
@@ -433,13 +610,14 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
 
     /**
      * Finds the current adapter position of a card based on its ID.
-     * Searches the currently displayed 'cardItems' list.
+     * Searches the currently displayed list.
      * @param cardId The ID of the card to find.
      * @return The adapter position, or RecyclerView.NO_POSITION if not found.
      */
     public int findPositionById(long cardId) {
-        for (int i = 0; i < cardItems.size(); i++) {
-            if (cardItems.get(i).getId() == cardId) {
+        List<CardItem> displayed = getCurrentList();
+        for (int i = 0; i < displayed.size(); i++) {
+            if (displayed.get(i).getId() == cardId) {
                 return i;
             }
         }
@@ -473,23 +651,18 @@ public class SessionCardAdapter extends RecyclerView.Adapter<SessionCardAdapter.
     public void onBindViewHolder(@NonNull CardViewHolder holder, int position, @NonNull List<Object> payloads) {
         if (payloads.isEmpty()) {
             // No payload, do a full rebind
-            super.onBindViewHolder(holder, position, payloads);
+            onBindViewHolder(holder, position);
         } else {
             // We have payloads, handle partial updates
-            CardItem item = cardItems.get(position);
+            CardItem item = getItem(position);
             for (Object payload : payloads) {
-                if ("PAYLOAD_SELECTION_CHANGED".equals(payload)) {
+                if (PAYLOAD_SELECTION_CHANGED.equals(payload)) {
                     // Only update selection state and background
-                    holder.checkBox.setChecked(item.isSelected());
-                    TypedValue typedValue = new TypedValue();
-                    Resources.Theme theme = context.getTheme();
-                    theme.resolveAttribute(R.attr.colorPrimaryBackground, typedValue, true);
-                    @ColorInt int colorPriBackground = typedValue.data;
-                    theme.resolveAttribute(R.attr.colorSecondaryBackground, typedValue, true);
-                    @ColorInt int colorSecBackground = typedValue.data;
-                    holder.itemView.setBackgroundColor(item.isSelected() && isEditMode ?
-                            colorSecBackground : colorPriBackground);
+                    bindSelection(holder, item);
                     Log.d("SessionCardAdapter", "Partial update for selection at position: " + position);
+                } else if (PAYLOAD_EDIT_MODE_CHANGED.equals(payload)) {
+                    bindEditMode(holder);
+                    bindSelection(holder, item);
                 }
                 // Add other payload types if needed (e.g., "PAYLOAD_POSITION_CHANGED")
             }
@@ -17,9 +17,10 @@ import com.example.therapyai.R;
 import java.security.SecureRandom;
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 import com.example.therapyai.data.local.SessionManager;
-import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.QrKeyDerivationService;
 import com.google.android.material.checkbox.MaterialCheckBox;
 
 
@@ -28,6 +29,7 @@ public class PatientQRFragment extends Fragment {
     private SessionManager sessionManager;
     private TextView passphraseTextView, termsLinkTextView;
     private MaterialCheckBox termsCheckbox;
+    private Future<String> pendingEncrypt;
 
     private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
 
@@ -71,11 +73,30 @@ public class PatientQRFragment extends Fragment {
                     + sessionManager.getUserDateOfBirth() + ","
                     + currentDate;
 
-            String encryptedMessage = AESUtil.encrypt(qrData, passphrase);;
-
-            // Generate QR code
-            Bitmap qrBitmap = generateQRCode(encryptedMessage, 300, 300);
-            showQRCodePopup(qrBitmap, passphrase);
+            // Key derivation is slow on older devices, so encrypt off the main thread
+            acceptButton.setEnabled(false);
+            cancelPendingEncrypt();
+            pendingEncrypt = QrKeyDerivationService.getInstance().encrypt(qrData, passphrase,
+                    new QrKeyDerivationService.Callback<String>() {
+                        @Override
+                        public void onSuccess(String encryptedMessage) {
+                            pendingEncrypt = null;
+                            if (!isAdded()) return;
+                            acceptButton.setEnabled(termsCheckbox.isChecked());
+
+                            // Generate QR code
+                            Bitmap qrBitmap = generateQRCode(encryptedMessage, 300, 300);
+                            showQRCodePopup(qrBitmap, passphrase);
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            pendingEncrypt = null;
+                            if (!isAdded()) return;
+                            acceptButton.setEnabled(termsCheckbox.isChecked());
+                            e.printStackTrace();
+                        }
+                    });
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -83,6 +104,19 @@ public class PatientQRFragment extends Fragment {
 
     }
 
+    private void cancelPendingEncrypt() {
+        if (pendingEncrypt != null) {
+            pendingEncrypt.cancel(false);
+            pendingEncrypt = null;
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        cancelPendingEncrypt();
+        super.onDestroyView();
+    }
+
     private Bitmap generateQRCode(String data, int width, int height) {
         com.google.zxing.MultiFormatWriter writer = new com.google.zxing.MultiFormatWriter();
         try {
@@ -21,11 +21,13 @@ import android.widget.Toast;
 import com.bumptech.glide.Glide;
 import com.example.therapyai.R;
 import com.example.therapyai.data.local.SessionManager;
+import com.example.therapyai.util.FrameCoalescer;
 import com.example.therapyai.util.ProfilePictureUtil;
 import com.google.android.material.imageview.ShapeableImageView;
 import com.example.therapyai.data.local.models.Profile;
 import com.example.therapyai.data.local.models.SessionSummary;
 import com.example.therapyai.data.repository.SearchRepository;
+import com.example.therapyai.data.repository.SessionHistoryPager;
 import com.example.therapyai.ui.adapters.ProfileSessionAdapter;
 import com.example.therapyai.util.SentimentChartHelper;
 import com.github.mikephil.charting.charts.BarChart;
@@ -67,6 +69,7 @@ public class ProfileActivity extends AppCompatActivity {
     private String profileId;
     private Profile currentProfile;
     private List<SessionSummary> sortedSessionSummaries = new ArrayList<>();
+    private SessionHistoryPager sessionPager;
 
     // --- Synchronization Logic Variables (like SessionTranscriptFragment) ---
     private final Handler scrollSyncHandler = new Handler(Looper.getMainLooper());
@@ -75,7 +78,14 @@ public class ProfileActivity extends AppCompatActivity {
     private static final int SCROLL_SYNC_DEBOUNCE_MS = 15;
     private static final int PROGRAMMATIC_SCROLL_RESET_DELAY_MS = 150;
     private static final int SMOOTH_SCROLL_DURATION_APPROX_MS = 400;
-    private Runnable syncChartRunnable = null;
+    // Follows list scrolling once per frame, however many scroll callbacks arrive in between
+    private final FrameCoalescer chartSyncFrame = new FrameCoalescer(() -> {
+        if (!isProgrammaticScroll && !isChartGestureActive) {
+            syncChartToRecyclerViewScroll();
+        } else {
+            Log.v(TAG, "RV Scrolled Sync Chart Aborted (Frame) - Flags changed: isProg=" + isProgrammaticScroll + " isGesture=" + isChartGestureActive);
+        }
+    });
     private Runnable syncListRunnable = null;
     private int highlightedSessionIndex = RecyclerView.NO_POSITION;
 
@@ -212,20 +222,11 @@ public class ProfileActivity extends AppCompatActivity {
             @Override
             public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
                 super.onScrolled(recyclerView, dx, dy);
+                if (dy > 0) {
+                    prefetchSessionsIfNeeded();
+                }
                 if (!isProgrammaticScroll && !isChartGestureActive && profileSessionAdapter.getItemCount() > 0 && dy != 0) {
-                    if (syncChartRunnable != null) {
-                        scrollSyncHandler.removeCallbacks(syncChartRunnable);
-                    }
-                    syncChartRunnable = () -> {
-                        if (!isProgrammaticScroll && !isChartGestureActive) {
-                            Log.v(TAG, "RV Scrolled Syncing Chart (Debounced)");
-                            syncChartToRecyclerViewScroll();
-                        } else {
-                            Log.v(TAG, "RV Scrolled Sync Chart Aborted (Debounced) - Flags changed: isProg=" + isProgrammaticScroll + " isGesture=" + isChartGestureActive);
-                        }
-                        syncChartRunnable = null;
-                    };
-                    scrollSyncHandler.postDelayed(syncChartRunnable, SCROLL_SYNC_DEBOUNCE_MS);
+                    chartSyncFrame.request();
                 } else if (dy != 0) {
                      Log.v(TAG, "RV Scrolled Skipped Sync Chart: isProg=" + isProgrammaticScroll + " isGesture=" + isChartGestureActive + " dy=" + dy);
                 }
@@ -354,36 +355,7 @@ public class ProfileActivity extends AppCompatActivity {
                         updateUIWithProfile(currentProfile);
                         showProfileLoading(false);
 
-                        searchRepository.getPatientSessions(new SearchRepository.SessionSearchCallback() {
-                            @Override
-                            public void onSessionsFound(List<SessionSummary> sessionSummaries) {
-                                runOnUiThread(() -> {
-                                    if (sessionSummaries != null && !sessionSummaries.isEmpty()) {
-                                        sortedSessionSummaries = sortSessionSummuries(sessionSummaries);
-                                        Log.d(TAG, "Sorted " + sortedSessionSummaries.size() + " session scores.");
-                                        highlightedSessionIndex = RecyclerView.NO_POSITION;
-                                        updateSessionChart(sortedSessionSummaries);
-                                        updateSessionList(sortedSessionSummaries);
-                                        barChartProfileSessions.post(() ->
-                                                SentimentChartHelper.applyInitialZoom(barChartProfileSessions, PROFILE_CHART_VISIBLE_GROUPS));
-                                    } else {
-                                        Log.d(TAG, "No session scores found for profile.");
-                                        clearChartAndList();
-                                    }
-                                    showSessionChartLoading(false);
-                                    showSessionListLoading(false);
-                                });
-                            }
-
-                            @Override
-                            public void onError(String error) {
-                                runOnUiThread(() -> {
-                                    Log.e(TAG, "Error fetching session summaries: " + error);
-                                    Toast.makeText(ProfileActivity.this, getString(R.string.error_fetching_sessions, error), Toast.LENGTH_LONG).show();
-                                    handleFetchError();
-                                });
-                            }
-                        });
+                        startSessionPager(searchRepository.newPatientSessionPager(sessionPageListener()));
 
                     } else {
                         Log.w(TAG, "Profile not found for ID: " + profileId);
@@ -423,36 +395,7 @@ public class ProfileActivity extends AppCompatActivity {
                         updateUIWithProfile(currentProfile);
                         showProfileLoading(false);
                         
-                        searchRepository.performSessionSearch(currentProfile.getId(), new SearchRepository.SessionSearchCallback() {
-                            @Override
-                            public void onSessionsFound(List<SessionSummary> sessionSummaries) {
-                                runOnUiThread(() -> {
-                                    if (sessionSummaries != null && !sessionSummaries.isEmpty()) {
-                                        sortedSessionSummaries = sortSessionSummuries(sessionSummaries);
-                                        Log.d(TAG, "Sorted " + sortedSessionSummaries.size() + " session scores.");
-                                        highlightedSessionIndex = RecyclerView.NO_POSITION;
-                                        updateSessionChart(sortedSessionSummaries);
-                                        updateSessionList(sortedSessionSummaries);
-                                        barChartProfileSessions.post(() ->
-                                                SentimentChartHelper.applyInitialZoom(barChartProfileSessions, PROFILE_CHART_VISIBLE_GROUPS));
-                                    } else {
-                                        Log.d(TAG, "No session scores found for profile.");
-                                        clearChartAndList();
-                                    }
-                                    showSessionChartLoading(false);
-                                    showSessionListLoading(false);
-                                });
-                            }
-
-                            @Override
-                            public void onError(String error) {
-                                runOnUiThread(() -> {
-                                    Log.e(TAG, "Error fetching session summaries: " + error);
-                                    Toast.makeText(ProfileActivity.this, getString(R.string.error_fetching_sessions, error), Toast.LENGTH_LONG).show();
-                                    handleFetchError();
-                                });
-                            }
-                        });
+                        startSessionPager(searchRepository.newSessionSearchPager(currentProfile.getId(), sessionPageListener()));
 
                     } else {
                         Log.w(TAG, "Profile not found for ID: " + profileId);
@@ -473,6 +416,70 @@ public class ProfileActivity extends AppCompatActivity {
         });
     }
 
+    private void startSessionPager(SessionHistoryPager pager) {
+        if (sessionPager != null) sessionPager.cancel(); // The profile can arrive twice (cached, then fresh)
+        sessionPager = pager;
+        sessionPager.loadFirstPage();
+    }
+
+    private SessionHistoryPager.Listener sessionPageListener() {
+        return new SessionHistoryPager.Listener() {
+            @Override
+            public void onFirstPage(List<SessionSummary> sessionSummaries, boolean hasMore) {
+                if (!sessionSummaries.isEmpty()) {
+                    sortedSessionSummaries = sortSessionSummuries(sessionSummaries);
+                    Log.d(TAG, "Sorted " + sortedSessionSummaries.size() + " session scores.");
+                    highlightedSessionIndex = RecyclerView.NO_POSITION;
+                    updateSessionChart(sortedSessionSummaries);
+                    updateSessionList(sortedSessionSummaries);
+                    barChartProfileSessions.post(() ->
+                            SentimentChartHelper.applyInitialZoom(barChartProfileSessions, PROFILE_CHART_VISIBLE_GROUPS));
+                    // A short page may fit on screen, leaving nothing to scroll that would ask for more
+                    rvProfileSessions.post(ProfileActivity.this::prefetchSessionsIfNeeded);
+                } else if (hasMore) {
+                    return; // The pager is already fetching the next page; keep showing progress
+                } else {
+                    Log.d(TAG, "No session scores found for profile.");
+                    clearChartAndList();
+                }
+                showSessionChartLoading(false);
+                showSessionListLoading(false);
+            }
+
+            @Override
+            public void onNextPage(List<SessionSummary> sessionSummaries, boolean hasMore) {
+                if (sortedSessionSummaries.isEmpty()) {
+                    onFirstPage(sessionSummaries, hasMore); // Earlier pages were all empty
+                    return;
+                }
+                if (sessionSummaries.isEmpty()) return;
+                int fromIndex = sortedSessionSummaries.size();
+                List<SessionSummary> page = sortSessionSummuries(sessionSummaries); // Pages arrive newest first, so appending keeps the order
+                sortedSessionSummaries.addAll(page);
+                Log.d(TAG, "Appended " + page.size() + " session scores, " + sortedSessionSummaries.size() + " loaded.");
+                profileSessionAdapter.appendData(page);
+                SentimentChartHelper.appendProfileSessionSentimentChartData(barChartProfileSessions,
+                        sortedSessionSummaries, fromIndex, PROFILE_CHART_VISIBLE_GROUPS, ProfileActivity.this);
+                rvProfileSessions.post(ProfileActivity.this::prefetchSessionsIfNeeded);
+            }
+
+            @Override
+            public void onError(String error, boolean firstPage) {
+                Log.e(TAG, "Error fetching session summaries: " + error);
+                Toast.makeText(ProfileActivity.this, getString(R.string.error_fetching_sessions, error), Toast.LENGTH_LONG).show();
+                if (firstPage) {
+                    handleFetchError();
+                }
+            }
+        };
+    }
+
+    private void prefetchSessionsIfNeeded() {
+        if (sessionPager != null && sessionLayoutManager != null && !isFinishing()) {
+            sessionPager.onLastVisiblePosition(sessionLayoutManager.findLastVisibleItemPosition());
+        }
+    }
+
     private void handleFetchError() {
         showProfileLoading(false);
         showSessionChartLoading(false);
@@ -736,7 +743,7 @@ public class ProfileActivity extends AppCompatActivity {
 
 
 
-    /** Moves the chart view based on the list's scroll position. Called by RV scroll listener. */
+    /** Moves the chart view based on the list's scroll position. Called once per frame while the list scrolls. */
     private void syncChartToRecyclerViewScroll() {
         if (barChartProfileSessions == null || sessionLayoutManager == null || profileSessionAdapter == null || profileSessionAdapter.getItemCount() == 0 || barChartProfileSessions.getData() == null
                 || isProgrammaticScroll || isChartGestureActive) { // Guard against programmatic/gesture sync
@@ -755,7 +762,8 @@ public class ProfileActivity extends AppCompatActivity {
                 centerIndex = Math.max(-SentimentChartHelper.CHART_PADDING_FACTOR, Math.min(centerIndex, count - 1 + SentimentChartHelper.CHART_PADDING_FACTOR));
             }
             Log.v(TAG, "syncChartToRecyclerViewScroll: Syncing chart to index ~" + String.format("%.2f", centerIndex));
-            barChartProfileSessions.centerViewToAnimated(centerIndex, 0f, YAxis.AxisDependency.LEFT, 200);
+            // Runs every frame while the list moves, so follow it directly rather than animate
+            barChartProfileSessions.centerViewTo(centerIndex, 0f, YAxis.AxisDependency.LEFT);
         }
     }
 
@@ -792,12 +800,8 @@ public class ProfileActivity extends AppCompatActivity {
 
     /** Cancels any pending scroll synchronization runnables. */
     private void cancelScrollSync() {
+        chartSyncFrame.cancel();
         boolean cancelled = false;
-        if (syncChartRunnable != null) {
-            scrollSyncHandler.removeCallbacks(syncChartRunnable);
-            syncChartRunnable = null;
-            cancelled = true;
-        }
         if (syncListRunnable != null) {
             scrollSyncHandler.removeCallbacks(syncListRunnable);
             syncListRunnable = null;
@@ -821,5 +825,6 @@ public class ProfileActivity extends AppCompatActivity {
         super.onDestroy();
         Log.d(TAG, "onDestroy: Removing handler callbacks.");
         scrollSyncHandler.removeCallbacksAndMessages(null);
+        if (sessionPager != null) sessionPager.cancel();
     }
 }
\ No newline at end of file
@@ -21,6 +21,8 @@ import com.example.therapyai.R;
 import com.example.therapyai.data.local.models.FinalTranscriptEntry;
 import com.example.therapyai.ui.adapters.FinalTranscriptAdapter;
 import com.example.therapyai.ui.viewmodels.DataViewModel;
+import com.example.therapyai.util.ChartPositionIndex;
+import com.example.therapyai.util.FrameCoalescer;
 import com.example.therapyai.util.SentimentChartHelper;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.components.YAxis;
@@ -50,13 +52,14 @@ public class SessionTranscriptFragment extends Fragment {
     private boolean isProgrammaticScroll = false;
     private static final int SCROLL_SYNC_DEBOUNCE_MS = 150; // Increased debounce for safety
 
-    private Runnable syncChartRunnable = null;
     private Runnable syncListRunnable = null;
 
-    // To map chart indices (patient-only) to original transcript indices
-    private List<Integer> patientEntryOriginalIndices = new ArrayList<>();
-    // To map original transcript indices (patient-only) to chart indices
+    // Chart x (patient-only bars) <-> original transcript index
+    private ChartPositionIndex chartPositions = ChartPositionIndex.EMPTY;
     private List<FinalTranscriptEntry> currentlyPlottedPatientEntries = new ArrayList<>();
+    // Follows list scrolling once per frame, however many scroll callbacks arrive in between
+    private final FrameCoalescer chartSyncFrame = new FrameCoalescer(() -> syncChartToRecyclerViewScroll(false));
+    private int lastSyncedChartX = -1;
 
 
     @Override
@@ -125,9 +128,7 @@ public class SessionTranscriptFragment extends Fragment {
             public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
                 super.onScrolled(recyclerView, dx, dy);
                 if (!isProgrammaticScroll && transcriptAdapter.getItemCount() > 0 && dy != 0) { // only if actually scrolled
-                    cancelScrollSync();
-                    syncChartRunnable = () -> syncChartToRecyclerViewScroll();
-                    scrollSyncHandler.postDelayed(syncChartRunnable, SCROLL_SYNC_DEBOUNCE_MS);
+                    chartSyncFrame.request();
                 }
             }
             @Override
@@ -135,11 +136,8 @@ public class SessionTranscriptFragment extends Fragment {
                 super.onScrollStateChanged(recyclerView, newState);
                 if (newState == RecyclerView.SCROLL_STATE_IDLE) {
                     if (!isProgrammaticScroll) {
-                        // Ensure final sync when scrolling stops, if not already covered by onScrolled
-                        // This can help catch drifts if onScrolled debounce misses the final state.
-                        cancelScrollSync(); // cancel previous ones
-                        syncChartRunnable = () -> syncChartToRecyclerViewScroll();
-                        scrollSyncHandler.postDelayed(syncChartRunnable, SCROLL_SYNC_DEBOUNCE_MS + 50); // a bit more delay
+                        // Ensure final sync when scrolling stops, in case the last frame was skipped
+                        chartSyncFrame.request();
                     }
                 } else if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
                     if (isProgrammaticScroll) { // User started dragging during programmatic scroll
@@ -164,15 +162,15 @@ public class SessionTranscriptFragment extends Fragment {
             public void onValueSelected(Entry e, Highlight h) {
                 int chartIndex = (int) e.getX(); // This is the index in the patient-only list
                 Log.d(TAG, "Transcript chart bar selected at chartIndex: " + chartIndex);
-                if (chartIndex >= 0 && chartIndex < patientEntryOriginalIndices.size()) {
-                    int originalTranscriptIndex = patientEntryOriginalIndices.get(chartIndex);
+                int originalTranscriptIndex = chartPositions.positionAt(chartIndex);
+                if (originalTranscriptIndex >= 0) {
                     Log.d(TAG, "Mapped to original transcript index: " + originalTranscriptIndex);
 
                     cancelScrollSync();
                     isProgrammaticScroll = true; // Set before initiating scroll
                     dataViewModel.requestHighlight(originalTranscriptIndex); // Highlight in RV
                 } else {
-                    Log.w(TAG, "Chart index out of bounds for patientEntryOriginalIndices mapping.");
+                    Log.w(TAG, "Chart index out of bounds for chart position mapping.");
                 }
             }
             @Override public void onNothingSelected() {}
@@ -230,8 +228,8 @@ public class SessionTranscriptFragment extends Fragment {
                 if (h != null) {
                     int chartIndex = (int) h.getX();
                     Log.d(TAG, "Transcript chart single tapped at chartIndex: " + chartIndex);
-                    if (chartIndex >= 0 && chartIndex < patientEntryOriginalIndices.size()) {
-                        int originalTranscriptIndex = patientEntryOriginalIndices.get(chartIndex);
+                    int originalTranscriptIndex = chartPositions.positionAt(chartIndex);
+                    if (originalTranscriptIndex >= 0) {
                         Log.d(TAG, "Mapped to original transcript index for tap: " + originalTranscriptIndex);
                         cancelScrollSync();
                         isProgrammaticScroll = true;
@@ -253,34 +251,33 @@ public class SessionTranscriptFragment extends Fragment {
                 View firstViewOriginal = layoutManager.findViewByPosition(firstVisibleOriginal);
                 int topOffsetOriginal = (firstViewOriginal == null) ? 0 : (firstViewOriginal.getTop() - rvTranscript.getPaddingTop());
 
-                transcriptAdapter.setData(fullTranscript, sessionDetail.getTimedNotes());
+                // Rows change once the adapter has built them off the main thread; restore the
+                // scroll position then, and centre the chart on the rows once they are laid out
+                transcriptAdapter.setData(fullTranscript, sessionDetail.getTimedNotes(), () -> {
+                    if (getView() == null) return;
+                    if (firstVisibleOriginal != RecyclerView.NO_POSITION && firstVisibleOriginal < transcriptAdapter.getItemCount()) {
+                        layoutManager.scrollToPositionWithOffset(firstVisibleOriginal, topOffsetOriginal);
+                    }
+                    rvTranscript.post(() -> {
+                        if (getView() != null) syncChartToRecyclerViewScroll(true); // Initial sync after data load
+                    });
+                });
 
                 // Regenerate mapping and update chart
-                patientEntryOriginalIndices.clear();
-                currentlyPlottedPatientEntries.clear();
-                if (fullTranscript != null) {
-                    for (int i = 0; i < fullTranscript.size(); i++) {
-                        FinalTranscriptEntry entry = fullTranscript.get(i);
-                        if ("Patient".equalsIgnoreCase(entry.getSpeaker()) && entry.getSentimentScore() != null) {
-                            patientEntryOriginalIndices.add(i); // Store original index
-                            currentlyPlottedPatientEntries.add(entry); // Store the entry itself for the chart
-                        }
-                    }
+                chartPositions = ChartPositionIndex.ofScoredPatientSentences(fullTranscript);
+                lastSyncedChartX = -1;
+                currentlyPlottedPatientEntries = new ArrayList<>(chartPositions.size());
+                for (int x = 0; x < chartPositions.size(); x++) {
+                    currentlyPlottedPatientEntries.add(fullTranscript.get(chartPositions.positionAt(x)));
                 }
                 // Update chart with only patient entries
                 SentimentChartHelper.updateSentimentBarChartData(barChartTranscript, currentlyPlottedPatientEntries, mContext);
 
 
-                if (firstVisibleOriginal != RecyclerView.NO_POSITION && firstVisibleOriginal < transcriptAdapter.getItemCount()) {
-                    layoutManager.scrollToPositionWithOffset(firstVisibleOriginal, topOffsetOriginal);
-                }
-
-
                 if (barChartTranscript != null && !currentlyPlottedPatientEntries.isEmpty()) {
                     barChartTranscript.post(() -> {
                         if(barChartTranscript != null) { // Check again as it's a post
                             SentimentChartHelper.applyInitialZoom(barChartTranscript, TRANSCRIPT_VISIBLE_GROUPS);
-                            syncChartToRecyclerViewScroll(); // Initial sync after data load
                         }
                     });
                 } else if (barChartTranscript != null) {
@@ -289,7 +286,8 @@ public class SessionTranscriptFragment extends Fragment {
             } else {
                 Log.d(TAG, "Transcript data is null or empty. Clearing UI and chart.");
                 transcriptAdapter.setData(new ArrayList<>(), new ArrayList<>());
-                patientEntryOriginalIndices.clear();
+                chartPositions = ChartPositionIndex.EMPTY;
+                lastSyncedChartX = -1;
                 currentlyPlottedPatientEntries.clear();
                 if (mContext != null && barChartTranscript != null) {
                     SentimentChartHelper.updateSentimentBarChartData(barChartTranscript, null, mContext);
@@ -313,15 +311,8 @@ public class SessionTranscriptFragment extends Fragment {
                 }
 
                 // Highlight corresponding bar in chart if it's a patient entry
-                if (barChartTranscript != null && barChartTranscript.getData() != null && !patientEntryOriginalIndices.isEmpty()) {
-                    int chartIndexToHighlight = -1;
-                    // Find the chart index for this original transcript index
-                    for(int i=0; i < patientEntryOriginalIndices.size(); i++){
-                        if(patientEntryOriginalIndices.get(i) == originalIndexToHighlight){
-                            chartIndexToHighlight = i;
-                            break;
-                        }
-                    }
+                if (barChartTranscript != null && barChartTranscript.getData() != null && !chartPositions.isEmpty()) {
+                    int chartIndexToHighlight = chartPositions.xOf(originalIndexToHighlight);
 
                     if (chartIndexToHighlight != -1 && chartIndexToHighlight < barChartTranscript.getBarData().getEntryCount()) {
                         barChartTranscript.highlightValue(chartIndexToHighlight, 0, false); // datasetIndex 0
@@ -367,10 +358,15 @@ public class SessionTranscriptFragment extends Fragment {
         }
     }
 
-    private void syncChartToRecyclerViewScroll() {
+    /**
+     * Centres the chart on the patient bar nearest the middle of the visible transcript rows.
+     * Animated for one-off syncs; per-frame syncs while the list scrolls move it directly,
+     * since they already follow the finger.
+     */
+    private void syncChartToRecyclerViewScroll(boolean animated) {
         if (barChartTranscript == null || layoutManager == null || transcriptAdapter == null ||
                 transcriptAdapter.getItemCount() == 0 || barChartTranscript.getData() == null ||
-                currentlyPlottedPatientEntries.isEmpty() || isProgrammaticScroll) { // Check isProgrammaticScroll here
+                chartPositions.isEmpty() || isProgrammaticScroll) { // Check isProgrammaticScroll here
             return;
         }
 
@@ -379,50 +375,20 @@ public class SessionTranscriptFragment extends Fragment {
 
         if (firstVisibleItemOriginalIndex == RecyclerView.NO_POSITION) return;
 
-        // Find the chart index corresponding to the central visible patient item in the RV
-        int targetChartIndex = -1;
-        int centerOriginalIndex = firstVisibleItemOriginalIndex + (lastVisibleItemOriginalIndex - firstVisibleItemOriginalIndex) / 2;
-
-        // Find the closest patient item in the chart to the centerOriginalIndex
-        int bestMatchOriginalIndex = -1;
-        int minDiff = Integer.MAX_VALUE;
-
-        for(int i = 0; i < patientEntryOriginalIndices.size(); i++) {
-            int originalIdx = patientEntryOriginalIndices.get(i);
-            if (originalIdx >= firstVisibleItemOriginalIndex && originalIdx <= lastVisibleItemOriginalIndex) {
-                // This patient item is visible or partially visible in RV
-                int diff = Math.abs(originalIdx - centerOriginalIndex);
-                if (diff < minDiff) {
-                    minDiff = diff;
-                    targetChartIndex = i; // i is the index in currentlyPlottedPatientEntries
-                    bestMatchOriginalIndex = originalIdx;
-                }
-            }
-        }
-        // If no patient items are visible, try to find the first patient item before or after current view
-        if(targetChartIndex == -1){
-            for(int i = 0; i < patientEntryOriginalIndices.size(); i++){
-                if(patientEntryOriginalIndices.get(i) >= centerOriginalIndex){
-                    targetChartIndex = i; // first patient after or at center
-                    break;
-                }
-            }
-            if(targetChartIndex == -1 && !patientEntryOriginalIndices.isEmpty()){
-                targetChartIndex = patientEntryOriginalIndices.size() -1; // last patient
-            }
-        }
-
+        int targetChartIndex = chartPositions.nearestX(firstVisibleItemOriginalIndex, lastVisibleItemOriginalIndex);
+        if (targetChartIndex == -1) return;
+        if (!animated && targetChartIndex == lastSyncedChartX) return; // Already centred there
+        lastSyncedChartX = targetChartIndex;
 
-        if (targetChartIndex != -1) {
-            Log.v(TAG, "SyncChart: RV scrolled. Centering chart on patient item (original index " + bestMatchOriginalIndex + ", chart index " + targetChartIndex + ")");
+        Log.v(TAG, "SyncChart: RV scrolled. Centering chart on patient item (original index " + chartPositions.positionAt(targetChartIndex) + ", chart index " + targetChartIndex + ")");
+        if (animated) {
             // Temporarily disable RV scroll listener during chart animation
             final boolean oldProgrammaticFlag = isProgrammaticScroll;
             isProgrammaticScroll = true;
             barChartTranscript.centerViewToAnimated(targetChartIndex, 0f, YAxis.AxisDependency.LEFT, 200);
             scrollSyncHandler.postDelayed(() -> isProgrammaticScroll = oldProgrammaticFlag, 250);
-
         } else {
-            Log.v(TAG, "SyncChart: RV scrolled, but no corresponding patient entry found in visible range to sync chart.");
+            barChartTranscript.centerViewTo(targetChartIndex, 0f, YAxis.AxisDependency.LEFT);
         }
     }
 
@@ -447,8 +413,8 @@ public class SessionTranscriptFragment extends Fragment {
 
         centerChartIndex = Math.max(0, Math.min(centerChartIndex, currentlyPlottedPatientEntries.size() - 1));
 
-        if (centerChartIndex >= 0 && centerChartIndex < patientEntryOriginalIndices.size()) {
-            int originalTranscriptIndex = patientEntryOriginalIndices.get(centerChartIndex);
+        int originalTranscriptIndex = chartPositions.positionAt(centerChartIndex);
+        if (originalTranscriptIndex >= 0) {
             Log.v(TAG, "SyncList: Chart scrolled/scaled. Scrolling list to original index: " + originalTranscriptIndex + " (from chart index " + centerChartIndex + ")");
 
             // Set flag, scroll, then reset flag in scrollToTranscriptIndex or its callbacks
@@ -460,10 +426,8 @@ public class SessionTranscriptFragment extends Fragment {
     }
 
     private void cancelScrollSync() {
-        if (syncChartRunnable != null) {
-            scrollSyncHandler.removeCallbacks(syncChartRunnable);
-            syncChartRunnable = null;
-        }
+        chartSyncFrame.cancel();
+        lastSyncedChartX = -1; // The chart may be moved by something else next
         if (syncListRunnable != null) {
             scrollSyncHandler.removeCallbacks(syncListRunnable);
             syncListRunnable = null;
@@ -22,6 +22,7 @@ import com.example.therapyai.R;
 import com.example.therapyai.data.local.models.Profile;
 import com.example.therapyai.data.local.models.SessionSummary;
 import com.example.therapyai.data.local.models.SearchItem;
+import com.example.therapyai.data.repository.SearchEngine;
 import com.example.therapyai.data.repository.SearchRepository;
 import com.example.therapyai.ui.adapters.SearchAdapter;
 
@@ -33,6 +34,8 @@ public class TherapistSearchFragment extends Fragment {
     private static final String TAG = "TherapistSearchFrag";
 
     private SearchRepository searchRepository;
+    private SearchEngine<Profile> profileSearch;
+    private SearchEngine<SessionSummary> sessionSearch;
     private RecyclerView rvSearchResults;
     private SearchAdapter adapter;
     private ProgressBar progressBar;
@@ -52,7 +55,66 @@ public class TherapistSearchFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         searchRepository = SearchRepository.getInstance();
+        profileSearch = searchRepository.newProfileSearchEngine(new SearchEngine.Listener<Profile>() {
+            @Override
+            public void onLocalResults(String query, List<Profile> profiles) {
+                if (!isAdded()) return;
+                profilesList.clear();
+                profilesList.addAll(profiles);
+                updateUnifiedList();
+            }
+
+            @Override
+            public void onResults(String query, List<Profile> profiles) {
+                if (!isAdded()) return;
+                profilesLoading = false;
+                Log.d(TAG, "Profiles found: " + profiles.size());
+                profilesList.clear();
+                profilesList.addAll(profiles);
+                updateUnifiedList();
+            }
+
+            @Override
+            public void onError(String query, String error) {
+                if (!isAdded()) return;
+                profilesLoading = false;
+                Log.e(TAG, "Profile search error: " + error);
+                Toast.makeText(requireContext(), getString(R.string.search_error_profiles, error), Toast.LENGTH_SHORT).show();
+                updateUnifiedList();
+            }
+        });
+        sessionSearch = searchRepository.newSessionSearchEngine(new SearchEngine.Listener<SessionSummary>() {
+            @Override
+            public void onLocalResults(String query, List<SessionSummary> sessionSummaries) {
+                // No local session index
+            }
 
+            @Override
+            public void onResults(String query, List<SessionSummary> sessionSummaries) {
+                if (!isAdded()) return;
+                sessionsLoading = false;
+                Log.d(TAG, "Sessions found: " + sessionSummaries.size());
+                sessionsList.clear();
+                sessionsList.addAll(sessionSummaries);
+                updateUnifiedList();
+            }
+
+            @Override
+            public void onError(String query, String error) {
+                if (!isAdded()) return;
+                sessionsLoading = false;
+                Log.e(TAG, "Session search error: " + error);
+                Toast.makeText(requireContext(), getString(R.string.search_error_sessions, error), Toast.LENGTH_SHORT).show();
+                updateUnifiedList();
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        profileSearch.cancel();
+        sessionSearch.cancel();
     }
 
     @Nullable
@@ -86,7 +148,13 @@ public class TherapistSearchFragment extends Fragment {
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                return false;
+                currentQuery = newText;
+                if (newText == null || newText.trim().isEmpty()) {
+                    clearSearch();
+                } else {
+                    startSearch(newText, false, false); // Debounced while typing
+                }
+                return true;
             }
         });
     }
@@ -154,12 +222,19 @@ public class TherapistSearchFragment extends Fragment {
             return;
         }
         Log.d(TAG, "Performing search for query: " + query + " (refresh: " + isRefresh + ")");
+        startSearch(query, true, isRefresh);
+    }
 
+    /**
+     * Hands the query to both search engines. Results for earlier queries are dropped by the
+     * engines, so whatever arrives belongs to this one.
+     */
+    private void startSearch(String query, boolean immediate, boolean isRefresh) {
         // Don't show main progress bar if this is a refresh (SwipeRefreshLayout shows its own indicator)
         if (!isRefresh) {
             progressBar.setVisibility(View.VISIBLE);
         }
-        
+
         profilesLoading = true;
         sessionsLoading = true;
 
@@ -168,53 +243,23 @@ public class TherapistSearchFragment extends Fragment {
 
         updateUnifiedList();
 
-        searchRepository.performProfileSearch(query, new SearchRepository.ProfileSearchCallback() {
-            @Override
-            public void onProfilesFound(List<Profile> profiles) {
-                if (!isAdded() || getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    profilesLoading = false;
-                    Log.d(TAG, "Profiles found: " + profiles.size());
-                    profilesList.addAll(profiles);
-                    updateUnifiedList();
-                });
-            }
-
-            @Override
-            public void onError(String error) {
-                if (!isAdded() || getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    profilesLoading = false;
-                    Log.e(TAG, "Profile search error: " + error);
-                    Toast.makeText(requireContext(), getString(R.string.search_error_profiles, error), Toast.LENGTH_SHORT).show();
-                    updateUnifiedList();
-                });
-            }
-        });
-
-        searchRepository.performSessionSearch(query, new SearchRepository.SessionSearchCallback() {
-            @Override
-            public void onSessionsFound(List<SessionSummary> sessionSummaries) {
-                if (!isAdded() || getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    sessionsLoading = false;
-                    Log.d(TAG, "Sessions found: " + sessionSummaries.size());
-                    sessionsList.addAll(sessionSummaries);
-                    updateUnifiedList();
-                });
-            }
+        if (immediate) {
+            profileSearch.searchNow(query, isRefresh);
+            sessionSearch.searchNow(query, isRefresh);
+        } else {
+            profileSearch.search(query);
+            sessionSearch.search(query);
+        }
+    }
 
-            @Override
-            public void onError(String error) {
-                if (!isAdded() || getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    sessionsLoading = false;
-                    Log.e(TAG, "Session search error: " + error);
-                    Toast.makeText(requireContext(), getString(R.string.search_error_sessions, error), Toast.LENGTH_SHORT).show();
-                    updateUnifiedList();
-                });
-            }
-        });
+    private void clearSearch() {
+        profileSearch.cancel();
+        sessionSearch.cancel();
+        profilesLoading = false;
+        sessionsLoading = false;
+        profilesList.clear();
+        sessionsList.clear();
+        updateUnifiedList();
     }
 
     private void updateUnifiedList() {
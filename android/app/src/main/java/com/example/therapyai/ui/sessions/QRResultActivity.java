@@ -9,7 +9,9 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.therapyai.R;
-import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.QrKeyDerivationService;
+
+import java.util.concurrent.Future;
 
 public class QRResultActivity extends AppCompatActivity {
     private EditText passphraseEditText;
@@ -17,6 +19,7 @@ public class QRResultActivity extends AppCompatActivity {
     private TextView decryptedResultTextView;
 
     private String encryptedData;
+    private Future<String> pendingDecrypt;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -39,14 +42,31 @@ public class QRResultActivity extends AppCompatActivity {
             return;
         }
 
-        try {
-            // Decrypt
-            String decrypted = AESUtil.decrypt(encryptedData, passphrase);
-            decryptedResultTextView.setText("Decrypted Data:\n" + decrypted);
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Decryption failed. Invalid passphrase?", Toast.LENGTH_LONG).show();
-        }
+        if (pendingDecrypt != null) pendingDecrypt.cancel(false);
+        decryptButton.setEnabled(false);
+        pendingDecrypt = QrKeyDerivationService.getInstance().decrypt(encryptedData, passphrase,
+                new QrKeyDerivationService.Callback<String>() {
+                    @Override
+                    public void onSuccess(String decrypted) {
+                        pendingDecrypt = null;
+                        decryptButton.setEnabled(true);
+                        decryptedResultTextView.setText("Decrypted Data:\n" + decrypted);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        pendingDecrypt = null;
+                        decryptButton.setEnabled(true);
+                        e.printStackTrace();
+                        Toast.makeText(QRResultActivity.this, "Decryption failed. Invalid passphrase?", Toast.LENGTH_LONG).show();
+                    }
+                });
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (pendingDecrypt != null) pendingDecrypt.cancel(false);
+        super.onDestroy();
     }
 }
 
@@ -37,6 +37,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.therapyai.R;
 import com.example.therapyai.data.local.models.CardItem;
+import com.example.therapyai.data.local.models.CardMove;
 import com.example.therapyai.data.local.models.CategoryItem;
 import com.example.therapyai.ui.adapters.CategoryAdapter;
 import com.example.therapyai.ui.adapters.SessionCardAdapter;
@@ -61,6 +62,7 @@ public class TherapistSessionFragment extends Fragment implements
     private SessionCardAdapter sessionCardAdapter;
     private boolean isEditMode = false;
     private ItemTouchHelper itemTouchHelper;
+    private int dragStartIndex = RecyclerView.NO_POSITION;
     private FloatingActionButton fabAdd;
     private RecyclerView recyclerViewCategories;
     private CategoryAdapter categoryAdapter;
@@ -118,9 +120,24 @@ public class TherapistSessionFragment extends Fragment implements
             if (sessionCardAdapter != null) {
                 sessionCardAdapter.setItems(cards);
                 if (isSearchActive && !currentSearchQuery.isEmpty()) {
-                    sessionCardAdapter.filter(currentSearchQuery);
+                    cardViewModel.searchCards(currentSearchQuery); // Results may have changed too
                 }
             }
+        });
+        cardViewModel.pendingMoveCount.observe(getViewLifecycleOwner(), count -> {
+            // Every drop has been written. Room may re-emit only after this, so the adapter
+            // folds the applied moves into the list it held rather than showing the old order.
+            if (sessionCardAdapter != null && count == 0 && dragStartIndex == RecyclerView.NO_POSITION) {
+                sessionCardAdapter.setHoldUpdates(false);
+            }
+        });
+        cardViewModel.searchResultsLiveData.observe(getViewLifecycleOwner(), results -> {
+            if (sessionCardAdapter == null) return;
+            if (results == null) {
+                sessionCardAdapter.clearSearchResults();
+            } else {
+                sessionCardAdapter.showSearchResults(results);
+            }
         });        
         categoryViewModel.categoryListLiveData.observe(getViewLifecycleOwner(), categories -> {
             Log.d(TAG, "Observer: Category list updated.");
@@ -281,6 +298,8 @@ public class TherapistSessionFragment extends Fragment implements
                 if (actionState == ItemTouchHelper.ACTION_STATE_DRAG) {
                     assert viewHolder != null;
                     viewHolder.itemView.setAlpha(0.9f);
+                    dragStartIndex = viewHolder.getBindingAdapterPosition();
+                    sessionCardAdapter.setHoldUpdates(true); // Room lists would undo the drag mid-gesture
                 }
             }
 
@@ -288,10 +307,21 @@ public class TherapistSessionFragment extends Fragment implements
             public void clearView(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder) {
                 super.clearView(recyclerView, viewHolder);
                 viewHolder.itemView.setAlpha(1.0f);
-                if (isEditMode) {
-                    List<CardItem> currentOrder = sessionCardAdapter.getCurrentItems();
-                    Log.d("TherapistSessionFragment", "Drag finished. Requesting order update.");
-                    cardViewModel.updateCardOrder(currentOrder);
+                int fromIndex = dragStartIndex;
+                int toIndex = viewHolder.getBindingAdapterPosition();
+                dragStartIndex = RecyclerView.NO_POSITION;
+                if (isEditMode && fromIndex != RecyclerView.NO_POSITION
+                        && toIndex != RecyclerView.NO_POSITION && fromIndex != toIndex) {
+                    CardItem moved = sessionCardAdapter.getItemAt(toIndex);
+                    int fromPosition = moved.getPosition();
+                    int toPosition = sessionCardAdapter.dropPosition(fromIndex, toIndex);
+                    Log.d("TherapistSessionFragment", "Drag finished. Moving card " + moved.getId()
+                            + " from position " + fromPosition + " to " + toPosition);
+                    sessionCardAdapter.applyMove(new CardMove(moved.getId(), fromPosition, toPosition));
+                    cardViewModel.moveCard(moved, fromPosition, toPosition);
+                }
+                if (!cardViewModel.hasPendingMoves()) {
+                    sessionCardAdapter.setHoldUpdates(false);
                 }
             }
 
@@ -331,7 +361,7 @@ public class TherapistSessionFragment extends Fragment implements
                     public boolean onQueryTextSubmit(String query) {
                         isSearchActive = true;
                         currentSearchQuery = query;
-                        if (sessionCardAdapter != null) sessionCardAdapter.filter(query); // Safety check
+                        cardViewModel.searchCards(query);
                         return false;
                     }
 
@@ -339,7 +369,7 @@ public class TherapistSessionFragment extends Fragment implements
                     public boolean onQueryTextChange(String newText) {
                         isSearchActive = !newText.isEmpty();
                         currentSearchQuery = newText;
-                        if (sessionCardAdapter != null) sessionCardAdapter.filter(newText); // Safety check
+                        cardViewModel.searchCards(newText); // Debounced in the repository
                         return true;
                     }
                 });
@@ -362,7 +392,7 @@ public class TherapistSessionFragment extends Fragment implements
                         }
                         isSearchActive = false;
                         currentSearchQuery = "";
-                        if (sessionCardAdapter != null) sessionCardAdapter.filter(""); // Safety check
+                        cardViewModel.clearSearch();
                         return true;
                     }
                 });
@@ -652,6 +682,7 @@ public class TherapistSessionFragment extends Fragment implements
             
             isSearchActive = false;
             currentSearchQuery = "";
+            cardViewModel.clearSearch();
             loadAndFilterCards();
         }
         else{
@@ -15,6 +15,7 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -39,11 +40,14 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.therapyai.R;
+import com.example.therapyai.data.local.LocalStorageManager;
 import com.example.therapyai.data.local.models.NoteCard;
 import com.example.therapyai.ui.adapters.NoteCardAdapter;
 import com.example.therapyai.ui.views.AudioVisualizerView;
 import com.example.therapyai.ui.viewmodels.SessionViewModel;
 import com.example.therapyai.util.AESUtil; // For GCM_IV_LENGTH constant for file check
+import com.example.therapyai.util.AmplitudeMeter;
+import com.example.therapyai.util.AudioFormatUtil;
 import com.google.android.material.button.MaterialButton;
 
 import java.io.File;
@@ -78,9 +82,16 @@ public class AudioRecordFragment extends Fragment {
     private ActivityResultLauncher<String> requestPermissionLauncher;
 
     private @ColorInt int themedTextColorSecondary;
-    private Handler uiUpdateHandler = new Handler(Looper.getMainLooper());
-    private Runnable uiUpdateRunnable;
+    // One frame loop drives the display: the waveform reads new meter windows every frame,
+    // the timer and controls refresh every UI_UPDATE_INTERVAL
+    private final Choreographer.FrameCallback uiFrameCallback = this::onUiFrame;
+    private boolean uiUpdatesActive = false;
+    private long lastUiUpdateFrameNanos;
     private static final long UI_UPDATE_INTERVAL = 250; // Faster update for timer
+    private static final int METER_READ_BATCH = 16;
+    private AmplitudeMeter.Reader meterReader;
+    private final int[] meterPeaks = new int[METER_READ_BATCH];
+    private final float[] meterRms = new float[METER_READ_BATCH];
     private Handler blinkHandler = new Handler(Looper.getMainLooper());
     private Runnable blinkRunnable;
     private ExecutorService executorService = Executors.newSingleThreadExecutor();
@@ -206,7 +217,6 @@ public class AudioRecordFragment extends Fragment {
         Log.d(TAG, "onStop - Unbinding from service.");
         if (isBound) {
             if (recordingService != null) {
-                recordingService.setAmplitudeListener(null); // Prevent callbacks to detached fragment
                 // Do not stop service here if it's meant to record in background
                 // Only unbind. Service lifecycle managed by startService/stopSelf or foreground state.
             }
@@ -336,13 +346,6 @@ public class AudioRecordFragment extends Fragment {
             recordingService = binder.getService();
             isBound = true;
 
-            recordingService.setAmplitudeListener(amplitude -> {
-                if (waveView != null && getActivity() != null) { // Check view and activity
-                    getActivity().runOnUiThread(() -> {
-                        if (waveView != null) waveView.updateAmplitude(amplitude); // Double check waveView
-                    });
-                }
-            });
             updateUiBasedOnServiceState(); // Reflect service's current state
             startUiUpdates();              // Start polling for timer/UI updates
         }
@@ -400,30 +403,54 @@ public class AudioRecordFragment extends Fragment {
             return;
         }
         Log.d(TAG, "Starting UI update polling.");
-        uiUpdateRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (isBound && recordingService != null && getView() != null && isAdded()) {
-                    updateUiBasedOnServiceState(); // Update all UI elements
-                    if (recordingService.isRecording()) { // Continue polling if recording
-                        uiUpdateHandler.postDelayed(this, UI_UPDATE_INTERVAL);
-                    } else {
-                        stopUiUpdates(); // Stop if not recording
-                    }
-                } else {
-                    stopUiUpdates(); // Stop if unbound, service null, or view destroyed
-                }
-            }
-        };
-        uiUpdateHandler.post(uiUpdateRunnable);
+        uiUpdatesActive = true;
+        lastUiUpdateFrameNanos = 0; // Refresh on the first frame
+        Choreographer.getInstance().postFrameCallback(uiFrameCallback);
     }
 
     private void stopUiUpdates() {
-        if (uiUpdateRunnable != null) {
+        if (uiUpdatesActive) {
             Log.d(TAG, "Stopping UI update polling.");
-            uiUpdateHandler.removeCallbacks(uiUpdateRunnable);
-            uiUpdateRunnable = null;
+            Choreographer.getInstance().removeFrameCallback(uiFrameCallback);
+            uiUpdatesActive = false;
+        }
+    }
+
+    private void onUiFrame(long frameTimeNanos) {
+        if (!isBound || recordingService == null || getView() == null || !isAdded()) {
+            stopUiUpdates(); // Stop if unbound, service null, or view destroyed
+            return;
+        }
+        drainAmplitudeMeter();
+        if (frameTimeNanos - lastUiUpdateFrameNanos >= UI_UPDATE_INTERVAL * 1_000_000L) {
+            lastUiUpdateFrameNanos = frameTimeNanos;
+            updateUiBasedOnServiceState(); // Update all UI elements
+            if (!recordingService.isRecording()) {
+                stopUiUpdates(); // Stop if not recording
+                return;
+            }
         }
+        if (uiUpdatesActive) {
+            Choreographer choreographer = Choreographer.getInstance();
+            choreographer.removeFrameCallback(uiFrameCallback); // In case the update above restarted the loop
+            choreographer.postFrameCallback(uiFrameCallback);
+        }
+    }
+
+    // Feeds the waveform one point per meter window completed since the last frame
+    private void drainAmplitudeMeter() {
+        AmplitudeMeter meter = recordingService.getAmplitudeMeter();
+        if (meter == null || waveView == null) return;
+        if (meterReader == null || !meterReader.isReading(meter)) {
+            meterReader = meter.newReader();
+        }
+        int count;
+        do {
+            count = meterReader.read(meterPeaks, meterRms);
+            for (int i = 0; i < count; i++) {
+                waveView.updateAmplitude(meterPeaks[i]);
+            }
+        } while (count == METER_READ_BATCH);
     }
 
     private void updateUiBasedOnServiceState() {
@@ -538,6 +565,8 @@ public class AudioRecordFragment extends Fragment {
         try {
             viewModel.clearSensitiveSessionData(); // Clear any old session data (paths, DEKs)
             Log.d(TAG, "Requesting service to start recording.");
+            recordingService.setAudioEncoding(LocalStorageManager.getInstance().getAudioEncoding());
+            recordingService.setCaptureProfile(LocalStorageManager.getInstance().getCaptureProfile());
             recordingService.startRecording(); // This can throw IOException or SecurityException
 
             sessionFinishedOrCancelled = false; // Reset flag for new session
@@ -659,6 +688,8 @@ public class AudioRecordFragment extends Fragment {
 
         String finalEncryptedDekBase64 = recordingService.getEncryptedDEK_Base64();
         long finalElapsedTime = recordingService.getElapsedTimeMillis();
+        AudioFormatUtil.AudioEncoding finalAudioEncoding = recordingService.getAudioEncoding();
+        AudioFormatUtil.CaptureProfile finalCaptureProfile = recordingService.getCaptureProfile();
 
         recordingService.stopRecordingAndForeground();
 
@@ -675,6 +706,8 @@ public class AudioRecordFragment extends Fragment {
 
             viewModel.setEncryptedAudioFilePaths(finalSegmentPaths);
             viewModel.setEncryptedDataEncryptionKey(finalEncryptedDekBase64);
+            viewModel.setAudioEncoding(finalAudioEncoding);
+            viewModel.setCaptureProfile(finalCaptureProfile);
 
             // This will trigger the navigation. The progress bar is still visible at this point.
             navigateToNextStep();
@@ -12,9 +12,7 @@ import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.os.Binder;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
 import android.os.SystemClock;
 import android.security.keystore.UserNotAuthenticatedException; // Important
 import android.util.Base64;
@@ -24,19 +22,28 @@ import androidx.core.app.NotificationCompat;
 import com.example.therapyai.R;
 import com.example.therapyai.ui.sessions.session.SessionHostActivity;
 import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.AmplitudeMeter;
+import com.example.therapyai.util.AudioFormatUtil;
+import com.example.therapyai.util.ChunkedGcmContainer;
+import com.example.therapyai.util.FlacEncoder;
 import com.example.therapyai.util.HIPAAKeyManager;
+import com.example.therapyai.util.PcmRingBuffer;
+import com.example.therapyai.util.PolyphaseResampler;
+import com.example.therapyai.util.SegmentIntegrityVerifier;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays; // For clearing sensitive byte arrays
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 
 public class RecordingService extends Service {
@@ -45,13 +52,27 @@ public class RecordingService extends Service {
     private static final String CHANNEL_ID = "RecordingServiceChannel";
     private static final int NOTIFICATION_ID = 1;
     private static final int CIPHER_REINIT_INTERVAL = 1000; // Reinitialize cipher every 1000 chunks (~30-60 seconds)
+    private static final int CAPTURE_RING_SLOTS = 64;       // ~2.5 s of audio between capture and processing
     private final IBinder binder = new LocalBinder();
     private int chunkCounter = 0;
     // Real-time encryption components
     private AudioRecord audioRecord;
-    private Cipher encryptionCipher; // MODIFIED: Replaced CipherOutputStream with a direct Cipher object
+    private ChunkedGcmContainer.Writer segmentWriter; // Seals fixed-size chunks of the current segment
     private FileOutputStream fileOutputStream;
-    private Thread recordingThread;
+    private Thread recordingThread;                 // Capture stage: AudioRecord -> ring
+    private Thread processingThread;                // Processing stage: ring -> encryption/disk
+    private PcmRingBuffer captureRing;
+    private volatile boolean captureFinished = false;
+    private volatile boolean segmentFinalizeFailed = false; // Set by whichever thread sealed the last segment
+    private AudioFormatUtil.AudioEncoding audioEncoding = AudioFormatUtil.AudioEncoding.PCM_WAV; // Chosen per session
+    private FlacEncoder flacEncoder;                // Set when the session is FLAC-encoded
+    private OutputStream encodeStage;               // Processing writes PCM here: the FLAC encoder or the segment sink
+    private AudioFormatUtil.CaptureProfile captureProfile = AudioFormatUtil.CaptureProfile.DEFAULT; // Chosen per session
+    private int captureSampleRate;                  // Rate AudioRecord actually runs at
+    private int captureChannels;                    // 1, or 2 if the device only opened in stereo
+    private int captureBufferSize;                  // AudioRecord read size (one ring slot)
+    private PolyphaseResampler resampler;           // Set when capture rate/channels differ from the profile
+    private byte[] resampleBuffer;
 
     // --- Multi-File Encryption Specific ---
     private List<File> encryptedSegmentFiles = new ArrayList<>(); // List of encrypted segment files
@@ -59,20 +80,39 @@ public class RecordingService extends Service {
     private SecretKey currentSessionDEK_plaintext = null; // Plaintext DEK for audio encryption
     private String currentEncryptedDEK_b64 = null;   // KEK-encrypted DEK, base64 encoded
     private int segmentCounter = 0;                 // Counter for segment files
+    private MessageDigest currentSegmentDigest = null; // Plaintext digest of the current segment
+    private long currentSegmentPlaintextBytes = 0;   // Plaintext bytes encrypted into the current segment
+    private SegmentIntegrityVerifier segmentVerifier = null; // Verifies segments in the background as they close
+
+    // Bytes after the (optional) encoder: sealed into whichever segment is current, and digested
+    // for verification. Encoded frames may straddle a segment boundary; the segments are always
+    // concatenated in order, so the stream stays continuous.
+    private final OutputStream segmentSink = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            segmentWriter.write(b, off, len);
+            currentSegmentDigest.update(b, off, len);
+            currentSegmentPlaintextBytes += len;
+        }
+    };
     // --- End Multi-File Encryption Specific ---
 
-    // Audio recording configuration
-    private static final int SAMPLE_RATE = 44100;
-    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+    // Audio recording configuration; the sample rate comes from the session's capture profile
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
-    private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
+    private static final int[] FALLBACK_CAPTURE_RATES = {48000, 44100}; // Rates every device supports, resampled down
 
     private volatile boolean isRecording = false;
     private volatile boolean isPaused = false;
 
-    private Handler amplitudeHandler;
-    private Runnable amplitudeRunnable;
-    private AmplitudeListener amplitudeListener;
+    // Level of the current recording, metered on the capture thread and pulled by the UI
+    private static final int METER_WINDOW_MILLIS = 100;
+    private static final int METER_HISTORY_WINDOWS = 64;
+    private volatile AmplitudeMeter amplitudeMeter;
 
     private long startTimeMillis = 0;
     private long timeWhenPausedMillis = 0;
@@ -81,10 +121,6 @@ public class RecordingService extends Service {
     private ExecutorService executorService = Executors.newSingleThreadExecutor();
 
 
-    public interface AmplitudeListener {
-        void onAmplitudeChanged(int amplitude);
-    }
-
     public class LocalBinder extends Binder {
         RecordingService getService() {
             return RecordingService.this;
@@ -95,7 +131,6 @@ public class RecordingService extends Service {
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "onCreate");
-        amplitudeHandler = new Handler(Looper.getMainLooper());
         createNotificationChannel();
     }
 
@@ -135,6 +170,7 @@ public class RecordingService extends Service {
         if (!executorService.isShutdown()) {
             executorService.shutdown();
         }
+        shutdownSegmentVerifier();
         clearSensitiveKeys();
         Log.d(TAG,"RecordingService onDestroy finished.");
     }
@@ -144,6 +180,7 @@ public class RecordingService extends Service {
             // Overwrite plaintext DEK bytes if accessible, otherwise just nullify
             // For SecretKey objects, nullifying is the primary way if bytes aren't directly held.
             currentSessionDEK_plaintext = null;
+            AESUtil.releaseThreadCiphers(); // The cached cipher still holds the DEK's key schedule
             Log.d(TAG, "Plaintext DEK cleared from service memory.");
         }
         currentEncryptedDEK_b64 = null; // This is already encrypted, but good practice
@@ -188,30 +225,41 @@ public class RecordingService extends Service {
             // Clear any existing segment files
             encryptedSegmentFiles.clear();
             segmentCounter = 0;
+            shutdownSegmentVerifier();
+            segmentVerifier = new SegmentIntegrityVerifier(currentSessionDEK_plaintext);
             
             // Create first segment file
             createNewSegmentFile();
+
+            // Optional encoding stage between capture and encryption
+            if (audioEncoding == AudioFormatUtil.AudioEncoding.FLAC) {
+                flacEncoder = new FlacEncoder(segmentSink, captureProfile.getSampleRate(), captureProfile.getChannels());
+                encodeStage = flacEncoder;
+            } else {
+                flacEncoder = null;
+                encodeStage = segmentSink;
+            }
+            Log.i(TAG, "Session audio encoding: " + audioEncoding.getMetadataTag() + ", profile: " + captureProfile.getMetadataTag());
             
             Log.i(TAG, "Multi-file encrypted recording initialized. First segment: " + currentSegmentFile.getAbsolutePath());
 
             // REMOVED: CipherOutputStream is no longer used.
             // cipherOutputStream = new CipherOutputStream(fileOutputStream, cipher);
 
-            // Set up AudioRecord for real-time recording with memory-conscious buffer size
-            int optimizedBufferSize = Math.max(BUFFER_SIZE, BUFFER_SIZE * 2); // Use minimum safe buffer size
-            audioRecord = new AudioRecord(
-                    MediaRecorder.AudioSource.MIC,
-                    SAMPLE_RATE,
-                    CHANNEL_CONFIG,
-                    AUDIO_FORMAT,
-                    optimizedBufferSize // Optimized buffer size for memory efficiency
-            );
-
-            Log.d(TAG, "AudioRecord buffer size: " + optimizedBufferSize + " bytes");
-
-            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            // Set up AudioRecord at the profile's rate, or the closest configuration the device opens
+            audioRecord = openAudioRecord();
+            if (audioRecord == null) {
                 throw new IOException("AudioRecord initialization failed");
             }
+            if (captureSampleRate != captureProfile.getSampleRate() || captureChannels != captureProfile.getChannels()) {
+                resampler = new PolyphaseResampler(captureSampleRate, captureProfile.getSampleRate(), captureChannels);
+                resampleBuffer = new byte[Math.max(resampler.maxOutputBytes(captureBufferSize), resampler.maxDrainBytes())];
+                Log.i(TAG, "Resampling " + captureSampleRate + " Hz x" + captureChannels + " -> "
+                        + captureProfile.getSampleRate() + " Hz mono");
+            } else {
+                resampler = null;
+                resampleBuffer = null;
+            }
 
             // Start recording
             audioRecord.startRecording();
@@ -245,82 +293,98 @@ public class RecordingService extends Service {
         }    }
 
     /**
-     * This thread manually encrypts chunks of data using Cipher.update()
-     * with aggressive memory management to prevent OOM errors.
+     * Opens AudioRecord for the session's capture profile. Tries the profile rate in mono first,
+     * then the common native rates, then stereo (downmixed later) for devices without a mono path.
+     * Sets captureSampleRate, captureChannels and captureBufferSize for the configuration that opened.
+     *
+     * @return An initialized AudioRecord, or null if no configuration works.
+     */
+    private AudioRecord openAudioRecord() throws SecurityException {
+        int[] channelConfigs = {AudioFormat.CHANNEL_IN_MONO, AudioFormat.CHANNEL_IN_STEREO};
+        int[] rates = new int[FALLBACK_CAPTURE_RATES.length + 1];
+        rates[0] = captureProfile.getSampleRate();
+        System.arraycopy(FALLBACK_CAPTURE_RATES, 0, rates, 1, FALLBACK_CAPTURE_RATES.length);
+
+        for (int channelConfig : channelConfigs) {
+            for (int rate : rates) {
+                int minBufferSize = AudioRecord.getMinBufferSize(rate, channelConfig, AUDIO_FORMAT);
+                if (minBufferSize <= 0) {
+                    continue; // ERROR / ERROR_BAD_VALUE: not supported here
+                }
+                // Set up AudioRecord for real-time recording with memory-conscious buffer size
+                int optimizedBufferSize = minBufferSize * 2;
+                AudioRecord record = new AudioRecord(
+                        MediaRecorder.AudioSource.MIC,
+                        rate,
+                        channelConfig,
+                        AUDIO_FORMAT,
+                        optimizedBufferSize // Optimized buffer size for memory efficiency
+                );
+                if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                    record.release();
+                    continue;
+                }
+                captureSampleRate = rate;
+                captureChannels = channelConfig == AudioFormat.CHANNEL_IN_STEREO ? 2 : 1;
+                captureBufferSize = minBufferSize;
+                Log.d(TAG, "AudioRecord opened at " + rate + " Hz x" + captureChannels
+                        + ", buffer size: " + optimizedBufferSize + " bytes");
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects the sample rate the next recording is stored at. Ignored while recording.
+     */
+    public void setCaptureProfile(AudioFormatUtil.CaptureProfile profile) {
+        if (isRecording) {
+            Log.w(TAG, "setCaptureProfile ignored while recording");
+            return;
+        }
+        captureProfile = profile != null ? profile : AudioFormatUtil.CaptureProfile.DEFAULT;
+    }
+
+    /**
+     * Capture profile of the current (or last) recording's segments.
+     */
+    public AudioFormatUtil.CaptureProfile getCaptureProfile() {
+        return captureProfile;
+    }
+
+    /**
+     * Starts the two recording stages, connected by a preallocated SPSC ring of PCM buffers:
+     * the capture thread reads AudioRecord into ring slots and meters them, and the processing
+     * thread encrypts and writes them. A slow disk write or GC pause on the processing side is
+     * absorbed by the ring instead of overrunning AudioRecord. Metering is a single
+     * allocation-free pass, so it runs before publishing: the level tracks what was just heard
+     * rather than lagging by however much the ring holds.
      */
     private void startRecordingThread() {
+        captureRing = new PcmRingBuffer(CAPTURE_RING_SLOTS, captureBufferSize);
+        amplitudeMeter = new AmplitudeMeter(captureSampleRate, captureChannels, METER_WINDOW_MILLIS, METER_HISTORY_WINDOWS);
+        captureFinished = false;
+        segmentFinalizeFailed = false;
+        processingThread = new Thread(this::runProcessingLoop, "RecordingProcessing");
+        processingThread.start();
+
         recordingThread = new Thread(new Runnable() {
             @Override
             public void run() {
                 android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_AUDIO);
-
-                // Use smaller, more memory-efficient buffers
-                byte[] audioBuffer = new byte[BUFFER_SIZE];
-                int maxAmplitude = 0;
-                long lastAmplitudeUpdate = 0;
+                final PcmRingBuffer ring = captureRing;
+                final AmplitudeMeter meter = amplitudeMeter;
 
                 try {
                     while (isRecording && !Thread.currentThread().isInterrupted()) {
                         if (!isPaused) {
-                            int bytesRead = audioRecord.read(audioBuffer, 0, audioBuffer.length);
+                            byte[] slot = ring.claim();
+                            int bytesRead = audioRecord.read(slot, 0, slot.length);
 
                             if (bytesRead > 0) {
-                                try {
-                                    // MULTI-FILE APPROACH: Create new segment file periodically
-                                    if (chunkCounter > 0 && chunkCounter % CIPHER_REINIT_INTERVAL == 0) {
-                                        Log.d(TAG, "Creating new segment file to prevent OOM (chunk: " + chunkCounter + ")");
-                                        
-                                        // Finalize current segment
-                                        finalizeCurrentSegment();
-                                        
-                                        // Create new segment file
-                                        createNewSegmentFile();
-                                        
-                                        Log.d(TAG, "New segment file created: " + currentSegmentFile.getName());
-                                    }
-
-                                    // Encrypt the audio chunk for current segment
-                                    byte[] encryptedChunk = encryptionCipher.update(audioBuffer, 0, bytesRead);
-                                    
-                                    if (encryptedChunk != null && encryptedChunk.length > 0) {
-                                        fileOutputStream.write(encryptedChunk);
-                                        fileOutputStream.flush(); // Ensure data is written immediately
-                                    }
-                                    
-                                    // Immediately clear the encrypted chunk to free memory
-                                    if (encryptedChunk != null) {
-                                        Arrays.fill(encryptedChunk, (byte) 0);
-                                    }
-                                    
-                                    chunkCounter++;
-                                    
-                                    // Memory cleanup every 100 chunks
-                                    if (chunkCounter % 100 == 0) {
-                                        System.gc();
-                                    }
-                                    
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error during encryption: " + e.getMessage(), e);
-                                    break;
-                                }
-
-                                // Amplitude calculation (unchanged)
-                                long currentTime = System.currentTimeMillis();
-                                int currentMaxAmplitude = calculateAmplitude(audioBuffer, bytesRead);
-                                if (currentMaxAmplitude > maxAmplitude) {
-                                    maxAmplitude = currentMaxAmplitude;
-                                }
-
-                                if (currentTime - lastAmplitudeUpdate >= 100) {
-                                    final int amplitudeToReport = maxAmplitude;
-                                    amplitudeHandler.post(() -> {
-                                        if (amplitudeListener != null) {
-                                            amplitudeListener.onAmplitudeChanged(amplitudeToReport);
-                                        }
-                                    });
-                                    maxAmplitude = 0;
-                                    lastAmplitudeUpdate = currentTime;
-                                }
+                                meter.process(slot, 0, bytesRead); // The slot is ours until published
+                                ring.publish(bytesRead);
                             } else if (bytesRead < 0) {
                                 Log.e(TAG, "AudioRecord read error: " + bytesRead);
                                 break;
@@ -335,38 +399,157 @@ public class RecordingService extends Service {
                         }
                     }
                 } finally {
-                    // Always clear sensitive buffers
-                    Arrays.fill(audioBuffer, (byte) 0);
-                    
-                    // Reset chunk counter
-                    chunkCounter = 0;
-                    
-                    // Force garbage collection to help with memory cleanup
-                    System.gc();
+                    captureFinished = true;
                 }
 
-                Log.d(TAG, "Recording thread finished");
+                Log.d(TAG, "Capture thread finished");
             }
-        });
+        }, "RecordingCapture");
         recordingThread.start();
     }
 
+    /**
+     * Drains the capture ring: resamples (if the device could not capture at the profile rate),
+     * encodes and encrypts each buffer into the current segment and rotates segments. Exits once capture has finished and the ring is empty
+     * (or when interrupted), then finishes the encoder and seals the current segment.
+     */
+    private void runProcessingLoop() {
+        final PcmRingBuffer ring = captureRing;
+
+        try {
+            while (true) {
+                if (!ring.awaitData(50, TimeUnit.MILLISECONDS)) {
+                    if (captureFinished && ring.isEmpty()) {
+                        break;
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        Log.w(TAG, "Processing interrupted before capture finished");
+                        break;
+                    }
+                    continue;
+                }
+                byte[] audioBuffer = ring.peekBuffer();
+                int bytesRead = ring.peekLength();
+
+                try {
+                    // MULTI-FILE APPROACH: Create new segment file periodically
+                    if (chunkCounter > 0 && chunkCounter % CIPHER_REINIT_INTERVAL == 0) {
+                        Log.d(TAG, "Creating new segment file to prevent OOM (chunk: " + chunkCounter + ")");
+
+                        // Finalize current segment
+                        finalizeCurrentSegment();
+
+                        // Create new segment file
+                        createNewSegmentFile();
+
+                        Log.d(TAG, "New segment file created: " + currentSegmentFile.getName());
+                    }
+
+                    // Encode (if enabled) and encrypt the audio chunk for current segment; full
+                    // container chunks are sealed into the writer's preallocated buffers and written as they fill
+                    if (resampler != null) {
+                        int resampledLength = resampler.process(audioBuffer, 0, bytesRead, resampleBuffer);
+                        encodeStage.write(resampleBuffer, 0, resampledLength);
+                    } else {
+                        encodeStage.write(audioBuffer, 0, bytesRead);
+                    }
+
+                    chunkCounter++;
+                } catch (Exception e) {
+                    Log.e(TAG, "Error during encryption: " + e.getMessage(), e);
+                    isRecording = false; // Stop capture too; nothing more can be written
+                    ring.release();
+                    break;
+                }
+
+                ring.release();
+            }
+        } finally {
+            // Reset chunk counter
+            chunkCounter = 0;
+            // This thread owns the encoder and the open segment, so it seals them on the way out.
+            finishEncoding();
+            AESUtil.releaseThreadCiphers();
+        }
+
+        Log.d(TAG, "Processing thread finished. Ring overruns: " + ring.getOverrunCount()
+                + " (" + ring.getDroppedBytes() + " bytes dropped), high-water mark: "
+                + ring.getHighWaterMark() + "/" + ring.getCapacity());
+    }
 
     /**
-     * Calculates amplitude from PCM audio data (similar to MediaRecorder.getMaxAmplitude()).
+     * Buffers dropped because the processing stage fell a full ring behind capture.
      */
-    private int calculateAmplitude(byte[] audioBuffer, int bytesRead) {
-        int maxAmplitude = 0;
-        // Process 16-bit PCM data (2 bytes per sample)
-        for (int i = 0; i < bytesRead - 1; i += 2) {
-            short sample = (short) ((audioBuffer[i + 1] << 8) | (audioBuffer[i] & 0xFF));
-            int amplitude = Math.abs(sample);
-            if (amplitude > maxAmplitude) {
-                maxAmplitude = amplitude;
+    public long getCaptureOverrunCount() {
+        PcmRingBuffer ring = captureRing;
+        return ring != null ? ring.getOverrunCount() : 0;
+    }
+
+    /**
+     * Most buffers ever queued between capture and processing in this recording.
+     */
+    public int getCaptureHighWaterMark() {
+        PcmRingBuffer ring = captureRing;
+        return ring != null ? ring.getHighWaterMark() : 0;
+    }
+
+
+    /**
+     * Waits for a recording stage to exit, interrupting it once {@code interruptAfterMillis} have
+     * passed. Keeps waiting after that: the caller is about to wipe the ring and release state
+     * the thread may still be using.
+     */
+    private static void awaitThreadExit(Thread thread, long interruptAfterMillis) {
+        boolean interrupted = false;
+        boolean signalled = false;
+        long deadline = SystemClock.elapsedRealtime() + interruptAfterMillis;
+        while (thread.isAlive()) {
+            try {
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (!signalled && remaining <= 0) {
+                    Log.w(TAG, thread.getName() + " did not finish in time; interrupting");
+                    thread.interrupt();
+                    signalled = true;
+                }
+                thread.join(signalled ? 500 : remaining);
+                if (signalled && thread.isAlive()) {
+                    Log.w(TAG, "Still waiting for " + thread.getName() + " to finish");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
         }
-        // Scale to match MediaRecorder range (0-32767)
-        return maxAmplitude;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes the resampler tail and the FLAC encoder into the current segment, then seals it.
+     * Runs on the processing thread as it exits, or inline if that thread never started.
+     */
+    private void finishEncoding() {
+        try {
+            if (segmentWriter != null && fileOutputStream != null) {
+                if (resampler != null && encodeStage != null) {
+                    // Flush the filter tail so the recording keeps its last few milliseconds
+                    int tailLength = resampler.drain(resampleBuffer);
+                    encodeStage.write(resampleBuffer, 0, tailLength);
+                }
+                if (flacEncoder != null) {
+                    // Encode the last partial block into the segment before it is sealed
+                    flacEncoder.finish();
+                    Log.d(TAG, "FLAC stream finished: " + flacEncoder.getSamplesEncoded() + " samples, "
+                            + flacEncoder.getBytesEncoded() + " bytes");
+                }
+                Log.d(TAG, "Finalizing current segment...");
+                finalizeCurrentSegment();
+                Log.d(TAG, "Current segment finalized. Total segments: " + encryptedSegmentFiles.size());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error finalizing current segment", e);
+            segmentFinalizeFailed = true;
+        }
     }
 
     /**
@@ -380,16 +563,21 @@ public class RecordingService extends Service {
         // Signal the recording thread to stop and wait for it to finish.
         isRecording = false;
         isPaused = false;
-        if (recordingThread != null && recordingThread.isAlive()) {
+        boolean processingStarted = processingThread != null;
+        if (recordingThread != null) {
             recordingThread.interrupt();
-            try {
-                recordingThread.join(1000); // Wait up to 1 second for thread to finish
-            } catch (InterruptedException e) {
-                Log.w(TAG, "Interrupted while waiting for recording thread to finish");
-                Thread.currentThread().interrupt();
-            }
+            awaitThreadExit(recordingThread, 1000);
             recordingThread = null;
         }
+        // Let the processing stage drain what was captured; it seals the segment before exiting.
+        if (processingThread != null) {
+            awaitThreadExit(processingThread, 2000);
+            processingThread = null;
+        }
+        // Both stages have exited, so nothing reads the ring or writes the segment any more.
+        if (captureRing != null) {
+            captureRing.wipe();
+        }
 
         // Stop AudioRecord
         if (audioRecord != null) {
@@ -405,20 +593,27 @@ public class RecordingService extends Service {
             audioRecord = null;
         }
 
-        // Finalize current segment
-        try {
-            if (encryptionCipher != null && fileOutputStream != null) {
-                Log.d(TAG, "Finalizing current segment...");
-                finalizeCurrentSegment();
-                Log.d(TAG, "Current segment finalized. Total segments: " + encryptedSegmentFiles.size());
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error finalizing current segment", e);
+        // Startup failed before the processing stage ran, so the segment is sealed here.
+        if (!processingStarted) {
+            finishEncoding();
+            AESUtil.releaseThreadCiphers();
+        }
+        if (segmentFinalizeFailed) {
             encryptionSetupFailed = true;
-        } finally {
-            fileOutputStream = null;
-            encryptionCipher = null;
-            currentSegmentFile = null;
+            segmentFinalizeFailed = false;
+        }
+        fileOutputStream = null;
+        segmentWriter = null;
+        currentSegmentFile = null;
+        flacEncoder = null;
+        encodeStage = null;
+        if (resampler != null) {
+            resampler.wipe();
+            resampler = null;
+        }
+        if (resampleBuffer != null) {
+            Arrays.fill(resampleBuffer, (byte) 0);
+            resampleBuffer = null;
         }
 
         // Validate encryption if recording was successful
@@ -439,6 +634,7 @@ public class RecordingService extends Service {
 
         if (encryptionSetupFailed) {
             Log.w(TAG, "Encryption setup failed. Cleaning up potentially incomplete/invalid files.");
+            shutdownSegmentVerifier();
             cleanupSegmentFiles();
             currentEncryptedDEK_b64 = null;
             currentSessionDEK_plaintext = null;
@@ -486,6 +682,25 @@ public class RecordingService extends Service {
     public boolean isRecording() { return isRecording; }
     public boolean isPaused() { return isPaused; }
 
+    /**
+     * Selects how the next recording is stored. Ignored while a recording is in progress, so a
+     * session never mixes encodings.
+     */
+    public void setAudioEncoding(AudioFormatUtil.AudioEncoding encoding) {
+        if (isRecording) {
+            Log.w(TAG, "setAudioEncoding ignored while recording");
+            return;
+        }
+        audioEncoding = encoding != null ? encoding : AudioFormatUtil.AudioEncoding.PCM_WAV;
+    }
+
+    /**
+     * Encoding of the current (or last) recording's segments.
+     */
+    public AudioFormatUtil.AudioEncoding getAudioEncoding() {
+        return audioEncoding;
+    }
+
     public List<File> getEncryptedSegmentFiles() {
         return new ArrayList<>(encryptedSegmentFiles);
     }
@@ -501,7 +716,11 @@ public class RecordingService extends Service {
         return isPaused ? timeWhenPausedMillis : (SystemClock.elapsedRealtime() - startTimeMillis);
     }
 
-    public void setAmplitudeListener(AmplitudeListener listener) { this.amplitudeListener = listener; }
+    /**
+     * Level meter of the current (or last) recording, fed with the captured PCM before any
+     * resampling; null before the first recording starts.
+     */
+    public AmplitudeMeter getAmplitudeMeter() { return amplitudeMeter; }
 
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -558,17 +777,14 @@ public class RecordingService extends Service {
             }
         }
         
-        // Set up new encrypted output stream
+        // Set up new encrypted output stream; the writer puts the container header first
         fileOutputStream = new FileOutputStream(currentSegmentFile);
-        encryptionCipher = AESUtil.createEncryptionCipher(currentSessionDEK_plaintext);
-        
-        // Write IV to beginning of segment file
-        byte[] iv = encryptionCipher.getIV();
-        if (iv == null || iv.length != AESUtil.GCM_IV_LENGTH) {
-            throw new SecurityException("Generated IV is not of the expected GCM length.");
-        }
-        fileOutputStream.write(iv);
+        segmentWriter = new ChunkedGcmContainer.Writer(fileOutputStream, currentSessionDEK_plaintext,
+                ChunkedGcmContainer.DEFAULT_CHUNK_SIZE);
         fileOutputStream.flush();
+
+        currentSegmentDigest = SegmentIntegrityVerifier.newSegmentDigest();
+        currentSegmentPlaintextBytes = 0;
         
         Log.d(TAG, "Created new segment file: " + currentSegmentFile.getName());
     }
@@ -577,14 +793,9 @@ public class RecordingService extends Service {
      * Finalizes the current segment and adds it to the list
      */
     private void finalizeCurrentSegment() throws Exception {
-        if (encryptionCipher != null && fileOutputStream != null) {
-            // Finalize encryption for current segment
-            byte[] finalBlock = encryptionCipher.doFinal();
-            if (finalBlock != null && finalBlock.length > 0) {
-                fileOutputStream.write(finalBlock);
-                fileOutputStream.flush();
-                Arrays.fill(finalBlock, (byte) 0);
-            }
+        if (segmentWriter != null && fileOutputStream != null) {
+            // Seal the final chunk and write the index footer
+            segmentWriter.finish();
             
             fileOutputStream.close();
             
@@ -592,7 +803,14 @@ public class RecordingService extends Service {
             if (currentSegmentFile != null && currentSegmentFile.exists()) {
                 encryptedSegmentFiles.add(currentSegmentFile);
                 Log.d(TAG, "Finalized segment: " + currentSegmentFile.getName() + " (size: " + currentSegmentFile.length() + " bytes)");
+
+                // Verify in the background now, so stopping only waits for the last segment.
+                if (segmentVerifier != null && currentSegmentDigest != null) {
+                    segmentVerifier.submit(currentSegmentFile, encryptedSegmentFiles.size() - 1,
+                            currentSegmentDigest.digest(), currentSegmentPlaintextBytes);
+                }
             }
+            currentSegmentDigest = null;
         }
     }
     
@@ -605,6 +823,17 @@ public class RecordingService extends Service {
             return false;
         }
         
+        // Segments were queued for verification as they closed; only the tail is still running.
+        if (segmentVerifier != null) {
+            boolean verified = segmentVerifier.awaitAll();
+            shutdownSegmentVerifier();
+            if (!verified) {
+                return false;
+            }
+            Log.d(TAG, "All " + encryptedSegmentFiles.size() + " segments verified incrementally");
+            return true;
+        }
+
         // Validate each segment individually
         for (int i = 0; i < encryptedSegmentFiles.size(); i++) {
             File segmentFile = encryptedSegmentFiles.get(i);
@@ -626,25 +855,27 @@ public class RecordingService extends Service {
             return false;
         }
         
-        File tempDecryptedFile = null;
         try {
-            tempDecryptedFile = new File(getCacheDir(), "validation_segment_" + segmentIndex + "_" + System.currentTimeMillis() + ".tmp");
-            AESUtil.decryptFile(segmentFile, tempDecryptedFile, currentSessionDEK_plaintext);
+            // Single streaming pass; the GCM tag check covers the whole segment, no temp file needed.
+            long decryptedSize = SegmentIntegrityVerifier.decryptAndDigest(segmentFile, currentSessionDEK_plaintext, null);
             
-            if (tempDecryptedFile.exists() && tempDecryptedFile.length() > 0) {
-                Log.d(TAG, "Segment " + segmentIndex + " validation successful. Decrypted size: " + tempDecryptedFile.length());
+            if (decryptedSize > 0) {
+                Log.d(TAG, "Segment " + segmentIndex + " validation successful. Decrypted size: " + decryptedSize);
                 return true;
             } else {
-                Log.e(TAG, "Segment " + segmentIndex + " validation failed: Decrypted file is empty or doesn't exist");
+                Log.e(TAG, "Segment " + segmentIndex + " validation failed: Decrypted segment is empty");
                 return false;
             }
         } catch (Exception e) {
             Log.e(TAG, "Segment " + segmentIndex + " validation failed: Cannot decrypt", e);
             return false;
-        } finally {
-            if (tempDecryptedFile != null && tempDecryptedFile.exists()) {
-                AESUtil.secureDelete(tempDecryptedFile);
-            }
+        }
+    }
+    
+    private void shutdownSegmentVerifier() {
+        if (segmentVerifier != null) {
+            segmentVerifier.shutdown();
+            segmentVerifier = null;
         }
     }
     
@@ -676,7 +907,8 @@ public class RecordingService extends Service {
             throw new IllegalStateException("No encrypted segments or DEK not available for stitching");
         }
         
-        File stitchedFile = new File(getCacheDir(), "stitched_audio_" + System.currentTimeMillis() + ".pcm");
+        File stitchedFile = new File(getCacheDir(), "stitched_audio_" + System.currentTimeMillis()
+                + (audioEncoding == AudioFormatUtil.AudioEncoding.FLAC ? AudioFormatUtil.getAudioFileExtension(audioEncoding) : ".pcm"));
         
         try (FileOutputStream stitchedOutput = new FileOutputStream(stitchedFile)) {
             Log.i(TAG, "Stitching " + encryptedSegmentFiles.size() + " segments into decrypted file");
@@ -726,6 +958,11 @@ public class RecordingService extends Service {
         info.append("- isRecording: ").append(isRecording).append("\n");
         info.append("- isPaused: ").append(isPaused).append("\n");
         info.append("- audioRecord: ").append(audioRecord != null ? "present (state: " + audioRecord.getState() + ")" : "null").append("\n");
+        if (captureRing != null) {
+            info.append("- captureRing: overruns ").append(captureRing.getOverrunCount())
+                    .append(", high-water ").append(captureRing.getHighWaterMark())
+                    .append("/").append(captureRing.getCapacity()).append("\n");
+        }
         info.append("- recordingThread: ").append(recordingThread != null ? "present (alive: " + recordingThread.isAlive() + ")" : "null").append("\n");
         info.append("- encryptedSegmentFiles: ").append(encryptedSegmentFiles.size()).append(" segments\n");
         for (int i = 0; i < encryptedSegmentFiles.size(); i++) {
@@ -743,7 +980,11 @@ public class RecordingService extends Service {
         info.append("- segmentCounter: ").append(segmentCounter).append("\n");
         info.append("- currentSessionDEK_plaintext: ").append(currentSessionDEK_plaintext != null ? "present" : "null").append("\n");
         info.append("- currentEncryptedDEK_b64: ").append(currentEncryptedDEK_b64 != null ? "present (length: " + currentEncryptedDEK_b64.length() + ")" : "null").append("\n");
-        info.append("- encryptionCipher: ").append(encryptionCipher != null ? "present" : "null").append("\n");
+        info.append("- segmentWriter: ").append(segmentWriter != null ? "present" : "null").append("\n");
+        info.append("- audioEncoding: ").append(audioEncoding.getMetadataTag()).append("\n");
+        info.append("- captureProfile: ").append(captureProfile.getMetadataTag())
+                .append(" (capturing at ").append(captureSampleRate).append(" Hz x").append(captureChannels)
+                .append(resampler != null ? ", resampled" : "").append(")\n");
         return info.toString();
     }
 }
\ No newline at end of file
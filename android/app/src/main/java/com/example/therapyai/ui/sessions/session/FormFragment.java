@@ -29,13 +29,16 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 import com.example.therapyai.R;
+import com.example.therapyai.data.local.LocalStorageManager;
 import com.example.therapyai.data.local.models.CardItem;
 import com.example.therapyai.data.local.models.Profile;
 import com.example.therapyai.data.repository.SearchRepository;
 import com.example.therapyai.ui.sessions.ScanQRActivity;
 import com.example.therapyai.ui.viewmodels.SessionViewModel;
-import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.AudioFormatUtil;
+import com.example.therapyai.util.QrKeyDerivationService;
 import com.example.therapyai.util.DateInputMask;
+import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
@@ -43,6 +46,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Future;
 
 public class FormFragment extends Fragment {
 
@@ -58,6 +62,7 @@ public class FormFragment extends Fragment {
     private TextInputEditText etFirstName, etLastName,etEmail, etPatientId, etDateOfBirth;
     private TextInputLayout tilFirstName, tilLastName, tilEmail, tilPatientId, tilDateOfBirth;
     private CheckBox checkboxAccept;
+    private SwitchMaterial switchSpeechQuality, switchCompressAudio;
     private Button btnStartSession;
     private TextView formTitleTextView;
     private ProgressBar progressBarSearch;
@@ -70,6 +75,7 @@ public class FormFragment extends Fragment {
     private String encryptedQrData = null;
     private ActivityResultLauncher<Intent> qrScanLauncher;
     private SearchRepository searchRepository;
+    private Future<String> pendingDecrypt;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -160,6 +166,13 @@ public class FormFragment extends Fragment {
         tilPatientId = view.findViewById(R.id.tilPatientId);
         checkboxAccept = view.findViewById(R.id.checkboxAccept);
 
+        // Preselect what the last session used
+        LocalStorageManager storage = LocalStorageManager.getInstance();
+        switchSpeechQuality = view.findViewById(R.id.switchSpeechQuality);
+        switchSpeechQuality.setChecked(storage.getCaptureProfile() == AudioFormatUtil.CaptureProfile.SPEECH_16K);
+        switchCompressAudio = view.findViewById(R.id.switchCompressAudio);
+        switchCompressAudio.setChecked(storage.getAudioEncoding() == AudioFormatUtil.AudioEncoding.FLAC);
+
         btnStartSession = view.findViewById(R.id.btnStartSession);
         etDateOfBirth.addTextChangedListener(new DateInputMask(etDateOfBirth));
 
@@ -416,8 +429,32 @@ public class FormFragment extends Fragment {
         int day = calendar.get(Calendar.DAY_OF_MONTH);
         String currentDate = day + "/" + month + "/" + year;
 
+        // Key derivation is slow on older tablets, so it runs off the main thread
+        progressBarSearch.setVisibility(View.VISIBLE);
+        btnStartSession.setEnabled(false);
+        cancelPendingDecrypt();
+        pendingDecrypt = QrKeyDerivationService.getInstance().decrypt(encryptedData, passcode,
+                new QrKeyDerivationService.Callback<String>() {
+                    @Override
+                    public void onSuccess(String decryptedData) {
+                        pendingDecrypt = null;
+                        if (!isAdded()) return;
+                        proceedWithDecryptedData(decryptedData, currentDate);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        pendingDecrypt = null;
+                        if (!isAdded()) return;
+                        progressBarSearch.setVisibility(View.GONE);
+                        updateStartSessionButtonState();
+                        showDecryptionFailed(e);
+                    }
+                });
+    }
+
+    private void proceedWithDecryptedData(String decryptedData, String currentDate) {
         try {
-            String decryptedData = AESUtil.decrypt(encryptedData, passcode);
             List<String> data = Arrays.asList(decryptedData.split(","));
             if (data.get(data.size()-1) == null || !Objects.equals(data.get(data.size() - 1), currentDate)) {
                 throw new Exception("Decrypted data is empty, invalid, or expired.");
@@ -428,10 +465,7 @@ public class FormFragment extends Fragment {
             final String patientEmail = data.get(2);
             final String patientDob = data.get(3);
             
-            // Try to fetch complete profile from cloud first
-            progressBarSearch.setVisibility(View.VISIBLE);
-            btnStartSession.setEnabled(false);
-            
+            // Try to fetch complete profile from cloud first (progress bar is already showing)
             searchRepository.performProfileSearch(patientId, new SearchRepository.ProfileSearchCallback() {
                 @Override
                 public void onProfilesFound(List<Profile> profiles) {
@@ -482,13 +516,32 @@ public class FormFragment extends Fragment {
             });
             
         } catch (Exception e) {
-            Log.e(TAG, "Decryption failed", e);
-            tvPassCodeStatus.setText("✗ PIN and QR code don't match");
-            tvPassCodeStatus.setVisibility(View.VISIBLE);
-            Toast.makeText(requireContext(), "Decryption failed. Invalid passcode or QR code.", Toast.LENGTH_LONG).show();
+            progressBarSearch.setVisibility(View.GONE);
+            updateStartSessionButtonState();
+            showDecryptionFailed(e);
         }
     }
 
+    private void showDecryptionFailed(Exception e) {
+        Log.e(TAG, "Decryption failed", e);
+        tvPassCodeStatus.setText("✗ PIN and QR code don't match");
+        tvPassCodeStatus.setVisibility(View.VISIBLE);
+        Toast.makeText(requireContext(), "Decryption failed. Invalid passcode or QR code.", Toast.LENGTH_LONG).show();
+    }
+
+    private void cancelPendingDecrypt() {
+        if (pendingDecrypt != null) {
+            pendingDecrypt.cancel(false);
+            pendingDecrypt = null;
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        cancelPendingDecrypt();
+        super.onDestroyView();
+    }
+
     private void proceedWithManualData(String patientData) {
         viewModel.setPatientData(patientData);
         navigateToNextStep();
@@ -500,6 +553,7 @@ public class FormFragment extends Fragment {
             Toast.makeText(requireContext(),"Error: Unknown session type.", Toast.LENGTH_SHORT).show();
             return;
         }
+        saveAudioOptions();
 
         int actionId;
         switch (selectedCard.getType()) {
@@ -524,6 +578,19 @@ public class FormFragment extends Fragment {
     }
 
 
+    /**
+     * Stores the recording options for this session; AudioRecordFragment hands them to
+     * RecordingService when recording starts.
+     */
+    private void saveAudioOptions() {
+        LocalStorageManager storage = LocalStorageManager.getInstance();
+        storage.setCaptureProfile(switchSpeechQuality.isChecked()
+                ? AudioFormatUtil.CaptureProfile.SPEECH_16K : AudioFormatUtil.CaptureProfile.ARCHIVAL_44K);
+        storage.setAudioEncoding(switchCompressAudio.isChecked()
+                ? AudioFormatUtil.AudioEncoding.FLAC : AudioFormatUtil.AudioEncoding.PCM_WAV);
+        Log.d(TAG, "Audio options: " + storage.getCaptureProfile() + ", " + storage.getAudioEncoding());
+    }
+
     private void updateStartSessionButtonState() {
         btnStartSession.setEnabled(isFormInputValid());
     }
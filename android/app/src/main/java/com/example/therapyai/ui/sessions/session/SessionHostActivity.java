@@ -34,6 +34,7 @@ import com.example.therapyai.data.repository.RecordingRepository;
 import com.example.therapyai.data.repository.SearchRepository;
 import com.example.therapyai.ui.viewmodels.SessionViewModel;
 import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.AudioFormatUtil;
 import com.example.therapyai.util.Event; // Make sure this Event class is correct
 import com.example.therapyai.util.ProfilePictureUtil;
 import com.example.therapyai.util.SentimentChartHelper;
@@ -523,6 +524,8 @@ public class SessionHostActivity extends BaseSessionActivity {
         // --- Get the list of encrypted audio paths and the ENCRYPTED DEK from ViewModel ---
         List<String> encryptedAudioPaths = viewModel.encryptedAudioFilePaths.getValue();
         String encryptedDekBase64 = viewModel.encryptedDataEncryptionKey.getValue();
+        AudioFormatUtil.AudioEncoding audioEncoding = viewModel.audioEncoding.getValue();
+        AudioFormatUtil.CaptureProfile captureProfile = viewModel.captureProfile.getValue();
         // ---
 
         // ... (null checks for notes, patientInfo, etc.)
@@ -542,9 +545,12 @@ public class SessionHostActivity extends BaseSessionActivity {
                 }
                 Log.d(TAG, "Uploading Default Audio. Segments: " + encryptedAudioPaths.size() + ". DEK (b64 prefix): " + (encryptedDekBase64.length() > 16 ? encryptedDekBase64.substring(0,16) : ""));
 
-                repository.uploadRecordingSession(
+                // Chunked + resumable: a dropped connection only resends the missing chunks.
+                repository.uploadRecordingSessionResumable(
                         encryptedAudioPaths, // Pass the LIST of paths
                         encryptedDekBase64,
+                        audioEncoding,
+                        captureProfile,
                         patientInfo,
                         therapistInfo,
                         notesToUpload,
@@ -1,15 +1,20 @@
 package com.example.therapyai.ui.viewmodels;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import com.example.therapyai.data.local.models.CardItem;
 import com.example.therapyai.data.repository.CardRepository; // Import Repository
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CardViewModel extends AndroidViewModel {
 
@@ -17,8 +22,21 @@ public class CardViewModel extends AndroidViewModel {
 
     private final CardRepository cardRepository;
 
-    private final MutableLiveData<List<CardItem>> _cardListLiveData = new MutableLiveData<>();
-    public final LiveData<List<CardItem>> cardListLiveData = _cardListLiveData;
+    // The displayed category; the card list follows it and Room re-emits after every write.
+    private final MutableLiveData<String> _currentCategory = new MutableLiveData<>("All");
+    public final LiveData<List<CardItem>> cardListLiveData;
+
+    // Full-text search results for the current category; null while no search is active.
+    private final MutableLiveData<List<CardItem>> _searchResults = new MutableLiveData<>(null);
+    public final LiveData<List<CardItem>> searchResultsLiveData = _searchResults;
+    // Bumped by every search and clear; results are only shown if still current on the main thread.
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Drag moves handed to the repository but not yet written
+    private final AtomicInteger pendingMoves = new AtomicInteger();
+    private final MutableLiveData<Integer> _pendingMoveCount = new MutableLiveData<>(0);
+    public final LiveData<Integer> pendingMoveCount = _pendingMoveCount;
 
     private final MutableLiveData<String> _errorLiveData = new MutableLiveData<>();
     public final LiveData<String> errorLiveData = _errorLiveData;
@@ -26,11 +44,13 @@ public class CardViewModel extends AndroidViewModel {
     public final LiveData<Boolean> isLoading = _isLoading;
 
 
-    private String currentLoadedCategory = "All";
-
     public CardViewModel(@NonNull Application application) {
         super(application);
         cardRepository = CardRepository.getInstance(application);
+        cardListLiveData = Transformations.switchMap(_currentCategory, category -> {
+            Log.d(TAG, "ViewModel: Observing cards for category: " + category);
+            return cardRepository.observeCardsByCategory(category);
+        });
         Log.d(TAG, "ViewModel initialized with Repository.");
     }
 
@@ -38,36 +58,67 @@ public class CardViewModel extends AndroidViewModel {
         return cardListLiveData;
     }
 
+    /**
+     * Switches the observed category. Re-selecting the current one is a no-op: the list is
+     * already live.
+     */
     public void loadCards(@NonNull String category) {
-        currentLoadedCategory = category;
-        Log.d(TAG, "ViewModel: Requesting card load for category: " + currentLoadedCategory);
-        _isLoading.postValue(true);
-        cardRepository.loadCardsByCategory(currentLoadedCategory, new CardRepository.LoadCardsCallback() {
+        if (Objects.equals(_currentCategory.getValue(), category)) {
+            return;
+        }
+        Log.d(TAG, "ViewModel: Switching card list to category: " + category);
+        _currentCategory.setValue(category);
+    }
+
+    /**
+     * Searches the current category. The repository debounces keystrokes and discards overtaken
+     * queries; an empty query ends the search.
+     */
+    public void searchCards(String query) {
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.isEmpty()) {
+            clearSearch();
+            return;
+        }
+        long generation = searchGeneration.incrementAndGet();
+        String category = _currentCategory.getValue() != null ? _currentCategory.getValue() : "All";
+        cardRepository.searchCards(trimmed, category, new CardRepository.LoadCardsCallback() {
             @Override
             public void onCardsLoaded(List<CardItem> cards) {
-                Log.d(TAG, "ViewModel: Received cards from repo. Count: " + cards.size());
-                _cardListLiveData.postValue(cards);
-                _isLoading.postValue(false);
+                // Checked on the main thread, where clearSearch() runs, so a late result can
+                // never land after a newer search or a clear.
+                mainHandler.post(() -> {
+                    if (generation == searchGeneration.get()) {
+                        _searchResults.setValue(cards);
+                    }
+                });
             }
-
             @Override
             public void onError(Exception e) {
-                Log.e(TAG, "ViewModel: Error loading cards from repo", e);
-                _errorLiveData.postValue("Error loading cards: " + e.getMessage());
-                _isLoading.postValue(false);
-                _cardListLiveData.postValue(new ArrayList<>());
+                Log.e(TAG, "ViewModel: Error searching cards via repo", e);
+                mainHandler.post(() -> {
+                    if (generation == searchGeneration.get()) {
+                        _errorLiveData.setValue("Error searching cards: " + e.getMessage());
+                    }
+                });
             }
         });
     }
 
+    public void clearSearch() {
+        searchGeneration.incrementAndGet();
+        cardRepository.cancelSearch();
+        _searchResults.setValue(null);
+    }
+
     public void saveCard(CardItem card) {
         Log.d(TAG, "ViewModel: Requesting save card Title: " + card.getTitle());
         _isLoading.postValue(true);
         cardRepository.saveCard(card, new CardRepository.OperationCallback() {
             @Override
             public void onSuccess() {
-                Log.d(TAG, "ViewModel: Card saved via repo. Reloading category: " + currentLoadedCategory);
-                loadCardsInternal(currentLoadedCategory);
+                Log.d(TAG, "ViewModel: Card saved via repo.");
+                _isLoading.postValue(false);
             }
             @Override
             public void onError(Exception e) {
@@ -84,8 +135,8 @@ public class CardViewModel extends AndroidViewModel {
         cardRepository.deleteCard(card, new CardRepository.OperationCallback() {
             @Override
             public void onSuccess() {
-                Log.d(TAG, "ViewModel: Card deleted via repo. Reloading category: " + currentLoadedCategory);
-                loadCardsInternal(currentLoadedCategory);
+                Log.d(TAG, "ViewModel: Card deleted via repo.");
+                _isLoading.postValue(false);
             }
             @Override
             public void onError(Exception e) {
@@ -102,8 +153,8 @@ public class CardViewModel extends AndroidViewModel {
         cardRepository.deleteSelectedCards(cardsToDelete, new CardRepository.OperationCallback() {
             @Override
             public void onSuccess() {
-                Log.d(TAG, "ViewModel: Selected cards deleted via repo. Reloading category: " + currentLoadedCategory);
-                loadCardsInternal(currentLoadedCategory);
+                Log.d(TAG, "ViewModel: Selected cards deleted via repo.");
+                _isLoading.postValue(false);
             }
             @Override
             public void onError(Exception e) {
@@ -122,26 +173,50 @@ public class CardViewModel extends AndroidViewModel {
             public void onSuccess() {
                 Log.d(TAG, "ViewModel: Card order updated via repo.");
                 _isLoading.postValue(false);
-                loadCardsInternal(currentLoadedCategory);
             }
             @Override
             public void onError(Exception e) {
                 Log.e(TAG, "ViewModel: Error updating card order via repo", e);
                 _errorLiveData.postValue("Error updating order: " + e.getMessage());
                 _isLoading.postValue(false);
-                loadCardsInternal(currentLoadedCategory);
             }
         });
     }
 
+    /**
+     * Persists a drag. Not shown as loading: the list already displays the new order and the
+     * repository batches rapid moves.
+     */
+    public void moveCard(CardItem card, int fromPosition, int toPosition) {
+        Log.d(TAG, "ViewModel: Requesting move of card ID " + card.getId() + " from " + fromPosition + " to " + toPosition);
+        _pendingMoveCount.setValue(pendingMoves.incrementAndGet());
+        cardRepository.moveCard(card.getId(), fromPosition, toPosition, new CardRepository.OperationCallback() {
+            @Override
+            public void onSuccess() {
+                Log.d(TAG, "ViewModel: Card move written via repo.");
+                _pendingMoveCount.postValue(pendingMoves.decrementAndGet());
+            }
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "ViewModel: Error moving card via repo", e);
+                _errorLiveData.postValue("Error updating order: " + e.getMessage());
+                _pendingMoveCount.postValue(pendingMoves.decrementAndGet());
+            }
+        });
+    }
+
+    public boolean hasPendingMoves() {
+        return pendingMoves.get() > 0;
+    }
+
     public void removeCategoryFromCards(String categoryName, List<CardItem> cardsToUpdate) {
         Log.d(TAG, "ViewModel: Requesting remove category '" + categoryName + "'");
         _isLoading.postValue(true);
         cardRepository.removeCategoryFromCards(categoryName, cardsToUpdate, new CardRepository.OperationCallback() {
             @Override
             public void onSuccess() {
-                Log.d(TAG, "ViewModel: removeCategoryFromCards success via repo. Reloading.");
-                loadCardsInternal(currentLoadedCategory);
+                Log.d(TAG, "ViewModel: removeCategoryFromCards success via repo.");
+                _isLoading.postValue(false);
             }
             @Override
             public void onError(Exception e) {
@@ -158,8 +233,8 @@ public class CardViewModel extends AndroidViewModel {
         cardRepository.renameCategoryInCards(oldName, newName, cardsToUpdate, new CardRepository.OperationCallback() {
             @Override
             public void onSuccess() {
-                Log.d(TAG, "ViewModel: renameCategoryInCards success via repo. Reloading.");
-                loadCardsInternal(currentLoadedCategory);
+                Log.d(TAG, "ViewModel: renameCategoryInCards success via repo.");
+                _isLoading.postValue(false);
             }
             @Override
             public void onError(Exception e) {
@@ -171,28 +246,12 @@ public class CardViewModel extends AndroidViewModel {
     }
 
 
-    // --- Private Helper ---
-    private void loadCardsInternal(@NonNull String category) {
-        cardRepository.loadCardsByCategory(category, new CardRepository.LoadCardsCallback() {
-            @Override
-            public void onCardsLoaded(List<CardItem> cards) {
-                _cardListLiveData.postValue(cards);
-                _isLoading.postValue(false);
-            }
-            @Override
-            public void onError(Exception e) {
-                Log.e(TAG, "ViewModel: Internal reload error", e);
-                _errorLiveData.postValue("Error reloading cards: " + e.getMessage());
-                _isLoading.postValue(false);
-                _cardListLiveData.postValue(new ArrayList<>());
-            }
-        });
-    }
-
-
     @Override
     protected void onCleared() {
         super.onCleared();
+        searchGeneration.incrementAndGet();
+        cardRepository.cancelSearch();
+        mainHandler.removeCallbacksAndMessages(null);
         Log.d(TAG, "ViewModel cleared.");
     }
 }
\ No newline at end of file
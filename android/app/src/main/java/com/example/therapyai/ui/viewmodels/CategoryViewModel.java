@@ -8,7 +8,6 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import com.example.therapyai.data.local.models.CardItem;
 import com.example.therapyai.data.local.models.CategoryItem;
 import com.example.therapyai.data.repository.CardRepository;
 import com.example.therapyai.data.repository.CategoryRepository; // Import CategoryRepository
@@ -229,31 +228,23 @@ public class CategoryViewModel extends AndroidViewModel {
                     return;
                 }
 
-                // 2. Get cards associated with the old name (using CardRepo)
-                cardRepository.loadCardsByCategory(oldName, new CardRepository.LoadCardsCallback() {
+                // 2. Rename the category on every card in one indexed update
+                cardRepository.renameCategory(oldName, finalNewName, new CardRepository.OperationCallback() {
                     @Override
-                    public void onCardsLoaded(List<CardItem> cardsToUpdate) {
-                        // 3. Tell CardRepo to rename category within those cards
-                        cardRepository.renameCategoryInCards(oldName, finalNewName, cardsToUpdate, new CardRepository.OperationCallback() {
+                    public void onSuccess() {
+                        // 3. If card update succeeds, RENAME the category item itself in the database
+                        categoryRepository.renameCategoryInDb(oldName, finalNewName, new CategoryRepository.OperationCallback() {
                             @Override
                             public void onSuccess() {
-                                // 4. If card update succeeds, RENAME the category item itself in the database
-                                categoryRepository.renameCategoryInDb(oldName, finalNewName, new CategoryRepository.OperationCallback() {
-                                    @Override
-                                    public void onSuccess() {
-                                        Log.d(TAG, "ViewModel: Category rename fully successful. Reloading categories.");
-                                        loadAllCategories(); // Reload category list (triggers loading=false)
-                                    }
-                                    @Override
-                                    public void onError(Exception e) { handleOperationError("renaming category item itself", e); }
-                                });
+                                Log.d(TAG, "ViewModel: Category rename fully successful. Reloading categories.");
+                                loadAllCategories(); // Reload category list (triggers loading=false)
                             }
                             @Override
-                            public void onError(Exception e) { handleOperationError("renaming category in cards", e); }
+                            public void onError(Exception e) { handleOperationError("renaming category item itself", e); }
                         });
                     }
                     @Override
-                    public void onError(Exception e) { handleOperationError("fetching cards for category rename", e); }
+                    public void onError(Exception e) { handleOperationError("renaming category in cards", e); }
                 });
             }
             @Override
@@ -275,31 +266,23 @@ public class CategoryViewModel extends AndroidViewModel {
         Log.d(TAG, "ViewModel: Requesting delete category and associations: " + categoryName);
         _isLoading.postValue(true);
 
-        // 1. Get cards associated with the category
-        cardRepository.loadCardsByCategory(categoryName, new CardRepository.LoadCardsCallback() {
+        // 1. Remove the category from every card in one indexed delete
+        cardRepository.removeCategory(categoryName, new CardRepository.OperationCallback() {
             @Override
-            public void onCardsLoaded(List<CardItem> cardsToUpdate) {
-                // 2. Tell CardRepo to remove the category from those cards
-                cardRepository.removeCategoryFromCards(categoryName, cardsToUpdate, new CardRepository.OperationCallback() {
+            public void onSuccess() {
+                // 2. If card update succeeds, delete the category itself
+                categoryRepository.deleteCategory(categoryToDelete, new CategoryRepository.OperationCallback() {
                     @Override
                     public void onSuccess() {
-                        // 3. If card update succeeds, delete the category itself
-                        categoryRepository.deleteCategory(categoryToDelete, new CategoryRepository.OperationCallback() {
-                            @Override
-                            public void onSuccess() {
-                                Log.d(TAG, "ViewModel: Category deletion and association removal successful. Reloading categories.");
-                                loadAllCategories(); // Reload category list (triggers loading=false)
-                            }
-                            @Override
-                            public void onError(Exception e) { handleOperationError("deleting category item itself", e); }
-                        });
+                        Log.d(TAG, "ViewModel: Category deletion and association removal successful. Reloading categories.");
+                        loadAllCategories(); // Reload category list (triggers loading=false)
                     }
                     @Override
-                    public void onError(Exception e) { handleOperationError("removing category from cards", e); }
+                    public void onError(Exception e) { handleOperationError("deleting category item itself", e); }
                 });
             }
             @Override
-            public void onError(Exception e) { handleOperationError("fetching cards for category deletion", e); }
+            public void onError(Exception e) { handleOperationError("removing category from cards", e); }
         });
     }
 
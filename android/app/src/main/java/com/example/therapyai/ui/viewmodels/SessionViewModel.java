@@ -8,6 +8,7 @@ import androidx.lifecycle.ViewModel;
 
 import com.example.therapyai.data.local.models.CardItem;
 import com.example.therapyai.data.local.models.NoteCard;
+import com.example.therapyai.util.AudioFormatUtil;
 import com.example.therapyai.util.Event;
 
 import java.util.ArrayList;
@@ -38,6 +39,14 @@ public class SessionViewModel extends ViewModel {
 
     public LiveData<List<String>> encryptedAudioFilePaths = _encryptedAudioFilePaths;
 
+    // How the recorded segments are encoded; tagged in the upload metadata
+    private final MutableLiveData<AudioFormatUtil.AudioEncoding> _audioEncoding = new MutableLiveData<>(AudioFormatUtil.AudioEncoding.PCM_WAV);
+    public LiveData<AudioFormatUtil.AudioEncoding> audioEncoding = _audioEncoding;
+
+    // Sample rate the segments were stored at; drives the WAV header and upload metadata
+    private final MutableLiveData<AudioFormatUtil.CaptureProfile> _captureProfile = new MutableLiveData<>(AudioFormatUtil.CaptureProfile.DEFAULT);
+    public LiveData<AudioFormatUtil.CaptureProfile> captureProfile = _captureProfile;
+
 
     private final MutableLiveData<String> _vrDataPath = new MutableLiveData<>();
     public LiveData<String> vrDataPath = _vrDataPath;
@@ -131,6 +140,20 @@ public class SessionViewModel extends ViewModel {
         }
     }
 
+    public void setAudioEncoding(AudioFormatUtil.AudioEncoding encoding) {
+        if (!Objects.equals(_audioEncoding.getValue(), encoding)) {
+            _audioEncoding.setValue(encoding);
+            Log.d(TAG, "Audio encoding set: " + encoding);
+        }
+    }
+
+    public void setCaptureProfile(AudioFormatUtil.CaptureProfile profile) {
+        if (!Objects.equals(_captureProfile.getValue(), profile)) {
+            _captureProfile.setValue(profile);
+            Log.d(TAG, "Capture profile set: " + profile);
+        }
+    }
+
     public void setEncryptedDataEncryptionKey(String encryptedDekBase64) {
         if (!Objects.equals(_encryptedDataEncryptionKey.getValue(), encryptedDekBase64)) {
             _encryptedDataEncryptionKey.setValue(encryptedDekBase64);
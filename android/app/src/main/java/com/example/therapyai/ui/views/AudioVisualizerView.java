@@ -2,21 +2,36 @@ package com.example.therapyai.ui.views;
 
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Shader;
 import android.util.AttributeSet;
 import android.view.View;
 
+/**
+ * Scrolling waveform of the live recording level, mirrored around the vertical centre.
+ *
+ * Drawing allocates nothing: the gradient is built when the size changes, and the waveform is
+ * written into a preallocated vertex buffer and drawn with a single drawLines call. Amplitude
+ * updates only schedule a redraw for the next frame, so however often they arrive the view
+ * draws at most once per vsync.
+ */
 public class AudioVisualizerView extends View {
 
     private static final int MAX_POINTS = 200;
+    private static final int SEGMENTS = MAX_POINTS - 1;
+    private static final int BACKGROUND_COLOR = 0xFFF0F0F0;
+    private static final int GRADIENT_START_COLOR = 0xFF4CAF50;
+    private static final int GRADIENT_END_COLOR = 0xFF2196F3;
+    private static final float GRADIENT_HALF_HEIGHT = 100f;
 
     private float[] amplitudes;
     private int index = 0;
     private float lastAmplitude = 0;
 
+    // Upper and lower trace, 4 floats (x0, y0, x1, y1) per segment
+    private final float[] lineVertices = new float[SEGMENTS * 2 * 4];
+
     private Paint paint;
     private Paint bgPaint;
     private boolean isRecording = false;
@@ -40,7 +55,17 @@ public class AudioVisualizerView extends View {
         paint.setAntiAlias(true);
 
         bgPaint = new Paint();
-        bgPaint.setColor(Color.parseColor("#F0F0F0"));
+        bgPaint.setColor(BACKGROUND_COLOR);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float centerY = h / 2f;
+        paint.setShader(new LinearGradient(
+                0, centerY - GRADIENT_HALF_HEIGHT, 0, centerY + GRADIENT_HALF_HEIGHT,
+                GRADIENT_START_COLOR, GRADIENT_END_COLOR,
+                Shader.TileMode.MIRROR));
     }
 
     /**
@@ -63,7 +88,7 @@ public class AudioVisualizerView extends View {
         }
 
         isRecording = true;
-        invalidate(); // redraw
+        postInvalidateOnAnimation(); // Redraw on the next frame; repeated calls before it are free
     }
 
     @Override
@@ -76,38 +101,37 @@ public class AudioVisualizerView extends View {
 
         canvas.drawRect(0, 0, width, height, bgPaint);
 
-        LinearGradient gradient = new LinearGradient(
-                0, centerY - 100, 0, centerY + 100,
-                Color.parseColor("#4CAF50"), Color.parseColor("#2196F3"),
-                Shader.TileMode.MIRROR);
-        paint.setShader(gradient);
-
         if (!isRecording) {
             canvas.drawLine(0, centerY, width, centerY, paint);
             return;
         }
 
-        float spacing = width / (float)MAX_POINTS;
-        float x = 0;
-
-        int currentIndex = index;
-        for (int i = 0; i < MAX_POINTS; i++) {
-            int drawIndex = (currentIndex + i) % MAX_POINTS;
-            float y = amplitudes[drawIndex];
-
-            float posY1 = centerY - y;
-            float posY2 = centerY + y;
-
-            if (i > 0) {
-                float prevX = x - spacing;
-                float prevY1 = centerY - amplitudes[(drawIndex - 1 + MAX_POINTS) % MAX_POINTS];
-                float prevY2 = centerY + amplitudes[(drawIndex - 1 + MAX_POINTS) % MAX_POINTS];
-
-                canvas.drawLine(prevX, prevY1, x, posY1, paint);
-                canvas.drawLine(prevX, prevY2, x, posY2, paint);
-            }
-            x += spacing;
+        // Oldest sample at the left edge
+        float spacing = width / (float) MAX_POINTS;
+        int lower = SEGMENTS * 4; // Lower trace follows the upper one in the buffer
+        int sample = index;
+        float prevX = 0;
+        float prevY = amplitudes[sample];
+        for (int i = 1; i < MAX_POINTS; i++) {
+            if (++sample == MAX_POINTS) sample = 0;
+            float x = i * spacing;
+            float y = amplitudes[sample];
+            int v = (i - 1) * 4;
+
+            lineVertices[v] = prevX;
+            lineVertices[v + 1] = centerY - prevY;
+            lineVertices[v + 2] = x;
+            lineVertices[v + 3] = centerY - y;
+
+            lineVertices[lower + v] = prevX;
+            lineVertices[lower + v + 1] = centerY + prevY;
+            lineVertices[lower + v + 2] = x;
+            lineVertices[lower + v + 3] = centerY + y;
+
+            prevX = x;
+            prevY = y;
         }
+        canvas.drawLines(lineVertices, paint);
     }
 
     public void resetWaveform() {
@@ -115,6 +139,6 @@ public class AudioVisualizerView extends View {
         for (int i = 0; i < MAX_POINTS; i++) {
             amplitudes[i] = 0;
         }
-        invalidate();
+        postInvalidateOnAnimation();
     }
-}
\ No newline at end of file
+}
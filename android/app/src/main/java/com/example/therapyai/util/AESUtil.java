@@ -11,14 +11,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.KeySpec;
 import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -38,9 +37,44 @@ public class AESUtil {
 
     private static final int SALT_LENGTH = 16;
     private static final int LEGACY_IV_LENGTH = 16; // For CBC mode if used elsewhere
-    private static final int PBKDF2_ITERATIONS = 65536;
+    public static final int PBKDF2_ITERATIONS = 65536; // Passphrase (QR) key derivation cost
     private static final int KEY_LENGTH_BITS = 256;
 
+    // Per-thread GCM ciphers, reused instead of calling Cipher.getInstance for every operation.
+    // Keystore keys get their own slot: a Cipher stays bound to the provider of its first key.
+    private static final ThreadLocal<Cipher> SOFTWARE_GCM_CIPHER = new ThreadLocal<>();
+    private static final ThreadLocal<Cipher> KEYSTORE_GCM_CIPHER = new ThreadLocal<>();
+
+    /**
+     * This thread's cached AES/GCM cipher for the key's provider. It must be initialised before
+     * every use and must not be held across calls that may use it too (e.g. by CipherInputStream).
+     */
+    static Cipher threadGcmCipher(SecretKey key) throws GeneralSecurityException {
+        ThreadLocal<Cipher> slot = isSoftwareKey(key) ? SOFTWARE_GCM_CIPHER : KEYSTORE_GCM_CIPHER;
+        Cipher cipher = slot.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+            slot.set(cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * True for keys whose bytes are in memory; Android Keystore keys report no encoding format.
+     */
+    static boolean isSoftwareKey(SecretKey key) {
+        return "RAW".equals(key.getFormat());
+    }
+
+    /**
+     * Drops this thread's cached ciphers so the expanded key schedule of a finished session
+     * does not outlive it. Call from worker threads when their session ends.
+     */
+    public static void releaseThreadCiphers() {
+        SOFTWARE_GCM_CIPHER.remove();
+        KEYSTORE_GCM_CIPHER.remove();
+    }
+
 
     /**
      * Encrypt data with AES/GCM, the Cipher will generate a new random IV.
@@ -48,7 +82,7 @@ public class AESUtil {
      * This IV is for the data being encrypted (e.g., the DEK itself).
      */
     public static byte[] encryptAesGcm(byte[] plainData, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        Cipher cipher = threadGcmCipher(key);
         // IV is generated by the cipher provider when key is passed
         cipher.init(Cipher.ENCRYPT_MODE, key);
         byte[] iv = cipher.getIV(); // Retrieve the generated IV (typically 12 bytes for GCM)
@@ -56,12 +90,14 @@ public class AESUtil {
             throw new SecurityException("Generated IV is not of the expected GCM length (" + GCM_IV_LENGTH + " bytes). IV length: " + (iv != null ? iv.length : "null"));
         }
 
-        byte[] cipherText = cipher.doFinal(plainData);
-
-        byte[] combined = new byte[iv.length + cipherText.length];
+        // Seal straight into the combined array instead of copying the ciphertext after the IV
+        byte[] combined = new byte[iv.length + cipher.getOutputSize(plainData.length)];
         System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(cipherText, 0, combined, iv.length, cipherText.length);
-        Log.d(TAG, "encryptAesGcm: Input data length: " + plainData.length + ", IV length: " + iv.length + ", Ciphertext length: " + cipherText.length + ", Combined length: " + combined.length);
+        int cipherTextLength = cipher.doFinal(plainData, 0, plainData.length, combined, iv.length);
+        if (iv.length + cipherTextLength != combined.length) {
+            combined = Arrays.copyOf(combined, iv.length + cipherTextLength);
+        }
+        Log.d(TAG, "encryptAesGcm: Input data length: " + plainData.length + ", IV length: " + iv.length + ", Ciphertext length: " + cipherTextLength + ", Combined length: " + combined.length);
         return combined;
     }
 
@@ -75,52 +111,117 @@ public class AESUtil {
         if (combinedIvCipherText == null || combinedIvCipherText.length < GCM_IV_LENGTH) {
             throw new IllegalArgumentException("Combined IV and CipherText is null or too short to contain an IV.");
         }
-        byte[] iv = Arrays.copyOfRange(combinedIvCipherText, 0, GCM_IV_LENGTH);
-        byte[] cipherText = Arrays.copyOfRange(combinedIvCipherText, GCM_IV_LENGTH, combinedIvCipherText.length);
+        int cipherTextLength = combinedIvCipherText.length - GCM_IV_LENGTH;
 
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
+        // IV and ciphertext are read in place rather than copied out of the combined array
+        Cipher cipher = threadGcmCipher(key);
+        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, combinedIvCipherText, 0, GCM_IV_LENGTH);
         cipher.init(Cipher.DECRYPT_MODE, key, spec);
-        Log.d(TAG, "decryptAesGcm: Combined length: " + combinedIvCipherText.length + ", IV length: " + iv.length + ", Ciphertext length: " + cipherText.length);
-        return cipher.doFinal(cipherText);
+        Log.d(TAG, "decryptAesGcm: Combined length: " + combinedIvCipherText.length + ", IV length: " + GCM_IV_LENGTH + ", Ciphertext length: " + cipherTextLength);
+        return cipher.doFinal(combinedIvCipherText, GCM_IV_LENGTH, cipherTextLength);
     }
 
 
     /**
      * Encrypts an input file to an output file using AES/GCM with the provided secret key.
-     * Generates a new IV for each encryption and prepends it to the output file.
-     * This is suitable for encrypting the audio file if not done via direct CipherOutputStream.
+     * Writes the chunked container format ({@link ChunkedGcmContainer}), which seals each chunk
+     * with its own counter-derived nonce.
+     * This is suitable for encrypting the audio file if not done via direct streaming.
      */
     public static void encryptFile(File inputFile, File outputFile, SecretKey secretKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey); // Let cipher generate IV
-        byte[] iv = cipher.getIV();
-        if (iv == null || iv.length != GCM_IV_LENGTH) {
-            throw new SecurityException("Generated IV for file encryption is not of the expected GCM length.");
-        }
-
         try (FileInputStream fis = new FileInputStream(inputFile);
-             FileOutputStream fos = new FileOutputStream(outputFile)) {
-            fos.write(iv); // Prepend IV
-            try (CipherOutputStream cos = new CipherOutputStream(fos, cipher)) {
-                byte[] buffer = new byte[8192];
-                int read;
-                while ((read = fis.read(buffer)) != -1) {
-                    cos.write(buffer, 0, read);
-                }
-                cos.flush();
+             ChunkedGcmContainer.Writer writer = new ChunkedGcmContainer.Writer(
+                     new FileOutputStream(outputFile), secretKey, ChunkedGcmContainer.DEFAULT_CHUNK_SIZE)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = fis.read(buffer)) != -1) {
+                writer.write(buffer, 0, read);
             }
+            Arrays.fill(buffer, (byte) 0);
         }
     }
 
     /**
-     * Decrypts a single encrypted file (standard format) using streaming to avoid OOM.
-     * This is used for the new multi-file approach where each segment is independently encrypted.
+     * Decrypts a single encrypted file using streaming to avoid OOM.
+     * Handles both the chunked container ({@link ChunkedGcmContainer}) and legacy single-stream segments.
      */
     public static void decryptFile(File encryptedFile, File outputFile, SecretKey key) throws Exception {
+        if (ChunkedGcmContainer.isContainerFile(encryptedFile)) {
+            Log.d(TAG, "Decrypting chunked container file chunk by chunk");
+            decryptContainerFile(encryptedFile, outputFile, key);
+            return;
+        }
         Log.d(TAG, "Decrypting single-segment file using streaming approach");
         decryptSingleSegmentFileStreaming(encryptedFile, outputFile, key);
     }
+
+    private static void decryptContainerFile(File encryptedFile, File outputFile, SecretKey key) throws Exception {
+        try (ChunkedGcmContainer.Reader reader = new ChunkedGcmContainer.Reader(encryptedFile, key);
+             FileOutputStream fos = new FileOutputStream(outputFile)) {
+            byte[] buffer = new byte[reader.getChunkSize()];
+            try {
+                for (int i = 0; i < reader.getChunkCount(); i++) {
+                    int length = reader.readChunk(i, buffer, 0);
+                    fos.write(buffer, 0, length);
+                }
+            } finally {
+                Arrays.fill(buffer, (byte) 0);
+            }
+            Log.d(TAG, "Successfully decrypted container file. Total bytes: " + reader.getPlaintextLength());
+        }
+    }
+
+    /**
+     * Plaintext size of an encrypted segment, without decrypting it.
+     */
+    public static long getDecryptedLength(File encryptedFile) throws IOException {
+        if (ChunkedGcmContainer.isContainerFile(encryptedFile)) {
+            return ChunkedGcmContainer.readPlaintextLength(encryptedFile);
+        }
+        // Legacy layout: IV + ciphertext + GCM tag.
+        return Math.max(0, encryptedFile.length() - GCM_IV_LENGTH - GCM_TAG_LENGTH / 8);
+    }
+
+    /**
+     * Opens a decrypting stream positioned at the given plaintext offset. Container files seek
+     * straight to the chunk holding the offset; legacy segments are decrypted and skipped up to it.
+     */
+    public static InputStream createDecryptingInputStream(File encryptedFile, SecretKey key, long plaintextOffset) throws Exception {
+        if (ChunkedGcmContainer.isContainerFile(encryptedFile)) {
+            ChunkedGcmContainer.Reader reader = new ChunkedGcmContainer.Reader(encryptedFile, key);
+            try {
+                return reader.openStream(plaintextOffset);
+            } catch (RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+        }
+        FileInputStream fis = new FileInputStream(encryptedFile);
+        InputStream in;
+        try {
+            in = createDecryptingInputStream(fis, key);
+        } catch (Exception e) {
+            fis.close();
+            throw e;
+        }
+        byte[] discard = new byte[8192];
+        try {
+            long toSkip = plaintextOffset;
+            while (toSkip > 0) {
+                int read = in.read(discard, 0, (int) Math.min(discard.length, toSkip));
+                if (read == -1) {
+                    throw new IOException("Segment ended before plaintext offset " + plaintextOffset);
+                }
+                toSkip -= read;
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        } finally {
+            Arrays.fill(discard, (byte) 0);
+        }
+        return in;
+    }
     
     /**
      * Decrypts a single-segment file with streaming to avoid OOM
@@ -242,11 +343,12 @@ public class AESUtil {
         }
     }
     /**
-     * Creates a CipherInputStream for decrypting an encrypted InputStream.
-     * Reads the IV (GCM_IV_LENGTH bytes) from the beginning of the encryptedInputStream.
+     * Creates a decrypting InputStream over an encrypted InputStream.
+     * Reads the first GCM_IV_LENGTH bytes: if they carry the {@link ChunkedGcmContainer} header the
+     * container is decrypted chunk by chunk, otherwise they are the IV of a legacy single-stream segment.
      * Uses the provided secretKey (this would be the plaintext DEK for audio).
      */
-    public static CipherInputStream createDecryptingInputStream(InputStream encryptedInputStream, SecretKey secretKey) throws Exception {
+    public static InputStream createDecryptingInputStream(InputStream encryptedInputStream, SecretKey secretKey) throws Exception {
         byte[] iv = new byte[GCM_IV_LENGTH];
         int totalBytesRead = 0;
         
@@ -259,6 +361,10 @@ public class AESUtil {
             totalBytesRead += bytesRead;
         }
         
+        if (ChunkedGcmContainer.hasContainerHeader(iv, totalBytesRead)) {
+            return ChunkedGcmContainer.openSequentialStream(encryptedInputStream, iv, GCM_IV_LENGTH, secretKey);
+        }
+
         Log.d(TAG, "AESUtil: Read Audio IV for decryption (first " + GCM_IV_LENGTH + " bytes of stream): " + Base64.encodeToString(iv, Base64.NO_WRAP));
 
         Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
@@ -288,10 +394,28 @@ public class AESUtil {
     }
 
     // --- Legacy CBC methods (for QR code - keep as is if used elsewhere) ---
+
+    /**
+     * Supplies the PBKDF2 key for a passphrase and salt, so callers can cache the derivation;
+     * see {@link QrKeyDerivationService}.
+     */
+    public interface PassphraseKeySource {
+        SecretKey keyFor(String passphrase, byte[] salt) throws Exception;
+    }
+
+    // PBKDF2 at 65,536 iterations takes hundreds of ms on slow devices; keep these off the main thread
     public static String encrypt(String plainText, String passphrase) throws Exception {
+        return encrypt(plainText, passphrase, AESUtil::derivePassphraseKey);
+    }
+
+    public static String decrypt(String base64Data, String passphrase) throws Exception {
+        return decrypt(base64Data, passphrase, AESUtil::derivePassphraseKey);
+    }
+
+    public static String encrypt(String plainText, String passphrase, PassphraseKeySource keySource) throws Exception {
         byte[] salt = new byte[SALT_LENGTH];
         new SecureRandom().nextBytes(salt);
-        SecretKey secretKey = deriveKey(passphrase, salt);
+        SecretKey secretKey = keySource.keyFor(passphrase, salt);
         byte[] iv = new byte[LEGACY_IV_LENGTH]; // Use LEGACY_IV_LENGTH for CBC
         new SecureRandom().nextBytes(iv);
         IvParameterSpec ivParam = new IvParameterSpec(iv);
@@ -305,26 +429,43 @@ public class AESUtil {
         return Base64.encodeToString(combined, Base64.NO_WRAP);
     }
 
-    public static String decrypt(String base64Data, String passphrase) throws Exception {
+    public static String decrypt(String base64Data, String passphrase, PassphraseKeySource keySource) throws Exception {
         byte[] combined = Base64.decode(base64Data, Base64.NO_WRAP);
-        byte[] salt = new byte[SALT_LENGTH];
-        byte[] iv = new byte[LEGACY_IV_LENGTH]; // Use LEGACY_IV_LENGTH for CBC
-        byte[] ciphertext = new byte[combined.length - SALT_LENGTH - iv.length];
-        System.arraycopy(combined, 0, salt, 0, SALT_LENGTH);
-        System.arraycopy(combined, SALT_LENGTH, iv, 0, iv.length);
-        System.arraycopy(combined, SALT_LENGTH + iv.length, ciphertext, 0, ciphertext.length);
-        SecretKey secretKey = deriveKey(passphrase, salt);
+        if (combined.length <= SALT_LENGTH + LEGACY_IV_LENGTH) {
+            throw new IllegalArgumentException("Encrypted data is too short.");
+        }
+        byte[] salt = Arrays.copyOfRange(combined, 0, SALT_LENGTH);
+        SecretKey secretKey = keySource.keyFor(passphrase, salt);
         Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-        byte[] decrypted = cipher.doFinal(ciphertext);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(combined, SALT_LENGTH, LEGACY_IV_LENGTH));
+        byte[] decrypted = cipher.doFinal(combined, SALT_LENGTH + LEGACY_IV_LENGTH, combined.length - SALT_LENGTH - LEGACY_IV_LENGTH);
         return new String(decrypted, "UTF-8");
     }
 
-    private static SecretKey deriveKey(String passphrase, byte[] salt) throws Exception {
-        KeySpec spec = new PBEKeySpec(passphrase.toCharArray(), salt, PBKDF2_ITERATIONS, KEY_LENGTH_BITS);
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        byte[] keyBytes = factory.generateSecret(spec).getEncoded();
-        return new SecretKeySpec(keyBytes, "AES");
+    /**
+     * The PBKDF2WithHmacSHA256 key {@link #encrypt(String, String)} uses. Blocks for the whole
+     * derivation.
+     */
+    public static SecretKey derivePassphraseKey(String passphrase, byte[] salt) throws Exception {
+        return derivePassphraseKey(passphrase, salt, PBKDF2_ITERATIONS);
+    }
+
+    /**
+     * As {@link #derivePassphraseKey(String, byte[])} with a given cost, for benchmarking.
+     */
+    public static SecretKey derivePassphraseKey(String passphrase, byte[] salt, int iterations) throws Exception {
+        char[] passphraseChars = passphrase.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(passphraseChars, salt, iterations, KEY_LENGTH_BITS);
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            byte[] keyBytes = factory.generateSecret(spec).getEncoded();
+            SecretKey key = new SecretKeySpec(keyBytes, "AES");
+            Arrays.fill(keyBytes, (byte) 0);
+            return key;
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(passphraseChars, '\0');
+        }
     }
 
     /**
@@ -0,0 +1,208 @@
+package com.example.therapyai.util;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Reusable AES/GCM sealing context bound to one key (typically a session DEK).
+ *
+ * Output uses the same [IV + ciphertext + tag] layout as {@link AESUtil#encryptAesGcm}, so either
+ * side can open what the other sealed. Ciphers come from the per-thread cache in {@link AESUtil}
+ * and results go into caller-supplied arrays or buffers, so steady-state calls do not allocate
+ * beyond the parameter spec the JCE API requires.
+ *
+ * Nonces for software keys are a random 8-byte prefix drawn per context followed by a 4-byte
+ * message counter, so they never repeat within a context; the context refuses to seal more than
+ * 2^32 messages (the NIST limit for one key). Android Keystore keys insist on generating their own
+ * IV, so for those the provider's IV is copied into the output instead.
+ *
+ * Framed formats that number their own records, such as {@link ChunkedGcmContainer}, use
+ * {@link #sealFramed} and {@link #openFramed} instead: the caller supplies the nonce and AAD, and
+ * only ciphertext and tag are written.
+ *
+ * Thread-safe: each thread uses its own cipher and nonces are claimed atomically.
+ */
+public final class AesGcmContext {
+    public static final int IV_LENGTH = AESUtil.GCM_IV_LENGTH;
+    public static final int TAG_LENGTH = AESUtil.GCM_TAG_LENGTH / 8;
+    public static final int OVERHEAD = IV_LENGTH + TAG_LENGTH;
+
+    private static final int NONCE_PREFIX_LENGTH = 8;
+    private static final long MAX_MESSAGES = 1L << 32;
+    private static final ThreadLocal<byte[]> NONCE_SCRATCH = new ThreadLocal<>();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKey key;
+    private final boolean softwareKey;
+    private final byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+    private final AtomicLong messageCounter = new AtomicLong();
+
+    public AesGcmContext(SecretKey key) {
+        if (key == null) throw new IllegalArgumentException("Key must not be null");
+        this.key = key;
+        this.softwareKey = AESUtil.isSoftwareKey(key);
+        RANDOM.nextBytes(noncePrefix);
+    }
+
+    public static int sealedLength(int plainLength) {
+        return plainLength + OVERHEAD;
+    }
+
+    public static int openedLength(int sealedLength) {
+        return Math.max(0, sealedLength - OVERHEAD);
+    }
+
+    /** Messages sealed so far. */
+    public long getSealCount() {
+        return messageCounter.get();
+    }
+
+    /**
+     * Encrypts {@code len} bytes into {@code out} as [IV + ciphertext + tag].
+     * The input and output ranges must not overlap.
+     *
+     * @return Bytes written, always {@link #sealedLength(int)} of {@code len}.
+     */
+    public int seal(byte[] in, int off, int len, byte[] out, int outOff) throws GeneralSecurityException {
+        if (out.length - outOff < sealedLength(len)) {
+            throw new ShortBufferException("Need " + sealedLength(len) + " bytes, have " + (out.length - outOff));
+        }
+        Cipher cipher = initForSeal(out, outOff);
+        return IV_LENGTH + cipher.doFinal(in, off, len, out, outOff + IV_LENGTH);
+    }
+
+    /**
+     * Encrypts the remaining bytes of {@code in} into {@code out}; works with heap and direct buffers.
+     *
+     * @return Bytes written.
+     */
+    public int seal(ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        if (out.remaining() < sealedLength(in.remaining())) {
+            throw new ShortBufferException("Need " + sealedLength(in.remaining()) + " bytes, have " + out.remaining());
+        }
+        byte[] nonce = nonceScratch();
+        Cipher cipher = initForSeal(nonce, 0);
+        int outStart = out.position();
+        out.put(nonce, 0, IV_LENGTH);
+        try {
+            return IV_LENGTH + cipher.doFinal(in, out);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            out.position(outStart);
+            throw e;
+        }
+    }
+
+    /**
+     * Decrypts and authenticates [IV + ciphertext + tag] into {@code out}.
+     *
+     * @return Plaintext bytes written.
+     * @throws javax.crypto.AEADBadTagException if the data or key is wrong.
+     */
+    public int open(byte[] in, int off, int len, byte[] out, int outOff) throws GeneralSecurityException {
+        if (len < OVERHEAD) throw new IllegalArgumentException("Sealed data too short: " + len);
+        Cipher cipher = AESUtil.threadGcmCipher(key);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, in, off, IV_LENGTH));
+        return cipher.doFinal(in, off + IV_LENGTH, len - IV_LENGTH, out, outOff);
+    }
+
+    /**
+     * Decrypts the remaining bytes of {@code in} into {@code out}; works with heap and direct buffers.
+     *
+     * @return Plaintext bytes written.
+     */
+    public int open(ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        if (in.remaining() < OVERHEAD) throw new IllegalArgumentException("Sealed data too short: " + in.remaining());
+        byte[] nonce = nonceScratch();
+        int inStart = in.position();
+        in.get(nonce, 0, IV_LENGTH);
+        try {
+            Cipher cipher = AESUtil.threadGcmCipher(key);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, nonce, 0, IV_LENGTH));
+            return cipher.doFinal(in, out);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            in.position(inStart); // Leave the input where it was so the caller can report or retry
+            throw e;
+        }
+    }
+
+    /**
+     * Encrypts {@code len} bytes under a caller-derived nonce, authenticating {@code aad} too, and
+     * writes ciphertext followed by the tag. The caller guarantees the nonce is never used twice
+     * with this key, so only software keys are accepted. {@code len} may be 0 to produce a bare
+     * tag over the AAD.
+     *
+     * @return Bytes written, {@code len + TAG_LENGTH}.
+     */
+    public int sealFramed(byte[] nonce, byte[] aad, byte[] in, int off, int len, byte[] out, int outOff)
+            throws GeneralSecurityException {
+        if (!softwareKey) {
+            throw new IllegalStateException("Caller-supplied nonces need a software key");
+        }
+        if (out.length - outOff < len + TAG_LENGTH) {
+            throw new ShortBufferException("Need " + (len + TAG_LENGTH) + " bytes, have " + (out.length - outOff));
+        }
+        Cipher cipher = AESUtil.threadGcmCipher(key);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, nonce));
+        if (aad != null) cipher.updateAAD(aad);
+        return cipher.doFinal(in, off, len, out, outOff);
+    }
+
+    /**
+     * Decrypts and authenticates ciphertext plus tag sealed by {@link #sealFramed} with the same
+     * nonce and AAD.
+     *
+     * @return Plaintext bytes written, {@code len - TAG_LENGTH}.
+     * @throws javax.crypto.AEADBadTagException if the data, nonce, AAD or key is wrong.
+     */
+    public int openFramed(byte[] nonce, byte[] aad, byte[] in, int off, int len, byte[] out, int outOff)
+            throws GeneralSecurityException {
+        if (len < TAG_LENGTH) throw new IllegalArgumentException("Sealed record too short: " + len);
+        Cipher cipher = AESUtil.threadGcmCipher(key);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, nonce));
+        if (aad != null) cipher.updateAAD(aad);
+        return cipher.doFinal(in, off, len, out, outOff);
+    }
+
+    /**
+     * Initialises this thread's cipher for encryption and writes the IV to {@code iv[ivOff..]}.
+     */
+    private Cipher initForSeal(byte[] iv, int ivOff) throws GeneralSecurityException {
+        Cipher cipher = AESUtil.threadGcmCipher(key);
+        long counter = messageCounter.getAndIncrement();
+        if (!softwareKey) {
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            byte[] generated = cipher.getIV();
+            if (generated == null || generated.length != IV_LENGTH) {
+                throw new SecurityException("Keystore generated an unexpected GCM IV length");
+            }
+            System.arraycopy(generated, 0, iv, ivOff, IV_LENGTH);
+            return cipher;
+        }
+        if (counter >= MAX_MESSAGES) {
+            throw new IllegalStateException("GCM message limit reached for this key; rotate the key");
+        }
+        System.arraycopy(noncePrefix, 0, iv, ivOff, NONCE_PREFIX_LENGTH);
+        iv[ivOff + 8] = (byte) (counter >>> 24);
+        iv[ivOff + 9] = (byte) (counter >>> 16);
+        iv[ivOff + 10] = (byte) (counter >>> 8);
+        iv[ivOff + 11] = (byte) counter;
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, iv, ivOff, IV_LENGTH));
+        return cipher;
+    }
+
+    private static byte[] nonceScratch() {
+        byte[] nonce = NONCE_SCRATCH.get();
+        if (nonce == null) {
+            nonce = new byte[IV_LENGTH];
+            NONCE_SCRATCH.set(nonce);
+        }
+        return nonce;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.therapyai.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Level meter for 16-bit PCM, fed on the audio thread and read from the UI at display rate.
+ *
+ * The producer splits the stream into fixed windows and records each window's peak and RMS in
+ * a preallocated history ring. Consumers pull instead of being posted to:
+ * <ul>
+ *   <li>{@link #pollPeak()}: the loudest sample since the previous poll, for a simple meter.</li>
+ *   <li>{@link #getLatestPeak()} / {@link #getLatestRms()}: the last completed window.</li>
+ *   <li>{@link #newReader()}: every window in order (the decimated history the waveform plots),
+ *       and the per-window loudness that silence detection would need.</li>
+ * </ul>
+ *
+ * Nothing locks or allocates after construction. Only one thread may call {@link #process};
+ * any thread may read.
+ */
+public final class AmplitudeMeter {
+    public static final int FULL_SCALE = 32768;
+
+    private final int samplesPerWindow;
+    private final int windowMillis;
+    private final int[] peakHistory;
+    private final float[] rmsHistory;
+    private final int mask;
+
+    // Producer-only state for the window being filled
+    private int windowSamples;
+    private int windowPeak;
+    private double windowSumSquares;
+
+    private final AtomicLong windowCount = new AtomicLong(); // Completed windows; published after the slot is written
+    private final AtomicLong latest = new AtomicLong();      // Last window: peak << 32 | rms float bits
+    private final AtomicInteger peakSincePoll = new AtomicInteger();
+
+    /**
+     * @param sampleRate    Frames per second of the PCM that will be fed in.
+     * @param channels      Interleaved channels; a window counts samples over all of them.
+     * @param windowMillis  Length of one history window.
+     * @param historyWindows Windows kept for readers; rounded up to a power of two, of which
+     *                       one is always being refilled.
+     */
+    public AmplitudeMeter(int sampleRate, int channels, int windowMillis, int historyWindows) {
+        this.windowMillis = windowMillis;
+        this.samplesPerWindow = Math.max(1, (int) ((long) sampleRate * channels * windowMillis / 1000));
+        int capacity = 2;
+        while (capacity < historyWindows) {
+            capacity <<= 1;
+        }
+        this.peakHistory = new int[capacity];
+        this.rmsHistory = new float[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Meters little-endian 16-bit samples. Audio thread only.
+     */
+    public void process(byte[] pcm, int offset, int length) {
+        int end = offset + (length & ~1);
+        int bufferPeak = 0;
+        for (int i = offset; i < end; i += 2) {
+            int sample = (short) ((pcm[i + 1] << 8) | (pcm[i] & 0xFF));
+            int magnitude = sample < 0 ? -sample : sample;
+            if (magnitude > bufferPeak) bufferPeak = magnitude;
+            if (magnitude > windowPeak) windowPeak = magnitude;
+            windowSumSquares += (double) sample * sample;
+            if (++windowSamples == samplesPerWindow) {
+                completeWindow();
+            }
+        }
+        raisePeakSincePoll(bufferPeak);
+    }
+
+    /**
+     * The loudest sample (0..{@link #FULL_SCALE}) since the previous call.
+     */
+    public int pollPeak() {
+        return peakSincePoll.getAndSet(0);
+    }
+
+    public int getLatestPeak() {
+        return (int) (latest.get() >>> 32);
+    }
+
+    /**
+     * RMS of the last completed window, on the same 0..{@link #FULL_SCALE} scale as the peak.
+     */
+    public float getLatestRms() {
+        return Float.intBitsToFloat((int) latest.get());
+    }
+
+    public long getWindowCount() {
+        return windowCount.get();
+    }
+
+    public int getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getHistoryCapacity() {
+        return peakHistory.length;
+    }
+
+    /**
+     * A cursor over the window history, starting at the oldest window still kept.
+     */
+    public Reader newReader() {
+        return new Reader(Math.max(0, oldestReadable(windowCount.get())));
+    }
+
+    /**
+     * Level in dB relative to full scale; -infinity for digital silence.
+     */
+    public static float toDbfs(float level) {
+        return (float) (20 * Math.log10(level / FULL_SCALE));
+    }
+
+    private void completeWindow() {
+        long window = windowCount.get();
+        int slot = (int) (window & mask);
+        float rms = (float) Math.sqrt(windowSumSquares / windowSamples);
+        peakHistory[slot] = windowPeak;
+        rmsHistory[slot] = rms;
+        latest.set(((long) windowPeak << 32) | (Float.floatToIntBits(rms) & 0xFFFFFFFFL));
+        windowCount.set(window + 1); // Publishes the slot to readers
+
+        windowSamples = 0;
+        windowPeak = 0;
+        windowSumSquares = 0;
+    }
+
+    // The slot of window (count - capacity) is the one the producer is filling next, so only
+    // the capacity - 1 windows after it are safe to read
+    private long oldestReadable(long count) {
+        return count - peakHistory.length + 1;
+    }
+
+    private void raisePeakSincePoll(int peak) {
+        int current;
+        do {
+            current = peakSincePoll.get();
+            if (peak <= current) return;
+        } while (!peakSincePoll.compareAndSet(current, peak));
+    }
+
+    /**
+     * Reads each completed window once, in order. Windows that left the history before being
+     * read are skipped and counted. Use from one thread.
+     */
+    public final class Reader {
+        private long nextWindow;
+        private long skippedWindows;
+
+        private Reader(long nextWindow) {
+            this.nextWindow = nextWindow;
+        }
+
+        /**
+         * Copies unread windows, oldest first, up to the length of the arrays.
+         *
+         * @return The number of windows copied.
+         */
+        public int read(int[] peaksOut, float[] rmsOut) {
+            long available = windowCount.get();
+            long oldestKept = oldestReadable(available);
+            if (nextWindow < oldestKept) {
+                skippedWindows += oldestKept - nextWindow;
+                nextWindow = oldestKept;
+            }
+            int count = (int) Math.min(available - nextWindow, Math.min(peaksOut.length, rmsOut.length));
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((nextWindow + i) & mask);
+                peaksOut[i] = peakHistory[slot];
+                rmsOut[i] = rmsHistory[slot];
+            }
+
+            // The producer may have lapped the oldest of these while they were copied
+            long stillValid = oldestReadable(windowCount.get());
+            int overwritten = (int) Math.max(0, Math.min(count, stillValid - nextWindow));
+            if (overwritten > 0) {
+                System.arraycopy(peaksOut, overwritten, peaksOut, 0, count - overwritten);
+                System.arraycopy(rmsOut, overwritten, rmsOut, 0, count - overwritten);
+                skippedWindows += overwritten;
+            }
+            nextWindow += count;
+            return count - overwritten;
+        }
+
+        public long getSkippedWindows() {
+            return skippedWindows;
+        }
+
+        public boolean isReading(AmplitudeMeter meter) {
+            return meter == AmplitudeMeter.this;
+        }
+    }
+}
@@ -2,12 +2,16 @@ package com.example.therapyai.util;
 
 import android.util.Log;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 /**
  * Utility class for audio format conversions and header generation.
@@ -25,6 +29,98 @@ public class AudioFormatUtil {
     public static final int BITS_PER_SAMPLE = 16; // PCM 16-bit
     public static final int BYTES_PER_SAMPLE = BITS_PER_SAMPLE / 8;
     public static final int BYTE_RATE = SAMPLE_RATE * CHANNELS * BYTES_PER_SAMPLE;
+    public static final int WAV_HEADER_SIZE = 44;
+    private static final long MAX_WAV_PCM_SIZE = 0xFFFFFFFFL - 36; // RIFF sizes are unsigned 32-bit
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    /**
+     * How a session's audio is stored in its encrypted segments, chosen when recording starts.
+     * The tag is sent in the upload metadata as "audio_encoding".
+     */
+    public enum AudioEncoding {
+        /** Raw PCM in the segments; a WAV header is added at upload time. */
+        PCM_WAV("pcm_s16le"),
+        /** The segments hold one continuous FLAC stream (see {@link FlacEncoder}); uploaded as-is. */
+        FLAC("flac");
+
+        private final String metadataTag;
+
+        AudioEncoding(String metadataTag) {
+            this.metadataTag = metadataTag;
+        }
+
+        public String getMetadataTag() {
+            return metadataTag;
+        }
+
+        /** True if the decrypted segments must be preceded by a WAV header for upload. */
+        public boolean needsWavHeader() {
+            return this == PCM_WAV;
+        }
+
+        /**
+         * @return The encoding with this tag, or PCM_WAV for null/unknown tags (e.g. older prefs).
+         */
+        public static AudioEncoding fromMetadataTag(String tag) {
+            for (AudioEncoding encoding : values()) {
+                if (encoding.metadataTag.equals(tag)) {
+                    return encoding;
+                }
+            }
+            return PCM_WAV;
+        }
+    }
+
+    /**
+     * Sample rate (and channel layout) a session is stored at, chosen when recording starts.
+     * Devices that cannot capture the rate natively are resampled by {@link PolyphaseResampler}.
+     * The tag and rate are sent in the upload metadata.
+     */
+    public enum CaptureProfile {
+        /** 16 kHz mono: what the transcription and sentiment models consume; ~2.8x fewer bytes. */
+        SPEECH_16K("speech_16k", 16000),
+        /** 44.1 kHz mono: full-band archival copy (the original fixed configuration). */
+        ARCHIVAL_44K("archival_44k", SAMPLE_RATE);
+
+        /** Profile for sessions that did not choose one. */
+        public static final CaptureProfile DEFAULT = SPEECH_16K;
+
+        private final String metadataTag;
+        private final int sampleRate;
+
+        CaptureProfile(String metadataTag, int sampleRate) {
+            this.metadataTag = metadataTag;
+            this.sampleRate = sampleRate;
+        }
+
+        public String getMetadataTag() {
+            return metadataTag;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannels() {
+            return CHANNELS;
+        }
+
+        public int getByteRate() {
+            return sampleRate * CHANNELS * BYTES_PER_SAMPLE;
+        }
+
+        /**
+         * @return The profile with this tag, or {@link #DEFAULT} for null/unknown tags.
+         */
+        public static CaptureProfile fromMetadataTag(String tag) {
+            for (CaptureProfile profile : values()) {
+                if (profile.metadataTag.equals(tag)) {
+                    return profile;
+                }
+            }
+            return DEFAULT;
+        }
+    }
     
     /**
      * Generates a WAV header for the given PCM data size.
@@ -33,6 +129,17 @@ public class AudioFormatUtil {
      * @return byte array containing the 44-byte WAV header
      */
     public static byte[] generateWavHeader(long pcmDataSize) {
+        return generateWavHeader(pcmDataSize, CaptureProfile.ARCHIVAL_44K);
+    }
+
+    /**
+     * Generates a WAV header for PCM recorded with the given capture profile.
+     *
+     * @param pcmDataSize The size of the PCM audio data in bytes
+     * @param profile Sample rate and channel layout of the PCM
+     * @return byte array containing the 44-byte WAV header
+     */
+    public static byte[] generateWavHeader(long pcmDataSize, CaptureProfile profile) {
         ByteBuffer header = ByteBuffer.allocate(44);
         header.order(ByteOrder.LITTLE_ENDIAN);
         
@@ -45,10 +152,10 @@ public class AudioFormatUtil {
         header.put("fmt ".getBytes());
         header.putInt(16); // PCM format chunk size
         header.putShort((short) 1); // PCM format
-        header.putShort((short) CHANNELS); // Number of channels
-        header.putInt(SAMPLE_RATE); // Sample rate
-        header.putInt(BYTE_RATE); // Byte rate
-        header.putShort((short) (CHANNELS * BYTES_PER_SAMPLE)); // Block align
+        header.putShort((short) profile.getChannels()); // Number of channels
+        header.putInt(profile.getSampleRate()); // Sample rate
+        header.putInt(profile.getByteRate()); // Byte rate
+        header.putShort((short) (profile.getChannels() * BYTES_PER_SAMPLE)); // Block align
         header.putShort((short) BITS_PER_SAMPLE); // Bits per sample
         
         // Data chunk
@@ -62,6 +169,13 @@ public class AudioFormatUtil {
      * Wraps a PCM audio input stream with WAV format headers and writes to output stream.
      * This method ensures proper audio format for cloud upload while maintaining encryption pipeline.
      * 
+     * A FileOutputStream is written in the seekable mode ({@link #wrapPcmToWavFile}). Any other
+     * sink needs the exact size before the header can be written, so the PCM is buffered in
+     * memory and then written by {@link #wrapPcmWithWavHeadersKnownSize}; call that directly
+     * when the size is known ahead.
+     * The header describes 44.1 kHz PCM; use the overload taking a {@link CaptureProfile} for
+     * anything else.
+     * 
      * @param pcmInputStream Input stream containing raw PCM audio data (decrypted)
      * @param outputStream Output stream where WAV-formatted audio will be written
      * @param estimatedPcmSize Estimated size of PCM data for progress calculation
@@ -73,9 +187,32 @@ public class AudioFormatUtil {
                                            OutputStream outputStream,
                                            long estimatedPcmSize,
                                            ProgressCallback progressCallback) throws IOException {
+        return wrapPcmWithWavHeaders(pcmInputStream, outputStream, estimatedPcmSize, CaptureProfile.ARCHIVAL_44K, progressCallback);
+    }
+
+    /**
+     * Wraps a PCM audio input stream recorded with the given capture profile in a WAV header.
+     * See {@link #wrapPcmWithWavHeaders(InputStream, OutputStream, long, ProgressCallback)}.
+     * 
+     * @param profile Sample rate and channel layout of the PCM
+     */
+    public static long wrapPcmWithWavHeaders(InputStream pcmInputStream,
+                                           OutputStream outputStream,
+                                           long estimatedPcmSize,
+                                           CaptureProfile profile,
+                                           ProgressCallback progressCallback) throws IOException {
         
         Log.d(TAG, "Converting PCM stream to WAV format. Estimated PCM size: " + estimatedPcmSize);
         
+        if (outputStream instanceof FileOutputStream) {
+            long written = streamPcmToSeekableWav(pcmInputStream, ((FileOutputStream) outputStream).getChannel(),
+                    estimatedPcmSize, profile, progressCallback);
+            if (progressCallback != null) {
+                progressCallback.onProgress(95, "WAV conversion complete");
+            }
+            return written;
+        }
+        
         // Step 1: Buffer all PCM data to calculate exact size
         ByteArrayOutputStream pcmBuffer = new ByteArrayOutputStream();
         byte[] tempBuffer = new byte[8192];
@@ -96,36 +233,27 @@ public class AudioFormatUtil {
         
         Log.d(TAG, "PCM data buffered. Actual size: " + totalPcmBytes + " bytes");
         
-        // Step 2: Generate WAV header with exact PCM size
-        byte[] wavHeader = generateWavHeader(totalPcmBytes);
-        
-        if (progressCallback != null) {
-            progressCallback.onProgress(35, "Generating WAV headers...");
-        }
-        
-        // Step 3: Write WAV header
-        outputStream.write(wavHeader);
-        long totalBytesWritten = wavHeader.length;
-        
+        // Step 2: The size is exact now, so hand the buffered PCM to the one-pass mode
         if (progressCallback != null) {
-            progressCallback.onProgress(40, "Writing WAV formatted audio...");
+            progressCallback.onProgress(35, "Writing WAV formatted audio...");
         }
-        
-        // Step 4: Write PCM data
         byte[] pcmData = pcmBuffer.toByteArray();
-        outputStream.write(pcmData);
-        totalBytesWritten += pcmData.length;
-        
-        // Clear sensitive audio data from memory
         pcmBuffer.reset();
-        java.util.Arrays.fill(pcmData, (byte) 0);
+        long totalBytesWritten;
+        try {
+            totalBytesWritten = wrapPcmWithWavHeadersKnownSize(new ByteArrayInputStream(pcmData), outputStream,
+                    totalPcmBytes, profile, null);
+        } finally {
+            // Clear sensitive audio data from memory
+            Arrays.fill(pcmData, (byte) 0);
+        }
         
         if (progressCallback != null) {
             progressCallback.onProgress(95, "WAV conversion complete");
         }
         
         Log.i(TAG, "WAV conversion completed. Total bytes written: " + totalBytesWritten + 
-              " (Header: " + wavHeader.length + ", PCM: " + totalPcmBytes + ")");
+              " (Header: " + WAV_HEADER_SIZE + ", PCM: " + totalPcmBytes + ")");
         
         return totalBytesWritten;
     }
@@ -133,6 +261,8 @@ public class AudioFormatUtil {
     /**
      * Wraps a PCM audio input stream with WAV format headers using streaming approach.
      * Minimizes memory exposure of decrypted audio data for HIPAA compliance.
+     * The header describes 44.1 kHz PCM; use the overload taking a {@link CaptureProfile} for
+     * anything else.
      * 
      * @param pcmInputStream Input stream containing raw PCM audio data (decrypted)
      * @param outputStream Output stream where WAV-formatted audio will be written
@@ -145,6 +275,20 @@ public class AudioFormatUtil {
                                                      OutputStream outputStream,
                                                      long estimatedPcmSize,
                                                      ProgressCallback progressCallback) throws IOException {
+        return wrapPcmWithWavHeadersStreaming(pcmInputStream, outputStream, estimatedPcmSize, CaptureProfile.ARCHIVAL_44K, progressCallback);
+    }
+
+    /**
+     * Streaming WAV wrap for PCM recorded with the given capture profile. See
+     * {@link #wrapPcmWithWavHeadersStreaming(InputStream, OutputStream, long, ProgressCallback)}.
+     * 
+     * @param profile Sample rate and channel layout of the PCM
+     */
+    public static long wrapPcmWithWavHeadersStreaming(InputStream pcmInputStream,
+                                                     OutputStream outputStream,
+                                                     long estimatedPcmSize,
+                                                     CaptureProfile profile,
+                                                     ProgressCallback progressCallback) throws IOException {
         
         Log.d(TAG, "Converting PCM stream to WAV format (streaming). Estimated PCM size: " + estimatedPcmSize);
         
@@ -153,7 +297,7 @@ public class AudioFormatUtil {
         
         // For streaming conversion, we need to write a placeholder header first
         // then update it with the actual size at the end
-        byte[] placeholderHeader = generateWavHeader(estimatedPcmSize > 0 ? estimatedPcmSize : 0);
+        byte[] placeholderHeader = generateWavHeader(estimatedPcmSize > 0 ? estimatedPcmSize : 0, profile);
         outputStream.write(placeholderHeader);
         long totalBytesWritten = placeholderHeader.length;
         
@@ -195,12 +339,225 @@ public class AudioFormatUtil {
         Log.i(TAG, "Streaming WAV conversion completed. Total bytes written: " + totalBytesWritten + 
               " (Header: " + placeholderHeader.length + ", PCM: " + actualPcmBytes + ")");
         
-        // Note: For true streaming, header size correction would require seeking back to beginning
-        // For upload purposes, the estimated size should be close enough for proper server handling
+        // Note: the header carries the estimate. Use wrapPcmToWavFile (seekable output) or
+        // wrapPcmWithWavHeadersKnownSize (exact size known ahead) when it must be exact.
         
         return totalBytesWritten;
     }
 
+    /**
+     * Seekable-output mode: writes a placeholder header at the channel's current position,
+     * streams the PCM straight through, then patches the RIFF and data sizes in place.
+     * Memory use is one small buffer regardless of recording length.
+     * 
+     * @param pcmInputStream Input stream containing raw PCM audio data (decrypted)
+     * @param channel Writable, seekable channel (e.g. from a RandomAccessFile or FileOutputStream)
+     * @param estimatedPcmSize Estimated size of PCM data, used only for progress
+     * @param profile Sample rate and channel layout of the PCM
+     * @param progressCallback Optional callback for progress updates
+     * @return Total bytes written (including WAV header)
+     * @throws IOException If stream operations fail or the audio exceeds the WAV size limit
+     */
+    public static long wrapPcmToWavFile(InputStream pcmInputStream,
+                                        FileChannel channel,
+                                        long estimatedPcmSize,
+                                        CaptureProfile profile,
+                                        ProgressCallback progressCallback) throws IOException {
+        long written = streamPcmToSeekableWav(pcmInputStream, channel, estimatedPcmSize, profile, progressCallback);
+        if (progressCallback != null) {
+            progressCallback.onProgress(100, "WAV conversion complete");
+        }
+        return written;
+    }
+    
+    private static long streamPcmToSeekableWav(InputStream pcmInputStream,
+                                               FileChannel channel,
+                                               long estimatedPcmSize,
+                                               CaptureProfile profile,
+                                               ProgressCallback progressCallback) throws IOException {
+        Log.d(TAG, "Converting PCM stream to WAV (seekable output). Estimated PCM size: " + estimatedPcmSize);
+        
+        long headerPosition = channel.position();
+        writeFully(channel, ByteBuffer.wrap(generateWavHeader(0, profile)));
+        if (progressCallback != null) {
+            progressCallback.onProgress(5, "Writing WAV header...");
+        }
+        
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        ByteBuffer bufferView = ByteBuffer.wrap(buffer);
+        long pcmBytes = 0;
+        try {
+            int bytesRead;
+            while ((bytesRead = pcmInputStream.read(buffer)) != -1) {
+                pcmBytes += bytesRead;
+                if (pcmBytes > MAX_WAV_PCM_SIZE) {
+                    throw new IOException("PCM data exceeds the 4 GB WAV limit");
+                }
+                bufferView.clear().limit(bytesRead);
+                writeFully(channel, bufferView);
+                reportStreamingProgress(progressCallback, pcmBytes, estimatedPcmSize);
+            }
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+        
+        // Patch the two size fields now that the exact length is known.
+        ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        size.putInt(0, (int) (36 + pcmBytes));
+        writeFully(channel, size, headerPosition + 4);
+        size.clear();
+        size.putInt(0, (int) pcmBytes);
+        writeFully(channel, size, headerPosition + 40);
+        
+        Log.i(TAG, "Seekable WAV conversion completed. PCM: " + pcmBytes + " bytes");
+        return WAV_HEADER_SIZE + pcmBytes;
+    }
+    
+    /**
+     * One-pass mode for unseekable sinks (network bodies): the exact PCM size must be known
+     * ahead, e.g. the sum of the segments' decrypted lengths. Fails if the stream does not
+     * contain exactly that many bytes, since the header would otherwise be wrong.
+     * 
+     * @param pcmInputStream Input stream containing raw PCM audio data (decrypted)
+     * @param outputStream Output stream where WAV-formatted audio will be written
+     * @param exactPcmSize Exact number of PCM bytes the stream will produce
+     * @param profile Sample rate and channel layout of the PCM
+     * @param progressCallback Optional callback for progress updates
+     * @return Total bytes written (including WAV header)
+     * @throws IOException If stream operations fail or the stream length differs from exactPcmSize
+     */
+    public static long wrapPcmWithWavHeadersKnownSize(InputStream pcmInputStream,
+                                                     OutputStream outputStream,
+                                                     long exactPcmSize,
+                                                     CaptureProfile profile,
+                                                     ProgressCallback progressCallback) throws IOException {
+        Log.d(TAG, "Converting PCM stream to WAV (one pass). PCM size: " + exactPcmSize);
+        InputStream wav = openWavStreamKnownSize(pcmInputStream, exactPcmSize, profile, 0);
+        
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        long written = 0;
+        try {
+            int bytesRead;
+            while ((bytesRead = wav.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+                written += bytesRead;
+                if (written == WAV_HEADER_SIZE && progressCallback != null) {
+                    progressCallback.onProgress(5, "Writing WAV header...");
+                } else if (written > WAV_HEADER_SIZE) {
+                    reportStreamingProgress(progressCallback, written - WAV_HEADER_SIZE, exactPcmSize);
+                }
+            }
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+        
+        if (progressCallback != null) {
+            progressCallback.onProgress(100, "WAV conversion complete");
+        }
+        Log.i(TAG, "One-pass WAV conversion completed. PCM: " + (written - WAV_HEADER_SIZE) + " bytes");
+        return written;
+    }
+
+    /**
+     * Pull-side form of {@link #wrapPcmWithWavHeadersKnownSize}: returns the WAV stream (header
+     * followed by exactly {@code exactPcmSize} PCM bytes) starting at logical offset
+     * {@code startOffset}, for callers that read it in chunks, such as the resumable upload.
+     * {@code pcmInputStream} must be positioned at the PCM byte that offset maps to (the start
+     * of the PCM while the offset is inside the header). Reads fail with an IOException if the
+     * PCM ends early or runs past the declared size.
+     * 
+     * @param profile Sample rate and channel layout of the PCM
+     * @throws IOException If the size does not fit a WAV header or the offset is past the end
+     */
+    public static InputStream openWavStreamKnownSize(InputStream pcmInputStream,
+                                                     long exactPcmSize,
+                                                     CaptureProfile profile,
+                                                     long startOffset) throws IOException {
+        if (exactPcmSize < 0 || exactPcmSize > MAX_WAV_PCM_SIZE) {
+            throw new IOException("Invalid PCM size for WAV: " + exactPcmSize);
+        }
+        if (startOffset < 0 || startOffset > WAV_HEADER_SIZE + exactPcmSize) {
+            throw new IOException("Offset " + startOffset + " is outside the " + (WAV_HEADER_SIZE + exactPcmSize) + "-byte WAV stream");
+        }
+        return new KnownSizeWavInputStream(pcmInputStream, generateWavHeader(exactPcmSize, profile),
+                exactPcmSize, startOffset);
+    }
+
+    /** Header bytes, then the PCM checked against the size the header declares. */
+    private static final class KnownSizeWavInputStream extends InputStream {
+        private final InputStream pcm;
+        private final byte[] header;
+        private final long exactPcmSize;
+        private long position;
+        private boolean verifiedEnd = false;
+
+        KnownSizeWavInputStream(InputStream pcm, byte[] header, long exactPcmSize, long startOffset) {
+            this.pcm = pcm;
+            this.header = header;
+            this.exactPcmSize = exactPcmSize;
+            this.position = startOffset;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position < header.length) {
+                int n = (int) Math.min(len, header.length - position);
+                System.arraycopy(header, (int) position, b, off, n);
+                position += n;
+                return n;
+            }
+            long pcmRemaining = header.length + exactPcmSize - position;
+            if (pcmRemaining == 0) {
+                if (!verifiedEnd) {
+                    if (pcm.read() != -1) {
+                        throw new IOException("PCM stream is longer than the declared " + exactPcmSize + " bytes");
+                    }
+                    verifiedEnd = true;
+                }
+                return -1;
+            }
+            int n = pcm.read(b, off, (int) Math.min(len, pcmRemaining));
+            if (n == -1) {
+                throw new IOException("PCM stream ended after " + (position - header.length) + " of " + exactPcmSize + " bytes");
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pcm.close();
+        }
+    }
+    
+    private static void reportStreamingProgress(ProgressCallback progressCallback, long pcmBytes, long expectedPcmSize) {
+        if (progressCallback != null && expectedPcmSize > 0) {
+            int progressPercent = (int) Math.min(95, 10 + (pcmBytes * 85) / expectedPcmSize);
+            progressCallback.onProgress(progressPercent, "Streaming audio data...");
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += channel.write(src, position);
+        }
+    }
+
     /**
      * Progress callback interface for WAV conversion operations
      */
@@ -213,28 +570,37 @@ public class AudioFormatUtil {
      * @return true if configuration is valid for secure WAV conversion
      */
     public static boolean validateAudioConfiguration() {
+        return validateAudioConfiguration(CaptureProfile.ARCHIVAL_44K);
+    }
+
+    /**
+     * Validates a capture profile against the HIPAA-compliant audio configuration
+     * @return true if configuration is valid for secure WAV conversion
+     */
+    public static boolean validateAudioConfiguration(CaptureProfile profile) {
         // Expected values for HIPAA-compliant audio
-        final int EXPECTED_SAMPLE_RATE = 44100;
         final int EXPECTED_CHANNELS = 1;
         final int EXPECTED_BITS_PER_SAMPLE = 16;
         
-        boolean audioValid = SAMPLE_RATE == EXPECTED_SAMPLE_RATE && 
-                            CHANNELS == EXPECTED_CHANNELS && 
+        boolean audioValid = profile != null &&
+                            (profile.getSampleRate() == CaptureProfile.SPEECH_16K.getSampleRate() ||
+                             profile.getSampleRate() == CaptureProfile.ARCHIVAL_44K.getSampleRate()) &&
+                            profile.getChannels() == EXPECTED_CHANNELS && 
                             BITS_PER_SAMPLE == EXPECTED_BITS_PER_SAMPLE;
         
         // Validate derived security parameters
-        boolean securityValid = BYTES_PER_SAMPLE == 2 && BYTE_RATE > 0;
+        boolean securityValid = BYTES_PER_SAMPLE == 2 && profile != null && profile.getByteRate() > 0;
         
         if (!audioValid) {
-            Log.e(TAG, "Audio configuration invalid! Expected: " + EXPECTED_SAMPLE_RATE + 
-                  "Hz, " + EXPECTED_CHANNELS + " channels, " + EXPECTED_BITS_PER_SAMPLE + 
-                  "-bit. Current: " + SAMPLE_RATE + "Hz, " + CHANNELS + " channels, " + 
-                  BITS_PER_SAMPLE + "-bit");
+            Log.e(TAG, "Audio configuration invalid! Expected: 16000/44100Hz, " + EXPECTED_CHANNELS +
+                  " channels, " + EXPECTED_BITS_PER_SAMPLE + "-bit. Current: " +
+                  (profile != null ? profile.getSampleRate() + "Hz, " + profile.getChannels() : "no profile, " + CHANNELS) +
+                  " channels, " + BITS_PER_SAMPLE + "-bit");
         }
         
         if (!securityValid) {
             Log.e(TAG, "Security configuration invalid! BYTES_PER_SAMPLE: " + BYTES_PER_SAMPLE + 
-                  ", BYTE_RATE: " + BYTE_RATE);
+                  ", BYTE_RATE: " + (profile != null ? profile.getByteRate() : 0));
         }
         
         return audioValid && securityValid;
@@ -249,8 +615,15 @@ public class AudioFormatUtil {
      * @throws IOException If an error occurs during writing.
      */
     public static void writeWavHeader(OutputStream out, long totalPcmDataLen) throws IOException {
-        long sampleRate = SAMPLE_RATE;
-        int channels = CHANNELS;
+        writeWavHeader(out, totalPcmDataLen, CaptureProfile.ARCHIVAL_44K);
+    }
+
+    /**
+     * Writes a 44-byte WAV header for PCM recorded with the given capture profile.
+     */
+    public static void writeWavHeader(OutputStream out, long totalPcmDataLen, CaptureProfile profile) throws IOException {
+        long sampleRate = profile.getSampleRate();
+        int channels = profile.getChannels();
         int bitsPerSample = BITS_PER_SAMPLE;
 
         long byteRate = sampleRate * channels * bitsPerSample / 8;
@@ -296,8 +669,16 @@ public class AudioFormatUtil {
      * @return Expected WAV file size in bytes (including 44-byte header)
      */
     public static long calculateWavFileSize(long durationMillis) {
-        long pcmBytes = (durationMillis * SAMPLE_RATE * CHANNELS * BYTES_PER_SAMPLE) / 1000;
-        return pcmBytes + 44; // Add WAV header size
+        return calculateWavFileSize(durationMillis, CaptureProfile.ARCHIVAL_44K);
+    }
+
+    /**
+     * Calculates the expected WAV file size for a recording duration at the given capture profile
+     * @return Expected WAV file size in bytes (including 44-byte header)
+     */
+    public static long calculateWavFileSize(long durationMillis, CaptureProfile profile) {
+        long pcmBytes = (durationMillis * profile.getByteRate()) / 1000;
+        return pcmBytes + WAV_HEADER_SIZE; // Add WAV header size
     }
     
     /**
@@ -305,7 +686,15 @@ public class AudioFormatUtil {
      * @return ".wav" for WAV format
      */
     public static String getAudioFileExtension() {
-        return ".wav";
+        return getAudioFileExtension(AudioEncoding.PCM_WAV);
+    }
+
+    /**
+     * Gets the file extension of the uploaded audio for a session encoding
+     * @return ".wav" or ".flac"
+     */
+    public static String getAudioFileExtension(AudioEncoding encoding) {
+        return encoding == AudioEncoding.FLAC ? ".flac" : ".wav";
     }
     
     /**
@@ -313,6 +702,33 @@ public class AudioFormatUtil {
      * @return "audio/wav" for WAV format
      */
     public static String getAudioMimeType() {
-        return "audio/wav";
+        return getAudioMimeType(AudioEncoding.PCM_WAV);
+    }
+
+    /**
+     * Gets the MIME type of the uploaded audio for a session encoding
+     * @return "audio/wav" or "audio/flac"
+     */
+    public static String getAudioMimeType(AudioEncoding encoding) {
+        return encoding == AudioEncoding.FLAC ? "audio/flac" : "audio/wav";
+    }
+
+    /**
+     * Maps an upload content type back to a file extension (used by the mock upload paths).
+     * @return ".flac" for FLAC content types, ".wav" otherwise
+     */
+    public static String getAudioFileExtensionForMimeType(String mimeType) {
+        if (mimeType != null && (mimeType.startsWith("audio/flac") || mimeType.startsWith("audio/x-flac"))) {
+            return getAudioFileExtension(AudioEncoding.FLAC);
+        }
+        return getAudioFileExtension(AudioEncoding.PCM_WAV);
+    }
+
+    /**
+     * Size of the upload stream for the given decrypted segment bytes: a WAV header plus the PCM,
+     * or the FLAC stream unchanged.
+     */
+    public static long getUploadStreamSize(AudioEncoding encoding, long decryptedSize) {
+        return encoding.needsWavHeader() ? WAV_HEADER_SIZE + decryptedSize : decryptedSize;
     }
 }
@@ -0,0 +1,99 @@
+package com.example.therapyai.util;
+
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps between chart x-values and list positions when a chart plots only some rows of a list,
+ * such as the sentiment bars for the patient sentences of a transcript. Bar x is the row's rank
+ * among the plotted rows, so positions rise with x; lookups both ways are binary searches over
+ * a primitive array rather than scans over a boxed list.
+ *
+ * Immutable; safe to share across threads.
+ */
+public final class ChartPositionIndex {
+    public static final ChartPositionIndex EMPTY = new ChartPositionIndex(new int[0], 0);
+
+    private final int[] positions; // positions[x] = list position plotted at chart x
+    private final int size;
+
+    private ChartPositionIndex(int[] positions, int size) {
+        this.positions = positions;
+        this.size = size;
+    }
+
+    /**
+     * The rows SentimentChartHelper.updateSentimentBarChartData plots for a transcript: patient
+     * sentences with a sentiment score, in transcript order.
+     */
+    public static ChartPositionIndex ofScoredPatientSentences(List<FinalTranscriptEntry> entries) {
+        if (entries == null || entries.isEmpty()) return EMPTY;
+        int[] positions = new int[entries.size()];
+        int size = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            FinalTranscriptEntry entry = entries.get(i);
+            if ("Patient".equalsIgnoreCase(entry.getSpeaker()) && entry.getSentimentScore() != null) {
+                positions[size++] = i;
+            }
+        }
+        return size == 0 ? EMPTY : new ChartPositionIndex(positions, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The list position plotted at chart {@code x}, or -1 if there is no such bar.
+     */
+    public int positionAt(int x) {
+        return (x >= 0 && x < size) ? positions[x] : -1;
+    }
+
+    /**
+     * The chart x of list {@code position}, or -1 if that row is not plotted.
+     */
+    public int xOf(int position) {
+        int x = Arrays.binarySearch(positions, 0, size, position);
+        return x >= 0 ? x : -1;
+    }
+
+    /**
+     * The bar to centre the chart on while rows {@code first}..{@code last} are visible: the
+     * plotted row nearest the middle of that range (the earlier one on a tie), else the first
+     * plotted row after the middle, else the last bar. -1 when nothing is plotted.
+     */
+    public int nearestX(int first, int last) {
+        if (size == 0) return -1;
+        int center = first + (last - first) / 2;
+        int after = lowerBound(center); // First plotted row at or after the middle
+        int before = after - 1;
+        boolean afterVisible = after < size && positions[after] <= last;
+        boolean beforeVisible = before >= 0 && positions[before] >= first;
+        if (beforeVisible && afterVisible) {
+            return (center - positions[before] <= positions[after] - center) ? before : after;
+        }
+        if (beforeVisible) return before;
+        if (afterVisible) return after;
+        return after < size ? after : size - 1;
+    }
+
+    private int lowerBound(int position) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,549 @@
+package com.example.therapyai.util;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+
+/**
+ * Versioned, chunk-framed AES/GCM container for audio segments.
+ *
+ * Layout (all integers big-endian):
+ * <pre>
+ *   header  : "TACF" | version (1) | chunkSize (4) | noncePrefix (7)            = 16 bytes
+ *   chunk i : ciphertext (chunkSize, last chunk shorter) | GCM tag (16)
+ *   footer  : plaintextLength (8) | chunkCount (4) | footer tag (16) | "TACI"  = 32 bytes
+ * </pre>
+ * Chunk i is sealed with nonce = noncePrefix | i (4) | flag (1), where the flag marks the final
+ * chunk, and the header as AAD. Chunk offsets follow from the chunk size, so any byte range can
+ * be decrypted (and authenticated) without touching the rest of the file. The last chunk is
+ * always shorter than chunkSize (possibly empty), so a sequential reader can find it. The footer
+ * tag authenticates the length and chunk count, so truncation and reordering are detected.
+ *
+ * Legacy segments (12-byte IV, one GCM stream) are told apart by the magic and version; see
+ * {@link AESUtil#createDecryptingInputStream}. Chunks are sealed and opened through an
+ * {@link AesGcmContext} over the caller's buffers, so rotating segments or opening readers never
+ * calls Cipher.getInstance and steady-state chunks allocate nothing but the parameter spec.
+ */
+public final class ChunkedGcmContainer {
+    private static final String TAG = "ChunkedGcmContainer";
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    static final byte[] MAGIC = {'T', 'A', 'C', 'F'};
+    static final byte VERSION = 1;
+    static final int MAGIC_AND_VERSION_LENGTH = MAGIC.length + 1;
+    public static final int HEADER_LENGTH = 16;
+    public static final int FOOTER_LENGTH = 32;
+    public static final int TAG_LENGTH = 16;
+    private static final byte[] FOOTER_MAGIC = {'T', 'A', 'C', 'I'};
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final byte FLAG_CHUNK = 0;
+    private static final byte FLAG_FINAL_CHUNK = 1;
+    private static final byte FLAG_FOOTER = 2;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private ChunkedGcmContainer() {
+    }
+
+    /**
+     * True if the bytes start with this container's magic and a supported version.
+     */
+    public static boolean hasContainerHeader(byte[] prefix, int length) {
+        if (length < MAGIC_AND_VERSION_LENGTH) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (prefix[i] != MAGIC[i]) return false;
+        }
+        return prefix[MAGIC.length] == VERSION;
+    }
+
+    public static boolean isContainerFile(File file) throws IOException {
+        if (file.length() < HEADER_LENGTH + FOOTER_LENGTH) return false;
+        byte[] prefix = new byte[MAGIC_AND_VERSION_LENGTH];
+        try (FileInputStream fis = new FileInputStream(file)) {
+            int read = 0;
+            while (read < prefix.length) {
+                int n = fis.read(prefix, read, prefix.length - read);
+                if (n == -1) return false;
+                read += n;
+            }
+        }
+        return hasContainerHeader(prefix, prefix.length);
+    }
+
+    /**
+     * Plaintext length as recorded in the footer. Not authenticated; use a {@link Reader} for that.
+     */
+    public static long readPlaintextLength(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - FOOTER_LENGTH);
+            return raf.readLong();
+        }
+    }
+
+    private static void fillNonce(byte[] nonce, byte[] header, long chunkIndex, byte flag) {
+        System.arraycopy(header, HEADER_LENGTH - NONCE_PREFIX_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (chunkIndex >>> 24);
+        nonce[8] = (byte) (chunkIndex >>> 16);
+        nonce[9] = (byte) (chunkIndex >>> 8);
+        nonce[10] = (byte) chunkIndex;
+        nonce[11] = flag;
+    }
+
+    private static byte[] footerAad(byte[] header, long plaintextLength, int chunkCount) {
+        return ByteBuffer.allocate(HEADER_LENGTH + 12)
+                .put(header).putLong(plaintextLength).putInt(chunkCount).array();
+    }
+
+    private static int parseChunkSize(byte[] header) throws IOException {
+        int chunkSize = ByteBuffer.wrap(header, MAGIC_AND_VERSION_LENGTH, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > 16 * 1024 * 1024) {
+            throw new IOException("Invalid container chunk size: " + chunkSize);
+        }
+        return chunkSize;
+    }
+
+    /**
+     * Encrypts a stream of plaintext into the container format. Chunks are sealed and written
+     * as soon as they fill, using preallocated buffers.
+     */
+    public static final class Writer extends OutputStream {
+        private final OutputStream out;
+        private final AesGcmContext gcm;
+        private final int chunkSize;
+        private final byte[] header = new byte[HEADER_LENGTH];
+        private final byte[] nonce = new byte[AESUtil.GCM_IV_LENGTH];
+        private final byte[] plainBuffer;
+        private final byte[] cipherBuffer;
+        private int buffered = 0;
+        private int chunkIndex = 0;
+        private long plaintextLength = 0;
+        private boolean finished = false;
+
+        public Writer(OutputStream out, SecretKey key, int chunkSize) throws Exception {
+            if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+            this.out = out;
+            this.gcm = new AesGcmContext(key);
+            this.chunkSize = chunkSize;
+            this.plainBuffer = new byte[chunkSize];
+            this.cipherBuffer = new byte[chunkSize + TAG_LENGTH];
+
+            ByteBuffer h = ByteBuffer.wrap(header);
+            h.put(MAGIC).put(VERSION).putInt(chunkSize);
+            byte[] prefix = new byte[NONCE_PREFIX_LENGTH];
+            new SecureRandom().nextBytes(prefix);
+            h.put(prefix);
+            out.write(header);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) throw new IOException("Container already finished");
+            while (len > 0) {
+                int n = Math.min(len, chunkSize - buffered);
+                System.arraycopy(b, off, plainBuffer, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+                if (buffered == chunkSize) {
+                    // Seal eagerly so the final chunk is always shorter than chunkSize.
+                    sealChunk(FLAG_CHUNK);
+                }
+            }
+        }
+
+        private void sealChunk(byte flag) throws IOException {
+            if (chunkIndex == Integer.MAX_VALUE) { // Keeps chunk nonces clear of the footer's 0xFFFFFFFF
+                throw new IOException("Container chunk limit reached");
+            }
+            try {
+                fillNonce(nonce, header, chunkIndex, flag);
+                int sealed = gcm.sealFramed(nonce, header, plainBuffer, 0, buffered, cipherBuffer, 0);
+                out.write(cipherBuffer, 0, sealed);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Failed to seal container chunk " + chunkIndex, e);
+            } finally {
+                Arrays.fill(plainBuffer, 0, buffered, (byte) 0);
+            }
+            plaintextLength += buffered;
+            buffered = 0;
+            chunkIndex++;
+        }
+
+        /**
+         * Seals the final chunk and writes the footer. Does not close the underlying stream.
+         */
+        public void finish() throws IOException {
+            if (finished) return;
+            sealChunk(FLAG_FINAL_CHUNK);
+            try {
+                fillNonce(nonce, header, 0xFFFFFFFFL, FLAG_FOOTER);
+                byte[] footerTag = new byte[TAG_LENGTH];
+                gcm.sealFramed(nonce, footerAad(header, plaintextLength, chunkIndex), NO_BYTES, 0, 0, footerTag, 0);
+                out.write(ByteBuffer.allocate(FOOTER_LENGTH)
+                        .putLong(plaintextLength).putInt(chunkIndex).put(footerTag).put(FOOTER_MAGIC).array());
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Failed to seal container footer", e);
+            }
+            out.flush();
+            Arrays.fill(cipherBuffer, (byte) 0);
+            finished = true;
+        }
+
+        public long getPlaintextLength() {
+            return plaintextLength + buffered;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Random-access reader. Every chunk read is authenticated individually.
+     */
+    public static final class Reader implements Closeable {
+        private final RandomAccessFile file;
+        private final AesGcmContext gcm;
+        private final byte[] header = new byte[HEADER_LENGTH];
+        private final byte[] nonce = new byte[AESUtil.GCM_IV_LENGTH];
+        private final int chunkSize;
+        private final long plaintextLength;
+        private final int chunkCount;
+        private final byte[] cipherBuffer;
+
+        public Reader(File encryptedFile, SecretKey key) throws Exception {
+            this.gcm = new AesGcmContext(key);
+            this.file = new RandomAccessFile(encryptedFile, "r");
+            try {
+                long fileLength = file.length();
+                if (fileLength < HEADER_LENGTH + TAG_LENGTH + FOOTER_LENGTH) {
+                    throw new IOException("File too short for container: " + fileLength);
+                }
+                file.readFully(header);
+                if (!hasContainerHeader(header, header.length)) {
+                    throw new IOException("Not a chunked GCM container: " + encryptedFile.getName());
+                }
+                chunkSize = parseChunkSize(header);
+
+                file.seek(fileLength - FOOTER_LENGTH);
+                plaintextLength = file.readLong();
+                chunkCount = file.readInt();
+                byte[] footerTag = new byte[TAG_LENGTH];
+                file.readFully(footerTag);
+                byte[] footerMagic = new byte[FOOTER_MAGIC.length];
+                file.readFully(footerMagic);
+                if (!Arrays.equals(footerMagic, FOOTER_MAGIC)) {
+                    throw new IOException("Container footer missing (truncated file?)");
+                }
+                verifyFooter(footerTag);
+
+                long expectedLength = HEADER_LENGTH + plaintextLength + (long) chunkCount * TAG_LENGTH + FOOTER_LENGTH;
+                if (chunkCount != (int) (plaintextLength / chunkSize) + 1 || fileLength != expectedLength) {
+                    throw new IOException("Container size does not match its footer");
+                }
+                this.cipherBuffer = new byte[chunkSize + TAG_LENGTH];
+            } catch (Exception e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        private void verifyFooter(byte[] footerTag) throws Exception {
+            fillNonce(nonce, header, 0xFFFFFFFFL, FLAG_FOOTER);
+            // Throws AEADBadTagException if length or count were altered
+            gcm.openFramed(nonce, footerAad(header, plaintextLength, chunkCount), footerTag, 0, TAG_LENGTH, NO_BYTES, 0);
+        }
+
+        public long getPlaintextLength() {
+            return plaintextLength;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        private int chunkPlaintextLength(int index) {
+            return index == chunkCount - 1 ? (int) (plaintextLength - (long) index * chunkSize) : chunkSize;
+        }
+
+        /**
+         * Decrypts one chunk into dst (which needs room for getChunkSize() bytes).
+         *
+         * @return Plaintext length of the chunk.
+         */
+        public synchronized int readChunk(int index, byte[] dst, int dstOffset) throws Exception {
+            if (index < 0 || index >= chunkCount) {
+                throw new IndexOutOfBoundsException("Chunk " + index + " of " + chunkCount);
+            }
+            int plainLength = chunkPlaintextLength(index);
+            file.seek(HEADER_LENGTH + (long) index * (chunkSize + TAG_LENGTH));
+            file.readFully(cipherBuffer, 0, plainLength + TAG_LENGTH);
+            fillNonce(nonce, header, index, index == chunkCount - 1 ? FLAG_FINAL_CHUNK : FLAG_CHUNK);
+            return gcm.openFramed(nonce, header, cipherBuffer, 0, plainLength + TAG_LENGTH, dst, dstOffset);
+        }
+
+        /**
+         * Checks one chunk's tag without keeping the plaintext.
+         */
+        public boolean verifyChunk(int index) {
+            byte[] scratch = new byte[chunkSize];
+            try {
+                readChunk(index, scratch, 0);
+                return true;
+            } catch (AEADBadTagException e) {
+                Log.e(TAG, "Chunk " + index + " failed authentication");
+                return false;
+            } catch (Exception e) {
+                Log.e(TAG, "Chunk " + index + " could not be read", e);
+                return false;
+            } finally {
+                Arrays.fill(scratch, (byte) 0);
+            }
+        }
+
+        /**
+         * Sequential plaintext stream starting at the given offset; only chunks from that
+         * offset on are read. Closing the stream closes this reader.
+         */
+        public InputStream openStream(long startOffset) {
+            if (startOffset < 0 || startOffset > plaintextLength) {
+                throw new IndexOutOfBoundsException("Offset " + startOffset + " outside 0.." + plaintextLength);
+            }
+            return new RandomAccessStream(startOffset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(cipherBuffer, (byte) 0);
+            file.close();
+        }
+
+        private final class RandomAccessStream extends InputStream {
+            private final byte[] plain = new byte[chunkSize];
+            private int chunk;
+            private int plainLength = 0;
+            private int plainPos = 0;
+
+            RandomAccessStream(long startOffset) {
+                chunk = (int) (startOffset / chunkSize);
+                plainPos = (int) (startOffset % chunkSize);
+                plainLength = -1; // Load lazily
+            }
+
+            private boolean ensureData() throws IOException {
+                while (plainLength < 0 || plainPos >= plainLength) {
+                    if (plainLength >= 0) {
+                        chunk++;
+                        plainPos = 0;
+                    }
+                    if (chunk >= chunkCount) {
+                        return false;
+                    }
+                    try {
+                        plainLength = readChunk(chunk, plain, 0);
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException("Failed to decrypt container chunk " + chunk, e);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (!ensureData()) return -1;
+                return plain[plainPos++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!ensureData()) return -1;
+                int n = Math.min(len, plainLength - plainPos);
+                System.arraycopy(plain, plainPos, b, off, n);
+                plainPos += n;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                Arrays.fill(plain, (byte) 0);
+                Reader.this.close();
+            }
+        }
+    }
+
+    /**
+     * Sequential decryption from a plain InputStream (no seeking), for callers that only have a
+     * stream. The caller has already consumed the first {@code consumedHeaderBytes} of the header.
+     */
+    static InputStream openSequentialStream(InputStream in, byte[] headerPrefix, int consumedHeaderBytes, SecretKey key) throws Exception {
+        byte[] header = new byte[HEADER_LENGTH];
+        System.arraycopy(headerPrefix, 0, header, 0, consumedHeaderBytes);
+        readFully(in, header, consumedHeaderBytes, HEADER_LENGTH - consumedHeaderBytes);
+        return new SequentialStream(in, header, parseChunkSize(header), key);
+    }
+
+    private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n == -1) throw new EOFException("Container stream ended early");
+            off += n;
+            len -= n;
+        }
+    }
+
+    private static final class SequentialStream extends InputStream {
+        private final InputStream in;
+        private final byte[] header;
+        private final int chunkSize;
+        private final AesGcmContext gcm;
+        private final byte[] nonce = new byte[AESUtil.GCM_IV_LENGTH];
+        // One full record plus room for the footer, so the final (short) chunk can be told apart.
+        private final byte[] window;
+        private int windowFilled = 0;
+        private final byte[] plain;
+        private int plainLength = 0;
+        private int plainPos = 0;
+        private int chunkIndex = 0;
+        private long plaintextLength = 0;
+        private boolean done = false;
+
+        SequentialStream(InputStream in, byte[] header, int chunkSize, SecretKey key) throws Exception {
+            this.in = in;
+            this.header = header;
+            this.chunkSize = chunkSize;
+            this.gcm = new AesGcmContext(key);
+            this.window = new byte[chunkSize + TAG_LENGTH + FOOTER_LENGTH];
+            this.plain = new byte[chunkSize];
+        }
+
+        private boolean fillWindow() throws IOException {
+            while (windowFilled < window.length) {
+                int n = in.read(window, windowFilled, window.length - windowFilled);
+                if (n == -1) return false;
+                windowFilled += n;
+            }
+            return true;
+        }
+
+        private void nextChunk() throws IOException {
+            try {
+                if (fillWindow()) {
+                    // A full window means the first record is a full, non-final chunk.
+                    int recordLength = chunkSize + TAG_LENGTH;
+                    plainLength = openChunk(window, recordLength, FLAG_CHUNK);
+                    System.arraycopy(window, recordLength, window, 0, windowFilled - recordLength);
+                    windowFilled -= recordLength;
+                } else {
+                    // End of stream: what's left is the final chunk followed by the footer.
+                    int recordLength = windowFilled - FOOTER_LENGTH;
+                    if (recordLength < TAG_LENGTH) {
+                        throw new IOException("Container stream truncated");
+                    }
+                    plainLength = openChunk(window, recordLength, FLAG_FINAL_CHUNK);
+                    verifyFooter(recordLength);
+                    done = true;
+                }
+                plainPos = 0;
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Failed to decrypt container chunk " + chunkIndex, e);
+            }
+        }
+
+        private int openChunk(byte[] record, int recordLength, byte flag) throws Exception {
+            fillNonce(nonce, header, chunkIndex, flag);
+            int n = gcm.openFramed(nonce, header, record, 0, recordLength, plain, 0);
+            chunkIndex++;
+            plaintextLength += n;
+            return n;
+        }
+
+        private void verifyFooter(int footerOffset) throws Exception {
+            ByteBuffer footer = ByteBuffer.wrap(window, footerOffset, FOOTER_LENGTH);
+            long declaredLength = footer.getLong();
+            int declaredCount = footer.getInt();
+            byte[] footerTag = new byte[TAG_LENGTH];
+            footer.get(footerTag);
+            byte[] footerMagic = new byte[FOOTER_MAGIC.length];
+            footer.get(footerMagic);
+            if (!Arrays.equals(footerMagic, FOOTER_MAGIC)
+                    || declaredLength != plaintextLength || declaredCount != chunkIndex) {
+                throw new IOException("Container footer does not match the decrypted stream");
+            }
+            fillNonce(nonce, header, 0xFFFFFFFFL, FLAG_FOOTER);
+            // Throws AEADBadTagException if the footer was altered
+            gcm.openFramed(nonce, footerAad(header, declaredLength, declaredCount), footerTag, 0, TAG_LENGTH, NO_BYTES, 0);
+        }
+
+        private boolean ensureData() throws IOException {
+            while (plainPos >= plainLength) {
+                if (done) return false;
+                nextChunk();
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureData()) return -1;
+            return plain[plainPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!ensureData()) return -1;
+            int n = Math.min(len, plainLength - plainPos);
+            System.arraycopy(plain, plainPos, b, off, n);
+            plainPos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(plain, (byte) 0);
+            Arrays.fill(window, (byte) 0);
+            in.close();
+        }
+    }
+}
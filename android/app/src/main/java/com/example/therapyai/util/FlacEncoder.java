@@ -0,0 +1,527 @@
+package com.example.therapyai.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming lossless FLAC encoder for 16-bit little-endian PCM.
+ *
+ * PCM bytes written to this stream come out as a FLAC stream on the wrapped output: the
+ * "fLaC" marker and STREAMINFO first, then one frame per {@link #DEFAULT_BLOCK_SIZE} samples.
+ * Each channel of a frame is coded as a constant, a fixed polynomial predictor (order 0-4) with
+ * partitioned Rice residuals, or verbatim, whichever is smallest, so a frame is never larger than
+ * the PCM it replaces. Speech typically shrinks to 40-60% of its PCM size.
+ *
+ * The encoder never seeks back, so STREAMINFO leaves the total sample count, frame sizes and MD5
+ * unset (all allowed by the format; decoders read to end of stream). That keeps it usable in front
+ * of the encrypted segment writer, where earlier bytes are already sealed.
+ *
+ * Buffers are allocated once per encoder and zeroed by {@link #finish()}.
+ */
+public class FlacEncoder extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_PARTITION_ORDER = 8;
+    private static final int MAX_RICE_PARAMETER = 14; // 15 is the escape code
+    private static final int FRAME_HEADER_MAX_BYTES = 16;
+
+    private static final int SUBFRAME_CONSTANT = 0x00;
+    private static final int SUBFRAME_VERBATIM = 0x01;
+    private static final int SUBFRAME_FIXED = 0x08;
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc8 = (crc8 & 0x80) != 0 ? ((crc8 << 1) ^ 0x07) : (crc8 << 1);
+                crc16 = (crc16 & 0x8000) != 0 ? ((crc16 << 1) ^ 0x8005) : (crc16 << 1);
+            }
+            CRC8_TABLE[i] = crc8 & 0xFF;
+            CRC16_TABLE[i] = crc16 & 0xFFFF;
+        }
+    }
+
+    private final OutputStream out;
+    private final int sampleRate;
+    private final int channels;
+    private final int blockSize;
+
+    private final int[][] samples;     // [channel][sample] of the block being filled
+    private final int[] residual;      // Residual of the predictor being evaluated
+    private final int[] bestResidual;  // Residual of the predictor picked so far
+    private final int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private final BitWriter frame;
+
+    private int blockFill = 0;
+    private int channelCursor = 0;
+    private boolean hasPendingByte = false;
+    private byte pendingByte;
+    private long frameNumber = 0;
+    private long samplesEncoded = 0;
+    private long bytesEncoded = 0;
+    private boolean headerWritten = false;
+    private boolean finished = false;
+
+    public FlacEncoder(OutputStream out, int sampleRate, int channels) {
+        this(out, sampleRate, channels, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize Samples per channel per frame; 16..65535.
+     */
+    public FlacEncoder(OutputStream out, int sampleRate, int channels, int blockSize) {
+        if (channels < 1 || channels > 8) {
+            throw new IllegalArgumentException("FLAC supports 1-8 channels, got " + channels);
+        }
+        if (sampleRate <= 0 || sampleRate > 655350) {
+            throw new IllegalArgumentException("Unsupported sample rate: " + sampleRate);
+        }
+        if (blockSize < 16 || blockSize > 65535) {
+            throw new IllegalArgumentException("Block size must be 16..65535, got " + blockSize);
+        }
+        this.out = out;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.blockSize = blockSize;
+        this.samples = new int[channels][blockSize];
+        this.residual = new int[blockSize];
+        this.bestResidual = new int[blockSize];
+        // Worst case is every channel verbatim, plus header, subframe headers and CRC-16.
+        this.frame = new BitWriter(FRAME_HEADER_MAX_BYTES + channels * (blockSize * BITS_PER_SAMPLE / 8 + 1) + 2);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    /**
+     * Accepts interleaved 16-bit little-endian PCM. A sample split across two writes is carried over.
+     */
+    @Override
+    public void write(byte[] pcm, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("FLAC encoder already finished");
+        }
+        ensureHeader();
+        int end = off + len;
+        int i = off;
+        if (hasPendingByte && i < end) {
+            pushSample((short) ((pcm[i++] << 8) | (pendingByte & 0xFF)));
+            hasPendingByte = false;
+            pendingByte = 0;
+        }
+        for (; i + 1 < end; i += 2) {
+            pushSample((short) ((pcm[i + 1] << 8) | (pcm[i] & 0xFF)));
+        }
+        if (i < end) {
+            pendingByte = pcm[i];
+            hasPendingByte = true;
+        }
+    }
+
+    /**
+     * Encodes the last (short) block and flushes. Does not close the wrapped stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        ensureHeader();
+        try {
+            // Only whole samples of every channel can be encoded; a dangling byte is dropped.
+            if (blockFill > 0) {
+                encodeFrame(blockFill);
+            }
+            out.flush();
+        } finally {
+            finished = true;
+            for (int[] channel : samples) {
+                Arrays.fill(channel, 0);
+            }
+            Arrays.fill(residual, 0);
+            Arrays.fill(bestResidual, 0);
+            frame.wipe();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** Samples per channel encoded so far. */
+    public long getSamplesEncoded() {
+        return samplesEncoded;
+    }
+
+    /** FLAC bytes written so far, including the stream header. */
+    public long getBytesEncoded() {
+        return bytesEncoded;
+    }
+
+    private void pushSample(int sample) throws IOException {
+        samples[channelCursor][blockFill] = sample;
+        if (++channelCursor == channels) {
+            channelCursor = 0;
+            if (++blockFill == blockSize) {
+                encodeFrame(blockSize);
+            }
+        }
+    }
+
+    // --- Stream header ---
+
+    private void ensureHeader() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        BitWriter header = new BitWriter(4 + 4 + 34);
+        header.writeBits('f', 8);
+        header.writeBits('L', 8);
+        header.writeBits('a', 8);
+        header.writeBits('C', 8);
+        // Metadata block header: last-block flag, type 0 (STREAMINFO), length 34
+        header.writeBits(1, 1);
+        header.writeBits(0, 7);
+        header.writeBits(34, 24);
+        header.writeBits(blockSize, 16);     // Min block size (the final block may be shorter)
+        header.writeBits(blockSize, 16);     // Max block size
+        header.writeBits(0, 24);             // Min frame size: unknown
+        header.writeBits(0, 24);             // Max frame size: unknown
+        header.writeBits(sampleRate, 20);
+        header.writeBits(channels - 1, 3);
+        header.writeBits(BITS_PER_SAMPLE - 1, 5);
+        header.writeBits(0, 4);              // Total samples (36 bits): unknown
+        header.writeBits(0, 32);
+        for (int i = 0; i < 4; i++) {
+            header.writeBits(0, 32);         // MD5 of the audio: unknown
+        }
+        out.write(header.buffer, 0, header.byteLength());
+        bytesEncoded += header.byteLength();
+        headerWritten = true;
+    }
+
+    // --- Frames ---
+
+    private void encodeFrame(int frameSamples) throws IOException {
+        frame.reset();
+
+        // Frame header: sync code + fixed-blocksize strategy
+        frame.writeBits(0xFFF8, 16);
+        int blockSizeCode = frameSamples == blockSize ? blockSizeCode(frameSamples) : 7;
+        if (blockSizeCode < 0) {
+            blockSizeCode = 7;
+        }
+        int sampleRateCode = sampleRateCode(sampleRate);
+        frame.writeBits(blockSizeCode, 4);
+        frame.writeBits(sampleRateCode, 4);
+        frame.writeBits(channels - 1, 4);   // Independent channels
+        frame.writeBits(4, 3);              // 16 bits per sample
+        frame.writeBits(0, 1);
+        writeUtf8Number(frameNumber);
+        if (blockSizeCode == 7) {
+            frame.writeBits(frameSamples - 1, 16);
+        }
+        if (sampleRateCode == 12) {
+            frame.writeBits(sampleRate / 1000, 8);
+        } else if (sampleRateCode == 13) {
+            frame.writeBits(sampleRate, 16);
+        } else if (sampleRateCode == 14) {
+            frame.writeBits(sampleRate / 10, 16);
+        }
+        frame.writeBits(crc8(frame.buffer, frame.byteLength()), 8);
+
+        for (int ch = 0; ch < channels; ch++) {
+            encodeSubframe(samples[ch], frameSamples);
+        }
+
+        frame.alignToByte();
+        int crc16 = crc16(frame.buffer, frame.byteLength());
+        frame.writeBits(crc16, 16);
+
+        out.write(frame.buffer, 0, frame.byteLength());
+        bytesEncoded += frame.byteLength();
+        samplesEncoded += frameSamples;
+        frameNumber++;
+        blockFill = 0;
+    }
+
+    private void encodeSubframe(int[] data, int n) {
+        boolean constant = true;
+        for (int i = 1; i < n && constant; i++) {
+            constant = data[i] == data[0];
+        }
+        if (constant) {
+            frame.writeBits(SUBFRAME_CONSTANT << 1, 8);
+            frame.writeSigned(data[0], BITS_PER_SAMPLE);
+            return;
+        }
+
+        // Pick the fixed predictor with the smallest absolute residual sum.
+        int bestOrder = -1;
+        long bestSum = Long.MAX_VALUE;
+        int maxOrder = Math.min(MAX_FIXED_ORDER, n - 1);
+        for (int order = 0; order <= maxOrder; order++) {
+            long sum = computeFixedResidual(data, n, order, residual);
+            if (sum < bestSum) {
+                bestSum = sum;
+                bestOrder = order;
+                System.arraycopy(residual, order, bestResidual, order, n - order);
+            }
+        }
+
+        int partitionOrder = choosePartitionOrder(bestResidual, n, bestOrder);
+        long fixedBits = 8 + (long) bestOrder * BITS_PER_SAMPLE + riceBits(bestResidual, n, bestOrder, partitionOrder, riceParameters);
+        long verbatimBits = 8 + (long) n * BITS_PER_SAMPLE;
+
+        if (fixedBits >= verbatimBits) {
+            frame.writeBits(SUBFRAME_VERBATIM << 1, 8);
+            for (int i = 0; i < n; i++) {
+                frame.writeSigned(data[i], BITS_PER_SAMPLE);
+            }
+            return;
+        }
+
+        frame.writeBits((SUBFRAME_FIXED | bestOrder) << 1, 8);
+        for (int i = 0; i < bestOrder; i++) {
+            frame.writeSigned(data[i], BITS_PER_SAMPLE); // Warm-up samples
+        }
+        frame.writeBits(0, 2);                          // Rice coding, 4-bit parameters
+        frame.writeBits(partitionOrder, 4);
+        int partitions = 1 << partitionOrder;
+        int partitionSize = n >> partitionOrder;
+        int index = bestOrder;
+        for (int p = 0; p < partitions; p++) {
+            int k = riceParameters[p];
+            frame.writeBits(k, 4);
+            int end = (p + 1) * partitionSize;
+            for (; index < end; index++) {
+                frame.writeRice(bestResidual[index], k);
+            }
+        }
+    }
+
+    /**
+     * Fills {@code out[order..n)} with the residual of the order-N fixed predictor.
+     *
+     * @return Sum of absolute residuals.
+     */
+    private static long computeFixedResidual(int[] x, int n, int order, int[] out) {
+        long sum = 0;
+        for (int i = order; i < n; i++) {
+            int r;
+            switch (order) {
+                case 0: r = x[i]; break;
+                case 1: r = x[i] - x[i - 1]; break;
+                case 2: r = x[i] - 2 * x[i - 1] + x[i - 2]; break;
+                case 3: r = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3]; break;
+                default: r = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4]; break;
+            }
+            out[i] = r;
+            sum += Math.abs(r);
+        }
+        return sum;
+    }
+
+    private int choosePartitionOrder(int[] res, int n, int predictorOrder) {
+        int bestOrder = 0;
+        long bestBits = Long.MAX_VALUE;
+        for (int order = 0; order <= MAX_PARTITION_ORDER; order++) {
+            // Partitions must divide the block evenly and the first must hold more than the warm-up.
+            if ((n & ((1 << order) - 1)) != 0 || (n >> order) <= predictorOrder) {
+                break;
+            }
+            long bits = riceBits(res, n, predictorOrder, order, null);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+            }
+        }
+        return bestOrder;
+    }
+
+    /**
+     * Exact size of the residual section for a partition order, choosing each partition's
+     * Rice parameter from its mean. Stores the parameters when {@code parametersOut} is given.
+     */
+    private static long riceBits(int[] res, int n, int predictorOrder, int partitionOrder, int[] parametersOut) {
+        int partitions = 1 << partitionOrder;
+        int partitionSize = n >> partitionOrder;
+        long bits = 2 + 4; // Coding method + partition order
+        int start = predictorOrder;
+        for (int p = 0; p < partitions; p++) {
+            int end = (p + 1) * partitionSize;
+            int count = end - start;
+            long sum = 0;
+            for (int i = start; i < end; i++) {
+                sum += zigzag(res[i]);
+            }
+            int k = 0;
+            if (count > 0) {
+                long mean = sum / count;
+                while (k < MAX_RICE_PARAMETER && (1L << (k + 1)) <= mean) {
+                    k++;
+                }
+            }
+            long partitionBits = 4 + (long) count * (k + 1);
+            for (int i = start; i < end; i++) {
+                partitionBits += zigzag(res[i]) >>> k;
+            }
+            bits += partitionBits;
+            if (parametersOut != null) {
+                parametersOut[p] = k;
+            }
+            start = end;
+        }
+        return bits;
+    }
+
+    private static long zigzag(int value) {
+        return value >= 0 ? ((long) value << 1) : (((long) -value << 1) - 1);
+    }
+
+    private void writeUtf8Number(long value) {
+        if (value < 0x80) {
+            frame.writeBits((int) value, 8);
+            return;
+        }
+        int extraBytes;
+        if (value < 0x800) extraBytes = 1;
+        else if (value < 0x10000) extraBytes = 2;
+        else if (value < 0x200000) extraBytes = 3;
+        else if (value < 0x4000000) extraBytes = 4;
+        else extraBytes = 5;
+        int lead = (0xFF00 >> (extraBytes + 1)) & 0xFF;
+        frame.writeBits(lead | (int) (value >>> (6 * extraBytes)), 8);
+        for (int i = extraBytes - 1; i >= 0; i--) {
+            frame.writeBits(0x80 | (int) ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private static int blockSizeCode(int size) {
+        switch (size) {
+            case 192: return 1;
+            case 576: return 2;
+            case 1152: return 3;
+            case 2304: return 4;
+            case 4608: return 5;
+            case 256: return 8;
+            case 512: return 9;
+            case 1024: return 10;
+            case 2048: return 11;
+            case 4096: return 12;
+            case 8192: return 13;
+            case 16384: return 14;
+            case 32768: return 15;
+            default: return -1;
+        }
+    }
+
+    private static int sampleRateCode(int rate) {
+        switch (rate) {
+            case 88200: return 1;
+            case 176400: return 2;
+            case 192000: return 3;
+            case 8000: return 4;
+            case 16000: return 5;
+            case 22050: return 6;
+            case 24000: return 7;
+            case 32000: return 8;
+            case 44100: return 9;
+            case 48000: return 10;
+            case 96000: return 11;
+            default:
+                if (rate % 1000 == 0 && rate / 1000 <= 255) return 12;
+                if (rate <= 65535) return 13;
+                if (rate % 10 == 0 && rate / 10 <= 65535) return 14;
+                return 0; // Taken from STREAMINFO
+        }
+    }
+
+    private static int crc8(byte[] data, int length) {
+        int crc = 0;
+        for (int i = 0; i < length; i++) {
+            crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    private static int crc16(byte[] data, int length) {
+        int crc = 0;
+        for (int i = 0; i < length; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * MSB-first bit packer over a fixed buffer.
+     */
+    private static final class BitWriter {
+        final byte[] buffer;
+        private int bytePos = 0;
+        private long accumulator = 0;
+        private int accumulatedBits = 0;
+
+        BitWriter(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void reset() {
+            bytePos = 0;
+            accumulator = 0;
+            accumulatedBits = 0;
+        }
+
+        /** Writes the low {@code count} bits of {@code value}; count is at most 32. */
+        void writeBits(int value, int count) {
+            accumulator = (accumulator << count) | (value & ((1L << count) - 1));
+            accumulatedBits += count;
+            while (accumulatedBits >= 8) {
+                accumulatedBits -= 8;
+                buffer[bytePos++] = (byte) (accumulator >>> accumulatedBits);
+            }
+        }
+
+        void writeSigned(int value, int count) {
+            writeBits(value, count);
+        }
+
+        void writeRice(int value, int k) {
+            long folded = zigzag(value);
+            long quotient = folded >>> k;
+            while (quotient >= 32) {
+                writeBits(0, 32);
+                quotient -= 32;
+            }
+            writeBits(1, (int) quotient + 1); // Unary: quotient zeros then a one
+            if (k > 0) {
+                writeBits((int) (folded & ((1L << k) - 1)), k);
+            }
+        }
+
+        void alignToByte() {
+            if (accumulatedBits > 0) {
+                writeBits(0, 8 - accumulatedBits);
+            }
+        }
+
+        /** Bytes completed so far; call after {@link #alignToByte()} for the full length. */
+        int byteLength() {
+            return bytePos;
+        }
+
+        void wipe() {
+            Arrays.fill(buffer, (byte) 0);
+            reset();
+        }
+    }
+}
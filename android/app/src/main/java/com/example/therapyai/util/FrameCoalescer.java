@@ -0,0 +1,39 @@
+package com.example.therapyai.util;
+
+import android.view.Choreographer;
+
+/**
+ * Runs an action at most once per display frame, on the next vsync after it is requested. A
+ * fling delivers several scroll callbacks per frame; requesting from each of them gives one
+ * update per frame instead of one per callback, with no fixed debounce delay.
+ *
+ * Main thread only.
+ */
+public final class FrameCoalescer {
+    private final Runnable action;
+    private final Choreographer.FrameCallback frameCallback;
+    private boolean scheduled;
+
+    public FrameCoalescer(Runnable action) {
+        this.action = action;
+        this.frameCallback = frameTimeNanos -> {
+            scheduled = false;
+            this.action.run();
+        };
+    }
+
+    /**
+     * Runs the action on the next frame, unless it is already due then.
+     */
+    public void request() {
+        if (scheduled) return;
+        scheduled = true;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    public void cancel() {
+        if (!scheduled) return;
+        scheduled = false;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+}
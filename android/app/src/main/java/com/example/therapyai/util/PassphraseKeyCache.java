@@ -0,0 +1,134 @@
+package com.example.therapyai.util;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Passphrase keys derived for scanned QR codes, kept per (passphrase, salt) so scanning the same
+ * QR again, or retrying a passphrase, skips the derivation. Used by {@link QrKeyDerivationService}.
+ *
+ * A QR is only valid on the day it was made, so keys from another day are dropped on the next
+ * derivation and never served. At most {@code maxEntries} keys are kept, least recently used
+ * first out. Dropped keys are zeroed. Entries are looked up by a hash of passphrase and salt; the
+ * passphrase itself is not stored.
+ */
+class PassphraseKeyCache implements AESUtil.PassphraseKeySource {
+    private static final String TAG = "PassphraseKeyCache";
+
+    private final int maxEntries;
+    private final AESUtil.PassphraseKeySource deriver;
+    private final IntSupplier today;
+    private final LinkedHashMap<ByteBuffer, CachedKey> keys;
+
+    PassphraseKeyCache(int maxEntries) {
+        this(maxEntries, AESUtil::derivePassphraseKey, PassphraseKeyCache::currentDay);
+    }
+
+    PassphraseKeyCache(int maxEntries, AESUtil.PassphraseKeySource deriver, IntSupplier today) {
+        this.maxEntries = maxEntries;
+        this.deriver = deriver;
+        this.today = today;
+        this.keys = new LinkedHashMap<>(maxEntries, 0.75f, true);
+    }
+
+    /**
+     * The derived key for this passphrase and salt, from the cache when possible.
+     */
+    @Override
+    public SecretKey keyFor(String passphrase, byte[] salt) throws Exception {
+        ByteBuffer cacheKey = cacheKey(passphrase, salt);
+        int day = today.getAsInt();
+        synchronized (keys) {
+            CachedKey cached = keys.get(cacheKey);
+            if (cached != null && cached.day == day) {
+                Log.d(TAG, "Using cached passphrase key.");
+                return new SecretKeySpec(cached.keyBytes, "AES");
+            }
+        }
+
+        long start = System.nanoTime();
+        SecretKey key = deriver.keyFor(passphrase, salt);
+        Log.d(TAG, "Derived passphrase key in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+
+        synchronized (keys) {
+            Iterator<CachedKey> entries = keys.values().iterator();
+            while (entries.hasNext()) {
+                CachedKey entry = entries.next();
+                if (entry.day != day) { // From a QR that is no longer valid
+                    entry.wipe();
+                    entries.remove();
+                }
+            }
+            CachedKey previous = keys.put(cacheKey, new CachedKey(key.getEncoded(), day));
+            if (previous != null) previous.wipe();
+            Iterator<Map.Entry<ByteBuffer, CachedKey>> eldest = keys.entrySet().iterator();
+            while (keys.size() > maxEntries && eldest.hasNext()) {
+                eldest.next().getValue().wipe();
+                eldest.remove();
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Zeroes and drops every cached key.
+     */
+    void clear() {
+        synchronized (keys) {
+            for (CachedKey cached : keys.values()) {
+                cached.wipe();
+            }
+            keys.clear();
+        }
+    }
+
+    int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    private static ByteBuffer cacheKey(String passphrase, byte[] salt) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(passphrase.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(salt);
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    /**
+     * Today as yyyyMMdd in local time, matching the date written into the QR.
+     */
+    private static int currentDay() {
+        Calendar calendar = Calendar.getInstance();
+        return calendar.get(Calendar.YEAR) * 10_000
+                + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private static final class CachedKey {
+        final byte[] keyBytes;
+        final int day;
+
+        CachedKey(byte[] keyBytes, int day) {
+            this.keyBytes = keyBytes;
+            this.day = day;
+        }
+
+        void wipe() {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+}
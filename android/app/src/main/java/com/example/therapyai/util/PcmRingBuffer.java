@@ -0,0 +1,159 @@
+package com.example.therapyai.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer/single-consumer ring of PCM buffers.
+ *
+ * The capture thread claims a slot, fills it straight from AudioRecord and publishes it; the
+ * processing thread drains slots in order. Neither side locks or allocates. If the consumer
+ * falls so far behind that the ring is full, the producer reads into a scratch buffer instead
+ * (so AudioRecord itself never overruns) and the loss is counted in {@link #getOverrunCount()}.
+ *
+ * Only one thread may call the producer methods and only one the consumer methods.
+ */
+public final class PcmRingBuffer {
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final int mask;
+    private final byte[] overflowSlot;
+
+    // Monotonic sequence numbers; slot = sequence & mask.
+    private final AtomicLong head = new AtomicLong(); // Next slot to publish (written by producer)
+    private final AtomicLong tail = new AtomicLong(); // Next slot to consume (written by consumer)
+    private boolean claimedOverflow = false;          // Producer-only
+
+    private final AtomicLong overrunCount = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private volatile int highWaterMark = 0;
+    private volatile Thread consumerThread;
+
+    /**
+     * @param slotCount Number of buffers; rounded up to a power of two.
+     * @param slotSize  Bytes per buffer (the AudioRecord read size).
+     */
+    public PcmRingBuffer(int slotCount, int slotSize) {
+        int capacity = 2;
+        while (capacity < slotCount) {
+            capacity <<= 1;
+        }
+        slots = new byte[capacity][slotSize];
+        lengths = new int[capacity];
+        mask = capacity - 1;
+        overflowSlot = new byte[slotSize];
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    // --- Producer side ---
+
+    /**
+     * Returns the buffer to fill next. When the ring is full this is a scratch buffer whose
+     * contents will be dropped on {@link #publish}.
+     */
+    public byte[] claim() {
+        long h = head.get();
+        if (h - tail.get() >= slots.length) {
+            claimedOverflow = true;
+            return overflowSlot;
+        }
+        claimedOverflow = false;
+        return slots[(int) (h & mask)];
+    }
+
+    /**
+     * Makes the claimed buffer visible to the consumer (or counts it as an overrun).
+     */
+    public void publish(int length) {
+        if (claimedOverflow) {
+            overrunCount.incrementAndGet();
+            droppedBytes.addAndGet(length);
+            Arrays.fill(overflowSlot, 0, length, (byte) 0);
+        } else {
+            long h = head.get();
+            lengths[(int) (h & mask)] = length;
+            head.lazySet(h + 1); // Release store: slot contents are visible before the new head
+            int occupancy = (int) (h + 1 - tail.get());
+            if (occupancy > highWaterMark) {
+                highWaterMark = occupancy;
+            }
+        }
+        Thread consumer = consumerThread;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    // --- Consumer side ---
+
+    /**
+     * Waits up to the timeout for a published buffer.
+     *
+     * @return true if {@link #peekBuffer()} / {@link #peekLength()} now refer to data.
+     */
+    public boolean awaitData(long timeout, TimeUnit unit) {
+        consumerThread = Thread.currentThread();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (head.get() == tail.get()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public byte[] peekBuffer() {
+        return slots[(int) (tail.get() & mask)];
+    }
+
+    public int peekLength() {
+        return lengths[(int) (tail.get() & mask)];
+    }
+
+    /**
+     * Hands the oldest buffer back to the producer.
+     */
+    public void release() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    // --- Counters ---
+
+    /** Buffers dropped because the ring was full. */
+    public long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /** Highest number of buffers ever waiting for the consumer. */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Zeroes every buffer. Call only once both threads have stopped.
+     */
+    public void wipe() {
+        for (byte[] slot : slots) {
+            Arrays.fill(slot, (byte) 0);
+        }
+        Arrays.fill(overflowSlot, (byte) 0);
+        head.set(0);
+        tail.set(0);
+        consumerThread = null;
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.therapyai.util;
+
+import java.util.Arrays;
+
+/**
+ * Streaming rational-ratio resampler (and downmixer) for 16-bit little-endian PCM.
+ *
+ * Converts inputRate to outputRate by the reduced ratio L/M (44.1 kHz to 16 kHz is 160/441) with
+ * a Kaiser-windowed sinc low-pass split into L polyphase branches, so each output sample costs
+ * one branch of multiply-adds and the zero-stuffed signal is never materialised. The filter spans
+ * {@code filterSpan} samples at the lower of the two rates (so the transition band stays narrow
+ * when decimating); the cutoff sits just below the lower Nyquist, with about 80 dB of rejection.
+ *
+ * Multi-channel input is averaged to mono before filtering. The filter delay is compensated, so
+ * after {@link #drain} the output lines up with the input and has {@code inputFrames * L / M}
+ * samples. All buffers are allocated in the constructor; {@link #process} does not allocate.
+ *
+ * Not thread-safe: one instance per stream.
+ */
+public final class PolyphaseResampler {
+    public static final int DEFAULT_FILTER_SPAN = 64;
+
+    private static final double KAISER_BETA = 8.0;        // ~80 dB stopband
+    private static final double PASSBAND_FRACTION = 0.9;  // Cutoff at 90% of the lower Nyquist
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int inputChannels;
+    private final int upFactor;     // L
+    private final int downFactor;   // M
+    private final int taps;         // Input samples per branch
+    private final float[][] phaseCoefficients; // [phase][tap], reversed so they run oldest-to-newest
+    private final float[] history;              // Two copies of the last `taps` samples
+    private final byte[] carry;                 // Partial input frame left over from the last call
+    private final int frameBytes;
+
+    private int head = 0;
+    private int carryLength = 0;
+    private int phase;              // Position of the next output after the newest input, in 1/L steps
+    private long inputFrames = 0;
+    private long outputFrames = 0;
+
+    public PolyphaseResampler(int inputRate, int outputRate, int inputChannels) {
+        this(inputRate, outputRate, inputChannels, DEFAULT_FILTER_SPAN);
+    }
+
+    /**
+     * @param filterSpan Filter length in samples at the lower of the two rates; longer is sharper.
+     */
+    public PolyphaseResampler(int inputRate, int outputRate, int inputChannels, int filterSpan) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Sample rates must be positive: " + inputRate + " -> " + outputRate);
+        }
+        if (inputChannels < 1) {
+            throw new IllegalArgumentException("At least one input channel is required");
+        }
+        if (filterSpan < 4) {
+            throw new IllegalArgumentException("filterSpan must be at least 4, got " + filterSpan);
+        }
+        int gcd = gcd(inputRate, outputRate);
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.inputChannels = inputChannels;
+        this.upFactor = outputRate / gcd;
+        this.downFactor = inputRate / gcd;
+        this.taps = filterSpan * ((downFactor + upFactor - 1) / upFactor); // Scaled by the decimation ratio
+        this.frameBytes = inputChannels * 2;
+        this.history = new float[2 * taps];
+        this.carry = new byte[frameBytes];
+        this.phaseCoefficients = designFilter(upFactor, downFactor, taps);
+        this.phase = filterDelay();
+    }
+
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    /**
+     * Upper bound on the bytes {@link #process} can produce for {@code inputBytes} of input.
+     */
+    public int maxOutputBytes(int inputBytes) {
+        long frames = (inputBytes + carry.length) / frameBytes + 1;
+        return (int) ((frames * upFactor / downFactor + 2) * 2);
+    }
+
+    /**
+     * Upper bound on the bytes {@link #drain} can produce.
+     */
+    public int maxDrainBytes() {
+        return (int) (((long) (taps + 1) * upFactor / downFactor + 2) * 2);
+    }
+
+    /**
+     * Resamples {@code len} bytes of interleaved PCM into {@code out} (starting at 0).
+     *
+     * @param out At least {@link #maxOutputBytes(int)} bytes.
+     * @return Number of mono 16-bit bytes written.
+     */
+    public int process(byte[] in, int off, int len, byte[] out) {
+        int written = 0;
+        int i = off;
+        int end = off + len;
+
+        // Complete a frame split across calls
+        if (carryLength > 0) {
+            int needed = frameBytes - carryLength;
+            int take = Math.min(needed, len);
+            System.arraycopy(in, off, carry, carryLength, take);
+            carryLength += take;
+            i += take;
+            if (carryLength < frameBytes) {
+                return 0;
+            }
+            written = pushSample(downmix(carry, 0), out, written);
+            carryLength = 0;
+        }
+
+        for (; i + frameBytes <= end; i += frameBytes) {
+            written = pushSample(downmix(in, i), out, written);
+        }
+
+        if (i < end) {
+            carryLength = end - i;
+            System.arraycopy(in, i, carry, 0, carryLength);
+        }
+        return written;
+    }
+
+    /**
+     * Flushes the filter's delay line at end of stream.
+     *
+     * @param out At least {@link #maxDrainBytes()} bytes.
+     * @return Number of bytes written.
+     */
+    public int drain(byte[] out) {
+        long expectedOutputs = (inputFrames * upFactor + downFactor - 1) / downFactor;
+        int written = 0;
+        while (outputFrames < expectedOutputs) {
+            int before = written;
+            written = pushSample(0f, out, written);
+            inputFrames--; // Padding does not count as input
+            if (written > before && outputFrames >= expectedOutputs) {
+                written -= (int) (outputFrames - expectedOutputs) * 2;
+                outputFrames = expectedOutputs;
+            }
+        }
+        carryLength = 0;
+        return written;
+    }
+
+    /**
+     * Zeroes the delay line and carry buffer and restarts the stream.
+     */
+    public void wipe() {
+        Arrays.fill(history, 0f);
+        Arrays.fill(carry, (byte) 0);
+        head = 0;
+        carryLength = 0;
+        phase = filterDelay();
+        inputFrames = 0;
+        outputFrames = 0;
+    }
+
+    /**
+     * Group delay of the prototype filter in upsampled samples. Starting the phase there makes
+     * output n land exactly on input time n * M / L, so no samples need to be skipped.
+     */
+    private int filterDelay() {
+        return upFactor * taps / 2;
+    }
+
+    private float downmix(byte[] data, int offset) {
+        if (inputChannels == 1) {
+            return (short) ((data[offset + 1] << 8) | (data[offset] & 0xFF));
+        }
+        int sum = 0;
+        for (int ch = 0; ch < inputChannels; ch++) {
+            int idx = offset + ch * 2;
+            sum += (short) ((data[idx + 1] << 8) | (data[idx] & 0xFF));
+        }
+        return (float) sum / inputChannels;
+    }
+
+    /**
+     * Adds one input sample to the delay line and emits every output that falls before the next one.
+     */
+    private int pushSample(float sample, byte[] out, int written) {
+        head = head + 1 == taps ? 0 : head + 1;
+        history[head] = sample;
+        history[head + taps] = sample;
+        inputFrames++;
+
+        while (phase < upFactor) {
+            float[] coefficients = phaseCoefficients[phase];
+            float acc = 0f;
+            int base = head + 1;
+            for (int k = 0; k < taps; k++) {
+                acc += coefficients[k] * history[base + k];
+            }
+            int value = Math.round(acc);
+            if (value > Short.MAX_VALUE) value = Short.MAX_VALUE;
+            else if (value < Short.MIN_VALUE) value = Short.MIN_VALUE;
+            out[written++] = (byte) value;
+            out[written++] = (byte) (value >> 8);
+            outputFrames++;
+            phase += downFactor;
+        }
+        phase -= upFactor;
+        return written;
+    }
+
+    /**
+     * Kaiser-windowed sinc of length L * taps, split into L branches. Each branch is stored
+     * reversed (oldest input first) and has unity DC gain.
+     */
+    private static float[][] designFilter(int up, int down, int taps) {
+        int length = up * taps;
+        int center = length / 2; // Integer, so the delay is a whole number of upsampled samples
+        double cutoff = PASSBAND_FRACTION * 0.5 / Math.max(up, down); // Cycles per upsampled sample
+        double windowNorm = besselI0(KAISER_BETA);
+
+        double[] prototype = new double[length];
+        for (int n = 0; n < length; n++) {
+            double t = n - center;
+            double x = 2.0 * cutoff * t;
+            double sinc = Math.abs(x) < 1e-12 ? 1.0 : Math.sin(Math.PI * x) / (Math.PI * x);
+            double r = t / center;
+            double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0.0, 1.0 - r * r))) / windowNorm;
+            prototype[n] = 2.0 * cutoff * up * sinc * window;
+        }
+
+        float[][] branches = new float[up][taps];
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            for (int j = 0; j < taps; j++) {
+                sum += prototype[p + j * up];
+            }
+            // Normalise each branch so DC passes at exactly unity regardless of phase.
+            double scale = Math.abs(sum) > 1e-9 ? 1.0 / sum : 1.0;
+            for (int j = 0; j < taps; j++) {
+                branches[p][taps - 1 - j] = (float) (prototype[p + j * up] * scale);
+            }
+        }
+        return branches;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double halfX = x / 2.0;
+        for (int k = 1; k < 50; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
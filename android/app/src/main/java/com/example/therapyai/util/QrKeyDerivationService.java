@@ -0,0 +1,127 @@
+package com.example.therapyai.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Runs the passphrase encryption of the patient QR handoff ({@link AESUtil#encrypt(String, String)}
+ * and {@link AESUtil#decrypt(String, String)}) on a background thread. The PBKDF2 step in those
+ * calls takes hundreds of ms on slow tablets.
+ *
+ * Each call returns a {@link Future}. Cancelling it means the callback is never run, even if the
+ * work has already finished. Callbacks arrive on the main thread.
+ *
+ * Keys derived for decryption are cached per (passphrase, salt) in a {@link PassphraseKeyCache},
+ * so scanning the same QR again, or retrying a passphrase, skips the derivation. At most
+ * {@link #MAX_CACHED_KEYS} keys are kept, and all of them are dropped on {@link #clearCache()}
+ * (logout).
+ */
+public class QrKeyDerivationService {
+    private static final int MAX_CACHED_KEYS = 8;
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+        void onError(Exception e);
+    }
+
+    private static QrKeyDerivationService instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "QrKeyDerivation");
+        thread.setPriority(Thread.NORM_PRIORITY - 1); // Below the UI thread it is keeping free
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PassphraseKeyCache keyCache = new PassphraseKeyCache(MAX_CACHED_KEYS);
+
+    private QrKeyDerivationService() {
+    }
+
+    public static synchronized QrKeyDerivationService getInstance() {
+        if (instance == null) {
+            instance = new QrKeyDerivationService();
+        }
+        return instance;
+    }
+
+    /**
+     * Encrypts QR contents under a passphrase, as {@link AESUtil#encrypt(String, String)}. Each
+     * encryption uses a fresh random salt, so its key is never looked up again and is not cached.
+     */
+    public Future<String> encrypt(String plainText, String passphrase, Callback<String> callback) {
+        return submit(() -> AESUtil.encrypt(plainText, passphrase), callback);
+    }
+
+    /**
+     * Decrypts scanned QR contents, as {@link AESUtil#decrypt(String, String)}.
+     */
+    public Future<String> decrypt(String base64Data, String passphrase, Callback<String> callback) {
+        return submit(() -> AESUtil.decrypt(base64Data, passphrase, keyCache), callback);
+    }
+
+    /**
+     * Zeroes and drops every cached key.
+     */
+    public void clearCache() {
+        keyCache.clear();
+    }
+
+    private <T> Future<T> submit(Callable<T> work, Callback<T> callback) {
+        DerivationTask<T> task = new DerivationTask<>(work, callback);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * A FutureTask whose callback is skipped once the caller cancels, even if the work already
+     * finished and only the main-thread delivery is pending.
+     */
+    private final class DerivationTask<T> extends FutureTask<T> {
+        private final Callback<T> callback;
+        private volatile boolean callbackCancelled;
+
+        DerivationTask(Callable<T> work, Callback<T> callback) {
+            super(work);
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            callbackCancelled = true;
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) return;
+            T result = null;
+            Exception error = null;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (InterruptedException | CancellationException e) {
+                return;
+            }
+            final T finalResult = result;
+            final Exception finalError = error;
+            mainHandler.post(() -> {
+                if (callbackCancelled) return;
+                if (finalError != null) {
+                    callback.onError(finalError);
+                } else {
+                    callback.onSuccess(finalResult);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.therapyai.util;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decrypts multi-segment recordings ahead of the upload, which pulls the plaintext from
+ * {@link #openStream()}.
+ *
+ * Segment i is decrypted by worker (i % workerCount); each worker owns a fixed set of reusable
+ * buffers and a bounded hand-off queue, so memory stays at workerCount * buffersPerWorker *
+ * bufferSize regardless of recording length. The consumer drains the workers' queues in segment
+ * order, so the output is byte-for-byte what the sequential loop produced. Because every worker
+ * has its own buffers, a worker running ahead can never starve the segment the consumer is on.
+ *
+ * Buffers are plain byte arrays rather than direct ByteBuffers: CipherInputStream and the upload's
+ * chunk buffer are both array-based, so direct buffers would only add a copy.
+ */
+public class SegmentDecryptionPipeline implements Closeable {
+    private static final String TAG = "SegmentDecryptPipeline";
+
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_BUFFERS_PER_WORKER = 4;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final long WORKER_STOP_TIMEOUT_MS = 1000;
+
+    /**
+     * Opens the decrypted stream for a segment. Called on a worker thread.
+     */
+    public interface SegmentOpener {
+        InputStream open(int segmentIndex) throws Exception;
+    }
+
+    private static final class Block {
+        final byte[] data;
+        final int length;          // -1 marks end of segment
+        final Exception error;     // Non-null if the worker failed
+
+        Block(byte[] data, int length, Exception error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    private static final class Lane {
+        final BlockingQueue<Block> filled;
+        final BlockingQueue<byte[]> free;
+        final List<byte[]> allBuffers = new ArrayList<>();
+
+        Lane(int buffers, int bufferSize) {
+            filled = new ArrayBlockingQueue<>(buffers + 1); // + end/error marker
+            free = new ArrayBlockingQueue<>(buffers);
+            for (int i = 0; i < buffers; i++) {
+                byte[] buffer = new byte[bufferSize];
+                allBuffers.add(buffer);
+                free.add(buffer);
+            }
+        }
+    }
+
+    private final int segmentCount;
+    private final SegmentOpener opener;
+    private final Lane[] lanes;
+    private final ExecutorService workers;
+    private final List<Future<?>> workerFutures = new ArrayList<>();
+    private boolean started = false;
+
+    public SegmentDecryptionPipeline(int segmentCount, SegmentOpener opener,
+                                     int workerCount, int buffersPerWorker, int bufferSize) {
+        if (workerCount < 1 || buffersPerWorker < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("Worker count, buffers per worker and buffer size must be positive");
+        }
+        this.segmentCount = segmentCount;
+        this.opener = opener;
+        int laneCount = Math.max(1, Math.min(workerCount, segmentCount));
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(buffersPerWorker, bufferSize);
+        }
+        this.workers = Executors.newFixedThreadPool(laneCount);
+    }
+
+    private synchronized void start() {
+        if (started) return;
+        started = true;
+        for (int w = 0; w < lanes.length; w++) {
+            final int laneIndex = w;
+            workerFutures.add(workers.submit(() -> runWorker(laneIndex)));
+        }
+    }
+
+    private void runWorker(int laneIndex) {
+        Lane lane = lanes[laneIndex];
+        try {
+            for (int segment = laneIndex; segment < segmentCount; segment += lanes.length) {
+                try (InputStream in = opener.open(segment)) {
+                    while (true) {
+                        byte[] buffer = lane.free.take();
+                        int filled = readUpTo(in, buffer);
+                        if (filled > 0) {
+                            lane.filled.put(new Block(buffer, filled, null));
+                        } else {
+                            lane.free.put(buffer);
+                        }
+                        if (filled < buffer.length) {
+                            break; // Stream exhausted
+                        }
+                    }
+                }
+                lane.filled.put(new Block(null, -1, null));
+            }
+        } catch (InterruptedException | InterruptedIOException e) {
+            Thread.currentThread().interrupt(); // Pipeline closed by the consumer
+        } catch (Exception e) {
+            Log.e(TAG, "Worker " + laneIndex + " failed to decrypt segment", e);
+            try {
+                lane.filled.put(new Block(null, -1, e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            AESUtil.releaseThreadCiphers(); // Pool threads must not keep the DEK's key schedule
+        }
+    }
+
+    /**
+     * Fills the buffer as far as the stream allows; returns less than buffer.length only at end of stream.
+     */
+    private static int readUpTo(InputStream in, byte[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            int read = in.read(buffer, filled, buffer.length - filled);
+            if (read == -1) break;
+            filled += read;
+        }
+        return filled;
+    }
+
+    /**
+     * All decrypted segments, in order, as one stream. Reads block until the worker for the
+     * current segment has the next block ready. Closing the stream closes the pipeline.
+     */
+    public InputStream openStream() {
+        start();
+        return new PipelineInputStream();
+    }
+
+    /**
+     * Next decrypted block of the segment, or null once the segment is finished.
+     */
+    private static Block takeBlock(Lane lane, int segment) throws IOException {
+        Block block;
+        try {
+            block = lane.filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decrypted audio");
+        }
+        if (block.error != null) {
+            throw new IOException("Failed to decrypt segment " + segment + ": " + block.error.getMessage(), block.error);
+        }
+        return block.length < 0 ? null : block;
+    }
+
+    private static void recycle(Lane lane, Block block) {
+        Arrays.fill(block.data, 0, block.length, (byte) 0);
+        lane.free.offer(block.data); // Never full: each lane only hands out its own buffers
+    }
+
+    private final class PipelineInputStream extends InputStream {
+        private int segment = 0;
+        private Lane lane;
+        private Block block;
+        private int blockPosition;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (block == null) {
+                if (segment >= segmentCount) {
+                    return -1;
+                }
+                lane = lanes[segment % lanes.length];
+                block = takeBlock(lane, segment);
+                blockPosition = 0;
+                if (block == null) {
+                    segment++;
+                }
+            }
+            int n = Math.min(len, block.length - blockPosition);
+            System.arraycopy(block.data, blockPosition, b, off, n);
+            blockPosition += n;
+            if (blockPosition == block.length) {
+                recycle(lane, block);
+                block = null;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            block = null;
+            SegmentDecryptionPipeline.this.close();
+        }
+    }
+
+    /**
+     * Stops the workers and clears every buffer. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        for (Future<?> future : workerFutures) {
+            future.cancel(true);
+        }
+        workers.shutdownNow();
+        try {
+            // A worker blocked in a file read only sees the interrupt afterwards; let it finish
+            // so it does not write plaintext into a buffer that was already cleared.
+            if (!workers.awaitTermination(WORKER_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Decryption workers did not stop within " + WORKER_STOP_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Lane lane : lanes) {
+            for (byte[] buffer : lane.allBuffers) {
+                Arrays.fill(buffer, (byte) 0);
+            }
+            lane.filled.clear();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.therapyai.util;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Verifies encrypted recording segments in the background as each one is closed.
+ *
+ * The recorder feeds every plaintext chunk into a SHA-256 digest while encrypting. When a
+ * segment is finalized it is handed to {@link #submit}, which decrypts it in a single streaming
+ * read (no temp file) and checks both the GCM tag and the plaintext digest. By the time recording
+ * stops only the last segment is still outstanding, so {@link #awaitAll()} costs about the same
+ * no matter how long the session was.
+ */
+public class SegmentIntegrityVerifier {
+    private static final String TAG = "SegmentIntegrityVerifier";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final SecretKey key;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<Future<Boolean>> results = new ArrayList<>();
+
+    public SegmentIntegrityVerifier(SecretKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Digest to feed with the plaintext of one segment while it is being encrypted.
+     */
+    public static MessageDigest newSegmentDigest() throws Exception {
+        return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+
+    /**
+     * Queues a finalized segment for verification.
+     *
+     * @param expectedDigest Plaintext digest computed while encrypting (ownership passes to the verifier).
+     * @param expectedLength Number of plaintext bytes encrypted into the segment.
+     */
+    public synchronized void submit(File segmentFile, int segmentIndex, byte[] expectedDigest, long expectedLength) {
+        results.add(executor.submit(() -> {
+            try {
+                return verifySegment(segmentFile, segmentIndex, expectedDigest, expectedLength);
+            } finally {
+                Arrays.fill(expectedDigest, (byte) 0);
+                AESUtil.releaseThreadCiphers();
+            }
+        }));
+    }
+
+    private boolean verifySegment(File segmentFile, int segmentIndex, byte[] expectedDigest, long expectedLength) {
+        if (!segmentFile.exists()) {
+            Log.e(TAG, "Segment " + segmentIndex + " does not exist: " + segmentFile.getName());
+            return false;
+        }
+        try {
+            MessageDigest digest = newSegmentDigest();
+            long length = decryptAndDigest(segmentFile, key, digest);
+            byte[] actualDigest = digest.digest();
+            boolean matches = length == expectedLength && MessageDigest.isEqual(actualDigest, expectedDigest);
+            Arrays.fill(actualDigest, (byte) 0);
+            if (matches) {
+                Log.d(TAG, "Segment " + segmentIndex + " verified (" + length + " bytes)");
+            } else {
+                Log.e(TAG, "Segment " + segmentIndex + " verification failed: plaintext mismatch (length " + length + ", expected " + expectedLength + ")");
+            }
+            return matches;
+        } catch (Exception e) {
+            Log.e(TAG, "Segment " + segmentIndex + " verification failed: Cannot decrypt", e);
+            return false;
+        }
+    }
+
+    /**
+     * Decrypts a segment in one streaming pass, feeding the plaintext into the digest.
+     * Throws if the GCM tag does not authenticate.
+     *
+     * @return Number of plaintext bytes.
+     */
+    public static long decryptAndDigest(File segmentFile, SecretKey key, MessageDigest digest) throws Exception {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        try (FileInputStream fis = new FileInputStream(segmentFile);
+             InputStream cis = AESUtil.createDecryptingInputStream(fis, key)) {
+            int bytesRead;
+            while ((bytesRead = cis.read(buffer)) != -1) {
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+                total += bytesRead;
+            }
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+        return total;
+    }
+
+    /**
+     * Waits for every submitted segment and reports whether all of them verified.
+     */
+    public boolean awaitAll() {
+        List<Future<Boolean>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(results);
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+        boolean allPassed = true;
+        for (Future<Boolean> result : pending) {
+            try {
+                if (!Boolean.TRUE.equals(result.get())) {
+                    allPassed = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Segment verification task failed", e.getCause());
+                allPassed = false;
+            }
+        }
+        return allPassed;
+    }
+
+    /**
+     * Abandons any outstanding verification and stops the worker.
+     */
+    public synchronized void shutdown() {
+        for (Future<Boolean> result : results) {
+            result.cancel(true);
+        }
+        results.clear();
+        executor.shutdownNow();
+    }
+}
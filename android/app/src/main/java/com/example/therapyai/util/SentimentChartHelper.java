@@ -399,6 +399,50 @@ public class SentimentChartHelper {
         chart.invalidate();
     }
 
+    /**
+     * Adds bar groups for {@code sessionSummaries} from {@code fromIndex} on to a chart filled by
+     * {@link #updateProfileSessionSentimentChartData}, reusing the existing entries. Bars keep the
+     * width {@link #applyInitialZoom} gives them and the view stays where it was, so a page
+     * loaded while scrolling does not make the chart jump.
+     */
+    public static void appendProfileSessionSentimentChartData(BarChart chart, List<SessionSummary> sessionSummaries,
+                                                              int fromIndex, float visibleGroups, Context context) {
+        if (chart == null || context == null || sessionSummaries == null || fromIndex >= sessionSummaries.size()) return;
+
+        BarData data = chart.getBarData();
+        if (fromIndex <= 0 || data == null || data.getDataSetCount() != NUM_BARS_PER_GROUP
+                || data.getDataSetByIndex(0).getEntryCount() != fromIndex) {
+            updateProfileSessionSentimentChartData(chart, sessionSummaries, context);
+            applyInitialZoom(chart, visibleGroups);
+            return;
+        }
+
+        float lowestVisibleX = chart.getLowestVisibleX();
+        IBarDataSet negativeSet = data.getDataSetByIndex(0);
+        IBarDataSet neutralSet = data.getDataSetByIndex(1);
+        IBarDataSet positiveSet = data.getDataSetByIndex(2);
+        for (int i = fromIndex; i < sessionSummaries.size(); i++) {
+            SessionSummary score = sessionSummaries.get(i);
+            negativeSet.addEntry(new BarEntry(i, (float) score.getNegative()));
+            neutralSet.addEntry(new BarEntry(i, (float) score.getNeutral()));
+            positiveSet.addEntry(new BarEntry(i, (float) score.getPositive()));
+        }
+        data.notifyDataChanged();
+
+        int groupCount = sessionSummaries.size();
+        chart.getXAxis().setAxisMaximum(groupCount - 0.5f + 0.5f);
+        chart.getXAxis().setValueFormatter(new DateAxisValueFormatter(sessionSummaries));
+        chart.groupBars(0f, GROUP_SPACE, BAR_SPACE);
+        chart.notifyDataSetChanged();
+
+        chart.fitScreen();
+        if (groupCount > visibleGroups) {
+            chart.zoom((float) groupCount / (visibleGroups - 0.75f), 1f, 0f, 0f);
+        }
+        chart.moveViewToX(lowestVisibleX);
+        chart.invalidate();
+    }
+
     public static void applyInitialZoom(BarChart chart, float desiredVisibleGroups) {
         if (chart == null || chart.getData() == null || chart.getData().getEntryCount() == 0 || desiredVisibleGroups <= 0) {
             Log.w(TAG, "Cannot apply initial zoom: Chart/Data invalid or desiredVisibleGroups <= 0.");
@@ -0,0 +1,124 @@
+package com.example.therapyai.util;
+
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.TimedNote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Attaches timed notes to the transcript sentences they were written during: each note goes to
+ * the latest patient sentence that starts at or before it (the first such sentence if several
+ * start at the same time). Notes before the first patient sentence, and notes or sentences
+ * whose timestamp does not parse, are left out.
+ *
+ * Every timestamp is parsed once into a primitive array; patient sentences and notes are then
+ * sorted by time and matched in a single merge walk. That is O((n + m) log(n + m)) for n
+ * sentences and m notes, where matching each note against every sentence was O(n * m) parses.
+ * Safe to call off the main thread.
+ */
+public final class TranscriptNoteIndex {
+
+    private TranscriptNoteIndex() {
+    }
+
+    /**
+     * The notes attached to each transcript position, each list in time order; null where a
+     * position has none.
+     */
+    public static List<List<TimedNote>> attachNotes(List<FinalTranscriptEntry> entries, List<TimedNote> notes) {
+        int entryCount = entries.size();
+        List<List<TimedNote>> notesByPosition = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            notesByPosition.add(null);
+        }
+        if (entryCount == 0 || notes == null || notes.isEmpty()) return notesByPosition;
+
+        // Patient sentences as (time, position), sorted by time then position
+        long[] sentences = new long[entryCount];
+        int sentenceCount = 0;
+        for (int i = 0; i < entryCount; i++) {
+            FinalTranscriptEntry entry = entries.get(i);
+            if (!"Patient".equalsIgnoreCase(entry.getSpeaker())) continue;
+            float seconds = parseTimeToSeconds(entry.getTimestamp());
+            if (seconds >= 0) sentences[sentenceCount++] = sortKey(seconds, i);
+        }
+        if (sentenceCount == 0) return notesByPosition;
+        Arrays.sort(sentences, 0, sentenceCount);
+
+        // Keep the first sentence of each run that starts at the same time
+        float[] sentenceTimes = new float[sentenceCount];
+        int[] sentencePositions = new int[sentenceCount];
+        int distinct = 0;
+        for (int i = 0; i < sentenceCount; i++) {
+            float seconds = timeOf(sentences[i]);
+            if (distinct > 0 && sentenceTimes[distinct - 1] == seconds) continue;
+            sentenceTimes[distinct] = seconds;
+            sentencePositions[distinct] = indexOf(sentences[i]);
+            distinct++;
+        }
+
+        // Notes as (time, index), sorted by time then original order
+        long[] noteKeys = new long[notes.size()];
+        int noteCount = 0;
+        for (int i = 0; i < notes.size(); i++) {
+            float seconds = parseTimeToSeconds(notes.get(i).getTime());
+            if (seconds >= 0) noteKeys[noteCount++] = sortKey(seconds, i);
+        }
+        Arrays.sort(noteKeys, 0, noteCount);
+
+        int sentence = -1; // Latest sentence at or before the current note
+        for (int i = 0; i < noteCount; i++) {
+            float noteSeconds = timeOf(noteKeys[i]);
+            while (sentence + 1 < distinct && sentenceTimes[sentence + 1] <= noteSeconds) {
+                sentence++;
+            }
+            if (sentence < 0) continue; // Before the first patient sentence
+            int position = sentencePositions[sentence];
+            List<TimedNote> attached = notesByPosition.get(position);
+            if (attached == null) {
+                attached = new ArrayList<>(2);
+                notesByPosition.set(position, attached);
+            }
+            attached.add(notes.get(indexOf(noteKeys[i])));
+        }
+        return notesByPosition;
+    }
+
+    /**
+     * Seconds from a "HH:mm:ss.SSS", "mm:ss.SSS" or "ss.SSS" timestamp (fractions optional), or
+     * -1 if it does not parse.
+     */
+    public static float parseTimeToSeconds(String timeStr) {
+        try {
+            if (timeStr == null || timeStr.isEmpty()) return -1f;
+            String[] parts = timeStr.split(":");
+            if (parts.length == 3) {
+                return Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60 + Float.parseFloat(parts[2]);
+            } else if (parts.length == 2) {
+                return Integer.parseInt(parts[0]) * 60 + Float.parseFloat(parts[1]);
+            } else if (parts.length == 1) {
+                return Float.parseFloat(parts[0]);
+            } else {
+                return -1f;
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return -1f;
+        }
+    }
+
+    // For non-negative floats the IEEE bit pattern orders like the value, so (time, index) pairs
+    // sort as one long.
+    private static long sortKey(float seconds, int index) {
+        return ((long) Float.floatToIntBits(seconds + 0f) << 32) | index; // + 0f folds -0 into 0
+    }
+
+    private static float timeOf(long key) {
+        return Float.intBitsToFloat((int) (key >>> 32));
+    }
+
+    private static int indexOf(long key) {
+        return (int) key;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.therapyai.data.local;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Ordering of background writes against {@link EphemeralPrefs#clearAll()}: once clearAll
+ * returns, nothing written before it may reach SharedPreferences.
+ */
+public class EphemeralPrefsTest {
+
+    private static final String SESSION_TOKEN_KEY = "encrypted_session_token";
+
+    private final SecretKey key = new SecretKeySpec(new byte[32], "AES");
+    private RecordingPrefs prefs;
+    private CountDownLatch encrypting;
+    private CountDownLatch releaseEncryption;
+
+    @Before
+    public void setUp() {
+        prefs = new RecordingPrefs();
+        encrypting = new CountDownLatch(1);
+        releaseEncryption = new CountDownLatch(0);
+    }
+
+    @Test
+    public void testWriteEncryptingDuringClearAllIsDropped() throws Exception {
+        releaseEncryption = new CountDownLatch(1);
+        EphemeralPrefs ephemeral = newPrefs();
+
+        ephemeral.storeSessionToken("token");
+        // The write has passed its queue-time check and is encrypting when the clear happens.
+        assertTrue(encrypting.await(5, TimeUnit.SECONDS));
+        ephemeral.storeUserId("user"); // Queued behind it
+        ephemeral.clearAll();
+        releaseEncryption.countDown();
+        awaitWrites(ephemeral);
+
+        assertEquals(Collections.singletonList("clear"), prefs.applied());
+        assertNull(ephemeral.getSessionToken());
+        assertNull(ephemeral.getUserId());
+    }
+
+    @Test
+    public void testWriteAfterClearAllIsStored() {
+        EphemeralPrefs ephemeral = newPrefs();
+        ephemeral.storeSessionToken("old");
+        awaitWrites(ephemeral);
+        ephemeral.clearAll();
+        ephemeral.storeSessionToken("new");
+        awaitWrites(ephemeral);
+
+        List<String> applied = prefs.applied();
+        assertEquals("write " + SESSION_TOKEN_KEY, applied.get(0));
+        assertEquals("clear", applied.get(1));
+        assertEquals("write " + SESSION_TOKEN_KEY, applied.get(2));
+        assertEquals(3, applied.size());
+        assertEquals("Served from the cache before and after the write", "new", ephemeral.getSessionToken());
+    }
+
+    @Test
+    public void testClearAllDoesNotWaitForEncryption() throws Exception {
+        releaseEncryption = new CountDownLatch(1);
+        EphemeralPrefs ephemeral = newPrefs();
+        ephemeral.storeSessionToken("token");
+        assertTrue(encrypting.await(5, TimeUnit.SECONDS));
+
+        Thread clearer = new Thread(ephemeral::clearAll);
+        clearer.start();
+        clearer.join(5000);
+        assertFalse("clearAll must only wait for a store, not for a Keystore operation", clearer.isAlive());
+
+        releaseEncryption.countDown();
+        awaitWrites(ephemeral);
+        assertEquals(Collections.singletonList("clear"), prefs.applied());
+    }
+
+    private EphemeralPrefs newPrefs() {
+        return new EphemeralPrefs(prefs, () -> {
+            encrypting.countDown();
+            assertTrue(releaseEncryption.await(5, TimeUnit.SECONDS));
+            return key;
+        });
+    }
+
+    // A cache miss on a key that was never stored returns once queued writes are done
+    private static void awaitWrites(EphemeralPrefs ephemeral) {
+        assertNull(ephemeral.getDecrypted("never_stored"));
+    }
+}
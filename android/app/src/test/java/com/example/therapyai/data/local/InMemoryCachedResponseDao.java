@@ -0,0 +1,58 @@
+package com.example.therapyai.data.local;
+
+import com.example.therapyai.data.local.dao.CachedResponseDao;
+import com.example.therapyai.data.local.models.CachedResponse;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CachedResponseDao} over a map. Rows are returned as stored, so a test can age one by
+ * changing its timestamp.
+ */
+public class InMemoryCachedResponseDao implements CachedResponseDao {
+    private final Map<String, CachedResponse> rows = new ConcurrentHashMap<>();
+
+    @Override
+    public CachedResponse get(String cacheKey) {
+        return rows.get(cacheKey);
+    }
+
+    @Override
+    public void put(CachedResponse response) {
+        rows.put(response.getCacheKey(), response);
+    }
+
+    @Override
+    public void markRevalidated(String cacheKey, long fetchedAt) {
+        CachedResponse row = rows.get(cacheKey);
+        if (row != null) row.setFetchedAt(fetchedAt);
+    }
+
+    @Override
+    public void delete(String cacheKey) {
+        rows.remove(cacheKey);
+    }
+
+    @Override
+    public int deleteOlderThan(long cutoff) {
+        int removed = 0;
+        for (Iterator<CachedResponse> it = rows.values().iterator(); it.hasNext(); ) {
+            if (it.next().getFetchedAt() < cutoff) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void deleteAll() {
+        rows.clear();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+}
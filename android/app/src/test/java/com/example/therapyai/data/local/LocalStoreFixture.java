@@ -0,0 +1,51 @@
+package com.example.therapyai.data.local;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Installs {@link EphemeralPrefs} and {@link ResponseCache} singletons backed by memory and a
+ * fixed software key, for JVM tests of code that reaches them through {@code getInstance()}.
+ * Call {@link #uninstall()} after each test.
+ */
+public final class LocalStoreFixture {
+
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    private LocalStoreFixture() {
+    }
+
+    public static EphemeralPrefs installEphemeralPrefs() {
+        EphemeralPrefs prefs = new EphemeralPrefs(new RecordingPrefs(), () -> KEY);
+        EphemeralPrefs.setInstance(prefs);
+        return prefs;
+    }
+
+    /**
+     * @return The DAO behind the installed cache.
+     */
+    public static InMemoryCachedResponseDao installResponseCache() {
+        InMemoryCachedResponseDao dao = new InMemoryCachedResponseDao();
+        ResponseCache.setInstance(new ResponseCache(dao, () -> KEY));
+        return dao;
+    }
+
+    /**
+     * Waits until the installed cache has run everything queued so far.
+     */
+    public static void awaitCache() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        ResponseCache.getInstance().execute(done::countDown);
+        if (!done.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("Response cache did not drain");
+        }
+    }
+
+    public static void uninstall() {
+        EphemeralPrefs.setInstance(null);
+        ResponseCache.setInstance(null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.therapyai.data.local;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory SharedPreferences that logs every applied edit in order. Puts and removes both
+ * log as writes: without android.util.Base64 a JVM test stores null, which removes the key.
+ */
+class RecordingPrefs implements SharedPreferences {
+    private final Map<String, Object> values = new HashMap<>();
+    private final List<String> applied = new ArrayList<>();
+
+    synchronized List<String> applied() {
+        return new ArrayList<>(applied);
+    }
+
+    @Override public synchronized Map<String, ?> getAll() { return new HashMap<>(values); }
+    @Override public synchronized String getString(String key, String defValue) {
+        Object value = values.get(key);
+        return value != null ? (String) value : defValue;
+    }
+    @Override public Set<String> getStringSet(String key, Set<String> defValues) { return defValues; }
+    @Override public int getInt(String key, int defValue) { return defValue; }
+    @Override public long getLong(String key, long defValue) { return defValue; }
+    @Override public float getFloat(String key, float defValue) { return defValue; }
+    @Override public boolean getBoolean(String key, boolean defValue) { return defValue; }
+    @Override public synchronized boolean contains(String key) { return values.containsKey(key); }
+    @Override public Editor edit() { return new RecordingEditor(); }
+    @Override public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) { }
+    @Override public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) { }
+
+    private class RecordingEditor implements Editor {
+        private final Map<String, String> puts = new HashMap<>();
+        private final List<String> removals = new ArrayList<>();
+        private boolean clear;
+
+        @Override public Editor putString(String key, String value) { puts.put(key, value); return this; }
+        @Override public Editor putStringSet(String key, Set<String> values) { throw new UnsupportedOperationException(); }
+        @Override public Editor putInt(String key, int value) { throw new UnsupportedOperationException(); }
+        @Override public Editor putLong(String key, long value) { throw new UnsupportedOperationException(); }
+        @Override public Editor putFloat(String key, float value) { throw new UnsupportedOperationException(); }
+        @Override public Editor putBoolean(String key, boolean value) { throw new UnsupportedOperationException(); }
+        @Override public Editor remove(String key) { removals.add(key); return this; }
+        @Override public Editor clear() { clear = true; return this; }
+        @Override public boolean commit() { apply(); return true; }
+
+        @Override
+        public void apply() {
+            synchronized (RecordingPrefs.this) {
+                if (clear) {
+                    values.clear();
+                    applied.add("clear");
+                }
+                for (String key : removals) {
+                    values.remove(key);
+                    applied.add("write " + key);
+                }
+                for (Map.Entry<String, String> put : puts.entrySet()) {
+                    // A null value removes the key, as in the platform implementation.
+                    if (put.getValue() == null) {
+                        values.remove(put.getKey());
+                    } else {
+                        values.put(put.getKey(), put.getValue());
+                    }
+                    applied.add("write " + put.getKey());
+                }
+            }
+        }
+    }
+}
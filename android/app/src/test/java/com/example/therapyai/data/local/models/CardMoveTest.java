@@ -0,0 +1,226 @@
+package com.example.therapyai.data.local.models;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks {@link CardMove} against a plain list remove-and-insert, the way a drag reorders the
+ * displayed cards, for contiguous, gapped and shared stored positions.
+ */
+public class CardMoveTest {
+
+    @Test
+    public void testContiguousPositionsMatchListMove() {
+        int[] positions = {0, 1, 2, 3, 4, 5};
+        for (int from = 0; from < positions.length; from++) {
+            for (int to = 0; to < positions.length; to++) {
+                if (from == to) continue;
+                long[] moved = dragAndApply(positions, from, to);
+                assertArrayEquals(from + " -> " + to, listMove(positions.length, from, to), moved);
+            }
+        }
+    }
+
+    @Test
+    public void testGappedPositionsMatchListMove() {
+        int[] positions = {0, 3, 4, 10, 11, 20};
+        for (int from = 0; from < positions.length; from++) {
+            for (int to = 0; to < positions.length; to++) {
+                if (from == to) continue;
+                assertArrayEquals(from + " -> " + to, listMove(positions.length, from, to),
+                        dragAndApply(positions, from, to));
+            }
+        }
+    }
+
+    @Test
+    public void testCardsSharingTheTargetPositionShiftTogether() {
+        // Cards 1 and 2 share position 4; dropping next to either must pass both.
+        int[] positions = {0, 2, 4, 4, 7};
+        List<Card> down = cards(positions);
+        CardMove moveDown = new CardMove(0, 0, 4);
+        apply(moveDown, down);
+        assertOrder(down, 1, 2, 3, 0, 4);
+
+        List<Card> up = cards(positions);
+        CardMove moveUp = new CardMove(4, 7, 4);
+        apply(moveUp, up);
+        assertOrder(up, 0, 1, 4, 2, 3);
+    }
+
+    @Test
+    public void testCardsSharingTheSourcePositionStay() {
+        int[] positions = {0, 3, 3, 5, 8};
+        List<Card> list = cards(positions);
+        apply(new CardMove(1, 3, 8), list);
+        assertEquals(3, list.get(2).position);
+        assertEquals(8, list.get(1).position);
+        assertEquals("Shifted card must not pass the one left behind", 4, list.get(3).position);
+    }
+
+    @Test
+    public void testStatementRangeMatchesApply() {
+        // CardDao.shiftCardPosition selects "id = cardId OR position BETWEEN low AND high"
+        // and adds the shift; it must agree with apply() for every card, including ties.
+        Random random = new Random(7);
+        for (int round = 0; round < 2_000; round++) {
+            int[] positions = randomPositions(random, 2 + random.nextInt(8), 0);
+            int movedIndex = random.nextInt(positions.length);
+            int toPosition = positions[random.nextInt(positions.length)];
+            if (toPosition == positions[movedIndex]) continue;
+            CardMove move = new CardMove(movedIndex, positions[movedIndex], toPosition);
+
+            for (int id = 0; id < positions.length; id++) {
+                int position = positions[id];
+                int expected = move.apply(id, position);
+                int written = position;
+                if (id == move.getCardId()) {
+                    written = move.getToPosition();
+                } else if (position >= move.getLowPosition() && position <= move.getHighPosition()) {
+                    written = position + move.getShift();
+                }
+                assertEquals(move + " at " + Arrays.toString(positions) + ", card " + id, expected, written);
+            }
+        }
+    }
+
+    @Test
+    public void testFollowedByMatchesMovesAppliedInTurn() {
+        // Exact for distinct positions, gaps included; CardDao renumbers any ties away.
+        Random random = new Random(11);
+        for (int round = 0; round < 2_000; round++) {
+            int[] positions = randomPositions(random, 2 + random.nextInt(8), 1);
+            int cardId = random.nextInt(positions.length);
+            List<Card> stepwise = cards(positions);
+            CardMove combined = null;
+            int current = positions[cardId];
+            for (int step = 0; step < 1 + random.nextInt(4); step++) {
+                int target = positions[random.nextInt(positions.length)];
+                CardMove move = new CardMove(cardId, current, target);
+                apply(move, stepwise);
+                combined = combined == null ? move : combined.followedBy(move);
+                assertNotNull(combined);
+                current = target;
+            }
+
+            List<Card> together = cards(positions);
+            apply(combined, together);
+            for (int id = 0; id < positions.length; id++) {
+                assertEquals(combined + " at " + Arrays.toString(positions) + ", card " + id,
+                        stepwise.get(id).position, together.get(id).position);
+            }
+        }
+    }
+
+    @Test
+    public void testFollowedByOnlyJoinsTheSameCardsChain() {
+        CardMove first = new CardMove(5, 2, 7);
+        assertNull("Different card", first.followedBy(new CardMove(6, 7, 1)));
+        assertNull("Not from where the first move left it", first.followedBy(new CardMove(5, 3, 1)));
+
+        CardMove joined = first.followedBy(new CardMove(5, 7, 1));
+        assertNotNull(joined);
+        assertEquals(5, joined.getCardId());
+        assertEquals(2, joined.getFromPosition());
+        assertEquals(1, joined.getToPosition());
+    }
+
+    @Test
+    public void testRangeExcludesTheSourcePosition() {
+        CardMove down = new CardMove(1, 2, 6);
+        assertEquals(3, down.getLowPosition());
+        assertEquals(6, down.getHighPosition());
+        assertEquals(-1, down.getShift());
+
+        CardMove up = new CardMove(1, 6, 2);
+        assertEquals(2, up.getLowPosition());
+        assertEquals(5, up.getHighPosition());
+        assertEquals(1, up.getShift());
+    }
+
+    /**
+     * Drags the card at display index {@code from} to index {@code to} the way the card list
+     * does (the drop takes its new neighbour's stored position) and returns the resulting order.
+     */
+    private static long[] dragAndApply(int[] positions, int from, int to) {
+        List<Card> list = cards(positions);
+        List<Card> displayed = new ArrayList<>(list);
+        displayed.add(to, displayed.remove(from));
+        Card neighbour = displayed.get(to > from ? to - 1 : to + 1);
+        apply(new CardMove(from, positions[from], neighbour.position), list);
+
+        List<Card> sorted = sorted(list);
+        long[] order = new long[sorted.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = sorted.get(i).id;
+            if (i > 0) {
+                assertTrue("Positions must stay distinct", sorted.get(i).position > sorted.get(i - 1).position);
+            }
+        }
+        return order;
+    }
+
+    private static long[] listMove(int count, int from, int to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < count; id++) ids.add(id);
+        ids.add(to, ids.remove(from));
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) order[i] = ids.get(i);
+        return order;
+    }
+
+    private static void assertOrder(List<Card> list, long... expected) {
+        List<Card> sorted = sorted(list);
+        long[] actual = new long[sorted.size()];
+        for (int i = 0; i < actual.length; i++) actual[i] = sorted.get(i).id;
+        assertArrayEquals(expected, actual);
+    }
+
+    // Display order: position, then id, as CardDao orders them
+    private static List<Card> sorted(List<Card> list) {
+        List<Card> sorted = new ArrayList<>(list);
+        sorted.sort(Comparator.<Card>comparingInt(card -> card.position).thenComparingLong(card -> card.id));
+        return sorted;
+    }
+
+    private static void apply(CardMove move, List<Card> list) {
+        for (Card card : list) {
+            card.position = move.apply(card.id, card.position);
+        }
+    }
+
+    private static List<Card> cards(int[] positions) {
+        List<Card> list = new ArrayList<>();
+        for (int i = 0; i < positions.length; i++) {
+            list.add(new Card(i, positions[i]));
+        }
+        return list;
+    }
+
+    // Ascending with gaps; repeats too if minStep is 0
+    private static int[] randomPositions(Random random, int count, int minStep) {
+        int[] positions = new int[count];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            position += minStep + random.nextInt(3);
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    private static final class Card {
+        final long id;
+        int position;
+
+        Card(long id, int position) {
+            this.id = id;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.EphemeralPrefs;
+import com.example.therapyai.data.local.LocalStoreFixture;
+import com.example.therapyai.data.remote.models.LoginRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Which requests {@link AuthInterceptor} signs, against a local server.
+ */
+public class AuthInterceptorTest {
+
+    private MockWebServer server;
+    private EphemeralPrefs prefs;
+    private TherapyApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        prefs = LocalStoreFixture.installEphemeralPrefs();
+        server = new MockWebServer();
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new AuthInterceptor())
+                .build();
+        service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(TherapyApiService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        LocalStoreFixture.uninstall();
+    }
+
+    @Test
+    public void testStoredTokenIsSent() throws Exception {
+        prefs.storeSessionToken("access-1");
+        server.enqueue(new MockResponse().setBody("[]"));
+        service.searchProfiles("jo").execute();
+        assertEquals("Bearer access-1", server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void testNoAuthEndpointIsSentWithoutToken() throws Exception {
+        prefs.storeSessionToken("access-1");
+        server.enqueue(new MockResponse().setBody("{}"));
+        service.login(new LoginRequest("jo@example.com", "secret")).execute();
+        RecordedRequest login = server.takeRequest();
+        assertEquals("/auth/login", login.getPath());
+        assertNull(login.getHeader("Authorization"));
+    }
+
+    @Test
+    public void testExplicitHeaderIsKept() throws Exception {
+        prefs.storeSessionToken("access-2");
+        server.enqueue(new MockResponse());
+        service.unregisterDevice("Bearer access-1", "user_1").execute();
+        assertEquals("Bearer access-1", server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void testNoTokenSendsUnsigned() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(401));
+        assertEquals(401, service.searchProfiles("jo").execute().code());
+        assertNull(server.takeRequest().getHeader("Authorization"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.EphemeralPrefs;
+import com.example.therapyai.data.local.InMemoryCachedResponseDao;
+import com.example.therapyai.data.local.LocalStoreFixture;
+import com.example.therapyai.data.local.ResponseCache;
+import com.example.therapyai.data.remote.models.ProfileResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Stale-while-revalidate GETs in {@link TherapyApiImpl}: the cached copy is delivered first,
+ * then revalidated with its ETag against a local server.
+ */
+public class CachedResponseRevalidationTest {
+
+    private static final String USER_ID = "user_1";
+    private static final String PATH = "profiles/me";
+    private static final String CACHE_KEY = USER_ID + ":" + PATH;
+
+    private MockWebServer server;
+    private InMemoryCachedResponseDao dao;
+    private TherapyApiImpl api;
+    private final BlockingQueue<Object> delivered = new LinkedBlockingQueue<>();
+    // Released when the client has no call left running, i.e. after its callback returned
+    private final Semaphore idle = new Semaphore(0);
+
+    @Before
+    public void setUp() throws Exception {
+        EphemeralPrefs prefs = LocalStoreFixture.installEphemeralPrefs();
+        prefs.storeSessionToken("access-1");
+        prefs.storeUserId(USER_ID);
+        dao = LocalStoreFixture.installResponseCache();
+
+        server = new MockWebServer();
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new AuthInterceptor())
+                .build();
+        client.dispatcher().setIdleCallback(idle::release);
+        TherapyApiService service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create(ApiServiceProvider.getGson()))
+                .build()
+                .create(TherapyApiService.class);
+        api = new TherapyApiImpl(service, false, Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        LocalStoreFixture.uninstall();
+    }
+
+    @Test
+    public void testNotModifiedRefreshesCachedCopy() throws Exception {
+        long agedAt = seedCache("\"v1\"", "Old Name", 60_000);
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        api.getOwnProfile(callback());
+        assertEquals("Old Name", nextProfile().getFullName());
+        awaitNetworkCall();
+
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        LocalStoreFixture.awaitCache();
+        assertTrue("Revalidation moves the timestamp", dao.get(CACHE_KEY).getFetchedAt() > agedAt);
+        assertTrue("A 304 delivers nothing new", delivered.isEmpty());
+    }
+
+    @Test
+    public void testChangedBodyIsCachedAndDeliveredAgain() throws Exception {
+        seedCache("\"v1\"", "Old Name", 60_000);
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"")
+                .setBody("{\"id\":\"user_1\",\"fullName\":\"New Name\"}"));
+
+        api.getOwnProfile(callback());
+        assertEquals("Old Name", nextProfile().getFullName());
+        assertEquals("New Name", nextProfile().getFullName());
+
+        LocalStoreFixture.awaitCache();
+        ResponseCache.Entry entry = ResponseCache.getInstance().read(USER_ID, PATH);
+        assertEquals("\"v2\"", entry.getEtag());
+        assertTrue(entry.getJson().contains("New Name"));
+    }
+
+    @Test
+    public void testServerErrorKeepsServingCachedCopy() throws Exception {
+        seedCache("\"v1\"", "Old Name", 60_000);
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        api.getOwnProfile(callback());
+        assertEquals("Old Name", nextProfile().getFullName());
+        awaitNetworkCall();
+
+        assertTrue("The error is not reported over a cached copy", delivered.isEmpty());
+        LocalStoreFixture.awaitCache();
+        assertNotNull(dao.get(CACHE_KEY));
+    }
+
+    @Test
+    public void testOfflineKeepsServingCachedCopy() throws Exception {
+        seedCache("\"v1\"", "Old Name", 60_000);
+        server.shutdown();
+
+        api.getOwnProfile(callback());
+        assertEquals("Old Name", nextProfile().getFullName());
+        awaitNetworkCall();
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void testNotFoundDropsCachedCopy() throws Exception {
+        seedCache("\"v1\"", "Old Name", 60_000);
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        api.getOwnProfile(callback());
+        assertEquals("Old Name", nextProfile().getFullName());
+        Object error = delivered.poll(5, TimeUnit.SECONDS);
+        assertTrue(error instanceof String);
+
+        LocalStoreFixture.awaitCache();
+        assertNull(dao.get(CACHE_KEY));
+    }
+
+    @Test
+    public void testFreshCopySkipsTheRequest() throws Exception {
+        seedCache("\"v1\"", "Old Name", 0);
+
+        api.getOwnProfile(callback());
+        assertEquals("Old Name", nextProfile().getFullName());
+        LocalStoreFixture.awaitCache();
+
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void testFirstLoadIsCached() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"")
+                .setBody("{\"id\":\"user_1\",\"fullName\":\"New Name\"}"));
+
+        api.getOwnProfile(callback());
+        assertEquals("New Name", nextProfile().getFullName());
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        LocalStoreFixture.awaitCache();
+        assertEquals("\"v1\"", dao.get(CACHE_KEY).getEtag());
+    }
+
+    /**
+     * Caches a profile as of {@code ageMs} ago.
+     *
+     * @return The cached copy's timestamp.
+     */
+    private long seedCache(String etag, String fullName, long ageMs) {
+        ProfileResponse profile = new ProfileResponse();
+        profile.setId(USER_ID);
+        profile.setFullName(fullName);
+        ResponseCache.getInstance().write(USER_ID, PATH, etag, ApiServiceProvider.getGson().toJson(profile));
+        long fetchedAt = System.currentTimeMillis() - ageMs;
+        dao.get(CACHE_KEY).setFetchedAt(fetchedAt);
+        return fetchedAt;
+    }
+
+    private TherapyApiImpl.ApiCallback<ProfileResponse> callback() {
+        return new TherapyApiImpl.ApiCallback<ProfileResponse>() {
+            @Override
+            public void onSuccess(ProfileResponse result) {
+                delivered.add(result);
+            }
+
+            @Override
+            public void onError(String error) {
+                delivered.add(error);
+            }
+        };
+    }
+
+    private ProfileResponse nextProfile() throws InterruptedException {
+        Object next = delivered.poll(5, TimeUnit.SECONDS);
+        assertTrue("Expected a profile, got " + next, next instanceof ProfileResponse);
+        return (ProfileResponse) next;
+    }
+
+    private void awaitNetworkCall() throws InterruptedException {
+        assertTrue("The request did not finish", idle.tryAcquire(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.models.FinalSessionDetail;
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+import com.example.therapyai.data.local.models.TimedNote;
+import com.example.therapyai.data.remote.models.FinalSessionDetailResponse;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reading session details through {@link ApiServiceProvider#getGson()}, against the wire format
+ * {@link FinalSessionDetailResponse} describes.
+ */
+public class SessionDetailTypeAdapterTest {
+
+    private final Gson apiGson = ApiServiceProvider.getGson();
+
+    @Test
+    public void testMatchesResponseModel() throws Exception {
+        String json = sessionDetailJson(200);
+        FinalSessionDetailResponse response = new Gson().fromJson(json, FinalSessionDetailResponse.class);
+        FinalSessionDetail detail = apiGson.fromJson(json, FinalSessionDetail.class);
+
+        assertEquals(response.getSessionId(), detail.getId());
+        assertEquals(response.getTherapist_name(), detail.getTherapistName());
+        assertEquals(response.getTherapist_email(), detail.getTherapistEmail());
+        assertEquals(response.getPatient_id(), detail.getPatientId());
+        assertEquals(response.getPatient_name(), detail.getPatientName());
+        assertEquals(response.getPatient_email(), detail.getPatientEmail());
+        assertEquals(response.getSession_date(), detail.getTreatmentDate());
+        assertEquals(response.getSummary(), detail.getSummary());
+        assertEquals(response.getPositive(), detail.getPositive(), 0);
+        assertEquals(response.getNeutral(), detail.getNeutral(), 0);
+        assertEquals(response.getNegative(), detail.getNegative(), 0);
+        assertEquals(response.getGeneral_notes(), detail.getGeneralNotes());
+
+        assertEquals(response.getTimedNotes().size(), detail.getTimedNotes().size());
+        for (int i = 0; i < response.getTimedNotes().size(); i++) {
+            FinalSessionDetailResponse.TimedNoteEntry expected = response.getTimedNotes().get(i);
+            assertEquals(new TimedNote(expected.getTime(), expected.getNote()), detail.getTimedNotes().get(i));
+        }
+
+        List<FinalSessionDetailResponse.SentimentScoreEntry> sentences = response.getSentiment_scores();
+        List<FinalTranscriptEntry> entries = detail.getTranscriptEntries();
+        assertEquals(sentences.size(), entries.size());
+        for (int i = 0; i < sentences.size(); i++) {
+            FinalSessionDetailResponse.SentimentScoreEntry expected = sentences.get(i);
+            FinalTranscriptEntry actual = entries.get(i);
+            assertEquals(expected.getSpeaker(), actual.getSpeaker());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            // Only patient sentences keep a score
+            SentimentScore score = "Patient".equalsIgnoreCase(expected.getSpeaker())
+                    ? new SentimentScore((float) expected.getPositive(), (float) expected.getNeutral(), (float) expected.getNegative())
+                    : null;
+            assertEquals("Sentiment at " + i, score, actual.getSentimentScore());
+        }
+    }
+
+    @Test
+    public void testCachedCopyRoundTrips() throws Exception {
+        FinalSessionDetail parsed = apiGson.fromJson(sessionDetailJson(50), FinalSessionDetail.class);
+        String cached = apiGson.toJson(parsed, FinalSessionDetail.class);
+        assertEquals(cached, apiGson.toJson(apiGson.fromJson(cached, FinalSessionDetail.class), FinalSessionDetail.class));
+    }
+
+    @Test
+    public void testNullsAndUnknownFieldsAreTolerated() {
+        String json = "{\"sessionId\":\"s1\",\"summary\":null,\"new_field\":{\"nested\":[1,2]},"
+                + "\"general_notes\":[\"a\",null],\"timed_notes\":null,"
+                + "\"sentiment_scores\":[null,{\"speaker\":\"Patient\",\"text\":\"hi\",\"positive\":null,\"mood\":\"ok\"}]}";
+        FinalSessionDetail detail = apiGson.fromJson(json, FinalSessionDetail.class);
+        assertEquals("s1", detail.getId());
+        assertEquals("", detail.getSummary());
+        assertEquals(Arrays.asList("a"), detail.getGeneralNotes());
+        assertTrue(detail.getTimedNotes().isEmpty());
+        assertEquals(1, detail.getTranscriptEntries().size());
+        assertNotNull(detail.getTranscriptEntries().get(0).getSentimentScore());
+        assertNull(apiGson.fromJson("null", FinalSessionDetail.class));
+    }
+
+    private static String sessionDetailJson(int sentences) throws IOException {
+        Random random = new Random(7);
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter out = new JsonWriter(buffer)) {
+            out.beginObject();
+            out.name("sessionId").value("session_1");
+            out.name("therapist_name").value("Dr. Test");
+            out.name("therapist_email").value("therapist@example.com");
+            out.name("patient_id").value("patient_1");
+            out.name("patient_name").value("Pat Test");
+            out.name("patient_email").value("pat@example.com");
+            out.name("patient_date_of_birth").value("1990-01-01");
+            out.name("session_date").value("2024-05-01");
+            out.name("summary").value("Synthetic session.");
+            out.name("positive").value(0.4);
+            out.name("neutral").value(0.4);
+            out.name("negative").value(0.2);
+            out.name("general_notes").beginArray().value("Note one").value("Note two").endArray();
+            out.name("timed_notes").beginArray();
+            for (int i = 0; i < sentences / 20 + 1; i++) {
+                out.beginObject().name("timestamp").value("00:00:" + (10 + i)).name("content").value("Timed note " + i).endObject();
+            }
+            out.endArray();
+            out.name("sentiment_scores").beginArray();
+            String[] speakers = {"Therapist", "Patient", "patient"};
+            for (int i = 0; i < sentences; i++) {
+                double negative = random.nextDouble() * 0.5;
+                double positive = random.nextDouble() * (1 - negative);
+                out.beginObject();
+                out.name("speaker").value(speakers[i % speakers.length]);
+                out.name("text").value("Sentence " + i);
+                out.name("timestamp").value(String.valueOf(i * 3));
+                out.name("positive").value(positive);
+                out.name("neutral").value(1 - positive - negative);
+                out.name("negative").value(negative);
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+        return buffer.toString();
+    }
+}
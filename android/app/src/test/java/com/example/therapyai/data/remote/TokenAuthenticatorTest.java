@@ -0,0 +1,134 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.EphemeralPrefs;
+import com.example.therapyai.data.local.LocalStoreFixture;
+import com.example.therapyai.data.remote.models.LoginRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Token refresh on 401 through {@link TokenAuthenticator}, wired as ApiServiceProvider wires it,
+ * against a server that accepts only the refreshed token.
+ */
+public class TokenAuthenticatorTest {
+
+    private static final int CONCURRENT_REQUESTS = 6;
+
+    private MockWebServer server;
+    private EphemeralPrefs prefs;
+    private TherapyApiService service;
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private volatile boolean rejectRefresh;
+    // Held open so that every concurrent request has failed before the first refresh returns
+    private volatile CountDownLatch releaseRefresh = new CountDownLatch(0);
+
+    @Before
+    public void setUp() throws Exception {
+        prefs = LocalStoreFixture.installEphemeralPrefs();
+        prefs.storeSessionToken("expired");
+        prefs.storeRefreshToken("refresh-1");
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().equals("/auth/refresh")) {
+                    refreshes.incrementAndGet();
+                    releaseRefresh.await(5, TimeUnit.SECONDS);
+                    if (rejectRefresh) return new MockResponse().setResponseCode(401);
+                    return new MockResponse().setBody("{\"accessToken\":\"fresh\",\"refreshToken\":\"refresh-2\"}");
+                }
+                if (request.getPath().equals("/auth/login")) {
+                    return new MockResponse().setResponseCode(401);
+                }
+                if ("Bearer fresh".equals(request.getHeader("Authorization"))) {
+                    return new MockResponse().setBody("{\"id\":\"user_1\"}");
+                }
+                return new MockResponse().setResponseCode(401);
+            }
+        });
+        server.start();
+
+        TherapyApiService authless = newService(new OkHttpClient());
+        service = newService(new OkHttpClient.Builder()
+                .addInterceptor(new AuthInterceptor())
+                .authenticator(new TokenAuthenticator(authless))
+                .build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        LocalStoreFixture.uninstall();
+    }
+
+    @Test
+    public void testConcurrentFailuresShareOneRefresh() throws Exception {
+        releaseRefresh = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        try {
+            List<Future<Integer>> codes = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                codes.add(pool.submit(() -> service.getOwnProfile(null).execute().code()));
+            }
+            // Let every request reach the server with the expired token before refreshing
+            while (server.getRequestCount() < CONCURRENT_REQUESTS + 1) {
+                Thread.sleep(10);
+            }
+            releaseRefresh.countDown();
+            for (Future<Integer> code : codes) {
+                assertEquals(200, (int) code.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, refreshes.get());
+        assertEquals("fresh", prefs.getSessionToken());
+        assertEquals("refresh-2", prefs.getRefreshToken());
+    }
+
+    @Test
+    public void testRejectedRefreshTokenIsNotRetried() throws Exception {
+        rejectRefresh = true;
+        assertEquals(401, service.getOwnProfile(null).execute().code());
+        assertEquals(401, service.getOwnProfile(null).execute().code());
+        assertEquals(1, refreshes.get());
+        assertEquals("expired", prefs.getSessionToken());
+    }
+
+    @Test
+    public void testNoAuthFailureDoesNotRefresh() throws Exception {
+        assertEquals(401, service.login(new LoginRequest("jo@example.com", "wrong")).execute().code());
+        assertEquals(0, refreshes.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private TherapyApiService newService(OkHttpClient client) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(TherapyApiService.class);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.therapyai.data.remote;
+
+import com.example.therapyai.data.local.models.TranscriptDetail;
+import com.example.therapyai.data.local.models.TranscriptItem;
+import com.example.therapyai.data.remote.models.TranscriptDetailResponse;
+import com.example.therapyai.data.remote.models.TranscriptSentenceResponse;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+/**
+ * Reading transcript details through {@link ApiServiceProvider#getGson()}, against the wire
+ * format {@link TranscriptDetailResponse} describes.
+ */
+public class TranscriptDetailTypeAdapterTest {
+
+    private static final String JSON = "{\"patientName\":\"Pat Test\",\"sessionDate\":\"01-05-2024\","
+            + "\"summary\":\"Synthetic transcript.\",\"extra\":[1,{\"a\":null}],\"transcript\":["
+            + "{\"speaker\":\"Therapist\",\"text\":\"How was the week?\",\"timestamp\":\"00:00:01.0\"},"
+            + "null,"
+            + "{\"speaker\":\"Patient\",\"text\":null,\"timestamp\":\"00:00:04.0\",\"confidence\":0.9},"
+            + "{\"speaker\":\"Patient\",\"text\":\"Better.\",\"timestamp\":\"00:00:06.5\"}]}";
+
+    private final Gson apiGson = ApiServiceProvider.getGson();
+
+    @Test
+    public void testMatchesResponseModel() {
+        TranscriptDetailResponse response = new Gson().fromJson(JSON, TranscriptDetailResponse.class);
+        TranscriptDetail detail = apiGson.fromJson(JSON, TranscriptDetail.class);
+
+        assertEquals(response.getPatientName(), detail.getPatientName());
+        assertEquals(response.getSessionDate(), detail.getSessionDate());
+        assertEquals(response.getSummary(), detail.getSummary());
+
+        List<TranscriptItem> items = detail.getTranscriptItems();
+        assertEquals(3, items.size()); // The null sentence is skipped
+        int item = 0;
+        for (TranscriptSentenceResponse sentence : response.getTranscript()) {
+            if (sentence == null) continue;
+            assertEquals(new TranscriptItem(sentence.getSpeaker(), sentence.getText(), sentence.getTimestamp()), items.get(item++));
+        }
+        assertSame("Speaker strings are shared", items.get(1).getSpeaker(), items.get(2).getSpeaker());
+    }
+
+    @Test
+    public void testCachedCopyRoundTrips() {
+        TranscriptDetail parsed = apiGson.fromJson(JSON, TranscriptDetail.class);
+        TranscriptDetail reread = apiGson.fromJson(apiGson.toJson(parsed, TranscriptDetail.class), TranscriptDetail.class);
+
+        assertEquals(parsed.getPatientName(), reread.getPatientName());
+        assertEquals(parsed.getSessionDate(), reread.getSessionDate());
+        assertEquals(parsed.getSummary(), reread.getSummary());
+        assertEquals(parsed.getTranscriptItems(), reread.getTranscriptItems());
+    }
+}
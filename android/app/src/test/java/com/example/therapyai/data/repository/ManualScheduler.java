@@ -0,0 +1,80 @@
+package com.example.therapyai.data.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link MainThreadScheduler} on a fake clock: nothing runs until the test calls
+ * {@link #runPending()} or {@link #advance(long)}.
+ */
+class ManualScheduler implements MainThreadScheduler {
+    private final List<Task> tasks = new ArrayList<>();
+    private long now;
+
+    @Override
+    public void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        tasks.add(new Task(task, now + delayMs));
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        tasks.removeIf(t -> t.runnable == task);
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Runs everything due now, including tasks those tasks post.
+     */
+    void runPending() {
+        Task next;
+        while ((next = nextDue()) != null) {
+            tasks.remove(next);
+            next.runnable.run();
+        }
+    }
+
+    void advance(long ms) {
+        long until = now + ms;
+        Task next;
+        while ((next = nextBefore(until)) != null) {
+            now = Math.max(now, next.runAt);
+            tasks.remove(next);
+            next.runnable.run();
+        }
+        now = until;
+        runPending();
+    }
+
+    private Task nextDue() {
+        return nextBefore(now);
+    }
+
+    private Task nextBefore(long time) {
+        Task earliest = null;
+        for (Task task : tasks) {
+            if (task.runAt <= time && (earliest == null || task.runAt < earliest.runAt)) {
+                earliest = task;
+            }
+        }
+        return earliest;
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final long runAt;
+
+        Task(Runnable runnable, long runAt) {
+            this.runnable = runnable;
+            this.runAt = runAt;
+        }
+    }
+}
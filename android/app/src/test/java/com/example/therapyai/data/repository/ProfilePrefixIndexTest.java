@@ -0,0 +1,72 @@
+package com.example.therapyai.data.repository;
+
+import com.example.therapyai.data.local.models.Profile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix matching, tokenization and eviction of {@link ProfilePrefixIndex}.
+ */
+public class ProfilePrefixIndexTest {
+
+    private static final Profile JOHN = new Profile("patient_17", "John Smith", "john.smith@example.com", null, null);
+    private static final Profile JOAN = new Profile("patient_18", "Joan Smith-Jones", "joan@example.org", null, null);
+    private static final Profile ANNA = new Profile("patient_19", "Anna Kowalska", "anna.k@example.com", null, null);
+
+    private ProfilePrefixIndex newIndex() {
+        ProfilePrefixIndex index = new ProfilePrefixIndex();
+        index.addAll(Arrays.asList(JOHN, JOAN, ANNA));
+        return index;
+    }
+
+    @Test
+    public void testEveryQueryWordMustPrefixAProfileWord() {
+        ProfilePrefixIndex index = newIndex();
+        assertEquals(Arrays.asList(JOAN, JOHN), index.lookup("jo sm"));
+        assertEquals(Arrays.asList(JOHN), index.lookup("joh sm"));
+        assertEquals(Arrays.asList(JOAN, JOHN), index.lookup("JO"));
+        assertEquals(Arrays.asList(JOAN), index.lookup("jones"));
+        assertTrue(index.lookup("jo ko").isEmpty());
+        assertTrue(index.lookup("   ").isEmpty());
+        assertTrue(index.lookup(null).isEmpty());
+    }
+
+    @Test
+    public void testQueriesSplitLikeProfiles() {
+        ProfilePrefixIndex index = newIndex();
+        // Punctuation in the query separates words, as it does in names and emails
+        assertEquals(Arrays.asList(JOAN), index.lookup("smith-jon"));
+        assertEquals(Arrays.asList(JOHN), index.lookup("john.smith@"));
+        assertEquals(Arrays.asList(JOHN), index.lookup("john.smith@example.com"));
+        assertEquals(Arrays.asList(ANNA), index.lookup("patient_19"));
+        assertEquals(Arrays.asList(JOAN), index.lookup("example.org"));
+    }
+
+    @Test
+    public void testReindexingReplacesOldWords() {
+        ProfilePrefixIndex index = newIndex();
+        index.addAll(Arrays.asList(new Profile("patient_17", "Jonathan Smythe", "js@example.com", null, null)));
+        assertTrue(index.lookup("john").isEmpty());
+        assertEquals("patient_17", index.lookup("smy").get(0).getId());
+        index.clear();
+        assertTrue(index.lookup("smy").isEmpty());
+    }
+
+    @Test
+    public void testLeastRecentlyIndexedAreEvicted() {
+        ProfilePrefixIndex index = new ProfilePrefixIndex();
+        List<Profile> profiles = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            profiles.add(new Profile("id" + i, "Name" + i, null, null, null));
+        }
+        index.addAll(profiles);
+        assertTrue("The first profile indexed is dropped", index.lookup("name0").isEmpty());
+        assertEquals(1, index.lookup("name1000").size());
+        assertEquals("Results are capped", 50, index.lookup("name").size());
+    }
+}
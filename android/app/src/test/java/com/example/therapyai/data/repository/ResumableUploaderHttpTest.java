@@ -0,0 +1,322 @@
+package com.example.therapyai.data.repository;
+
+import com.example.therapyai.data.remote.HttpStatusException;
+import com.example.therapyai.data.remote.TherapyApiImpl;
+import com.example.therapyai.data.remote.TherapyApiService;
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
+import com.example.therapyai.util.AudioFormatUtil;
+import com.example.therapyai.util.ChunkedGcmContainer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Runs the resumable upload through {@link TherapyApiImpl}'s chunked calls against a
+ * {@link MockWebServer} that keeps the committed bytes, so the Retrofit headers, the status
+ * mapping and the retry loop are exercised over real HTTP.
+ *
+ * OkHttp's own silent retry is turned off, so every cut connection reaches the uploader.
+ */
+public class ResumableUploaderHttpTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int UPLOAD_CHUNK_SIZE = 5000;
+    private static final String UPLOAD_ID = "upload_1";
+
+    private MockWebServer server;
+    private TherapyApiImpl api;
+    private SessionAudioSource source;
+    private byte[] expectedStream;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(5);
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        SecretKey dek = new SecretKeySpec(keyBytes, "AES");
+        byte[] audio = new byte[41_234];
+        random.nextBytes(audio);
+
+        File segment = folder.newFile("segment_0.enc");
+        try (FileOutputStream out = new FileOutputStream(segment)) {
+            ChunkedGcmContainer.Writer writer = new ChunkedGcmContainer.Writer(out, dek, 4096);
+            writer.write(audio, 0, audio.length);
+            writer.finish();
+        }
+        byte[] header = AudioFormatUtil.generateWavHeader(audio.length, AudioFormatUtil.CaptureProfile.SPEECH_16K);
+        source = new SessionAudioSource(Collections.singletonList(segment), new long[]{audio.length}, dek,
+                AudioFormatUtil.AudioEncoding.PCM_WAV, AudioFormatUtil.CaptureProfile.SPEECH_16K);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(header);
+        stream.write(audio);
+        expectedStream = stream.toByteArray();
+
+        server = new MockWebServer();
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build();
+        TherapyApiService service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(TherapyApiService.class);
+        api = TherapyApiImpl.forService(service);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        source.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void testChunkHeadersAreEncodedForTheServer() throws Exception {
+        server.enqueue(jsonResponse(200, ackJson(3)));
+        byte[] chunk = {1, 2, 3, 4, 5};
+
+        String checksum = TherapyApiImpl.chunkChecksumHeader(chunk, 3);
+        ChunkedUploadResponse ack = api.uploadChunk(UPLOAD_ID, 0, chunk, 3, checksum);
+        assertEquals(3, ack.getNextOffset());
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("PUT", request.getMethod());
+        assertEquals("/sessions/upload/chunked/" + UPLOAD_ID, request.getPath());
+        assertEquals("0", request.getHeader("Upload-Offset"));
+        assertEquals("sha256 " + sha256Base64(chunk, 3), request.getHeader("Upload-Checksum"));
+        assertEquals("sha256 A5BYxvLAy0ksUzsKTRTvd8wPeKvMztUofYShogEc+4E=", request.getHeader("Upload-Checksum"));
+        assertArrayEquals(new byte[]{1, 2, 3}, request.getBody().readByteArray());
+    }
+
+    @Test
+    public void testConflictAndChecksumRejectionsMapToHttpStatus() throws Exception {
+        server.enqueue(jsonResponse(409, "{\"detail\":\"offset mismatch\"}"));
+        server.enqueue(jsonResponse(422, "{\"detail\":\"checksum mismatch\"}"));
+        byte[] chunk = {9, 9};
+
+        assertStatus(409, chunk);
+        assertStatus(422, chunk);
+    }
+
+    @Test
+    public void testRandomDisconnectsStillCommitIdenticalBytes() throws Exception {
+        CommittingDispatcher dispatcher = new CommittingDispatcher(new Random(17), 0.35, expectedStream.length);
+        server.setDispatcher(dispatcher);
+        ResumableUploader uploader = new ResumableUploader(api, UPLOAD_CHUNK_SIZE, 30, 0, 0);
+
+        ChunkedUploadResponse started = uploader.start(initRequest());
+        int[] retries = {0};
+        uploader.send(started.getUploadId(), started.getNextOffset(), expectedStream.length, source,
+                new ResumableUploader.Listener() {
+                    @Override
+                    public void onAcknowledged(long offset) {
+                    }
+
+                    @Override
+                    public void onRetrying(long offset, int attempt, IOException cause) {
+                        retries[0]++;
+                    }
+                });
+        assertNotNull(uploader.complete(started.getUploadId()).getSessionId());
+
+        assertTrue("The seeded server should have cut some chunk bodies", dispatcher.cutBodies > 0);
+        assertTrue("The seeded server should have lost some acks", dispatcher.lostAcks > 0);
+        assertEquals("Every cut body and lost ack is one retry", dispatcher.cutBodies + dispatcher.lostAcks, retries[0]);
+        assertEquals(0, dispatcher.rejectedChecksums);
+        assertArrayEquals(expectedStream, dispatcher.committed.toByteArray());
+    }
+
+    @Test
+    public void testStaleAcknowledgementsFailTheUpload() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(jsonResponse(200, ackJson(0))); // Accepted, but the offset never moves
+        }
+        ResumableUploader uploader = new ResumableUploader(api, UPLOAD_CHUNK_SIZE, 3, 0, 0);
+        try {
+            uploader.send(UPLOAD_ID, 0, expectedStream.length, source, ignoringListener());
+            fail("An upload that never advances must not loop");
+        } catch (IOException expected) {
+            assertFalse(expected instanceof HttpStatusException);
+            assertTrue(expected.getMessage().contains("no progress"));
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void testConflictsThatNeverAdvanceFailTheUpload() throws Exception {
+        // 409s alternate with accepted chunks whose ack does not move the offset, so the
+        // consecutive-failure limit alone would never be reached.
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(jsonResponse(409, "{\"detail\":\"offset mismatch\"}"));
+            server.enqueue(jsonResponse(200, ackJson(0)));
+            server.enqueue(jsonResponse(200, ackJson(0)));
+        }
+        ResumableUploader uploader = new ResumableUploader(api, UPLOAD_CHUNK_SIZE, 3, 0, 0);
+        try {
+            uploader.send(UPLOAD_ID, 0, expectedStream.length, source, ignoringListener());
+            fail("An upload that never advances must not loop");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("no progress"));
+        }
+    }
+
+    private void assertStatus(int expectedCode, byte[] chunk) throws IOException {
+        try {
+            api.uploadChunk(UPLOAD_ID, 0, chunk, chunk.length, TherapyApiImpl.chunkChecksumHeader(chunk, chunk.length));
+            fail("Expected HTTP " + expectedCode);
+        } catch (HttpStatusException e) {
+            assertEquals(expectedCode, e.getCode());
+            assertFalse(ResumableUploader.isFatalUploadError(e));
+        }
+    }
+
+    private ChunkedUploadInitRequest initRequest() {
+        return new ChunkedUploadInitRequest("session_audio_test.wav", "audio/wav",
+                expectedStream.length, UPLOAD_CHUNK_SIZE, "{}");
+    }
+
+    private static ResumableUploader.Listener ignoringListener() {
+        return new ResumableUploader.Listener() {
+            @Override
+            public void onAcknowledged(long offset) {
+            }
+
+            @Override
+            public void onRetrying(long offset, int attempt, IOException cause) {
+            }
+        };
+    }
+
+    private static MockResponse jsonResponse(int code, String body) {
+        return new MockResponse().setResponseCode(code)
+                .setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    private static String ackJson(long nextOffset) {
+        return "{\"upload_id\":\"" + UPLOAD_ID + "\",\"next_offset\":" + nextOffset + ",\"status\":\"in_progress\"}";
+    }
+
+    private static String sha256Base64(byte[] data, int length) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(data, 0, length);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * A chunked-upload endpoint that checks offsets and checksums like the real one. Some chunk
+     * requests are cut halfway through the body; some are committed but the connection is
+     * dropped before the acknowledgement.
+     */
+    private static final class CommittingDispatcher extends Dispatcher {
+        final ByteArrayOutputStream committed = new ByteArrayOutputStream();
+        private final Random random;
+        private final double failureRate;
+        private final long totalSize;
+        private boolean cutNextChunk = false;
+        int cutBodies;
+        int lostAcks;
+        int rejectedChecksums;
+
+        CommittingDispatcher(Random random, double failureRate, long totalSize) {
+            this.random = random;
+            this.failureRate = failureRate;
+            this.totalSize = totalSize;
+        }
+
+        @Override
+        public synchronized MockResponse peek() {
+            // Consulted (possibly more than once) before a request body is read. The cut is
+            // decided with each offset sent to the client, so it always lands on a chunk PUT.
+            return new MockResponse().setSocketPolicy(
+                    cutNextChunk ? SocketPolicy.DISCONNECT_DURING_REQUEST_BODY : SocketPolicy.KEEP_OPEN);
+        }
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            if (cutNextChunk) {
+                // The server already hung up halfway through this body; nothing is stored
+                cutNextChunk = false;
+                cutBodies++;
+                return new MockResponse();
+            }
+            return respond(request);
+        }
+
+        private MockResponse respond(RecordedRequest request) {
+            String path = request.getPath();
+            switch (request.getMethod()) {
+                case "POST":
+                    if (path.endsWith("/complete")) {
+                        return jsonResponse(200, "{\"session_id\":\"session_1\",\"status\":\"complete\"}");
+                    }
+                    armCut();
+                    return jsonResponse(200, ackJson(0));
+                case "GET":
+                    armCut();
+                    return jsonResponse(200, ackJson(committed.size()));
+                case "PUT":
+                    return acceptChunk(request);
+                default:
+                    return new MockResponse().setResponseCode(405);
+            }
+        }
+
+        private MockResponse acceptChunk(RecordedRequest request) {
+            long offset = Long.parseLong(request.getHeader("Upload-Offset"));
+            if (offset != committed.size()) {
+                return jsonResponse(409, ackJson(committed.size()));
+            }
+            byte[] body = request.getBody().readByteArray();
+            try {
+                if (!("sha256 " + sha256Base64(body, body.length)).equals(request.getHeader("Upload-Checksum"))) {
+                    rejectedChecksums++;
+                    return jsonResponse(422, ackJson(committed.size()));
+                }
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+            committed.write(body, 0, body.length);
+            if (random.nextDouble() < failureRate) {
+                lostAcks++;
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+            armCut();
+            return jsonResponse(200, ackJson(committed.size()));
+        }
+
+        /**
+         * Called before an acknowledged offset goes out, since the client then sends the chunk
+         * at that offset next (unless everything is in).
+         */
+        private void armCut() {
+            cutNextChunk = committed.size() < totalSize && random.nextDouble() < failureRate;
+        }
+    }
+}
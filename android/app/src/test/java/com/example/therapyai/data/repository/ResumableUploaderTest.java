@@ -0,0 +1,261 @@
+package com.example.therapyai.data.repository;
+
+import com.example.therapyai.data.remote.ChunkedUploadTransport;
+import com.example.therapyai.data.remote.HttpStatusException;
+import com.example.therapyai.data.remote.MockChunkedUploadServer;
+import com.example.therapyai.data.remote.models.ChunkedUploadInitRequest;
+import com.example.therapyai.data.remote.models.ChunkedUploadResponse;
+import com.example.therapyai.data.remote.models.SessionSubmissionResponse;
+import com.example.therapyai.util.AudioFormatUtil;
+import com.example.therapyai.util.ChunkedGcmContainer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Runs the resumable upload against {@link MockChunkedUploadServer} over a session made of two
+ * chunked-container segments and one legacy single-blob segment, and checks that the bytes the
+ * server reassembled are exactly the WAV header plus the decrypted audio.
+ */
+public class ResumableUploaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int UPLOAD_CHUNK_SIZE = 7000; // Not aligned to container chunks or segments
+
+    private final Random random = new Random(3);
+    private SecretKey dek;
+    private List<File> segmentFiles;
+    private long[] segmentLengths;
+    private byte[] expectedStream;
+    private File serverDir;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        dek = new SecretKeySpec(keyBytes, "AES");
+
+        byte[][] plaintexts = {randomBytes(30_001), randomBytes(12_288), randomBytes(9_999)};
+        segmentFiles = new ArrayList<>();
+        segmentFiles.add(writeContainerSegment("segment_0.enc", plaintexts[0]));
+        segmentFiles.add(writeContainerSegment("segment_1.enc", plaintexts[1]));
+        segmentFiles.add(writeLegacySegment("segment_2.enc", plaintexts[2]));
+
+        segmentLengths = new long[plaintexts.length];
+        ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        for (int i = 0; i < plaintexts.length; i++) {
+            segmentLengths[i] = plaintexts[i].length;
+            audio.write(plaintexts[i]);
+        }
+        byte[] header = wavHeader();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(header);
+        stream.write(audio.toByteArray());
+        expectedStream = stream.toByteArray();
+
+        serverDir = folder.newFolder("server");
+    }
+
+    @Test
+    public void testInterruptedUploadResumesFromServerOffset() throws Exception {
+        MockChunkedUploadServer server = new MockChunkedUploadServer(serverDir, 0, new Random(1));
+        ChunkedUploadTransport failing = new FailAfterChunks(server, 4);
+        ResumableUploader firstRun = new ResumableUploader(failing, UPLOAD_CHUNK_SIZE, 3, 0, 0);
+
+        ChunkedUploadResponse started = firstRun.start(initRequest());
+        String uploadId = started.getUploadId();
+        long[] lastAcknowledged = {-1};
+        try (SessionAudioSource source = newSource()) {
+            firstRun.send(uploadId, started.getNextOffset(), expectedStream.length, source,
+                    recordingListener(lastAcknowledged));
+            fail("The connection was cut, the upload must not finish");
+        } catch (SocketException expected) {
+            // Gave up after maxAttempts, like a dropped network would
+        }
+        assertEquals(4L * UPLOAD_CHUNK_SIZE, lastAcknowledged[0]);
+
+        // A fresh uploader (as after an app restart) asks the server where to continue.
+        ResumableUploader secondRun = new ResumableUploader(server, UPLOAD_CHUNK_SIZE, 3, 0, 0);
+        long resumeOffset = secondRun.fetchServerOffset(uploadId);
+        assertEquals(lastAcknowledged[0], resumeOffset);
+
+        List<Long> resumedOffsets = new ArrayList<>();
+        try (SessionAudioSource source = newSource()) {
+            secondRun.send(uploadId, resumeOffset, expectedStream.length, source, new ResumableUploader.Listener() {
+                @Override
+                public void onAcknowledged(long offset) {
+                    resumedOffsets.add(offset);
+                }
+
+                @Override
+                public void onRetrying(long offset, int attempt, IOException cause) {
+                    fail("No failures expected after resuming");
+                }
+            });
+        }
+        assertEquals(resumeOffset + UPLOAD_CHUNK_SIZE, (long) resumedOffsets.get(0));
+        assertEquals(expectedStream.length, (long) resumedOffsets.get(resumedOffsets.size() - 1));
+
+        SessionSubmissionResponse completed = secondRun.complete(uploadId);
+        assertNotNull(completed.getSessionId());
+        assertArrayEquals(expectedStream, readUploadedFile());
+    }
+
+    @Test
+    public void testRandomDropsAndLostAcksStillProduceIdenticalBytes() throws Exception {
+        MockChunkedUploadServer server = new MockChunkedUploadServer(serverDir, 0.3, new Random(11));
+        ResumableUploader uploader = new ResumableUploader(server, UPLOAD_CHUNK_SIZE, 50, 0, 0);
+
+        ChunkedUploadResponse started = uploader.start(initRequest());
+        int[] retries = {0};
+        try (SessionAudioSource source = newSource()) {
+            uploader.send(started.getUploadId(), started.getNextOffset(), expectedStream.length, source,
+                    new ResumableUploader.Listener() {
+                        @Override
+                        public void onAcknowledged(long offset) {
+                        }
+
+                        @Override
+                        public void onRetrying(long offset, int attempt, IOException cause) {
+                            retries[0]++;
+                        }
+                    });
+        }
+        uploader.complete(started.getUploadId());
+
+        assertTrue("The seeded server should have dropped some chunks", retries[0] > 0);
+        assertArrayEquals(expectedStream, readUploadedFile());
+    }
+
+    @Test
+    public void testFatalErrorsAreNotRetried() {
+        assertTrue(ResumableUploader.isFatalUploadError(new HttpStatusException(404, "gone")));
+        assertTrue(ResumableUploader.isFatalUploadError(new HttpStatusException(401, "auth")));
+        assertFalse(ResumableUploader.isFatalUploadError(new HttpStatusException(409, "offset")));
+        assertFalse(ResumableUploader.isFatalUploadError(new HttpStatusException(422, "checksum")));
+        assertFalse(ResumableUploader.isFatalUploadError(new HttpStatusException(503, "busy")));
+        assertFalse(ResumableUploader.isFatalUploadError(new SocketException("reset")));
+    }
+
+    private SessionAudioSource newSource() {
+        return new SessionAudioSource(segmentFiles, segmentLengths, dek,
+                AudioFormatUtil.AudioEncoding.PCM_WAV, AudioFormatUtil.CaptureProfile.SPEECH_16K);
+    }
+
+    private byte[] wavHeader() {
+        long decryptedSize = 30_001 + 12_288 + 9_999;
+        return AudioFormatUtil.generateWavHeader(decryptedSize, AudioFormatUtil.CaptureProfile.SPEECH_16K);
+    }
+
+    private ChunkedUploadInitRequest initRequest() {
+        return new ChunkedUploadInitRequest("session_audio_test.wav", "audio/wav",
+                expectedStream.length, UPLOAD_CHUNK_SIZE, "{}");
+    }
+
+    private byte[] readUploadedFile() throws IOException {
+        File[] files = serverDir.listFiles((dir, name) -> name.startsWith("mock_upload_") && !name.endsWith(".part"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return Files.readAllBytes(files[0].toPath());
+    }
+
+    private static ResumableUploader.Listener recordingListener(long[] lastAcknowledged) {
+        return new ResumableUploader.Listener() {
+            @Override
+            public void onAcknowledged(long offset) {
+                lastAcknowledged[0] = offset;
+            }
+
+            @Override
+            public void onRetrying(long offset, int attempt, IOException cause) {
+            }
+        };
+    }
+
+    private File writeContainerSegment(String name, byte[] plaintext) throws Exception {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ChunkedGcmContainer.Writer writer = new ChunkedGcmContainer.Writer(out, dek, 4096);
+            writer.write(plaintext, 0, plaintext.length);
+            writer.finish();
+        }
+        return file;
+    }
+
+    // Pre-container layout: IV followed by a single GCM stream
+    private File writeLegacySegment(String name, byte[] plaintext) throws Exception {
+        byte[] iv = randomBytes(12);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, dek, new GCMParameterSpec(128, iv));
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(iv);
+            out.write(cipher.doFinal(plaintext));
+        }
+        return file;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Passes requests through until {@code chunksBeforeFailure} chunks were accepted, then
+     * every chunk fails as if the network went away.
+     */
+    private static final class FailAfterChunks implements ChunkedUploadTransport {
+        private final ChunkedUploadTransport delegate;
+        private int remainingChunks;
+
+        FailAfterChunks(ChunkedUploadTransport delegate, int chunksBeforeFailure) {
+            this.delegate = delegate;
+            this.remainingChunks = chunksBeforeFailure;
+        }
+
+        @Override
+        public ChunkedUploadResponse startChunkedUpload(ChunkedUploadInitRequest request) throws IOException {
+            return delegate.startChunkedUpload(request);
+        }
+
+        @Override
+        public ChunkedUploadResponse getChunkedUploadStatus(String uploadId) throws IOException {
+            return delegate.getChunkedUploadStatus(uploadId);
+        }
+
+        @Override
+        public ChunkedUploadResponse uploadChunk(String uploadId, long offset, byte[] data, int length, String checksum) throws IOException {
+            if (remainingChunks == 0) {
+                throw new SocketException("Network unreachable");
+            }
+            remainingChunks--;
+            return delegate.uploadChunk(uploadId, offset, data, length, checksum);
+        }
+
+        @Override
+        public SessionSubmissionResponse completeChunkedUpload(String uploadId) throws IOException {
+            return delegate.completeChunkedUpload(uploadId);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.therapyai.data.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okio.Timeout;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Debouncing, cancellation, deduplication and recent results of {@link SearchEngine}, on a
+ * fake main thread and clock.
+ */
+public class SearchEngineTest {
+
+    private static final long DEBOUNCE_MS = 300;
+
+    private ManualScheduler scheduler;
+    private final List<SentSearch> requests = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private SearchEngine<String> engine;
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        engine = newEngine(null);
+    }
+
+    @Test
+    public void testTypingSendsOneRequestAfterThePause() {
+        engine.search("j");
+        scheduler.advance(100);
+        engine.search("jo");
+        scheduler.advance(100);
+        engine.search("joh");
+        scheduler.advance(DEBOUNCE_MS - 1);
+        assertTrue(requests.isEmpty());
+
+        scheduler.advance(1);
+        assertEquals(1, requests.size());
+        assertEquals("joh", requests.get(0).query);
+    }
+
+    @Test
+    public void testNewQueryCancelsTheOldOne() {
+        engine.searchNow("jo", false);
+        engine.searchNow("an", false);
+        assertTrue(requests.get(0).call.isCanceled());
+
+        requests.get(0).respond("John");
+        requests.get(1).respond("Anna");
+        scheduler.runPending();
+        assertEquals(Collections.singletonList("results an [Anna]"), events);
+    }
+
+    @Test
+    public void testSupersededResultsAreNotDeliveredOutOfOrder() {
+        engine.searchNow("jo", false);
+        engine.searchNow("an", false);
+        requests.get(1).respond("Anna");
+        scheduler.runPending();
+        requests.get(0).respond("John"); // A cancelled call that answered anyway
+        scheduler.runPending();
+        assertEquals(Collections.singletonList("results an [Anna]"), events);
+    }
+
+    @Test
+    public void testSameQueryInFlightIsNotSentTwice() {
+        engine.searchNow("jo", false);
+        engine.search(" JO ");
+        scheduler.advance(DEBOUNCE_MS);
+        assertEquals(1, requests.size());
+
+        requests.get(0).respond("John");
+        scheduler.runPending();
+        assertEquals(Collections.singletonList("results jo [John]"), events);
+    }
+
+    @Test
+    public void testRecentResultsAreServedUntilTheyExpire() {
+        engine.searchNow("jo", false);
+        requests.get(0).respond("John");
+        scheduler.runPending();
+
+        engine.searchNow("jo", false);
+        assertEquals(1, requests.size());
+        assertEquals(Arrays.asList("results jo [John]", "results jo [John]"), events);
+
+        engine.searchNow("jo", true);
+        assertEquals("Refresh skips recent results", 2, requests.size());
+        requests.get(1).respond("John");
+        scheduler.runPending();
+
+        scheduler.advance(60_000);
+        engine.searchNow("jo", false);
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void testLocalResultsArriveBeforeTheRequest() {
+        engine = newEngine(query -> Collections.singletonList("local " + query));
+        engine.search("jo");
+        assertEquals(Collections.singletonList("local jo [local jo]"), events);
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void testCancelDropsPendingAndInFlight() {
+        engine.searchNow("jo", false);
+        engine.search("an");
+        engine.cancel();
+        assertTrue(requests.get(0).call.isCanceled());
+
+        scheduler.advance(DEBOUNCE_MS);
+        requests.get(0).respond("John");
+        scheduler.runPending();
+        assertEquals(1, requests.size());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testErrorsReachOnlyTheCurrentQuery() {
+        engine.searchNow("jo", false);
+        requests.get(0).callback.onError("offline");
+        scheduler.runPending();
+        assertEquals(Collections.singletonList("error jo offline"), events);
+    }
+
+    private SearchEngine<String> newEngine(SearchEngine.LocalSource<String> localSource) {
+        return new SearchEngine<>((query, callback) -> {
+            SentSearch request = new SentSearch(query, callback);
+            requests.add(request);
+            return request.call;
+        }, localSource, DEBOUNCE_MS, new SearchEngine.Listener<String>() {
+            @Override
+            public void onLocalResults(String query, List<String> results) {
+                events.add("local " + query + " " + results);
+            }
+
+            @Override
+            public void onResults(String query, List<String> results) {
+                events.add("results " + query + " " + results);
+            }
+
+            @Override
+            public void onError(String query, String error) {
+                events.add("error " + query + " " + error);
+            }
+        }, scheduler);
+    }
+
+    private static final class SentSearch {
+        final String query;
+        final SearchEngine.SearchCallback<String> callback;
+        final FakeCall call = new FakeCall();
+
+        SentSearch(String query, SearchEngine.SearchCallback<String> callback) {
+            this.query = query;
+            this.callback = callback;
+        }
+
+        void respond(String... results) {
+            callback.onResults(Arrays.asList(results));
+        }
+    }
+
+    /**
+     * Only records cancellation; the engine never executes the calls it is given.
+     */
+    private static final class FakeCall implements Call<Void> {
+        private boolean canceled;
+
+        @Override public void cancel() { canceled = true; }
+        @Override public boolean isCanceled() { return canceled; }
+        @Override public Response<Void> execute() throws IOException { throw new UnsupportedOperationException(); }
+        @Override public void enqueue(Callback<Void> callback) { throw new UnsupportedOperationException(); }
+        @Override public boolean isExecuted() { return true; }
+        @Override public Call<Void> clone() { throw new UnsupportedOperationException(); }
+        @Override public okhttp3.Request request() { throw new UnsupportedOperationException(); }
+        @Override public Timeout timeout() { return Timeout.NONE; }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.therapyai.data.repository;
+
+import com.example.therapyai.util.AudioFormatUtil;
+import com.example.therapyai.util.ChunkedGcmContainer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Reads the upload stream (WAV header + decrypted container and legacy segments) sequentially and
+ * with seeks into the header, into the middle of a chunk, across segment boundaries and backwards.
+ */
+public class SessionAudioSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(5);
+    private SecretKey dek;
+    private List<File> segmentFiles;
+    private long[] segmentLengths;
+    private byte[] header;
+    private byte[] expected;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        dek = new SecretKeySpec(keyBytes, "AES");
+
+        byte[][] plaintexts = {randomBytes(10_000), randomBytes(5_555), randomBytes(8_192), randomBytes(3_000)};
+        segmentFiles = new ArrayList<>();
+        segmentFiles.add(writeContainerSegment(plaintexts[0]));
+        segmentFiles.add(writeLegacySegment(plaintexts[1]));
+        segmentFiles.add(writeContainerSegment(plaintexts[2]));
+        segmentFiles.add(writeLegacySegment(plaintexts[3]));
+
+        segmentLengths = new long[plaintexts.length];
+        int pcmSize = 0;
+        for (int i = 0; i < plaintexts.length; i++) {
+            segmentLengths[i] = plaintexts[i].length;
+            pcmSize += plaintexts[i].length;
+        }
+        header = AudioFormatUtil.generateWavHeader(pcmSize, AudioFormatUtil.CaptureProfile.SPEECH_16K);
+        int total = header.length + pcmSize;
+        expected = new byte[total];
+        System.arraycopy(header, 0, expected, 0, header.length);
+        int position = header.length;
+        for (byte[] plaintext : plaintexts) {
+            System.arraycopy(plaintext, 0, expected, position, plaintext.length);
+            position += plaintext.length;
+        }
+    }
+
+    @Test
+    public void testSequentialReadsReturnWholeStream() throws Exception {
+        byte[] actual = new byte[expected.length];
+        try (SessionAudioSource source = newSource()) {
+            int offset = 0;
+            while (offset < expected.length) {
+                int length = Math.min(3_001, expected.length - offset);
+                byte[] chunk = new byte[length];
+                source.readFully(offset, chunk, length);
+                System.arraycopy(chunk, 0, actual, offset, length);
+                offset += length;
+            }
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testSeeksLandOnTheRightBytes() throws Exception {
+        long containerStart = header.length;
+        long legacyStart = containerStart + segmentLengths[0];
+        long secondContainerStart = legacyStart + segmentLengths[1];
+        long[] offsets = {
+                10,                                  // Inside the header
+                header.length - 5,                   // Header into the first segment
+                containerStart + 4_500,              // Middle of a container chunk
+                legacyStart - 100,                   // Across the container/legacy boundary
+                legacyStart + 2_000,                 // Inside a legacy segment
+                secondContainerStart + 4_096,        // Exactly on a container chunk boundary
+                expected.length - 50,                // Tail of the last segment
+                20,                                  // Backwards, into the header again
+        };
+        try (SessionAudioSource source = newSource()) {
+            for (long offset : offsets) {
+                int length = (int) Math.min(1_500, expected.length - offset);
+                byte[] chunk = new byte[length];
+                source.readFully(offset, chunk, length);
+                assertArrayEquals("offset " + offset,
+                        Arrays.copyOfRange(expected, (int) offset, (int) offset + length), chunk);
+            }
+        }
+    }
+
+    @Test
+    public void testFlacSessionsHaveNoHeader() throws Exception {
+        byte[] actual = new byte[expected.length - header.length];
+        try (SessionAudioSource source = new SessionAudioSource(segmentFiles, segmentLengths, dek,
+                AudioFormatUtil.AudioEncoding.FLAC, AudioFormatUtil.CaptureProfile.SPEECH_16K)) {
+            source.readFully(0, actual, actual.length);
+        }
+        assertArrayEquals(Arrays.copyOfRange(expected, header.length, expected.length), actual);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSeekPastEndFails() throws Exception {
+        try (SessionAudioSource source = newSource()) {
+            source.readFully(expected.length + 10, new byte[1], 1);
+        }
+    }
+
+    private SessionAudioSource newSource() {
+        return new SessionAudioSource(segmentFiles, segmentLengths, dek,
+                AudioFormatUtil.AudioEncoding.PCM_WAV, AudioFormatUtil.CaptureProfile.SPEECH_16K);
+    }
+
+    private File writeContainerSegment(byte[] plaintext) throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ChunkedGcmContainer.Writer writer = new ChunkedGcmContainer.Writer(out, dek, 4096);
+            writer.write(plaintext, 0, plaintext.length);
+            writer.finish();
+        }
+        return file;
+    }
+
+    // Pre-container layout: IV followed by a single GCM stream
+    private File writeLegacySegment(byte[] plaintext) throws Exception {
+        byte[] iv = randomBytes(12);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, dek, new GCMParameterSpec(128, iv));
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(iv);
+            out.write(cipher.doFinal(plaintext));
+        }
+        return file;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
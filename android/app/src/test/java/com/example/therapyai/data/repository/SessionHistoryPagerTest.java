@@ -0,0 +1,161 @@
+package com.example.therapyai.data.repository;
+
+import com.example.therapyai.data.local.models.SessionSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cursor paging, prefetch and retry of {@link SessionHistoryPager}, on a fake main thread and
+ * clock.
+ */
+public class SessionHistoryPagerTest {
+
+    private static final int PAGE = SessionHistoryPager.PAGE_SIZE;
+
+    private ManualScheduler scheduler;
+    private final List<PageRequest> requests = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private SessionHistoryPager pager;
+    private int nextSessionId;
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        pager = new SessionHistoryPager((cursor, pageSize, callback) -> {
+            assertEquals(PAGE, pageSize);
+            requests.add(new PageRequest(cursor, callback));
+        }, new SessionHistoryPager.Listener() {
+            @Override
+            public void onFirstPage(List<SessionSummary> sessions, boolean hasMore) {
+                events.add("first " + sessions.size() + (hasMore ? " more" : " end"));
+            }
+
+            @Override
+            public void onNextPage(List<SessionSummary> sessions, boolean hasMore) {
+                events.add("next " + sessions.size() + (hasMore ? " more" : " end"));
+            }
+
+            @Override
+            public void onError(String error, boolean firstPage) {
+                events.add((firstPage ? "first error " : "next error ") + error);
+            }
+        }, scheduler);
+    }
+
+    @Test
+    public void testPagesFollowTheCursor() {
+        pager.loadFirstPage();
+        assertNull(last().cursor);
+        deliver(last(), PAGE, "c1");
+
+        pager.onLastVisiblePosition(PAGE - 1);
+        assertEquals("c1", last().cursor);
+        deliver(last(), 7, null);
+
+        assertFalse(pager.hasMore());
+        pager.onLastVisiblePosition(PAGE + 6);
+        assertEquals(2, requests.size());
+        assertEquals(Arrays.asList("first 20 more", "next 7 end"), events);
+    }
+
+    @Test
+    public void testNextPageIsPrefetchedNearTheEnd() {
+        pager.loadFirstPage();
+        deliver(last(), PAGE, "c1");
+
+        pager.onLastVisiblePosition(PAGE - 2 - SessionHistoryPager.PREFETCH_DISTANCE);
+        assertEquals(1, requests.size());
+        pager.onLastVisiblePosition(PAGE - 1 - SessionHistoryPager.PREFETCH_DISTANCE);
+        assertEquals(2, requests.size());
+
+        pager.onLastVisiblePosition(PAGE - 1);
+        assertEquals("One request at a time", 2, requests.size());
+    }
+
+    @Test
+    public void testFailedPageIsRetriedAfterTheDelay() {
+        pager.loadFirstPage();
+        deliver(last(), PAGE, "c1");
+        pager.onLastVisiblePosition(PAGE - 1);
+        last().callback.onError("offline");
+        scheduler.runPending();
+        assertEquals("next error offline", events.get(1));
+
+        pager.onLastVisiblePosition(PAGE - 1);
+        assertEquals(2, requests.size());
+        scheduler.advance(5_000);
+        pager.onLastVisiblePosition(PAGE - 1);
+        assertEquals(3, requests.size());
+        assertEquals("c1", last().cursor);
+    }
+
+    @Test
+    public void testSecondFirstPageDropsEarlierNextPage() {
+        pager.loadFirstPage();
+        PageRequest first = last();
+        deliver(first, PAGE, "c1"); // Cached copy
+        pager.onLastVisiblePosition(PAGE - 1);
+        PageRequest staleNext = last();
+
+        deliver(first, PAGE, "c1b"); // The server's copy, which changed
+        deliver(staleNext, PAGE, "c2");
+        assertEquals(Arrays.asList("first 20 more", "first 20 more"), events);
+
+        pager.onLastVisiblePosition(PAGE - 1);
+        assertEquals("c1b", last().cursor);
+    }
+
+    @Test
+    public void testEmptyPageWithMoreLoadsOn() {
+        pager.loadFirstPage();
+        deliver(last(), 0, "c1");
+        assertEquals(2, requests.size());
+        assertEquals("c1", last().cursor);
+    }
+
+    @Test
+    public void testReloadAndCancelDropPendingPages() {
+        pager.loadFirstPage();
+        PageRequest abandoned = last();
+        pager.loadFirstPage();
+        deliver(abandoned, PAGE, "old");
+        assertTrue(events.isEmpty());
+
+        pager.cancel();
+        deliver(last(), PAGE, "c1");
+        assertTrue(events.isEmpty());
+        assertFalse(pager.hasMore());
+    }
+
+    private PageRequest last() {
+        return requests.get(requests.size() - 1);
+    }
+
+    private void deliver(PageRequest request, int count, String nextCursor) {
+        List<SessionSummary> sessions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = "session_" + nextSessionId++;
+            sessions.add(new SessionSummary(id, "patient_1", "Patient", "therapist_1", "Therapist",
+                    "Session " + id, "2024-01-01", "", 0, 0, 0));
+        }
+        request.callback.onPageLoaded(Collections.unmodifiableList(sessions), nextCursor);
+        scheduler.runPending();
+    }
+
+    private static final class PageRequest {
+        final String cursor;
+        final SearchRepository.SessionPageCallback callback;
+
+        PageRequest(String cursor, SearchRepository.SessionPageCallback callback) {
+            this.cursor = cursor;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.AesGcmContext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.report;
+
+/**
+ * Benchmark for AES/GCM seal+open: the AESUtil code before ciphers were cached
+ * (Cipher.getInstance and fresh IV/output arrays per call), the current
+ * AESUtil.encryptAesGcm/decryptAesGcm, and AesGcmContext over caller-owned heap and direct
+ * buffers.
+ *
+ * Record sizes follow the callers: a token in EphemeralPrefs, one AudioRecord read and one
+ * ChunkedGcmContainer chunk.
+ */
+public class AesGcmContextBenchmarkTest {
+    private static final String TAG = "AesGcmContextBenchmark";
+
+    private static final int OPS_PER_RUN = 2000;
+
+    private SecretKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        key = keyGen.generateKey();
+    }
+
+    @Test
+    public void benchmarkPrefsSizedRecords() throws Exception {
+        runComparison(256);
+    }
+
+    @Test
+    public void benchmarkCaptureSizedRecords() throws Exception {
+        runComparison(4 * 1024);
+    }
+
+    @Test
+    public void benchmarkContainerSizedRecords() throws Exception {
+        runComparison(64 * 1024);
+    }
+
+    private void runComparison(int recordSize) throws Exception {
+        byte[] plain = new byte[recordSize];
+        new Random(recordSize).nextBytes(plain);
+        AesGcmContext context = new AesGcmContext(key);
+        byte[] sealed = new byte[AesGcmContext.sealedLength(recordSize)];
+        byte[] opened = new byte[recordSize];
+        ByteBuffer directPlain = ByteBuffer.allocateDirect(recordSize);
+        ByteBuffer directSealed = ByteBuffer.allocateDirect(AesGcmContext.sealedLength(recordSize));
+        ByteBuffer directOpened = ByteBuffer.allocateDirect(recordSize);
+        directPlain.put(plain).flip();
+
+        BenchmarkHarness.Measurement legacy = measure(() -> {
+            byte[] last = null;
+            for (int i = 0; i < OPS_PER_RUN; i++) {
+                last = legacyDecrypt(legacyEncrypt(plain));
+            }
+            return last;
+        });
+        BenchmarkHarness.Measurement cached = measure(() -> {
+            byte[] last = null;
+            for (int i = 0; i < OPS_PER_RUN; i++) {
+                last = AESUtil.decryptAesGcm(AESUtil.encryptAesGcm(plain, key), key);
+            }
+            return last;
+        });
+        BenchmarkHarness.Measurement pooled = measure(() -> {
+            for (int i = 0; i < OPS_PER_RUN; i++) {
+                int n = context.seal(plain, 0, plain.length, sealed, 0);
+                context.open(sealed, 0, n, opened, 0);
+            }
+            return opened;
+        });
+        BenchmarkHarness.Measurement direct = measure(() -> {
+            for (int i = 0; i < OPS_PER_RUN; i++) {
+                directPlain.rewind();
+                directSealed.clear();
+                context.seal(directPlain, directSealed);
+                directSealed.flip();
+                directOpened.clear();
+                context.open(directSealed, directOpened);
+            }
+            return directOpened;
+        });
+
+        report(TAG, "%,d B seal+open: legacy %s, cached cipher %s, context arrays %s, context direct %s",
+                recordSize, perOp(legacy), perOp(cached), perOp(pooled), perOp(direct));
+    }
+
+    private static String perOp(BenchmarkHarness.Measurement run) {
+        String allocated = run.allocatedBytes < 0 ? "n/a" : String.format(Locale.US, "%,d B/op", run.allocatedBytes / OPS_PER_RUN);
+        return String.format(Locale.US, "%,d ns/op (%s)", run.medianNanos / OPS_PER_RUN, allocated);
+    }
+
+    /**
+     * The AESUtil.encryptAesGcm body before ciphers were cached.
+     */
+    private byte[] legacyEncrypt(byte[] plainData) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] iv = cipher.getIV();
+        byte[] cipherText = cipher.doFinal(plainData);
+        byte[] combined = new byte[iv.length + cipherText.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(cipherText, 0, combined, iv.length, cipherText.length);
+        return combined;
+    }
+
+    /**
+     * The AESUtil.decryptAesGcm body before ciphers were cached.
+     */
+    private byte[] legacyDecrypt(byte[] combined) throws Exception {
+        byte[] iv = Arrays.copyOfRange(combined, 0, AESUtil.GCM_IV_LENGTH);
+        byte[] cipherText = Arrays.copyOfRange(combined, AESUtil.GCM_IV_LENGTH, combined.length);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, iv));
+        return cipher.doFinal(cipherText);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.util.AmplitudeMeter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.report;
+
+/**
+ * Benchmark for the level metering done on the recording thread
+ * (RecordingService.runProcessingLoop).
+ *
+ * Compares the previous per-buffer peak scan against AmplitudeMeter.process, which also keeps
+ * the windowed RMS and history, over ten minutes of synthetic 16 kHz mono PCM in 20 ms buffers.
+ */
+public class AmplitudeMeterBenchmarkTest {
+    private static final String TAG = "AmplitudeMeterBenchmark";
+
+    private static final int SAMPLE_RATE = 16_000;
+    private static final int BUFFER_BYTES = SAMPLE_RATE / 50 * 2; // 20 ms of mono 16-bit
+
+    @Test
+    public void benchmarkTenMinutesOfAudio() throws Exception {
+        byte[] pcm = noise(SAMPLE_RATE * 2 * 600, new Random(42));
+        int buffers = pcm.length / BUFFER_BYTES;
+
+        BenchmarkHarness.Measurement legacy = measure(() -> {
+            int sink = 0;
+            for (int b = 0; b < buffers; b++) {
+                sink += legacyPeak(pcm, b * BUFFER_BYTES, BUFFER_BYTES);
+            }
+            return sink;
+        });
+        BenchmarkHarness.Measurement meter = measure(() -> {
+            AmplitudeMeter amplitudeMeter = new AmplitudeMeter(SAMPLE_RATE, 1, 100, 64);
+            for (int b = 0; b < buffers; b++) {
+                amplitudeMeter.process(pcm, b * BUFFER_BYTES, BUFFER_BYTES);
+            }
+            return amplitudeMeter.getLatestPeak();
+        });
+
+        report(TAG, "%,d buffers: peak scan %.2f us/buffer, meter %.2f us/buffer",
+                buffers, legacy.medianNanos / 1e3 / buffers, meter.medianNanos / 1e3 / buffers);
+    }
+
+    private static byte[] noise(int bytes, Random random) {
+        byte[] pcm = new byte[bytes];
+        for (int i = 0; i < bytes / 2; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int) (random.nextGaussian() * 4000)));
+            pcm[i * 2] = (byte) sample;
+            pcm[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    // The peak RecordingService.calculateAmplitude computed for each buffer before AmplitudeMeter
+    private static int legacyPeak(byte[] buffer, int offset, int bytesRead) {
+        int maxAmplitude = 0;
+        for (int i = offset; i < offset + bytesRead - 1; i += 2) {
+            short sample = (short) ((buffer[i + 1] << 8) | (buffer[i] & 0xFF));
+            int amplitude = Math.abs(sample);
+            if (amplitude > maxAmplitude) {
+                maxAmplitude = amplitude;
+            }
+        }
+        return maxAmplitude;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.therapyai.test.benchmark;
+
+import android.util.Log;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Timing for the benchmarks in this package. Each one compares the code a change replaced with
+ * the code that replaced it; correctness of the new code is covered by the unit tests next to
+ * it, so the benchmarks only measure and report.
+ *
+ * Results are logged under the benchmark's tag. They are not asserted, since they depend on the
+ * host; phones are several times slower than a desktop JVM.
+ */
+final class BenchmarkHarness {
+    static final int DEFAULT_WARMUP_RUNS = 3;
+    static final int DEFAULT_MEASURED_RUNS = 5;
+
+    /**
+     * The code under measurement. Its result is kept so the JIT cannot drop the work.
+     */
+    interface Work {
+        Object run() throws Exception;
+    }
+
+    static final class Measurement {
+        final long medianNanos;
+        final long allocatedBytes; // Per run on the measuring thread, -1 if the JVM cannot tell
+
+        Measurement(long medianNanos, long allocatedBytes) {
+            this.medianNanos = medianNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double medianMillis() {
+            return medianNanos / 1e6;
+        }
+
+        String allocated() {
+            return allocatedBytes < 0 ? "n/a" : String.format(Locale.US, "%.1f MiB", allocatedBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private static volatile Object sink;
+
+    private BenchmarkHarness() {
+    }
+
+    static Measurement measure(Work work) throws Exception {
+        return measure(DEFAULT_WARMUP_RUNS, DEFAULT_MEASURED_RUNS, work);
+    }
+
+    /**
+     * Runs {@code work} {@code warmupRuns} times unmeasured, then {@code measuredRuns} times,
+     * and returns the median time.
+     */
+    static Measurement measure(int warmupRuns, int measuredRuns, Work work) throws Exception {
+        for (int i = 0; i < warmupRuns; i++) {
+            sink = work.run();
+        }
+        long[] runs = new long[measuredRuns];
+        long allocatedBefore = threadAllocatedBytes();
+        for (int i = 0; i < measuredRuns; i++) {
+            long start = System.nanoTime();
+            sink = work.run();
+            runs[i] = System.nanoTime() - start;
+        }
+        long allocatedAfter = threadAllocatedBytes();
+        Arrays.sort(runs);
+        long allocated = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / measuredRuns;
+        return new Measurement(runs[measuredRuns / 2], allocated);
+    }
+
+    static void report(String tag, String format, Object... args) {
+        Log.i(tag, String.format(Locale.US, format, args));
+    }
+
+    private static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
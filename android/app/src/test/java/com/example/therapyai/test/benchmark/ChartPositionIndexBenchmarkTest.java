@@ -0,0 +1,109 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+import com.example.therapyai.util.ChartPositionIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.report;
+
+/**
+ * Benchmark for the transcript-to-chart lookup done on each scroll frame
+ * (SessionTranscriptFragment.syncChartToRecyclerViewScroll).
+ *
+ * Compares the previous scan over a boxed list of patient positions against
+ * ChartPositionIndex's binary searches, for every visible window of a 1k and a 10k line
+ * transcript.
+ */
+public class ChartPositionIndexBenchmarkTest {
+    private static final String TAG = "ChartPositionIndexBenchmark";
+
+    private static final int VISIBLE_ROWS = 12;
+
+    @Test
+    public void benchmarkOneThousandLines() throws Exception {
+        runComparison(1_000);
+    }
+
+    @Test
+    public void benchmarkTenThousandLines() throws Exception {
+        runComparison(10_000);
+    }
+
+    private void runComparison(int lineCount) throws Exception {
+        Random random = new Random(lineCount);
+        List<FinalTranscriptEntry> entries = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            String speaker = random.nextInt(3) == 0 ? "Therapist" : "Patient";
+            SentimentScore score = "Patient".equals(speaker) && random.nextInt(20) != 0
+                    ? new SentimentScore(0.3f, 0.5f, 0.2f) : null;
+            entries.add(new FinalTranscriptEntry(speaker, "text", "00:00:01", score));
+        }
+        // Long therapist-only stretch, so some windows show no patient rows
+        for (int i = lineCount / 2; i < lineCount / 2 + VISIBLE_ROWS * 3; i++) {
+            entries.set(i, new FinalTranscriptEntry("Therapist", "text", "00:00:01", null));
+        }
+
+        List<Integer> boxed = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            FinalTranscriptEntry entry = entries.get(i);
+            if ("Patient".equalsIgnoreCase(entry.getSpeaker()) && entry.getSentimentScore() != null) boxed.add(i);
+        }
+        ChartPositionIndex index = ChartPositionIndex.ofScoredPatientSentences(entries);
+
+        BenchmarkHarness.Measurement legacy = measure(() -> {
+            int sink = 0;
+            for (int first = 0; first + VISIBLE_ROWS <= lineCount; first++) {
+                sink += legacyNearest(boxed, first, first + VISIBLE_ROWS - 1);
+            }
+            return sink;
+        });
+        BenchmarkHarness.Measurement indexed = measure(() -> {
+            int sink = 0;
+            for (int first = 0; first + VISIBLE_ROWS <= lineCount; first++) {
+                sink += index.nearestX(first, first + VISIBLE_ROWS - 1);
+            }
+            return sink;
+        });
+
+        int lookups = lineCount - VISIBLE_ROWS + 1;
+        report(TAG, "%,d lines: scan %.3f us/frame, binary search %.3f us/frame (%.0fx)",
+                lineCount, legacy.medianNanos / 1e3 / lookups, indexed.medianNanos / 1e3 / lookups,
+                (double) legacy.medianNanos / Math.max(1, indexed.medianNanos));
+    }
+
+    // The lookup syncChartToRecyclerViewScroll did before ChartPositionIndex
+    private static int legacyNearest(List<Integer> patientEntryOriginalIndices, int first, int last) {
+        int targetChartIndex = -1;
+        int centerOriginalIndex = first + (last - first) / 2;
+        int minDiff = Integer.MAX_VALUE;
+        for (int i = 0; i < patientEntryOriginalIndices.size(); i++) {
+            int originalIdx = patientEntryOriginalIndices.get(i);
+            if (originalIdx >= first && originalIdx <= last) {
+                int diff = Math.abs(originalIdx - centerOriginalIndex);
+                if (diff < minDiff) {
+                    minDiff = diff;
+                    targetChartIndex = i;
+                }
+            }
+        }
+        if (targetChartIndex == -1) {
+            for (int i = 0; i < patientEntryOriginalIndices.size(); i++) {
+                if (patientEntryOriginalIndices.get(i) >= centerOriginalIndex) {
+                    targetChartIndex = i;
+                    break;
+                }
+            }
+            if (targetChartIndex == -1 && !patientEntryOriginalIndices.isEmpty()) {
+                targetChartIndex = patientEntryOriginalIndices.size() - 1;
+            }
+        }
+        return targetChartIndex;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.data.local.models.FinalSessionDetail;
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+import com.example.therapyai.data.local.models.TimedNote;
+import com.example.therapyai.data.local.models.TranscriptDetail;
+import com.example.therapyai.data.local.models.TranscriptItem;
+import com.example.therapyai.data.remote.ApiServiceProvider;
+import com.example.therapyai.data.remote.models.FinalSessionDetailResponse;
+import com.example.therapyai.data.remote.models.TranscriptDetailResponse;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+
+/**
+ * Benchmark for parsing session-detail and transcript bodies.
+ *
+ * Compares the previous path (reflective Gson into the response models, then a stream mapping
+ * into domain models) against the streaming type adapters behind ApiServiceProvider.getGson(),
+ * on synthetic transcripts of 1k, 10k and 50k sentences, reporting time and, where the JVM
+ * supports it, allocation per parse.
+ */
+public class DetailParsingBenchmarkTest {
+    private static final String TAG = "DetailParsingBenchmark";
+
+    private final Gson reflectiveGson = new Gson();
+    private final Gson apiGson = ApiServiceProvider.getGson();
+
+    @Test
+    public void benchmarkSessionDetailOneThousandSentences() throws Exception {
+        runSessionDetailComparison(1_000);
+    }
+
+    @Test
+    public void benchmarkSessionDetailTenThousandSentences() throws Exception {
+        runSessionDetailComparison(10_000);
+    }
+
+    @Test
+    public void benchmarkSessionDetailFiftyThousandSentences() throws Exception {
+        runSessionDetailComparison(50_000);
+    }
+
+    @Test
+    public void benchmarkTranscriptDetailTenThousandSentences() throws Exception {
+        String json = transcriptDetailJson(10_000);
+        BenchmarkHarness.Measurement legacy = measure(() -> legacyTranscriptDetail(json));
+        BenchmarkHarness.Measurement streamed = measure(() -> apiGson.fromJson(new StringReader(json), TranscriptDetail.class));
+        report("transcript detail", 10_000, json.length(), legacy, streamed);
+    }
+
+    private void runSessionDetailComparison(int sentences) throws Exception {
+        String json = sessionDetailJson(sentences);
+        BenchmarkHarness.Measurement legacy = measure(() -> legacySessionDetail(json));
+        BenchmarkHarness.Measurement streamed = measure(() -> apiGson.fromJson(new StringReader(json), FinalSessionDetail.class));
+        report("session detail", sentences, json.length(), legacy, streamed);
+    }
+
+    private static void report(String kind, int sentences, int jsonChars,
+                               BenchmarkHarness.Measurement legacy, BenchmarkHarness.Measurement streamed) {
+        BenchmarkHarness.report(TAG, "%s, %d sentences (%d KiB): two-pass %.1f ms / %s, streaming %.1f ms / %s",
+                kind, sentences, jsonChars / 1024,
+                legacy.medianMillis(), legacy.allocated(), streamed.medianMillis(), streamed.allocated());
+    }
+
+    // --- The path SearchRepository and ProcessedDataRepository used before the type adapters ---
+
+    private FinalSessionDetail legacySessionDetail(String json) {
+        FinalSessionDetailResponse response = reflectiveGson.fromJson(new StringReader(json), FinalSessionDetailResponse.class);
+
+        List<String> generalNotes = new ArrayList<>();
+        List<TimedNote> timedNotes = new ArrayList<>();
+        String summary = response.getSummary() != null ? response.getSummary() : "";
+
+        if (response.getGeneral_notes() != null) {
+            generalNotes.addAll(response.getGeneral_notes());
+        }
+        if (response.getTimedNotes() != null) {
+            timedNotes = response.getTimedNotes().stream()
+                    .map(tn -> new TimedNote(tn.getTime(), tn.getNote()))
+                    .collect(Collectors.toList());
+        }
+
+        List<FinalTranscriptEntry> transcriptEntries = new ArrayList<>();
+        if (response.getSentiment_scores() != null) {
+            transcriptEntries = response.getSentiment_scores().stream()
+                    .map(apiEntry -> {
+                        SentimentScore score = null;
+                        if ("Patient".equalsIgnoreCase(apiEntry.getSpeaker())) {
+                            score = new SentimentScore(
+                                    (float) apiEntry.getPositive(),
+                                    (float) apiEntry.getNeutral(),
+                                    (float) apiEntry.getNegative()
+                            );
+                        }
+                        return new FinalTranscriptEntry(apiEntry.getSpeaker(), apiEntry.getText(), apiEntry.getTimestamp(), score);
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        return new FinalSessionDetail(response.getSessionId(), null, response.getTherapist_name(),
+                response.getTherapist_email(), response.getPatient_id(), response.getPatient_name(),
+                response.getPatient_email(), response.getSession_date(), generalNotes, timedNotes, summary,
+                response.getPositive(), response.getNeutral(), response.getNegative(), transcriptEntries);
+    }
+
+    private TranscriptDetail legacyTranscriptDetail(String json) {
+        TranscriptDetailResponse response = reflectiveGson.fromJson(new StringReader(json), TranscriptDetailResponse.class);
+        List<TranscriptItem> items = new ArrayList<>();
+        if (response.getTranscript() != null) {
+            items = response.getTranscript().stream()
+                    .map(s -> new TranscriptItem(s.getSpeaker(), s.getText(), s.getTimestamp()))
+                    .collect(Collectors.toList());
+        }
+        return new TranscriptDetail(response.getPatientName(), response.getSessionDate(), response.getSummary(), items);
+    }
+
+    // --- Synthetic payloads ---
+
+    private static String sessionDetailJson(int sentences) throws IOException {
+        Random random = new Random(7);
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter out = new JsonWriter(buffer)) {
+            out.beginObject();
+            out.name("sessionId").value("session_bench");
+            out.name("therapist_name").value("Dr. Bench");
+            out.name("therapist_email").value("bench@example.com");
+            out.name("patient_id").value("patient_bench");
+            out.name("patient_name").value("Pat Bench");
+            out.name("patient_email").value("pat@example.com");
+            out.name("patient_date_of_birth").value("1990-01-01");
+            out.name("session_date").value("2024-05-01");
+            out.name("summary").value("Synthetic session used to benchmark detail parsing.");
+            out.name("positive").value(0.4);
+            out.name("neutral").value(0.4);
+            out.name("negative").value(0.2);
+            out.name("general_notes").beginArray().value("Note one").value("Note two").endArray();
+            out.name("timed_notes").beginArray();
+            for (int i = 0; i < sentences / 100 + 1; i++) {
+                out.beginObject().name("timestamp").value(timestamp(i * 100)).name("content").value("Timed note " + i).endObject();
+            }
+            out.endArray();
+            out.name("sentiment_scores").beginArray();
+            for (int i = 0; i < sentences; i++) {
+                double negative = random.nextDouble() * 0.5;
+                double positive = random.nextDouble() * (1 - negative);
+                out.beginObject();
+                out.name("speaker").value(i % 2 == 0 ? "Therapist" : "Patient");
+                out.name("text").value(sentence(i));
+                out.name("timestamp").value(timestamp(i));
+                out.name("positive").value(positive);
+                out.name("neutral").value(1 - positive - negative);
+                out.name("negative").value(negative);
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+        return buffer.toString();
+    }
+
+    private static String transcriptDetailJson(int sentences) throws IOException {
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter out = new JsonWriter(buffer)) {
+            out.beginObject();
+            out.name("patientName").value("Pat Bench");
+            out.name("sessionDate").value("01-05-2024");
+            out.name("summary").value("Synthetic transcript used to benchmark detail parsing.");
+            out.name("transcript").beginArray();
+            for (int i = 0; i < sentences; i++) {
+                out.beginObject();
+                out.name("speaker").value(i % 2 == 0 ? "Therapist" : "Patient");
+                out.name("text").value(sentence(i));
+                out.name("timestamp").value(timestamp(i));
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+        return buffer.toString();
+    }
+
+    private static String sentence(int i) {
+        return "Sentence " + i + " about how the week went, what felt difficult and what helped a little.";
+    }
+
+    private static String timestamp(int i) {
+        int seconds = i * 3;
+        return String.format("%02d:%02d:%02d.0", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
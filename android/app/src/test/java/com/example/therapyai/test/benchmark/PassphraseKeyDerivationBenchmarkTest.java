@@ -0,0 +1,35 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.util.AESUtil;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.report;
+
+/**
+ * Benchmark for the PBKDF2 step of the patient QR handoff (AESUtil.encrypt/decrypt with a
+ * passphrase), which QrKeyDerivationService runs off the main thread.
+ *
+ * Measures the derivation latency at several iteration counts around the current
+ * AESUtil.PBKDF2_ITERATIONS, as input for tuning the cost.
+ */
+public class PassphraseKeyDerivationBenchmarkTest {
+    private static final String TAG = "PassphraseKeyDerivationBenchmark";
+
+    private static final int[] ITERATION_COUNTS = {10_000, 32_768, AESUtil.PBKDF2_ITERATIONS, 100_000, 210_000};
+    private static final String PASSPHRASE = "374921";
+
+    @Test
+    public void benchmarkDerivationCostByIterations() throws Exception {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        for (int iterations : ITERATION_COUNTS) {
+            BenchmarkHarness.Measurement run = measure(() -> AESUtil.derivePassphraseKey(PASSPHRASE, salt, iterations));
+            report(TAG, "PBKDF2WithHmacSHA256, %,d iterations: %.1f ms%s", iterations, run.medianMillis(),
+                    iterations == AESUtil.PBKDF2_ITERATIONS ? " (current)" : "");
+        }
+    }
+}
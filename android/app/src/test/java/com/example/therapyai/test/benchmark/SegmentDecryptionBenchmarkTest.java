@@ -0,0 +1,188 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.util.AESUtil;
+import com.example.therapyai.util.SegmentDecryptionPipeline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.report;
+
+/**
+ * Benchmark for the upload-time segment decryption (SessionAudioSource).
+ *
+ * Compares the previous one-segment-at-a-time loop against SegmentDecryptionPipeline for
+ * 1, 10 and 100 segments, writing into a sink that simulates a constrained uplink.
+ */
+public class SegmentDecryptionBenchmarkTest {
+    private static final String TAG = "SegmentDecryptionBenchmark";
+
+    private static final int SEGMENT_PLAINTEXT_SIZE = 256 * 1024;
+    private static final long SIMULATED_UPLINK_BYTES_PER_SEC = 8L * 1024 * 1024; // Mobile-class uplink
+
+    private File workDir;
+    private SecretKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        workDir = new File(System.getProperty("java.io.tmpdir"), "segment_bench_" + System.nanoTime());
+        assertTrue(workDir.mkdirs());
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        key = keyGen.generateKey();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Test
+    public void benchmarkOneSegment() throws Exception {
+        runComparison(1);
+    }
+
+    @Test
+    public void benchmarkTenSegments() throws Exception {
+        runComparison(10);
+    }
+
+    @Test
+    public void benchmarkHundredSegments() throws Exception {
+        runComparison(100);
+    }
+
+    private void runComparison(int segmentCount) throws Exception {
+        List<String> paths = writeSegments(segmentCount);
+        long bytes = (long) segmentCount * SEGMENT_PLAINTEXT_SIZE;
+
+        BenchmarkHarness.Measurement sequential = measure(1, 1,
+                () -> runSequential(paths, new PacedSink(SIMULATED_UPLINK_BYTES_PER_SEC)));
+        BenchmarkHarness.Measurement pipelined = measure(1, 1, () -> {
+            try (SegmentDecryptionPipeline pipeline = newPipeline(paths)) {
+                return copy(pipeline.openStream(), new PacedSink(SIMULATED_UPLINK_BYTES_PER_SEC));
+            }
+        });
+
+        report(TAG, "%d segments (%d KiB): sequential %.1f ms (%.1f MiB/s), pipelined %.1f ms (%.1f MiB/s)",
+                segmentCount, bytes / 1024,
+                sequential.medianMillis(), mibPerSec(bytes, sequential.medianNanos),
+                pipelined.medianMillis(), mibPerSec(bytes, pipelined.medianNanos));
+    }
+
+    /**
+     * The loop the upload used before the pipeline: decrypt one segment, then the next.
+     */
+    private long runSequential(List<String> paths, OutputStream out) throws Exception {
+        long total = 0;
+        for (String path : paths) {
+            try (InputStream in = AESUtil.createDecryptingInputStream(new File(path), key, 0)) {
+                total += copy(in, out);
+            }
+        }
+        return total;
+    }
+
+    private SegmentDecryptionPipeline newPipeline(List<String> paths) {
+        return new SegmentDecryptionPipeline(paths.size(),
+                segmentIndex -> AESUtil.createDecryptingInputStream(new File(paths.get(segmentIndex)), key, 0),
+                SegmentDecryptionPipeline.DEFAULT_WORKERS,
+                SegmentDecryptionPipeline.DEFAULT_BUFFERS_PER_WORKER,
+                SegmentDecryptionPipeline.DEFAULT_BUFFER_SIZE);
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+            total += bytesRead;
+        }
+        return total;
+    }
+
+    /**
+     * Writes segments in the RecordingService layout: IV, then GCM ciphertext with the tag at the end.
+     */
+    private List<String> writeSegments(int count) throws Exception {
+        List<String> paths = new ArrayList<>();
+        Random random = new Random(42);
+        SecureRandom secureRandom = new SecureRandom();
+        byte[] pcm = new byte[SEGMENT_PLAINTEXT_SIZE];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(pcm);
+            byte[] iv = new byte[AESUtil.GCM_IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, iv));
+            File segment = new File(workDir, "segment_" + i + ".enc");
+            try (FileOutputStream fos = new FileOutputStream(segment)) {
+                fos.write(iv);
+                fos.write(cipher.doFinal(pcm));
+            }
+            paths.add(segment.getAbsolutePath());
+        }
+        return paths;
+    }
+
+    private static double mibPerSec(long bytes, long nanos) {
+        return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+    }
+
+    /**
+     * Paces writes like a network socket at the given rate.
+     */
+    private static class PacedSink extends OutputStream {
+        private final long bytesPerSec;
+        private long linkBusyUntilNanos = 0;
+
+        PacedSink(long bytesPerSec) {
+            this.bytesPerSec = bytesPerSec;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // An idle link earns no credit: time spent waiting on the producer is lost.
+            long now = System.nanoTime();
+            linkBusyUntilNanos = Math.max(linkBusyUntilNanos, now) + len * 1_000_000_000L / bytesPerSec;
+            long waitNanos = linkBusyUntilNanos - now;
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.therapyai.test.benchmark;
+
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+import com.example.therapyai.data.local.models.TimedNote;
+import com.example.therapyai.util.TranscriptNoteIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.measure;
+import static com.example.therapyai.test.benchmark.BenchmarkHarness.report;
+
+/**
+ * Benchmark for attaching timed notes to transcript sentences (FinalTranscriptAdapter.setData).
+ *
+ * Compares the previous nested loop, which re-parsed every patient timestamp for every note,
+ * against TranscriptNoteIndex's sorted merge on synthetic sessions of 1k to 10k sentences with
+ * one note per ten sentences.
+ */
+public class TranscriptNoteIndexBenchmarkTest {
+    private static final String TAG = "TranscriptNoteIndexBenchmark";
+
+    @Test
+    public void benchmarkOneThousandSentences() throws Exception {
+        runComparison(1_000, 100);
+    }
+
+    @Test
+    public void benchmarkFiveThousandSentences() throws Exception {
+        runComparison(5_000, 500);
+    }
+
+    @Test
+    public void benchmarkTenThousandSentences() throws Exception {
+        runComparison(10_000, 1_000);
+    }
+
+    private void runComparison(int sentenceCount, int noteCount) throws Exception {
+        Random random = new Random(sentenceCount);
+        List<FinalTranscriptEntry> entries = syntheticTranscript(sentenceCount, random);
+        List<TimedNote> notes = syntheticNotes(noteCount, sentenceCount * 4, random);
+
+        BenchmarkHarness.Measurement legacy = measure(() -> legacyAttach(entries, notes));
+        BenchmarkHarness.Measurement indexed = measure(() -> TranscriptNoteIndex.attachNotes(entries, notes));
+
+        report(TAG, "%,d sentences, %,d notes: nested loop %.2f ms, sorted index %.2f ms (%.0fx)",
+                sentenceCount, noteCount, legacy.medianMillis(), indexed.medianMillis(),
+                (double) legacy.medianNanos / Math.max(1, indexed.medianNanos));
+    }
+
+    private static List<FinalTranscriptEntry> syntheticTranscript(int sentenceCount, Random random) {
+        List<FinalTranscriptEntry> entries = new ArrayList<>(sentenceCount);
+        double seconds = 0;
+        for (int i = 0; i < sentenceCount; i++) {
+            seconds += 1 + random.nextInt(6) + random.nextInt(1000) / 1000.0;
+            String speaker = random.nextInt(3) == 0 ? "Therapist" : "Patient";
+            entries.add(entry(speaker, timestamp(seconds)));
+        }
+        return entries;
+    }
+
+    private static List<TimedNote> syntheticNotes(int noteCount, int maxSeconds, Random random) {
+        List<TimedNote> notes = new ArrayList<>(noteCount);
+        for (int i = 0; i < noteCount; i++) {
+            notes.add(new TimedNote(timestamp(random.nextInt(maxSeconds)), "Note " + i));
+        }
+        return notes;
+    }
+
+    private static String timestamp(double seconds) {
+        int whole = (int) seconds;
+        return String.format(Locale.US, "%02d:%02d:%06.3f", whole / 3600, (whole / 60) % 60, seconds % 60);
+    }
+
+    private static FinalTranscriptEntry entry(String speaker, String timestamp) {
+        SentimentScore score = "Patient".equals(speaker) ? new SentimentScore(0.3f, 0.5f, 0.2f) : null;
+        return new FinalTranscriptEntry(speaker, "Sentence at " + timestamp, timestamp, score);
+    }
+
+    // The attachment FinalTranscriptAdapter.setData did before TranscriptNoteIndex
+    private static Map<FinalTranscriptEntry, List<TimedNote>> legacyAttach(List<FinalTranscriptEntry> entries,
+                                                                           List<TimedNote> notes) {
+        Map<FinalTranscriptEntry, List<TimedNote>> entryToNotesMap = new HashMap<>();
+        List<FinalTranscriptEntry> patientEntries = entries.stream()
+                .filter(e -> "Patient".equalsIgnoreCase(e.getSpeaker()))
+                .collect(Collectors.toList());
+        for (TimedNote note : notes) {
+            float noteTime = TranscriptNoteIndex.parseTimeToSeconds(note.getTime());
+            if (noteTime < 0) continue;
+            FinalTranscriptEntry bestMatchEntry = null;
+            float bestMatchTime = -1f;
+            for (FinalTranscriptEntry patientEntry : patientEntries) {
+                float entryTime = TranscriptNoteIndex.parseTimeToSeconds(patientEntry.getTimestamp());
+                if (entryTime >= 0 && entryTime <= noteTime && entryTime > bestMatchTime) {
+                    bestMatchTime = entryTime;
+                    bestMatchEntry = patientEntry;
+                }
+            }
+            if (bestMatchEntry != null) {
+                entryToNotesMap.computeIfAbsent(bestMatchEntry, k -> new ArrayList<>()).add(note);
+            }
+        }
+        for (List<TimedNote> noteList : entryToNotesMap.values()) {
+            noteList.sort(Comparator.comparing(n -> TranscriptNoteIndex.parseTimeToSeconds(n.getTime())));
+        }
+        return entryToNotesMap;
+    }
+}
@@ -10,9 +10,15 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -262,8 +268,157 @@ public class AudioFormatConversionTest {
         Log.i(TAG, "  - Converted " + (largeDataSize / 1024 / 1024) + " MB of audio data");
         Log.i(TAG, "  - Conversion time: " + conversionTime + " ms");
         Log.i(TAG, "  - Progress callbacks: " + progressCallback.getCallCount());
+        
+        // Streaming modes must not grow the heap with recording length: push 64 MB of PCM
+        // (~12 minutes) through each and require peak heap growth to stay well below that.
+        long streamedPcmSize = 64L * 1024 * 1024;
+        long heapBudget = 16L * 1024 * 1024;
+        
+        File wavFile = File.createTempFile("large_stream_test", ".wav");
+        try (RandomAccessFile raf = new RandomAccessFile(wavFile, "rw")) {
+            HeapPeakCallback seekableHeap = new HeapPeakCallback();
+            long seekableWritten = AudioFormatUtil.wrapPcmToWavFile(
+                new SyntheticPcmInputStream(streamedPcmSize), raf.getChannel(), streamedPcmSize,
+                AudioFormatUtil.CaptureProfile.ARCHIVAL_44K, seekableHeap);
+            
+            assertEquals("Seekable mode size incorrect", 44 + streamedPcmSize, seekableWritten);
+            assertEquals("Seekable mode file length incorrect", 44 + streamedPcmSize, raf.length());
+            byte[] header = new byte[44];
+            raf.seek(0);
+            raf.readFully(header);
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals("Patched RIFF size incorrect", 36 + streamedPcmSize, headerBuffer.getInt(4) & 0xFFFFFFFFL);
+            assertEquals("Patched data size incorrect", streamedPcmSize, headerBuffer.getInt(40) & 0xFFFFFFFFL);
+            assertTrue("Seekable WAV mode should use bounded heap (grew " + seekableHeap.getPeakIncrease() + " bytes)",
+                      seekableHeap.getPeakIncrease() < heapBudget);
+        } finally {
+            wavFile.delete();
+        }
+        
+        HeapPeakCallback onePassHeap = new HeapPeakCallback();
+        CountingOutputStream sink = new CountingOutputStream();
+        long onePassWritten = AudioFormatUtil.wrapPcmWithWavHeadersKnownSize(
+            new SyntheticPcmInputStream(streamedPcmSize), sink, streamedPcmSize,
+            AudioFormatUtil.CaptureProfile.ARCHIVAL_44K, onePassHeap);
+        assertEquals("One-pass mode size incorrect", 44 + streamedPcmSize, onePassWritten);
+        assertEquals("One-pass mode output incorrect", 44 + streamedPcmSize, sink.getCount());
+        assertTrue("One-pass WAV mode should use bounded heap (grew " + onePassHeap.getPeakIncrease() + " bytes)",
+                  onePassHeap.getPeakIncrease() < heapBudget);
+        
+        Log.i(TAG, "  - Streamed " + (streamedPcmSize / 1024 / 1024) + " MB per mode with bounded heap");
     }
     
+    /**
+     * One-pass mode must refuse a stream whose length differs from the declared size.
+     */
+    @Test(expected = IOException.class)
+    public void testKnownSizeModeRejectsShortStream() throws IOException {
+        AudioFormatUtil.wrapPcmWithWavHeadersKnownSize(
+            new ByteArrayInputStream(testPcmData), new CountingOutputStream(), testDataSize + 2,
+            AudioFormatUtil.CaptureProfile.ARCHIVAL_44K, null);
+    }
+
+    /**
+     * The pull-side one-pass stream starts at any offset, and refuses PCM longer than declared.
+     */
+    @Test
+    public void testKnownSizeStreamFromOffset() throws IOException {
+        byte[] full = new byte[44 + testDataSize];
+        System.arraycopy(AudioFormatUtil.generateWavHeader(testDataSize, AudioFormatUtil.CaptureProfile.SPEECH_16K), 0, full, 0, 44);
+        System.arraycopy(testPcmData, 0, full, 44, testDataSize);
+
+        for (int offset : new int[]{0, 20, 44, 44 + testDataSize / 2, full.length}) {
+            int pcmStart = Math.max(0, offset - 44);
+            InputStream wav = AudioFormatUtil.openWavStreamKnownSize(
+                new ByteArrayInputStream(testPcmData, pcmStart, testDataSize - pcmStart), testDataSize,
+                AudioFormatUtil.CaptureProfile.SPEECH_16K, offset);
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = wav.read(buffer)) != -1) {
+                read.write(buffer, 0, n);
+            }
+            assertArrayEquals("Stream from offset " + offset, Arrays.copyOfRange(full, offset, full.length), read.toByteArray());
+        }
+
+        InputStream tooLong = AudioFormatUtil.openWavStreamKnownSize(
+            new ByteArrayInputStream(testPcmData), testDataSize - 2, AudioFormatUtil.CaptureProfile.SPEECH_16K, 0);
+        try {
+            while (tooLong.read(new byte[4096]) != -1) {
+                // Drain
+            }
+            fail("PCM past the declared size must be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("longer"));
+        }
+    }
+
+    /**
+     * Test 6: Capture Profiles
+     * The speech profile must carry its 16 kHz rate into both header writers, every WAV wrap
+     * mode and the size estimate.
+     */
+    @Test
+    public void testSpeechProfileHeaderAndSize() throws IOException {
+        AudioFormatUtil.CaptureProfile speech = AudioFormatUtil.CaptureProfile.SPEECH_16K;
+        int pcmSize = speech.getByteRate() * 2; // 2 seconds
+
+        ByteBuffer header = ByteBuffer.wrap(AudioFormatUtil.generateWavHeader(pcmSize, speech));
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("Sample rate incorrect", 16000, header.getInt(24));
+        assertEquals("Byte rate incorrect", 32000, header.getInt(28));
+        assertEquals("Data size incorrect", pcmSize, header.getInt(40));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        AudioFormatUtil.writeWavHeader(streamed, pcmSize, speech);
+        assertArrayEquals("Both header writers must agree",
+            AudioFormatUtil.generateWavHeader(pcmSize, speech), streamed.toByteArray());
+
+        byte[] expectedHeader = AudioFormatUtil.generateWavHeader(pcmSize, speech);
+        byte[] pcm = generateTestPcmAudio(pcmSize);
+
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+        AudioFormatUtil.wrapPcmWithWavHeaders(new ByteArrayInputStream(pcm), buffered, pcmSize, speech, null);
+        assertArrayEquals("Buffered mode header incorrect", expectedHeader, Arrays.copyOf(buffered.toByteArray(), 44));
+
+        ByteArrayOutputStream streaming = new ByteArrayOutputStream();
+        AudioFormatUtil.wrapPcmWithWavHeadersStreaming(new ByteArrayInputStream(pcm), streaming, pcmSize, speech, null);
+        assertArrayEquals("Streaming mode header incorrect", expectedHeader, Arrays.copyOf(streaming.toByteArray(), 44));
+
+        ByteArrayOutputStream onePass = new ByteArrayOutputStream();
+        AudioFormatUtil.wrapPcmWithWavHeadersKnownSize(new ByteArrayInputStream(pcm), onePass, pcmSize, speech, null);
+        assertArrayEquals("One-pass mode header incorrect", expectedHeader, Arrays.copyOf(onePass.toByteArray(), 44));
+
+        File wavFile = File.createTempFile("speech_profile_test", ".wav");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(wavFile, "rw")) {
+                AudioFormatUtil.wrapPcmToWavFile(new ByteArrayInputStream(pcm), raf.getChannel(), pcmSize, speech, null);
+                byte[] seekableHeader = new byte[44];
+                raf.seek(0);
+                raf.readFully(seekableHeader);
+                assertArrayEquals("Seekable mode header incorrect", expectedHeader, seekableHeader);
+            }
+            try (FileOutputStream fos = new FileOutputStream(wavFile)) {
+                AudioFormatUtil.wrapPcmWithWavHeaders(new ByteArrayInputStream(pcm), fos, pcmSize, speech, null);
+            }
+            byte[] fileHeader = new byte[44];
+            try (RandomAccessFile raf = new RandomAccessFile(wavFile, "r")) {
+                raf.readFully(fileHeader);
+            }
+            assertArrayEquals("Buffered mode into a file header incorrect", expectedHeader, fileHeader);
+        } finally {
+            wavFile.delete();
+        }
+
+        assertEquals("Size estimate should use the profile rate",
+            32000L + 44, AudioFormatUtil.calculateWavFileSize(1000, speech));
+        assertEquals("Profile-less estimate stays at 44.1 kHz",
+            AudioFormatUtil.calculateWavFileSize(1000), AudioFormatUtil.calculateWavFileSize(1000, AudioFormatUtil.CaptureProfile.ARCHIVAL_44K));
+        assertTrue("Speech profile should be valid", AudioFormatUtil.validateAudioConfiguration(speech));
+        assertSame("Untagged sessions use the default profile",
+            AudioFormatUtil.CaptureProfile.DEFAULT, AudioFormatUtil.CaptureProfile.fromMetadataTag(null));
+    }
+
     // Helper Methods
     
     private byte[] generateTestPcmAudio(int sizeBytes) {
@@ -330,6 +485,66 @@ public class AudioFormatConversionTest {
         return "RIFF".equals(riffHeader) && "WAVE".equals(waveHeader);
     }
     
+    // Records the peak heap growth observed while a conversion reports progress
+    private static class HeapPeakCallback implements AudioFormatUtil.ProgressCallback {
+        private final Runtime runtime = Runtime.getRuntime();
+        private final long baseline;
+        private long peak;
+        
+        HeapPeakCallback() {
+            System.gc();
+            baseline = runtime.totalMemory() - runtime.freeMemory();
+            peak = baseline;
+        }
+        
+        @Override
+        public void onProgress(int progressPercent, String message) {
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            if (used > peak) {
+                peak = used;
+            }
+        }
+        
+        long getPeakIncrease() { return peak - baseline; }
+    }
+    
+    // Generates a deterministic PCM ramp of the given length without holding it in memory
+    private static class SyntheticPcmInputStream extends InputStream {
+        private final long length;
+        private long position = 0;
+        
+        SyntheticPcmInputStream(long length) { this.length = length; }
+        
+        @Override
+        public int read() {
+            return position < length ? (int) (position++ & 0xFF) : -1;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= length) return -1;
+            int n = (int) Math.min(len, length - position);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) (position + i);
+            }
+            position += n;
+            return n;
+        }
+    }
+    
+    // Discards output, counting bytes
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+        
+        @Override
+        public void write(int b) { count++; }
+        
+        @Override
+        public void write(byte[] b, int off, int len) { count += len; }
+        
+        long getCount() { return count; }
+    }
+    
     // Test Progress Callback Implementation
     private static class TestProgressCallback implements AudioFormatUtil.ProgressCallback {
         private boolean called = false;
@@ -0,0 +1,44 @@
+package com.example.therapyai.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Passphrase key derivation used by the patient QR handoff.
+ */
+public class AESUtilTest {
+
+    private static final String PASSPHRASE = "374921";
+
+    @Test
+    public void testDefaultDerivationUsesConfiguredIterations() throws Exception {
+        byte[] salt = randomSalt();
+        SecretKey defaultKey = AESUtil.derivePassphraseKey(PASSPHRASE, salt);
+        SecretKey explicitKey = AESUtil.derivePassphraseKey(PASSPHRASE, salt, AESUtil.PBKDF2_ITERATIONS);
+        assertArrayEquals(explicitKey.getEncoded(), defaultKey.getEncoded());
+        assertEquals(32, defaultKey.getEncoded().length);
+        assertEquals("AES", defaultKey.getAlgorithm());
+    }
+
+    @Test
+    public void testDerivationDependsOnSaltPassphraseAndCost() throws Exception {
+        byte[] salt = randomSalt();
+        byte[] key = AESUtil.derivePassphraseKey(PASSPHRASE, salt).getEncoded();
+
+        assertArrayEquals(key, AESUtil.derivePassphraseKey(PASSPHRASE, salt.clone()).getEncoded());
+        assertFalse(Arrays.equals(key, AESUtil.derivePassphraseKey(PASSPHRASE, randomSalt()).getEncoded()));
+        assertFalse(Arrays.equals(key, AESUtil.derivePassphraseKey("374922", salt).getEncoded()));
+        assertFalse(Arrays.equals(key, AESUtil.derivePassphraseKey(PASSPHRASE, salt, 1_000).getEncoded()));
+    }
+
+    private static byte[] randomSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+}
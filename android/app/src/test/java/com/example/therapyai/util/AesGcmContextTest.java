@@ -0,0 +1,144 @@
+package com.example.therapyai.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+
+/**
+ * Layout, nonce handling and authentication of {@link AesGcmContext}.
+ */
+public class AesGcmContextTest {
+
+    private SecretKey key;
+    private AesGcmContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        key = keyGen.generateKey();
+        context = new AesGcmContext(key);
+    }
+
+    @Test
+    public void testRoundTripInteropsWithAESUtil() throws Exception {
+        byte[] plain = randomBytes(1000, 1);
+        byte[] sealed = new byte[AesGcmContext.sealedLength(plain.length) + 7];
+        int sealedLength = context.seal(plain, 0, plain.length, sealed, 7);
+        assertEquals(AesGcmContext.sealedLength(plain.length), sealedLength);
+
+        // The context's layout is the one AESUtil.decryptAesGcm expects, and vice versa
+        assertArrayEquals(plain, AESUtil.decryptAesGcm(Arrays.copyOfRange(sealed, 7, 7 + sealedLength), key));
+        byte[] legacySealed = AESUtil.encryptAesGcm(plain, key);
+        byte[] opened = new byte[plain.length];
+        assertEquals(plain.length, context.open(legacySealed, 0, legacySealed.length, opened, 0));
+        assertArrayEquals(plain, opened);
+    }
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        byte[] plain = randomBytes(4096, 2);
+        ByteBuffer directIn = ByteBuffer.allocateDirect(plain.length);
+        directIn.put(plain).flip();
+        ByteBuffer directSealed = ByteBuffer.allocateDirect(AesGcmContext.sealedLength(plain.length));
+        assertEquals(AesGcmContext.sealedLength(plain.length), context.seal(directIn, directSealed));
+        directSealed.flip();
+
+        ByteBuffer directOut = ByteBuffer.allocateDirect(plain.length);
+        assertEquals(plain.length, context.open(directSealed, directOut));
+        directOut.flip();
+        byte[] fromDirect = new byte[plain.length];
+        directOut.get(fromDirect);
+        assertArrayEquals(plain, fromDirect);
+    }
+
+    @Test
+    public void testNoncesNeverRepeat() throws Exception {
+        byte[] plain = new byte[16];
+        byte[] sealed = new byte[AesGcmContext.sealedLength(plain.length)];
+        Set<String> nonces = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            context.seal(plain, 0, plain.length, sealed, 0);
+            assertTrue("Nonce reused at message " + i,
+                    nonces.add(Arrays.toString(Arrays.copyOf(sealed, AesGcmContext.IV_LENGTH))));
+        }
+        assertEquals(10_000, context.getSealCount());
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void testTamperedRecordIsRejected() throws Exception {
+        byte[] plain = randomBytes(64, 3);
+        byte[] sealed = new byte[AesGcmContext.sealedLength(plain.length)];
+        context.seal(plain, 0, plain.length, sealed, 0);
+        sealed[AesGcmContext.IV_LENGTH + 3] ^= 0x01;
+        context.open(sealed, 0, sealed.length, new byte[plain.length], 0);
+    }
+
+    @Test
+    public void testShortOutputIsRejectedBeforeANonceIsUsed() throws Exception {
+        byte[] plain = randomBytes(64, 4);
+        try {
+            context.seal(plain, 0, plain.length, new byte[AesGcmContext.sealedLength(plain.length) - 1], 0);
+            fail("Expected ShortBufferException");
+        } catch (ShortBufferException expected) {
+            assertEquals(0, context.getSealCount());
+        }
+    }
+
+    @Test
+    public void testFramedRecordsBindNonceAndAad() throws Exception {
+        byte[] nonce = randomBytes(AesGcmContext.IV_LENGTH, 5);
+        byte[] aad = randomBytes(16, 6);
+        byte[] plain = randomBytes(300, 7);
+        byte[] sealed = new byte[plain.length + AesGcmContext.TAG_LENGTH];
+        assertEquals(sealed.length, context.sealFramed(nonce, aad, plain, 0, plain.length, sealed, 0));
+
+        byte[] opened = new byte[plain.length];
+        assertEquals(plain.length, context.openFramed(nonce, aad, sealed, 0, sealed.length, opened, 0));
+        assertArrayEquals(plain, opened);
+
+        byte[] otherAad = aad.clone();
+        otherAad[0] ^= 0x01;
+        assertOpenFails(nonce, otherAad, sealed);
+        byte[] otherNonce = nonce.clone();
+        otherNonce[11] ^= 0x01;
+        assertOpenFails(otherNonce, aad, sealed);
+    }
+
+    @Test
+    public void testFramedEmptyRecordIsABareTag() throws Exception {
+        byte[] nonce = randomBytes(AesGcmContext.IV_LENGTH, 8);
+        byte[] aad = randomBytes(28, 9);
+        byte[] tag = new byte[AesGcmContext.TAG_LENGTH];
+        assertEquals(tag.length, context.sealFramed(nonce, aad, new byte[0], 0, 0, tag, 0));
+        assertEquals(0, context.openFramed(nonce, aad, tag, 0, tag.length, new byte[0], 0));
+
+        aad[27] ^= 0x01;
+        assertOpenFails(nonce, aad, tag);
+    }
+
+    private void assertOpenFails(byte[] nonce, byte[] aad, byte[] sealed) throws Exception {
+        try {
+            context.openFramed(nonce, aad, sealed, 0, sealed.length, new byte[sealed.length], 0);
+            fail("Expected AEADBadTagException");
+        } catch (AEADBadTagException expected) {
+        }
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
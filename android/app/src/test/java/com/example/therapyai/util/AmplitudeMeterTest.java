@@ -0,0 +1,120 @@
+package com.example.therapyai.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Peak, windowed RMS and history reads of {@link AmplitudeMeter}.
+ */
+public class AmplitudeMeterTest {
+
+    private static final int SAMPLE_RATE = 16_000;
+    private static final int BUFFER_BYTES = SAMPLE_RATE / 50 * 2; // 20 ms of mono 16-bit
+
+    @Test
+    public void testPeakIsLargestMagnitudeSincePoll() {
+        Random random = new Random(7);
+        AmplitudeMeter meter = new AmplitudeMeter(SAMPLE_RATE, 1, 100, 64);
+        for (int b = 0; b < 200; b++) {
+            byte[] buffer = noise(BUFFER_BYTES, random);
+            meter.process(buffer, 0, buffer.length);
+            assertEquals(maxAbs(buffer), meter.pollPeak());
+        }
+        assertEquals(0, meter.pollPeak()); // Nothing new since the last poll
+    }
+
+    @Test
+    public void testWindowStatsOfKnownSignals() {
+        AmplitudeMeter meter = new AmplitudeMeter(SAMPLE_RATE, 1, 100, 64);
+        int windowSamples = SAMPLE_RATE / 10;
+
+        // Full-scale square wave: peak and RMS both 32767
+        byte[] square = new byte[windowSamples * 2];
+        for (int i = 0; i < windowSamples; i++) {
+            putSample(square, i, (i & 1) == 0 ? 32767 : -32767);
+        }
+        meter.process(square, 0, square.length);
+        assertEquals(1, meter.getWindowCount());
+        assertEquals(32767, meter.getLatestPeak());
+        assertEquals(32767f, meter.getLatestRms(), 0.5f);
+
+        // Half-scale 1 kHz sine: RMS is peak / sqrt(2)
+        byte[] sine = new byte[windowSamples * 2];
+        for (int i = 0; i < windowSamples; i++) {
+            putSample(sine, i, (int) Math.round(16384 * Math.sin(2 * Math.PI * 1000 * i / SAMPLE_RATE)));
+        }
+        meter.process(sine, 0, sine.length);
+        assertEquals(2, meter.getWindowCount());
+        assertEquals(16384, meter.getLatestPeak());
+        assertEquals(16384 / Math.sqrt(2), meter.getLatestRms(), 1.0);
+        assertEquals(-9.03f, AmplitudeMeter.toDbfs(meter.getLatestRms()), 0.05f);
+
+        // A partial window is not published
+        meter.process(new byte[windowSamples], 0, windowSamples);
+        assertEquals(2, meter.getWindowCount());
+    }
+
+    @Test
+    public void testReaderSeesEachWindowOnceAndSkipsLappedOnes() {
+        AmplitudeMeter meter = new AmplitudeMeter(1_000, 1, 10, 8); // 10 samples per window
+        AmplitudeMeter.Reader reader = meter.newReader();
+        int[] peaks = new int[4];
+        float[] rms = new float[4];
+
+        feedWindows(meter, 0, 3);
+        assertEquals(3, reader.read(peaks, rms));
+        assertArrayEquals(new int[]{100, 200, 300}, Arrays.copyOf(peaks, 3));
+        assertEquals(0, reader.read(peaks, rms));
+
+        feedWindows(meter, 3, 6); // Windows 3..8
+        assertEquals(4, reader.read(peaks, rms)); // Limited by the array length
+        assertArrayEquals(new int[]{400, 500, 600, 700}, peaks);
+        assertEquals(2, reader.read(peaks, rms));
+        assertArrayEquals(new int[]{800, 900}, Arrays.copyOf(peaks, 2));
+
+        feedWindows(meter, 9, 20); // Windows 9..28; only the last 7 are readable
+        assertEquals(4, reader.read(peaks, rms));
+        assertArrayEquals(new int[]{2300, 2400, 2500, 2600}, peaks);
+        assertEquals(13, reader.getSkippedWindows());
+
+        assertTrue(reader.isReading(meter));
+        assertFalse(reader.isReading(new AmplitudeMeter(1_000, 1, 10, 8)));
+        assertEquals(8, meter.getHistoryCapacity());
+    }
+
+    // Window w holds a constant sample of (w + 1) * 100
+    private static void feedWindows(AmplitudeMeter meter, int firstWindow, int count) {
+        byte[] pcm = new byte[count * 10 * 2];
+        for (int w = 0; w < count; w++) {
+            for (int s = 0; s < 10; s++) {
+                putSample(pcm, w * 10 + s, (firstWindow + w + 1) * 100);
+            }
+        }
+        meter.process(pcm, 0, pcm.length);
+    }
+
+    private static byte[] noise(int bytes, Random random) {
+        byte[] pcm = new byte[bytes];
+        for (int i = 0; i < bytes / 2; i++) {
+            putSample(pcm, i, (int) (random.nextGaussian() * 4000));
+        }
+        return pcm;
+    }
+
+    private static int maxAbs(byte[] pcm) {
+        int max = 0;
+        for (int i = 0; i < pcm.length / 2; i++) {
+            max = Math.max(max, Math.abs((short) ((pcm[i * 2 + 1] << 8) | (pcm[i * 2] & 0xFF))));
+        }
+        return max;
+    }
+
+    private static void putSample(byte[] pcm, int index, int sample) {
+        int clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        pcm[index * 2] = (byte) clamped;
+        pcm[index * 2 + 1] = (byte) (clamped >> 8);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.therapyai.util;
+
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Transcript-row to chart-bar lookups of {@link ChartPositionIndex}.
+ */
+public class ChartPositionIndexTest {
+
+    private static final int VISIBLE_ROWS = 12;
+
+    @Test
+    public void testLookupsBothWays() {
+        List<FinalTranscriptEntry> entries = Arrays.asList(
+                entry("Therapist", true),
+                entry("Patient", true),    // x 0
+                entry("Patient", false),   // Unscored; not plotted
+                entry("patient", true),    // x 1
+                entry("Therapist", true),
+                entry("Patient", true));   // x 2
+        ChartPositionIndex index = ChartPositionIndex.ofScoredPatientSentences(entries);
+
+        assertEquals(3, index.size());
+        assertEquals(1, index.positionAt(0));
+        assertEquals(3, index.positionAt(1));
+        assertEquals(5, index.positionAt(2));
+        assertEquals(-1, index.positionAt(3));
+        assertEquals(-1, index.positionAt(-1));
+        assertEquals(1, index.xOf(3));
+        assertEquals(-1, index.xOf(2));
+        assertEquals(-1, index.xOf(0));
+
+        assertEquals(0, index.nearestX(0, 2));   // Middle 1 is plotted
+        assertEquals(0, index.nearestX(1, 3));   // Middle 2 between bars at 1 and 3; earlier wins
+        assertEquals(2, index.nearestX(4, 4));   // Nothing visible; first bar after is row 5
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        ChartPositionIndex index = ChartPositionIndex.ofScoredPatientSentences(
+                Collections.singletonList(entry("Therapist", true)));
+        assertTrue(index.isEmpty());
+        assertEquals(-1, index.nearestX(0, 10));
+        assertEquals(-1, index.positionAt(0));
+        assertSame(ChartPositionIndex.EMPTY, ChartPositionIndex.ofScoredPatientSentences(null));
+    }
+
+    @Test
+    public void testEveryWindowOfALongTranscript() {
+        int lineCount = 2_000;
+        Random random = new Random(lineCount);
+        List<FinalTranscriptEntry> entries = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            entries.add(entry(random.nextInt(3) == 0 ? "Therapist" : "Patient", random.nextInt(20) != 0));
+        }
+        // Long therapist-only stretches, so some windows show no patient rows, including at the end
+        for (int i = lineCount / 2; i < lineCount / 2 + VISIBLE_ROWS * 3; i++) {
+            entries.set(i, entry("Therapist", true));
+        }
+        for (int i = lineCount - VISIBLE_ROWS * 2; i < lineCount; i++) {
+            entries.set(i, entry("Therapist", true));
+        }
+
+        List<Integer> plotted = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getSentimentScore() != null) plotted.add(i);
+        }
+        ChartPositionIndex index = ChartPositionIndex.ofScoredPatientSentences(entries);
+        assertEquals(plotted.size(), index.size());
+        for (int x = 0; x < plotted.size(); x++) {
+            assertEquals(x, index.xOf(plotted.get(x)));
+            assertEquals((int) plotted.get(x), index.positionAt(x));
+        }
+
+        for (int first = 0; first + VISIBLE_ROWS <= lineCount; first++) {
+            int last = first + VISIBLE_ROWS - 1;
+            assertEquals("Window " + first + ".." + last, expectedNearest(plotted, first, last), index.nearestX(first, last));
+        }
+    }
+
+    /**
+     * The bar whose row is nearest the middle visible row, earlier on a tie; with none visible,
+     * the first bar after the middle, or else the last bar.
+     */
+    private static int expectedNearest(List<Integer> plotted, int first, int last) {
+        int middle = first + (last - first) / 2;
+        int best = -1;
+        for (int x = 0; x < plotted.size(); x++) {
+            int row = plotted.get(x);
+            if (row >= first && row <= last
+                    && (best == -1 || Math.abs(row - middle) < Math.abs(plotted.get(best) - middle))) {
+                best = x;
+            }
+        }
+        if (best != -1) return best;
+        for (int x = 0; x < plotted.size(); x++) {
+            if (plotted.get(x) >= middle) return x;
+        }
+        return plotted.size() - 1;
+    }
+
+    private static FinalTranscriptEntry entry(String speaker, boolean scored) {
+        SentimentScore score = scored && "Patient".equalsIgnoreCase(speaker) ? new SentimentScore(0.3f, 0.5f, 0.2f) : null;
+        return new FinalTranscriptEntry(speaker, "text", "00:00:01", score);
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.therapyai.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Format and authentication checks for {@link ChunkedGcmContainer}, through both the random-access
+ * {@link ChunkedGcmContainer.Reader} and the sequential stream used for plain InputStreams.
+ */
+public class ChunkedGcmContainerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int RECORD_SIZE = CHUNK_SIZE + ChunkedGcmContainer.TAG_LENGTH;
+
+    private final Random random = new Random(9);
+    private SecretKey key;
+
+    @Before
+    public void setUp() {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+    }
+
+    @Test
+    public void testRoundTripAtChunkBoundaries() throws Exception {
+        int[] lengths = {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE, 5 * CHUNK_SIZE + 77};
+        for (int length : lengths) {
+            byte[] plaintext = randomBytes(length);
+            File file = writeContainer(plaintext);
+
+            assertTrue(ChunkedGcmContainer.isContainerFile(file));
+            assertEquals(length, ChunkedGcmContainer.readPlaintextLength(file));
+            assertEquals(length, AESUtil.getDecryptedLength(file));
+            // The final chunk is always short, so an exact multiple gets an empty one.
+            assertEquals(ChunkedGcmContainer.HEADER_LENGTH + length
+                            + (long) (length / CHUNK_SIZE + 1) * ChunkedGcmContainer.TAG_LENGTH
+                            + ChunkedGcmContainer.FOOTER_LENGTH,
+                    file.length());
+
+            assertArrayEquals("reader, length " + length, plaintext, readWithReader(file));
+            assertArrayEquals("sequential, length " + length, plaintext, readSequentially(Files.readAllBytes(file.toPath())));
+
+            File decrypted = folder.newFile();
+            AESUtil.decryptFile(file, decrypted, key);
+            assertArrayEquals("decryptFile, length " + length, plaintext, Files.readAllBytes(decrypted.toPath()));
+        }
+    }
+
+    @Test
+    public void testSeekToArbitraryOffsets() throws Exception {
+        byte[] plaintext = randomBytes(4 * CHUNK_SIZE + 300);
+        File file = writeContainer(plaintext);
+        long[] offsets = {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, 2 * CHUNK_SIZE + 517, 4 * CHUNK_SIZE, plaintext.length - 1, plaintext.length};
+        for (long offset : offsets) {
+            byte[] expected = Arrays.copyOfRange(plaintext, (int) offset, plaintext.length);
+            try (InputStream in = AESUtil.createDecryptingInputStream(file, key, offset)) {
+                assertArrayEquals("offset " + offset, expected, readAll(in));
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSeekPastEndIsRejected() throws Exception {
+        File file = writeContainer(randomBytes(100));
+        try (ChunkedGcmContainer.Reader reader = new ChunkedGcmContainer.Reader(file, key)) {
+            reader.openStream(101);
+        }
+    }
+
+    @Test
+    public void testSingleBitTamperIsDetected() throws Exception {
+        byte[] plaintext = randomBytes(3 * CHUNK_SIZE + 10);
+        byte[] sealed = Files.readAllBytes(writeContainer(plaintext).toPath());
+        int footerStart = sealed.length - ChunkedGcmContainer.FOOTER_LENGTH;
+
+        int[] bitPositions = {
+                0,                                                      // Header magic
+                ChunkedGcmContainer.MAGIC_AND_VERSION_LENGTH * 8 + 31,  // Header chunk size
+                (ChunkedGcmContainer.HEADER_LENGTH - 1) * 8,            // Header nonce prefix
+                ChunkedGcmContainer.HEADER_LENGTH * 8 + 5,              // First chunk ciphertext
+                (ChunkedGcmContainer.HEADER_LENGTH + RECORD_SIZE + CHUNK_SIZE + 3) * 8, // Second chunk tag
+                (footerStart + 7) * 8,                                  // Footer plaintext length
+                (footerStart + 11) * 8,                                 // Footer chunk count
+                (footerStart + 12) * 8 + 6,                             // Footer tag
+                (sealed.length - 1) * 8,                                // Footer magic
+        };
+        for (int bit : bitPositions) {
+            byte[] tampered = sealed.clone();
+            tampered[bit / 8] ^= (byte) (1 << (bit % 8));
+            assertRejected("bit " + bit, tampered);
+        }
+    }
+
+    @Test
+    public void testTamperedChunkFailsOnlyThatChunk() throws Exception {
+        byte[] sealed = Files.readAllBytes(writeContainer(randomBytes(3 * CHUNK_SIZE + 10)).toPath());
+        sealed[ChunkedGcmContainer.HEADER_LENGTH + RECORD_SIZE + 100] ^= 0x01;
+        File file = writeBytes(sealed);
+        try (ChunkedGcmContainer.Reader reader = new ChunkedGcmContainer.Reader(file, key)) {
+            assertTrue(reader.verifyChunk(0));
+            assertFalse(reader.verifyChunk(1));
+            assertTrue(reader.verifyChunk(2));
+            assertTrue(reader.verifyChunk(3));
+        }
+    }
+
+    @Test
+    public void testTruncationIsDetected() throws Exception {
+        byte[] sealed = Files.readAllBytes(writeContainer(randomBytes(3 * CHUNK_SIZE + 10)).toPath());
+        int footerStart = sealed.length - ChunkedGcmContainer.FOOTER_LENGTH;
+
+        // Cut anywhere: inside the footer, right before it, mid-chunk, after the header.
+        int[] cuts = {sealed.length - 1, footerStart, footerStart - 5,
+                ChunkedGcmContainer.HEADER_LENGTH + RECORD_SIZE, ChunkedGcmContainer.HEADER_LENGTH};
+        for (int cut : cuts) {
+            assertRejected("cut at " + cut, Arrays.copyOf(sealed, cut));
+        }
+
+        // Drop the last full chunk but keep the footer in place.
+        ByteArrayOutputStream dropped = new ByteArrayOutputStream();
+        int lastFullChunk = ChunkedGcmContainer.HEADER_LENGTH + 2 * RECORD_SIZE;
+        dropped.write(sealed, 0, lastFullChunk);
+        dropped.write(sealed, lastFullChunk + RECORD_SIZE, sealed.length - lastFullChunk - RECORD_SIZE);
+        assertRejected("dropped chunk", dropped.toByteArray());
+    }
+
+    @Test
+    public void testReorderedChunksAreDetected() throws Exception {
+        byte[] sealed = Files.readAllBytes(writeContainer(randomBytes(3 * CHUNK_SIZE + 10)).toPath());
+        byte[] swapped = sealed.clone();
+        int first = ChunkedGcmContainer.HEADER_LENGTH;
+        int second = first + RECORD_SIZE;
+        System.arraycopy(sealed, second, swapped, first, RECORD_SIZE);
+        System.arraycopy(sealed, first, swapped, second, RECORD_SIZE);
+        assertRejected("swapped chunks", swapped);
+
+        // Chunks moved between two containers under the same key fail too (different nonce prefix).
+        byte[] other = Files.readAllBytes(writeContainer(randomBytes(3 * CHUNK_SIZE + 10)).toPath());
+        byte[] spliced = sealed.clone();
+        System.arraycopy(other, second, spliced, second, RECORD_SIZE);
+        assertRejected("spliced chunk", spliced);
+    }
+
+    @Test
+    public void testLegacySegmentsStillDecrypt() throws Exception {
+        byte[] plaintext = randomBytes(10_000);
+        byte[] iv = randomBytes(AESUtil.GCM_IV_LENGTH);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, iv));
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        legacy.write(iv);
+        legacy.write(cipher.doFinal(plaintext));
+        File file = writeBytes(legacy.toByteArray());
+
+        assertFalse(ChunkedGcmContainer.isContainerFile(file));
+        assertEquals(plaintext.length, AESUtil.getDecryptedLength(file));
+        assertArrayEquals(plaintext, readSequentially(legacy.toByteArray()));
+        try (InputStream in = AESUtil.createDecryptingInputStream(file, key, 4321)) {
+            assertArrayEquals(Arrays.copyOfRange(plaintext, 4321, plaintext.length), readAll(in));
+        }
+        File decrypted = folder.newFile();
+        AESUtil.decryptFile(file, decrypted, key);
+        assertArrayEquals(plaintext, Files.readAllBytes(decrypted.toPath()));
+
+        byte[] tampered = legacy.toByteArray();
+        tampered[AESUtil.GCM_IV_LENGTH + 500] ^= 0x10;
+        try {
+            readSequentially(tampered);
+            fail("Tampered legacy segment must not decrypt");
+        } catch (IOException expected) {
+            // GCM tag mismatch at end of stream
+        }
+    }
+
+    /**
+     * Every way of reading the whole file must fail: the reader (constructor or a chunk), and the
+     * sequential stream.
+     */
+    private void assertRejected(String message, byte[] tampered) throws Exception {
+        File file = writeBytes(tampered);
+        try {
+            readWithReader(file);
+            fail(message + ": reader accepted the file");
+        } catch (Exception expected) {
+            // IOException for framing errors, AEADBadTagException for authentication failures
+        }
+        try {
+            readSequentially(tampered);
+            fail(message + ": sequential stream accepted the file");
+        } catch (Exception expected) {
+            // Same as above, wrapped in an IOException by the stream
+        }
+    }
+
+    private byte[] readWithReader(File file) throws Exception {
+        try (ChunkedGcmContainer.Reader reader = new ChunkedGcmContainer.Reader(file, key)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[reader.getChunkSize()];
+            for (int i = 0; i < reader.getChunkCount(); i++) {
+                out.write(chunk, 0, reader.readChunk(i, chunk, 0));
+            }
+            assertEquals(reader.getPlaintextLength(), out.size());
+            return out.toByteArray();
+        }
+    }
+
+    private byte[] readSequentially(byte[] encrypted) throws Exception {
+        try (InputStream in = AESUtil.createDecryptingInputStream(new ByteArrayInputStream(encrypted), key)) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777]; // Deliberately not a divisor of the chunk size
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private File writeContainer(byte[] plaintext) throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ChunkedGcmContainer.Writer writer = new ChunkedGcmContainer.Writer(out, key, CHUNK_SIZE);
+            // Uneven writes, so chunk sealing does not line up with the caller's buffers.
+            int offset = 0;
+            while (offset < plaintext.length) {
+                int n = Math.min(plaintext.length - offset, 1 + random.nextInt(700));
+                writer.write(plaintext, offset, n);
+                offset += n;
+            }
+            writer.finish();
+            assertEquals(plaintext.length, writer.getPlaintextLength());
+        }
+        return file;
+    }
+
+    private File writeBytes(byte[] bytes) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
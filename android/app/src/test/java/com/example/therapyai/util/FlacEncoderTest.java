@@ -0,0 +1,434 @@
+package com.example.therapyai.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Encodes known PCM with {@link FlacEncoder} and decodes it with the small reference decoder
+ * below, which follows the FLAC format spec independently of the encoder: it checks the
+ * STREAMINFO fields, every frame header's CRC-8 and every frame's CRC-16 (computed bit by bit
+ * here, not with the encoder's tables), frame numbering and block sizes, and requires the
+ * decoded samples to match the input exactly.
+ */
+public class FlacEncoderTest {
+
+    private static final int SAMPLE_RATE = 16_000;
+
+    @Test
+    public void testSineRoundTripsAndCompresses() throws Exception {
+        short[] pcm = new short[SAMPLE_RATE * 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) Math.round(12_000 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+        }
+        byte[] flac = encode(pcm, 1, SAMPLE_RATE, FlacEncoder.DEFAULT_BLOCK_SIZE, 4096);
+        Decoded decoded = decode(flac);
+
+        assertArrayEquals(pcm, decoded.samples);
+        assertTrue("A pure tone should shrink to under half its PCM size, got " + flac.length + " bytes",
+                flac.length < pcm.length);
+    }
+
+    @Test
+    public void testNoiseAndExtremesRoundTrip() throws Exception {
+        Random random = new Random(17);
+        short[] pcm = new short[10_000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) random.nextInt(1 << 16); // Full-scale white noise ends up verbatim
+        }
+        // Alternating extremes give the largest fixed-predictor residuals.
+        for (int i = 5000; i < 6000; i++) {
+            pcm[i] = (i & 1) == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+        }
+        byte[] flac = encode(pcm, 1, 44_100, 1024, 333);
+        Decoded decoded = decode(flac);
+
+        assertArrayEquals(pcm, decoded.samples);
+        // A frame is never larger than its PCM plus header, subframe header and CRC overhead.
+        int frames = (pcm.length + 1023) / 1024;
+        assertTrue(flac.length <= 42 + pcm.length * 2 + frames * (16 + 1 + 2));
+    }
+
+    @Test
+    public void testSilenceUsesConstantSubframes() throws Exception {
+        short[] pcm = new short[4 * 4096];
+        Arrays.fill(pcm, 8192, pcm.length, (short) -1234);
+        byte[] flac = encode(pcm, 1, SAMPLE_RATE, 4096, 4096);
+        Decoded decoded = decode(flac);
+
+        assertArrayEquals(pcm, decoded.samples);
+        assertEquals(4, decoded.frameCount);
+        assertEquals(4, decoded.constantSubframes);
+    }
+
+    @Test
+    public void testStereoShortFinalBlockAndSplitSamples() throws Exception {
+        Random random = new Random(3);
+        int frames = 3 * 256 + 77; // Final block is short and gets an explicit size
+        short[] pcm = new short[frames * 2];
+        double phase = 0;
+        for (int i = 0; i < frames; i++) {
+            phase += 2 * Math.PI * 300 / 48_000;
+            pcm[2 * i] = (short) (8000 * Math.sin(phase) + random.nextGaussian() * 50);
+            pcm[2 * i + 1] = (short) (random.nextGaussian() * 3000);
+        }
+        // Odd write sizes split samples across writes.
+        byte[] flac = encode(pcm, 2, 48_000, 256, 7);
+        Decoded decoded = decode(flac);
+
+        assertEquals(2, decoded.channels);
+        assertEquals(48_000, decoded.sampleRate);
+        assertEquals(4, decoded.frameCount);
+        assertArrayEquals(pcm, decoded.samples);
+    }
+
+    @Test
+    public void testCountersAndHeaderOnlyStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlacEncoder encoder = new FlacEncoder(out, SAMPLE_RATE, 1, 512);
+        encoder.finish();
+        assertEquals(42, out.size()); // "fLaC" + metadata block header + STREAMINFO
+        assertEquals(0, decode(out.toByteArray()).samples.length);
+
+        short[] pcm = new short[1500];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (i * 7);
+        }
+        out.reset();
+        encoder = new FlacEncoder(out, SAMPLE_RATE, 1, 512);
+        encoder.write(toBytes(pcm), 0, pcm.length * 2);
+        encoder.write(new byte[]{0x55}, 0, 1); // Dangling half sample is dropped by finish()
+        encoder.finish();
+        assertEquals(pcm.length, encoder.getSamplesEncoded());
+        assertEquals(out.size(), encoder.getBytesEncoded());
+        assertArrayEquals(pcm, decode(out.toByteArray()).samples);
+    }
+
+    @Test
+    public void testFrameNumbersPast127UseMultiByteCoding() throws Exception {
+        short[] pcm = new short[16 * 2500];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) ((i * 31) % 2000 - 1000);
+        }
+        Decoded decoded = decode(encode(pcm, 1, 22_050, 16, 1000));
+        assertEquals(2500, decoded.frameCount);
+        assertArrayEquals(pcm, decoded.samples);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterFinishFails() throws Exception {
+        FlacEncoder encoder = new FlacEncoder(new ByteArrayOutputStream(), SAMPLE_RATE, 1);
+        encoder.finish();
+        encoder.write(new byte[2], 0, 2);
+    }
+
+    @Test
+    public void testCorruptedFrameFailsCrc() throws Exception {
+        short[] pcm = new short[4096];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (1000 * Math.sin(i / 10.0));
+        }
+        byte[] flac = encode(pcm, 1, SAMPLE_RATE, 4096, 4096);
+        flac[flac.length - 100] ^= 0x04;
+        try {
+            decode(flac);
+            fail("A flipped bit must not decode cleanly");
+        } catch (IOException expected) {
+            // CRC-16 (or a residual that runs off the frame) catches it
+        }
+    }
+
+    // --- Helpers ---
+
+    private static byte[] encode(short[] interleaved, int channels, int sampleRate, int blockSize, int writeSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlacEncoder encoder = new FlacEncoder(out, sampleRate, channels, blockSize);
+        byte[] bytes = toBytes(interleaved);
+        for (int off = 0; off < bytes.length; off += writeSize) {
+            encoder.write(bytes, off, Math.min(writeSize, bytes.length - off));
+        }
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    private static byte[] toBytes(short[] samples) {
+        byte[] bytes = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            bytes[2 * i] = (byte) samples[i];
+            bytes[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return bytes;
+    }
+
+    // --- Reference decoder ---
+
+    private static final class Decoded {
+        int sampleRate;
+        int channels;
+        int frameCount;
+        int constantSubframes;
+        short[] samples;
+    }
+
+    private static Decoded decode(byte[] flac) throws IOException {
+        BitReader in = new BitReader(flac);
+        assertEquals("fLaC", new String(flac, 0, 4, "US-ASCII"));
+        in.skipBytes(4);
+
+        assertEquals("Only STREAMINFO, marked last", 1, in.read(1));
+        assertEquals(0, in.read(7));
+        assertEquals(34, in.read(24));
+        int minBlock = in.read(16);
+        int maxBlock = in.read(16);
+        assertEquals(minBlock, maxBlock);
+        assertEquals("Min frame size unknown", 0, in.read(24));
+        assertEquals("Max frame size unknown", 0, in.read(24));
+        Decoded result = new Decoded();
+        result.sampleRate = in.read(20);
+        result.channels = in.read(3) + 1;
+        assertEquals(16, in.read(5) + 1);
+        assertEquals("Total samples unknown", 0L, ((long) in.read(4) << 32) | (in.read(32) & 0xFFFFFFFFL));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("MD5 unset", 0, in.read(32));
+        }
+
+        ShortArrayBuilder samples = new ShortArrayBuilder();
+        long expectedFrame = 0;
+        boolean sawShortBlock = false;
+        while (in.bytePosition() < flac.length) {
+            int frameStart = in.bytePosition();
+            if (in.read(16) != 0xFFF8) {
+                throw new IOException("Lost frame sync at byte " + frameStart);
+            }
+            int blockSizeCode = in.read(4);
+            int sampleRateCode = in.read(4);
+            int channelAssignment = in.read(4);
+            assertEquals("Independent channels", result.channels - 1, channelAssignment);
+            assertEquals("16-bit", 4, in.read(3));
+            assertEquals(0, in.read(1));
+            assertEquals("Frame number", expectedFrame++, readUtf8Number(in));
+            int blockSize;
+            if (blockSizeCode == 6) {
+                blockSize = in.read(8) + 1;
+            } else if (blockSizeCode == 7) {
+                blockSize = in.read(16) + 1;
+            } else {
+                blockSize = standardBlockSize(blockSizeCode);
+            }
+            if (sampleRateCode == 12) {
+                assertEquals(result.sampleRate, in.read(8) * 1000);
+            } else if (sampleRateCode == 13) {
+                assertEquals(result.sampleRate, in.read(16));
+            } else if (sampleRateCode == 14) {
+                assertEquals(result.sampleRate, in.read(16) * 10);
+            } else {
+                assertEquals(result.sampleRate, standardSampleRate(sampleRateCode));
+            }
+            int headerCrc = crc8(flac, frameStart, in.bytePosition());
+            if (in.read(8) != headerCrc) {
+                throw new IOException("Frame header CRC-8 mismatch in frame " + (expectedFrame - 1));
+            }
+            assertFalse("Only the last block may be short", sawShortBlock);
+            assertTrue(blockSize <= maxBlock);
+            sawShortBlock = blockSize < maxBlock;
+
+            int[][] channelData = new int[result.channels][];
+            for (int ch = 0; ch < result.channels; ch++) {
+                channelData[ch] = decodeSubframe(in, blockSize, result);
+            }
+            in.alignToByte();
+            int frameCrc = crc16(flac, frameStart, in.bytePosition());
+            if (in.read(16) != frameCrc) {
+                throw new IOException("Frame CRC-16 mismatch in frame " + (expectedFrame - 1));
+            }
+            for (int i = 0; i < blockSize; i++) {
+                for (int ch = 0; ch < result.channels; ch++) {
+                    samples.add((short) channelData[ch][i]);
+                }
+            }
+            result.frameCount++;
+        }
+        result.samples = samples.toArray();
+        return result;
+    }
+
+    private static int[] decodeSubframe(BitReader in, int n, Decoded stats) throws IOException {
+        assertEquals("Subframe padding", 0, in.read(1));
+        int type = in.read(6);
+        assertEquals("No wasted bits", 0, in.read(1));
+        int[] x = new int[n];
+        if (type == 0) {
+            Arrays.fill(x, in.readSigned(16));
+            stats.constantSubframes++;
+        } else if (type == 1) {
+            for (int i = 0; i < n; i++) {
+                x[i] = in.readSigned(16);
+            }
+        } else if (type >= 8 && type <= 12) {
+            int order = type - 8;
+            for (int i = 0; i < order; i++) {
+                x[i] = in.readSigned(16);
+            }
+            readResidual(in, n, order, x);
+            for (int i = order; i < n; i++) {
+                switch (order) {
+                    case 0: break;
+                    case 1: x[i] += x[i - 1]; break;
+                    case 2: x[i] += 2 * x[i - 1] - x[i - 2]; break;
+                    case 3: x[i] += 3 * x[i - 1] - 3 * x[i - 2] + x[i - 3]; break;
+                    default: x[i] += 4 * x[i - 1] - 6 * x[i - 2] + 4 * x[i - 3] - x[i - 4]; break;
+                }
+                if (x[i] < Short.MIN_VALUE || x[i] > Short.MAX_VALUE) {
+                    throw new IOException("Decoded sample out of 16-bit range");
+                }
+            }
+        } else {
+            throw new IOException("Unexpected subframe type " + type);
+        }
+        return x;
+    }
+
+    private static void readResidual(BitReader in, int n, int order, int[] out) throws IOException {
+        int method = in.read(2);
+        if (method > 1) {
+            throw new IOException("Reserved residual coding method " + method);
+        }
+        int parameterBits = method == 0 ? 4 : 5;
+        int escape = (1 << parameterBits) - 1;
+        int partitionOrder = in.read(4);
+        int partitions = 1 << partitionOrder;
+        int index = order;
+        for (int p = 0; p < partitions; p++) {
+            int count = (n >> partitionOrder) - (p == 0 ? order : 0);
+            int k = in.read(parameterBits);
+            if (k == escape) {
+                int bits = in.read(5);
+                for (int i = 0; i < count; i++) {
+                    out[index++] = bits == 0 ? 0 : in.readSigned(bits);
+                }
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                long quotient = 0;
+                while (in.read(1) == 0) {
+                    quotient++;
+                }
+                long folded = (quotient << k) | (k > 0 ? in.read(k) : 0);
+                out[index++] = (int) ((folded >>> 1) ^ -(folded & 1));
+            }
+        }
+    }
+
+    private static long readUtf8Number(BitReader in) throws IOException {
+        int first = in.read(8);
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        int extra = Integer.numberOfLeadingZeros(~first << 24) - 1;
+        long value = first & (0x3F >> extra);
+        for (int i = 0; i < extra; i++) {
+            int next = in.read(8);
+            if ((next & 0xC0) != 0x80) {
+                throw new IOException("Bad UTF-8 continuation in frame number");
+            }
+            value = (value << 6) | (next & 0x3F);
+        }
+        return value;
+    }
+
+    private static int standardBlockSize(int code) throws IOException {
+        if (code == 1) return 192;
+        if (code >= 2 && code <= 5) return 576 << (code - 2);
+        if (code >= 8) return 256 << (code - 8);
+        throw new IOException("Reserved block size code " + code);
+    }
+
+    private static int standardSampleRate(int code) throws IOException {
+        int[] rates = {0, 88200, 176400, 192000, 8000, 16000, 22050, 24000, 32000, 44100, 48000, 96000};
+        if (code >= 1 && code < rates.length) return rates[code];
+        throw new IOException("Unexpected sample rate code " + code);
+    }
+
+    // CRC-8, polynomial x^8 + x^2 + x + 1, computed bit by bit
+    private static int crc8(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xFF : (crc << 1) & 0xFF;
+            }
+        }
+        return crc;
+    }
+
+    // CRC-16, polynomial x^16 + x^15 + x^2 + 1, computed bit by bit
+    private static int crc16(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ 0x8005) & 0xFFFF : (crc << 1) & 0xFFFF;
+            }
+        }
+        return crc;
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private long bitPosition = 0;
+
+        BitReader(byte[] data) {
+            this.data = data;
+        }
+
+        int read(int count) throws IOException {
+            if (bitPosition + count > (long) data.length * 8) {
+                throw new IOException("Read past end of stream");
+            }
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                int b = data[(int) (bitPosition >>> 3)] & 0xFF;
+                value = (value << 1) | ((b >>> (7 - (bitPosition & 7))) & 1);
+                bitPosition++;
+            }
+            return (int) value;
+        }
+
+        int readSigned(int count) throws IOException {
+            int value = read(count);
+            return (value << (32 - count)) >> (32 - count);
+        }
+
+        void skipBytes(int bytes) {
+            bitPosition += bytes * 8L;
+        }
+
+        void alignToByte() {
+            bitPosition = (bitPosition + 7) & ~7L;
+        }
+
+        int bytePosition() {
+            return (int) (bitPosition >>> 3);
+        }
+    }
+
+    private static final class ShortArrayBuilder {
+        private short[] values = new short[1024];
+        private int size = 0;
+
+        void add(short value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        short[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
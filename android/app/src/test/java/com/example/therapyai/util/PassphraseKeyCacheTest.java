@@ -0,0 +1,158 @@
+package com.example.therapyai.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Hits, day scoping, eviction and zeroing of {@link PassphraseKeyCache}, with a counting
+ * deriver in place of PBKDF2.
+ */
+public class PassphraseKeyCacheTest {
+
+    private static final int MAX_ENTRIES = 8;
+    private static final String PASSPHRASE = "374921";
+
+    // Key bytes handed out by the deriver, in order; the cache zeroes these arrays when it drops them
+    private final List<byte[]> derived = new ArrayList<>();
+    private int day;
+    private PassphraseKeyCache cache;
+
+    @Before
+    public void setUp() {
+        derived.clear();
+        day = 20260101;
+        cache = new PassphraseKeyCache(MAX_ENTRIES, this::derive, () -> day);
+    }
+
+    @Test
+    public void testHitSkipsDerivation() throws Exception {
+        SecretKey first = cache.keyFor(PASSPHRASE, salt(1));
+        SecretKey second = cache.keyFor(PASSPHRASE, salt(1));
+
+        assertEquals(1, derived.size());
+        assertArrayEquals(first.getEncoded(), second.getEncoded());
+        assertEquals("AES", second.getAlgorithm());
+    }
+
+    @Test
+    public void testPassphraseAndSaltAreBothPartOfTheKey() throws Exception {
+        cache.keyFor(PASSPHRASE, salt(1));
+        cache.keyFor(PASSPHRASE, salt(2));
+        cache.keyFor("000000", salt(1));
+
+        assertEquals(3, derived.size());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testDayChangeRederivesAndWipesOldKeys() throws Exception {
+        cache.keyFor(PASSPHRASE, salt(1));
+        cache.keyFor(PASSPHRASE, salt(2));
+
+        day++;
+        SecretKey next = cache.keyFor(PASSPHRASE, salt(1));
+
+        assertEquals("Yesterday's key must not be served", 3, derived.size());
+        assertArrayEquals(derived.get(2), next.getEncoded());
+        assertEquals(1, cache.size());
+        assertWiped(derived.get(0));
+        assertWiped(derived.get(1));
+
+        cache.keyFor(PASSPHRASE, salt(1));
+        assertEquals(3, derived.size());
+    }
+
+    @Test
+    public void testEvictsAndWipesLeastRecentlyUsed() throws Exception {
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            cache.keyFor(PASSPHRASE, salt(i));
+        }
+        cache.keyFor(PASSPHRASE, salt(0)); // Salt 1 is now the least recently used
+        cache.keyFor(PASSPHRASE, salt(MAX_ENTRIES));
+
+        assertEquals(MAX_ENTRIES, cache.size());
+        assertWiped(derived.get(1));
+        for (int i = 0; i < derived.size(); i++) {
+            if (i != 1) assertNotWiped(derived.get(i));
+        }
+
+        cache.keyFor(PASSPHRASE, salt(0));
+        assertEquals(MAX_ENTRIES + 1, derived.size());
+        cache.keyFor(PASSPHRASE, salt(1));
+        assertEquals("An evicted key is derived again", MAX_ENTRIES + 2, derived.size());
+    }
+
+    @Test
+    public void testClearWipesEverything() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            cache.keyFor(PASSPHRASE, salt(i));
+        }
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        for (byte[] key : derived) {
+            assertWiped(key);
+        }
+        cache.keyFor(PASSPHRASE, salt(0));
+        assertEquals(4, derived.size());
+    }
+
+    @Test
+    public void testHitDoesNotExposeCachedBytes() throws Exception {
+        cache.keyFor(PASSPHRASE, salt(1));
+        SecretKey hit = cache.keyFor(PASSPHRASE, salt(1));
+
+        cache.clear();
+
+        assertNotWiped(hit.getEncoded());
+    }
+
+    private SecretKey derive(String passphrase, byte[] salt) {
+        byte[] key = new byte[32];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) (derived.size() * 31 + i + 1);
+        }
+        derived.add(key);
+        return new SharedBytesKey(key);
+    }
+
+    private static byte[] salt(int n) {
+        byte[] salt = new byte[16];
+        salt[0] = (byte) n;
+        return salt;
+    }
+
+    private static void assertWiped(byte[] key) {
+        assertArrayEquals(new byte[key.length], key);
+    }
+
+    private static void assertNotWiped(byte[] key) {
+        for (byte b : key) {
+            if (b != 0) return;
+        }
+        fail("Key was zeroed");
+    }
+
+    /**
+     * A key whose getEncoded() returns its own array rather than a copy, so the test can see
+     * whether the cache zeroed what it stored.
+     */
+    private static final class SharedBytesKey implements SecretKey {
+        private final byte[] bytes;
+
+        SharedBytesKey(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override public String getAlgorithm() { return "AES"; }
+        @Override public String getFormat() { return "RAW"; }
+        @Override public byte[] getEncoded() { return bytes; }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.therapyai.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PcmRingBufferTest {
+
+    private static final int SLOT_SIZE = 16;
+
+    @Test
+    public void testCapacityRoundsUpToPowerOfTwo() {
+        assertEquals(2, new PcmRingBuffer(1, SLOT_SIZE).getCapacity());
+        assertEquals(8, new PcmRingBuffer(5, SLOT_SIZE).getCapacity());
+        assertEquals(64, new PcmRingBuffer(64, SLOT_SIZE).getCapacity());
+    }
+
+    @Test
+    public void testWrapsAroundInOrder() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, SLOT_SIZE);
+        int next = 0;
+        // Many laps with up to three slots in flight, so the sequence crosses the mask repeatedly.
+        for (int lap = 0; lap < 50; lap++) {
+            int batch = 1 + lap % 3;
+            for (int i = 0; i < batch; i++) {
+                produce(ring, next + i);
+            }
+            for (int i = 0; i < batch; i++) {
+                assertTrue(ring.awaitData(0, TimeUnit.MILLISECONDS));
+                assertEquals(lengthFor(next), ring.peekLength());
+                assertEquals((byte) next, ring.peekBuffer()[0]);
+                ring.release();
+                next++;
+            }
+            assertTrue(ring.isEmpty());
+        }
+        assertEquals(0, ring.getOverrunCount());
+        assertEquals(3, ring.getHighWaterMark());
+    }
+
+    @Test
+    public void testOverrunDropsNewestAndCountsIt() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, SLOT_SIZE);
+        for (int i = 0; i < 4; i++) {
+            produce(ring, i);
+        }
+        assertEquals(4, ring.getHighWaterMark());
+
+        // Ring full: the next two claims get the scratch slot and are dropped on publish.
+        byte[] scratch = ring.claim();
+        scratch[0] = 99;
+        ring.publish(10);
+        ring.claim();
+        ring.publish(7);
+        assertEquals(2, ring.getOverrunCount());
+        assertEquals(17, ring.getDroppedBytes());
+        assertEquals("Dropped audio must not stay in the scratch buffer", 0, scratch[0]);
+
+        // The queued buffers are untouched and still come out in order.
+        for (int i = 0; i < 4; i++) {
+            assertEquals((byte) i, ring.peekBuffer()[0]);
+            ring.release();
+        }
+        assertTrue(ring.isEmpty());
+
+        // Space again: publishing goes back into the ring.
+        produce(ring, 4);
+        assertFalse(ring.isEmpty());
+        assertEquals(2, ring.getOverrunCount());
+    }
+
+    @Test
+    public void testAwaitDataTimesOutWhenEmpty() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, SLOT_SIZE);
+        long start = System.nanoTime();
+        assertFalse(ring.awaitData(30, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void testAwaitDataWakesOnPublish() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(4, SLOT_SIZE);
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicBoolean gotData = new AtomicBoolean();
+        long[] waitedNanos = new long[1];
+        Thread consumer = new Thread(() -> {
+            waiting.countDown();
+            long start = System.nanoTime();
+            gotData.set(ring.awaitData(10, TimeUnit.SECONDS));
+            waitedNanos[0] = System.nanoTime() - start;
+        });
+        consumer.start();
+        waiting.await();
+        Thread.sleep(50); // Let the consumer park
+        produce(ring, 1);
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertTrue(gotData.get());
+        assertTrue("Publish must unpark the consumer", waitedNanos[0] < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testAwaitDataReturnsWhenInterrupted() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(4, SLOT_SIZE);
+        AtomicBoolean gotData = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> gotData.set(ring.awaitData(10, TimeUnit.SECONDS)));
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertFalse(gotData.get());
+    }
+
+    @Test
+    public void testConcurrentProducerAndConsumerSeeEveryBufferOnce() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8, SLOT_SIZE);
+        int total = 200_000;
+        AtomicInteger consumed = new AtomicInteger();
+        AtomicBoolean producerDone = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                // Back off instead of overrunning, so every buffer must arrive.
+                while (i - consumed.get() >= ring.getCapacity()) {
+                    Thread.yield();
+                }
+                produce(ring, i);
+            }
+            producerDone.set(true);
+        });
+        producer.start();
+
+        int expected = 0;
+        while (expected < total) {
+            if (!ring.awaitData(1, TimeUnit.SECONDS)) {
+                fail("Consumer starved at buffer " + expected);
+            }
+            byte[] buffer = ring.peekBuffer();
+            assertEquals((byte) expected, buffer[0]);
+            assertEquals((byte) (expected >> 8), buffer[1]);
+            assertEquals(lengthFor(expected), ring.peekLength());
+            ring.release();
+            consumed.incrementAndGet();
+            expected++;
+        }
+        producer.join(5000);
+        assertTrue(producerDone.get());
+        assertEquals(0, ring.getOverrunCount());
+        assertTrue(ring.getHighWaterMark() <= ring.getCapacity());
+    }
+
+    @Test
+    public void testWipeClearsBuffersAndPositions() {
+        PcmRingBuffer ring = new PcmRingBuffer(2, SLOT_SIZE);
+        produce(ring, 7);
+        byte[] queued = ring.peekBuffer();
+        produce(ring, 8);
+        byte[] scratch = ring.claim(); // Full, so this is the scratch slot
+        scratch[3] = 42;
+
+        ring.wipe();
+
+        assertTrue(ring.isEmpty());
+        assertArrayEquals(new byte[SLOT_SIZE], queued);
+        assertArrayEquals(new byte[SLOT_SIZE], scratch);
+        // Counters describe the whole recording and survive the wipe.
+        assertEquals(2, ring.getHighWaterMark());
+
+        produce(ring, 9);
+        assertEquals((byte) 9, ring.peekBuffer()[0]);
+    }
+
+    // Writes a recognisable buffer for sequence number n
+    private static void produce(PcmRingBuffer ring, int n) {
+        byte[] slot = ring.claim();
+        slot[0] = (byte) n;
+        slot[1] = (byte) (n >> 8);
+        ring.publish(lengthFor(n));
+    }
+
+    private static int lengthFor(int n) {
+        return 2 + n % (SLOT_SIZE - 1);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.therapyai.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Output length, chunking invariance and filter quality of {@link PolyphaseResampler}, for the
+ * conversions RecordingService actually uses.
+ */
+public class PolyphaseResamplerTest {
+
+    private static final int[][] RATE_PAIRS = {
+            {44_100, 16_000},
+            {48_000, 16_000},
+            {48_000, 44_100},
+            {16_000, 44_100},
+    };
+    private static final double AMPLITUDE = 16_000;
+
+    @Test
+    public void testOutputLengthMatchesRatioAfterDrain() {
+        Random random = new Random(3);
+        for (int[] rates : RATE_PAIRS) {
+            for (int frames : new int[]{0, 1, 2, 440, 441, 442, 10_007, 44_100}) {
+                byte[] input = randomPcm(random, frames, 1);
+                byte[] output = resample(new PolyphaseResampler(rates[0], rates[1], 1), input, random);
+
+                long expected = ((long) frames * rates[1] + rates[0] - 1) / rates[0];
+                assertEquals(rates[0] + "->" + rates[1] + ", " + frames + " frames", expected * 2, output.length);
+            }
+        }
+    }
+
+    @Test
+    public void testChunkingDoesNotChangeOutput() {
+        Random random = new Random(17);
+        for (int[] rates : RATE_PAIRS) {
+            for (int channels = 1; channels <= 2; channels++) {
+                byte[] input = randomPcm(random, 9_001, channels);
+                byte[] whole = resampleWhole(new PolyphaseResampler(rates[0], rates[1], channels), input);
+
+                // Buffer boundaries anywhere, including inside a sample and inside a stereo frame.
+                byte[] chunked = resample(new PolyphaseResampler(rates[0], rates[1], channels), input, random);
+                byte[] byteAtATime = resampleInChunksOf(new PolyphaseResampler(rates[0], rates[1], channels), input, 1);
+
+                String label = rates[0] + "->" + rates[1] + ", " + channels + " ch";
+                assertArrayEquals(label + ", random chunks", whole, chunked);
+                assertArrayEquals(label + ", single bytes", whole, byteAtATime);
+            }
+        }
+    }
+
+    @Test
+    public void testInBandSineIsReproduced() {
+        for (int[] rates : RATE_PAIRS) {
+            int lowerRate = Math.min(rates[0], rates[1]);
+            for (double frequency : new double[]{100, 1_000, 0.25 * lowerRate, 0.4 * lowerRate}) {
+                byte[] output = resampleWhole(new PolyphaseResampler(rates[0], rates[1], 1),
+                        sine(frequency, rates[0], rates[0], 1));
+                double snr = snrAgainstIdealSine(output, frequency, rates[1]);
+                assertTrue(rates[0] + "->" + rates[1] + " at " + frequency + " Hz: SNR " + snr + " dB",
+                        snr >= 80);
+            }
+        }
+    }
+
+    @Test
+    public void testSweepAboveOutputNyquistIsRejected() {
+        // Everything from just past the stopband edge up to the input Nyquist would fold back
+        // into the speech band without the filter.
+        int[][] decimating = {{44_100, 16_000}, {48_000, 16_000}};
+        for (int[] rates : decimating) {
+            double stopbandStart = 0.5 * rates[1] + 500;
+            byte[] input = sweep(stopbandStart, 0.5 * rates[0] - 200, rates[0], 2 * rates[0]);
+            byte[] output = resampleWhole(new PolyphaseResampler(rates[0], rates[1], 1), input);
+
+            double rejection = 20 * Math.log10((AMPLITUDE / Math.sqrt(2)) / rms(output, rates[1] / 10));
+            assertTrue(rates[0] + "->" + rates[1] + ": alias rejection " + rejection + " dB", rejection >= 80);
+        }
+    }
+
+    @Test
+    public void testSingleToneAboveNyquistIsRejected() {
+        // 12 kHz would alias to 4 kHz at 16 kHz, right in the middle of the speech band.
+        byte[] output = resampleWhole(new PolyphaseResampler(44_100, 16_000, 1), sine(12_000, 44_100, 44_100, 1));
+        double rejection = 20 * Math.log10((AMPLITUDE / Math.sqrt(2)) / rms(output, 1_600));
+        assertTrue("12 kHz rejection " + rejection + " dB", rejection >= 80);
+    }
+
+    @Test
+    public void testStereoIsAveragedToMono() {
+        int frames = 4_410;
+        byte[] stereo = new byte[frames * 4];
+        byte[] mono = new byte[frames * 2];
+        Random random = new Random(23);
+        for (int i = 0; i < frames; i++) {
+            short left = (short) (random.nextInt(20_000) - 10_000);
+            short right = (short) (random.nextInt(20_000) - 10_000);
+            putSample(stereo, i * 2, left);
+            putSample(stereo, i * 2 + 1, right);
+            putSample(mono, i, (short) ((left + right) / 2));
+        }
+        byte[] fromStereo = resampleWhole(new PolyphaseResampler(44_100, 16_000, 2), stereo);
+        byte[] fromMono = resampleWhole(new PolyphaseResampler(44_100, 16_000, 1), mono);
+
+        assertEquals(fromMono.length, fromStereo.length);
+        // Odd sums round differently when pre-averaged to shorts, so allow one LSB.
+        for (int i = 0; i < fromMono.length / 2; i++) {
+            assertEquals("sample " + i, getSample(fromMono, i), getSample(fromStereo, i), 1);
+        }
+    }
+
+    @Test
+    public void testWipeRestartsTheStream() {
+        Random random = new Random(31);
+        byte[] first = randomPcm(random, 3_000, 1);
+        byte[] second = randomPcm(random, 3_000, 1);
+
+        PolyphaseResampler reused = new PolyphaseResampler(48_000, 16_000, 1);
+        byte[] scratch = new byte[reused.maxOutputBytes(first.length)];
+        reused.process(first, 0, first.length - 1, scratch); // Leaves half a sample in the carry
+        reused.wipe();
+
+        assertArrayEquals(resampleWhole(new PolyphaseResampler(48_000, 16_000, 1), second),
+                resampleWhole(reused, second));
+    }
+
+    // Resamples in random-sized pieces, then drains
+    private static byte[] resample(PolyphaseResampler resampler, byte[] input, Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[resampler.maxOutputBytes(input.length) + resampler.maxDrainBytes()];
+        int offset = 0;
+        while (offset < input.length) {
+            int length = Math.min(input.length - offset, 1 + random.nextInt(3_000));
+            out.write(buffer, 0, resampler.process(input, offset, length, buffer));
+            offset += length;
+        }
+        out.write(buffer, 0, resampler.drain(buffer));
+        return out.toByteArray();
+    }
+
+    private static byte[] resampleInChunksOf(PolyphaseResampler resampler, byte[] input, int chunk) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[resampler.maxOutputBytes(chunk) + resampler.maxDrainBytes()];
+        for (int offset = 0; offset < input.length; offset += chunk) {
+            out.write(buffer, 0, resampler.process(input, offset, Math.min(chunk, input.length - offset), buffer));
+        }
+        out.write(buffer, 0, resampler.drain(buffer));
+        return out.toByteArray();
+    }
+
+    private static byte[] resampleWhole(PolyphaseResampler resampler, byte[] input) {
+        return resampleInChunksOf(resampler, input, Math.max(1, input.length));
+    }
+
+    /**
+     * Compares the output against the exact sine at the output rate, skipping the filter's
+     * start-up and tail where the input was implicitly zero-padded.
+     */
+    private static double snrAgainstIdealSine(byte[] output, double frequency, int outputRate) {
+        int samples = output.length / 2;
+        int edge = outputRate / 10;
+        double signal = 0;
+        double noise = 0;
+        for (int n = edge; n < samples - edge; n++) {
+            double ideal = AMPLITUDE * Math.sin(2 * Math.PI * frequency * n / outputRate);
+            double error = getSample(output, n) - ideal;
+            signal += ideal * ideal;
+            noise += error * error;
+        }
+        return 10 * Math.log10(signal / noise);
+    }
+
+    private static double rms(byte[] output, int edge) {
+        int samples = output.length / 2;
+        double sum = 0;
+        for (int n = edge; n < samples - edge; n++) {
+            double value = getSample(output, n);
+            sum += value * value;
+        }
+        // Floor at a quarter LSB so an output that rounds to silence gives a finite number (about 93 dB).
+        return Math.max(Math.sqrt(sum / (samples - 2 * edge)), 0.25);
+    }
+
+    private static byte[] sine(double frequency, int rate, int frames, int channels) {
+        byte[] pcm = new byte[frames * channels * 2];
+        for (int i = 0; i < frames; i++) {
+            short value = (short) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / rate));
+            for (int ch = 0; ch < channels; ch++) {
+                putSample(pcm, i * channels + ch, value);
+            }
+        }
+        return pcm;
+    }
+
+    // Linear chirp from startHz to endHz over the given number of frames
+    private static byte[] sweep(double startHz, double endHz, int rate, int frames) {
+        byte[] pcm = new byte[frames * 2];
+        double duration = (double) frames / rate;
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / rate;
+            double phase = 2 * Math.PI * (startHz * t + (endHz - startHz) * t * t / (2 * duration));
+            putSample(pcm, i, (short) Math.round(AMPLITUDE * Math.sin(phase)));
+        }
+        return pcm;
+    }
+
+    private static byte[] randomPcm(Random random, int frames, int channels) {
+        byte[] pcm = new byte[frames * channels * 2];
+        for (int i = 0; i < frames * channels; i++) {
+            putSample(pcm, i, (short) (random.nextInt(40_000) - 20_000));
+        }
+        return pcm;
+    }
+
+    private static void putSample(byte[] pcm, int index, short value) {
+        pcm[index * 2] = (byte) value;
+        pcm[index * 2 + 1] = (byte) (value >> 8);
+    }
+
+    private static short getSample(byte[] pcm, int index) {
+        return (short) ((pcm[index * 2 + 1] << 8) | (pcm[index * 2] & 0xFF));
+    }
+}
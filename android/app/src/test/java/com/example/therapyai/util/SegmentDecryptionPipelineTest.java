@@ -0,0 +1,135 @@
+package com.example.therapyai.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Ordering and failure handling of {@link SegmentDecryptionPipeline} over segments in the
+ * RecordingService layout.
+ */
+public class SegmentDecryptionPipelineTest {
+
+    private File workDir;
+    private SecretKey key;
+    private ByteArrayOutputStream plaintext;
+
+    @Before
+    public void setUp() throws Exception {
+        workDir = new File(System.getProperty("java.io.tmpdir"), "segment_pipeline_" + System.nanoTime());
+        assertTrue(workDir.mkdirs());
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        key = keyGen.generateKey();
+        plaintext = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Test
+    public void testSegmentsComeOutInOrder() throws Exception {
+        List<String> paths = writeSegments(10, 100 * 1024);
+        try (SegmentDecryptionPipeline pipeline = newPipeline(paths,
+                SegmentDecryptionPipeline.DEFAULT_WORKERS,
+                SegmentDecryptionPipeline.DEFAULT_BUFFERS_PER_WORKER,
+                SegmentDecryptionPipeline.DEFAULT_BUFFER_SIZE)) {
+            assertArrayEquals(plaintext.toByteArray(), readAll(pipeline.openStream()));
+        }
+    }
+
+    @Test
+    public void testSmallBuffersAndMoreWorkersThanSegments() throws Exception {
+        // Segments span many buffers, and some buffers end exactly on a segment boundary.
+        List<String> paths = writeSegments(3, 4 * 1024 + 1);
+        try (SegmentDecryptionPipeline pipeline = newPipeline(paths, 4, 1, 1024)) {
+            assertArrayEquals(plaintext.toByteArray(), readAll(pipeline.openStream()));
+        }
+    }
+
+    @Test
+    public void testSingleAndEmptySegments() throws Exception {
+        List<String> paths = writeSegments(1, 0);
+        paths.addAll(writeSegments(1, 5_000));
+        try (SegmentDecryptionPipeline pipeline = newPipeline(paths, 2, 2, 1024)) {
+            assertArrayEquals(plaintext.toByteArray(), readAll(pipeline.openStream()));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptSegmentFailsTransfer() throws Exception {
+        List<String> paths = writeSegments(3, 64 * 1024);
+        try (FileOutputStream fos = new FileOutputStream(paths.get(1), true)) {
+            fos.write(0x5A); // Trailing garbage breaks the GCM tag
+        }
+        try (SegmentDecryptionPipeline pipeline = newPipeline(paths, 2, 2, 16 * 1024)) {
+            readAll(pipeline.openStream());
+        }
+    }
+
+    private SegmentDecryptionPipeline newPipeline(List<String> paths, int workers, int buffersPerWorker, int bufferSize) {
+        return new SegmentDecryptionPipeline(paths.size(),
+                segmentIndex -> AESUtil.createDecryptingInputStream(new File(paths.get(segmentIndex)), key, 0),
+                workers, buffersPerWorker, bufferSize);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes segments as RecordingService does: IV, then GCM ciphertext with the tag at the end.
+     * Their plaintext is appended to {@link #plaintext}.
+     */
+    private List<String> writeSegments(int count, int segmentSize) throws Exception {
+        List<String> paths = new ArrayList<>();
+        Random random = new Random(count * 31L + segmentSize);
+        SecureRandom secureRandom = new SecureRandom();
+        for (int i = 0; i < count; i++) {
+            byte[] pcm = new byte[segmentSize];
+            random.nextBytes(pcm);
+            plaintext.write(pcm);
+            byte[] iv = new byte[AESUtil.GCM_IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH, iv));
+            File segment = File.createTempFile("segment_", ".enc", workDir);
+            try (FileOutputStream fos = new FileOutputStream(segment)) {
+                fos.write(iv);
+                fos.write(cipher.doFinal(pcm));
+            }
+            paths.add(segment.getAbsolutePath());
+        }
+        return paths;
+    }
+}
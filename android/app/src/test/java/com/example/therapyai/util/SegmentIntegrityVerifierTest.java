@@ -0,0 +1,126 @@
+package com.example.therapyai.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link SegmentIntegrityVerifier} over container segments written as RecordingService writes
+ * them, with the digest fed while encrypting.
+ */
+public class SegmentIntegrityVerifierTest {
+
+    private static final int SEGMENT_SIZE = 20_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(3);
+    private SecretKey key;
+    private SegmentIntegrityVerifier verifier;
+
+    @Before
+    public void setUp() {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+        verifier = new SegmentIntegrityVerifier(key);
+    }
+
+    @After
+    public void tearDown() {
+        verifier.shutdown();
+    }
+
+    @Test
+    public void testGoodSegmentVerifies() throws Exception {
+        Segment segment = writeSegment();
+        verifier.submit(segment.file, 0, segment.digest, SEGMENT_SIZE);
+        assertTrue(verifier.awaitAll());
+    }
+
+    @Test
+    public void testFlippedCiphertextByteFails() throws Exception {
+        Segment segment = writeSegment();
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "rw")) {
+            long middle = raf.length() / 2;
+            raf.seek(middle);
+            int original = raf.read();
+            raf.seek(middle);
+            raf.write(original ^ 0x01);
+        }
+        verifier.submit(segment.file, 0, segment.digest, SEGMENT_SIZE);
+        assertFalse(verifier.awaitAll());
+    }
+
+    @Test
+    public void testTruncatedSegmentFails() throws Exception {
+        Segment segment = writeSegment();
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+        verifier.submit(segment.file, 0, segment.digest, SEGMENT_SIZE);
+        assertFalse(verifier.awaitAll());
+    }
+
+    @Test
+    public void testDigestMismatchFails() throws Exception {
+        Segment segment = writeSegment();
+        segment.digest[0] ^= 0x01;
+        verifier.submit(segment.file, 0, segment.digest, SEGMENT_SIZE);
+        assertFalse(verifier.awaitAll());
+    }
+
+    @Test
+    public void testOneBadSegmentFailsTheSession() throws Exception {
+        Segment good = writeSegment();
+        Segment bad = writeSegment();
+        verifier.submit(good.file, 0, good.digest, SEGMENT_SIZE);
+        verifier.submit(bad.file, 1, bad.digest, SEGMENT_SIZE - 1); // Wrong length
+        assertFalse(verifier.awaitAll());
+    }
+
+    @Test
+    public void testNothingSubmittedIsNotVerified() {
+        assertFalse(verifier.awaitAll());
+    }
+
+    private static final class Segment {
+        final File file;
+        final byte[] digest;
+
+        Segment(File file, byte[] digest) {
+            this.file = file;
+            this.digest = digest;
+        }
+    }
+
+    private Segment writeSegment() throws Exception {
+        byte[] pcm = new byte[SEGMENT_SIZE];
+        random.nextBytes(pcm);
+        MessageDigest digest = SegmentIntegrityVerifier.newSegmentDigest();
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ChunkedGcmContainer.Writer writer = new ChunkedGcmContainer.Writer(out, key, 4096);
+            for (int offset = 0; offset < pcm.length; offset += 3_000) {
+                int length = Math.min(3_000, pcm.length - offset);
+                digest.update(pcm, offset, length);
+                writer.write(pcm, offset, length);
+            }
+            writer.finish();
+        }
+        return new Segment(file, digest.digest());
+    }
+}
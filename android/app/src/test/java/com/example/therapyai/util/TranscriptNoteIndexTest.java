@@ -0,0 +1,119 @@
+package com.example.therapyai.util;
+
+import com.example.therapyai.data.local.models.FinalTranscriptEntry;
+import com.example.therapyai.data.local.models.SentimentScore;
+import com.example.therapyai.data.local.models.TimedNote;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Attachment of timed notes to patient sentences by {@link TranscriptNoteIndex}.
+ */
+public class TranscriptNoteIndexTest {
+
+    @Test
+    public void testEdgeCases() {
+        List<FinalTranscriptEntry> entries = Arrays.asList(
+                entry("Therapist", "00:00:01.000"),
+                entry("Patient", "00:00:05.000"),
+                entry("Patient", "00:00:05.000"),   // Same start as the one before; never wins
+                entry("Patient", "not a time"),
+                entry("Therapist", "00:00:09.000"),
+                entry("Patient", "00:00:10.500"),
+                entry("Patient", "00:01:00"));
+        List<TimedNote> notes = Arrays.asList(
+                new TimedNote("00:00:02", "before any patient sentence"),
+                new TimedNote("00:00:07", "second"),
+                new TimedNote("00:00:05", "first, written at the same second"),
+                new TimedNote("00:00:10.5", "exactly at a sentence start"),
+                new TimedNote("garbage", "unparseable"),
+                new TimedNote(null, "no time"),
+                new TimedNote("00:00:07", "third, same time as second"),
+                new TimedNote("01:00:00", "long after the last sentence"));
+
+        List<List<TimedNote>> attached = TranscriptNoteIndex.attachNotes(entries, notes);
+        assertEquals(entries.size(), attached.size());
+        assertNull(attached.get(0));
+        assertEquals(Arrays.asList(notes.get(2), notes.get(1), notes.get(6)), attached.get(1));
+        assertNull(attached.get(2));
+        assertNull(attached.get(3));
+        assertNull(attached.get(4));
+        assertEquals(Collections.singletonList(notes.get(3)), attached.get(5));
+        assertEquals(Collections.singletonList(notes.get(7)), attached.get(6));
+    }
+
+    @Test
+    public void testNoPatientSentencesOrNotes() {
+        List<FinalTranscriptEntry> therapistOnly = Collections.singletonList(entry("Therapist", "00:00:01"));
+        List<TimedNote> notes = Collections.singletonList(new TimedNote("00:00:02", "note"));
+        assertNull(TranscriptNoteIndex.attachNotes(therapistOnly, notes).get(0));
+        assertNull(TranscriptNoteIndex.attachNotes(therapistOnly, Collections.emptyList()).get(0));
+        assertTrue(TranscriptNoteIndex.attachNotes(Collections.emptyList(), notes).isEmpty());
+    }
+
+    @Test
+    public void testLongSessionMatchesLinearSearch() {
+        Random random = new Random(5);
+        List<FinalTranscriptEntry> entries = new ArrayList<>();
+        double seconds = 0;
+        for (int i = 0; i < 3_000; i++) {
+            // Now and then a sentence starts at the same time as the one before
+            seconds += random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(6) + random.nextInt(1000) / 1000.0;
+            entries.add(entry(random.nextInt(3) == 0 ? "Therapist" : "Patient", timestamp(seconds)));
+        }
+        List<TimedNote> notes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            notes.add(new TimedNote(timestamp(random.nextInt((int) seconds + 60)), "Note " + i));
+        }
+
+        assertEquals(expectedAttachment(entries, notes), TranscriptNoteIndex.attachNotes(entries, notes));
+    }
+
+    /**
+     * Each note goes to the latest patient sentence starting at or before it, the first of
+     * several with the same start; each sentence's notes are in time order.
+     */
+    private static List<List<TimedNote>> expectedAttachment(List<FinalTranscriptEntry> entries, List<TimedNote> notes) {
+        List<List<TimedNote>> attached = new ArrayList<>(Collections.nCopies(entries.size(), null));
+        for (TimedNote note : notes) {
+            float noteTime = TranscriptNoteIndex.parseTimeToSeconds(note.getTime());
+            if (noteTime < 0) continue;
+            int best = -1;
+            float bestTime = -1f;
+            for (int i = 0; i < entries.size(); i++) {
+                if (!"Patient".equalsIgnoreCase(entries.get(i).getSpeaker())) continue;
+                float start = TranscriptNoteIndex.parseTimeToSeconds(entries.get(i).getTimestamp());
+                if (start >= 0 && start <= noteTime && start > bestTime) {
+                    bestTime = start;
+                    best = i;
+                }
+            }
+            if (best == -1) continue;
+            if (attached.get(best) == null) attached.set(best, new ArrayList<>());
+            attached.get(best).add(note);
+        }
+        for (List<TimedNote> forEntry : attached) {
+            if (forEntry != null) forEntry.sort(Comparator.comparing(n -> TranscriptNoteIndex.parseTimeToSeconds(n.getTime())));
+        }
+        return attached;
+    }
+
+    private static String timestamp(double seconds) {
+        int whole = (int) seconds;
+        return String.format(Locale.US, "%02d:%02d:%06.3f", whole / 3600, (whole / 60) % 60, seconds % 60);
+    }
+
+    private static FinalTranscriptEntry entry(String speaker, String timestamp) {
+        SentimentScore score = "Patient".equals(speaker) ? new SentimentScore(0.3f, 0.5f, 0.2f) : null;
+        return new FinalTranscriptEntry(speaker, "Sentence at " + timestamp, timestamp, score);
+    }
+}
@@ -4,6 +4,9 @@ from datetime import datetime, timezone
 import os
 from dotenv import load_dotenv
 import logging # Use standard logging
+import base64
+import hashlib
+import hmac
 import config
 
 load_dotenv()
@@ -252,42 +255,13 @@ def get_final_session_details_by_id(session_id: str): # session_id is PK for det
         logger.error(f"Error fetching final session details {session_id}: {e}", exc_info=True)
         return None
 
-def get_session_summaries_for_user(user_id: str, user_type: str):
-    if not session_headers_container: return []
-    query = f"SELECT * FROM c \
+_CURSOR_MAC_LENGTH = 16
+
+_OWN_SESSIONS_QUERY = "SELECT * FROM c \
               WHERE c.patient_id = @user_id AND c.status = 'FINALIZED' \
               ORDER BY c.session_date DESC"
-    params = [{"name": "@user_id", "value": user_id}]
-    try:
-        items = list(session_headers_container.query_items(query=query, parameters=params, enable_cross_partition_query=True)) # Check PK
-        # Format to match SessionSummaryResponse (id, patientId, patientName, therapistId, therapistName, title, date, descriptionPreview, positive, neutral, negative)
-        summaries = []
-        for s_header in items:
-            summaries.append({
-                "id": s_header.get("id"),
-                "patientId": s_header.get("patient_id"),
-                "patientName": s_header.get("patient_name"),
-                "therapistId": s_header.get("therapist_id"),
-                "therapistName": s_header.get("therapist_name"),
-                "title": s_header.get("title", f"Session on {s_header.get('session_date')}"),
-                "date": s_header.get("session_date"), # Consider formatting if needed
-                "descriptionPreview": s_header.get("summary_preview", "")[:100],
-                "positive": s_header.get("overall_sentiment_positive", 0.0),
-                "neutral": s_header.get("overall_sentiment_neutral", 0.0),
-                "negative": s_header.get("overall_sentiment_negative", 0.0)
-            })
-        return summaries
-    except Exception as e:
-        logger.error(f"Error fetching session summaries for user {user_id} ({user_type}): {e}", exc_info=True)
-        return []
 
-def search_session_summaries_by_query(query_term: str):
-    if not session_headers_container: return []
-    
-    # Make query_term lowercase for case-insensitive search
-    lower_query_term = query_term.lower()
-    
-    query = """
+_SEARCH_SESSIONS_QUERY = """
     SELECT * FROM c 
     WHERE c.status = 'FINALIZED'
     AND (CONTAINS(LOWER(c.patient_name), @lower_query_term) OR
@@ -298,29 +272,118 @@ def search_session_summaries_by_query(query_term: str):
          CONTAINS(LOWER(c.summary_preview), @lower_query_term))
     ORDER BY c.session_date DESC
     """
+
+
+def _session_summary_from_header(s_header):
+    # Format to match SessionSummaryResponse (id, patientId, patientName, therapistId, therapistName, title, date, descriptionPreview, positive, neutral, negative)
+    return {
+        "id": s_header.get("id"),
+        "patientId": s_header.get("patient_id"),
+        "patientName": s_header.get("patient_name"),
+        "therapistId": s_header.get("therapist_id"),
+        "therapistName": s_header.get("therapist_name"),
+        "title": s_header.get("title", f"Session on {s_header.get('session_date')}"),
+        "date": s_header.get("session_date"), # Consider formatting if needed
+        "descriptionPreview": s_header.get("summary_preview", "")[:100],
+        "positive": s_header.get("overall_sentiment_positive", 0.0),
+        "neutral": s_header.get("overall_sentiment_neutral", 0.0),
+        "negative": s_header.get("overall_sentiment_negative", 0.0)
+    }
+
+
+def _cursor_mac(payload: bytes, scope: str) -> bytes:
+    key = config.JWT_SECRET_KEY or config.SECRET_KEY
+    if isinstance(key, str):
+        key = key.encode("utf-8")
+    return hmac.new(key, scope.encode("utf-8") + b"\0" + payload, hashlib.sha256).digest()[:_CURSOR_MAC_LENGTH]
+
+
+def encode_page_cursor(continuation_token, scope: str):
+    """
+    Wraps a Cosmos continuation token as an opaque, URL-safe cursor (None at the end). The cursor
+    is signed together with its scope (the listing it belongs to), so it cannot be edited or
+    replayed against another user's or another query's listing.
+    """
+    if not continuation_token:
+        return None
+    payload = continuation_token.encode("utf-8")
+    return base64.urlsafe_b64encode(_cursor_mac(payload, scope) + payload).decode("ascii")
+
+
+def decode_page_cursor(cursor, scope: str):
+    """
+    Inverse of encode_page_cursor. Raises ValueError for a cursor we did not issue for this scope,
+    so a bad cursor is answered with 400 before it reaches Cosmos.
+    """
+    if not cursor:
+        return None
+    try:
+        raw = base64.urlsafe_b64decode(cursor.encode("ascii"))
+    except Exception as e:
+        raise ValueError("Invalid cursor") from e
+    mac, payload = raw[:_CURSOR_MAC_LENGTH], raw[_CURSOR_MAC_LENGTH:]
+    if not payload or not hmac.compare_digest(mac, _cursor_mac(payload, scope)):
+        raise ValueError("Invalid cursor")
+    try:
+        return payload.decode("utf-8")
+    except UnicodeDecodeError as e:
+        raise ValueError("Invalid cursor") from e
+
+
+def _query_session_summaries_page(query, params, limit, continuation):
+    """
+    Runs a session header query one page at a time using Cosmos continuation tokens, so a long
+    history is never read or sent in one go. Cursors are encoded and checked by the caller.
+    Returns (summaries, next_continuation); next_continuation is None on the last page.
+    """
+    pager = session_headers_container.query_items(
+        query=query, parameters=params, enable_cross_partition_query=True, max_item_count=limit
+    ).by_page(continuation)
+    try:
+        page = list(next(pager))
+    except StopIteration:
+        return [], None
+    return [_session_summary_from_header(h) for h in page], pager.continuation_token or None
+
+
+def get_session_summaries_for_user(user_id: str, user_type: str):
+    if not session_headers_container: return []
+    params = [{"name": "@user_id", "value": user_id}]
+    try:
+        items = list(session_headers_container.query_items(query=_OWN_SESSIONS_QUERY, parameters=params, enable_cross_partition_query=True)) # Check PK
+        return [_session_summary_from_header(s_header) for s_header in items]
+    except Exception as e:
+        logger.error(f"Error fetching session summaries for user {user_id} ({user_type}): {e}", exc_info=True)
+        return []
+
+
+def get_session_summaries_page_for_user(user_id: str, user_type: str, limit: int, continuation: str = None):
+    """Newest-first page of the user's finalized sessions; see _query_session_summaries_page."""
+    if not session_headers_container: return [], None
+    params = [{"name": "@user_id", "value": user_id}]
+    return _query_session_summaries_page(_OWN_SESSIONS_QUERY, params, limit, continuation)
+
+
+def search_session_summaries_by_query(query_term: str):
+    if not session_headers_container: return []
+    
+    # Make query_term lowercase for case-insensitive search
+    lower_query_term = query_term.lower()
     
     params = [
         {"name": "@lower_query_term", "value": lower_query_term}
     ]
     
     try:
-        items = list(session_headers_container.query_items(query=query, parameters=params, enable_cross_partition_query=True))
-        summaries = []
-        for s_header in items:
-             summaries.append({
-                "id": s_header.get("id"), 
-                "patientId": s_header.get("patient_id"), 
-                "patientName": s_header.get("patient_name"),
-                "therapistId": s_header.get("therapist_id"), 
-                "therapistName": s_header.get("therapist_name"),
-                "title": s_header.get("title", f"Session on {s_header.get('session_date')}"),
-                "date": s_header.get("session_date"), 
-                "descriptionPreview": s_header.get("summary_preview", "")[:100],
-                "positive": s_header.get("overall_sentiment_positive", 0.0),
-                "neutral": s_header.get("overall_sentiment_neutral", 0.0),
-                "negative": s_header.get("overall_sentiment_negative", 0.0)
-            })
-        return summaries
+        items = list(session_headers_container.query_items(query=_SEARCH_SESSIONS_QUERY, parameters=params, enable_cross_partition_query=True))
+        return [_session_summary_from_header(s_header) for s_header in items]
     except Exception as e:
         logger.error(f"Error searching session summaries for query '{query_term}': {e}", exc_info=True)
-        return []
\ No newline at end of file
+        return []
+
+
+def search_session_summaries_page(query_term: str, limit: int, continuation: str = None):
+    """Newest-first page of search results; see _query_session_summaries_page."""
+    if not session_headers_container: return [], None
+    params = [{"name": "@lower_query_term", "value": query_term.lower()}]
+    return _query_session_summaries_page(_SEARCH_SESSIONS_QUERY, params, limit, continuation)
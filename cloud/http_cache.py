@@ -0,0 +1,17 @@
+# http_cache.py
+from flask import request, jsonify
+
+
+def conditional_json(payload):
+    """
+    JSON 200 response carrying a strong ETag over its body. When the request's If-None-Match
+    already names that ETag, the body is dropped and 304 Not Modified is sent instead, so clients
+    revalidating a cached copy do not download it again.
+
+    Marked private/no-cache: only the requesting user's device may store it, and it must check
+    back with the server before reusing it.
+    """
+    response = jsonify(payload)
+    response.add_etag()
+    response.headers["Cache-Control"] = "private, no-cache"
+    return response.make_conditional(request)
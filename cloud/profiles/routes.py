@@ -3,6 +3,7 @@
 from flask import Blueprint, request, jsonify
 from flask_jwt_extended import jwt_required, get_jwt_identity
 from database.cosmos import search_patients_by_query, get_user_by_id
+from http_cache import conditional_json
 
 profiles_bp = Blueprint("profiles", __name__)
 
@@ -64,7 +65,7 @@ def get_own_profile():
             "pictureUrl": user.get("pictureUrl")
         }
 
-        return jsonify(profile), 200
+        return conditional_json(profile)
 
     except Exception as e:
         print(f"[GET OWN PROFILE] Error: {str(e)}")
@@ -4,6 +4,8 @@ import uuid
 import os
 import logging
 import json
+import base64
+import hashlib
 from datetime import datetime, timezone
 import socket
 
@@ -11,10 +13,14 @@ import socket
 from flask_jwt_extended import jwt_required, get_jwt_identity
 from database.cosmos import (
     get_user_by_id, get_session_summaries_for_user, search_session_summaries_by_query,
+    get_session_summaries_page_for_user, search_session_summaries_page,
+    encode_page_cursor, decode_page_cursor,
     session_headers_container, session_processing_data_container, session_details_container
 )
 from azure.cosmos import exceptions as cosmos_exceptions
+from azure.core.exceptions import ResourceNotFoundError
 import config 
+from http_cache import conditional_json
 
 from azure.storage.blob import BlobServiceClient, ContentSettings 
 from .tasks import simple_test_task  
@@ -141,10 +147,36 @@ def get_final_session_details(session_id):
         "sentiment_scores": session_doc.get("sentiment_scores", []), # List<SentimentScoreEntry>
         # No therapist_speech or patient_speech strings as per corrected understanding
     }
-    return jsonify(response), 200
+    return conditional_json(response)
 
 # Other routes (/me, /search) remain largely the same as previous correct versions.
 
+MAX_SESSION_PAGE_SIZE = 100
+
+
+def _page_request_args(cursor_scope):
+    """
+    Reads optional ?limit=&cursor= paging arguments. Returns (limit, continuation), with limit None
+    when the client did not ask for paging. The cursor is checked against cursor_scope and decoded
+    here, so a malformed or tampered one raises ValueError (400) instead of reaching Cosmos.
+    """
+    raw_limit = request.args.get("limit")
+    if raw_limit is None:
+        return None, None
+    limit = int(raw_limit)
+    if limit < 1 or limit > MAX_SESSION_PAGE_SIZE:
+        raise ValueError(f"limit must be between 1 and {MAX_SESSION_PAGE_SIZE}")
+    return limit, decode_page_cursor(request.args.get("cursor") or None, cursor_scope)
+
+
+def _session_page_body(items, next_continuation, cursor_scope):
+    return {"items": items, "nextCursor": encode_page_cursor(next_continuation, cursor_scope)}
+
+
+def _is_rejected_continuation(error):
+    # Cosmos answers 400 for a continuation token it cannot resume from (e.g. after a partition split)
+    return isinstance(error, cosmos_exceptions.CosmosHttpResponseError) and error.status_code == 400
+
 @sessions_bp.route("/me", methods=["GET"])
 @jwt_required()
 def get_my_final_sessions():
@@ -156,10 +188,22 @@ def get_my_final_sessions():
     if user_type not in ["PATIENT", "THERAPIST"]:
         return jsonify({"error": "Invalid user type"}), 403 
 
+    cursor_scope = f"me:{user_id}"
+    try:
+        limit, continuation = _page_request_args(cursor_scope)
+    except ValueError as e:
+        return jsonify({"error": str(e)}), 400
+
     try:
+        if limit is not None:
+            # Paged: {"items": [...], "nextCursor": ...}; pass nextCursor back for the next page
+            items, next_continuation = get_session_summaries_page_for_user(user_id, user_type, limit, continuation)
+            return conditional_json(_session_page_body(items, next_continuation, cursor_scope))
         summaries = get_session_summaries_for_user(user_id, user_type) 
-        return jsonify(summaries), 200
+        return conditional_json(summaries)
     except Exception as e:
+        if continuation and _is_rejected_continuation(e):
+            return jsonify({"error": "Cursor has expired; start again from the first page"}), 400
         logger.error(f"Error in /sessions/me for user {user_id}: {e}", exc_info=True)
         return jsonify({"error": "Internal server error"}), 500
 
@@ -173,12 +217,23 @@ def search_final_sessions():
         return jsonify({"error": "Forbidden: Only therapists can search sessions."}), 403
 
     query_term = request.args.get("query", "").strip()
-    if not query_term: return jsonify([]), 200
+    cursor_scope = f"search:{user_id}:{query_term.lower()}"
+    try:
+        limit, continuation = _page_request_args(cursor_scope)
+    except ValueError as e:
+        return jsonify({"error": str(e)}), 400
+    if not query_term:
+        return jsonify(_session_page_body([], None, cursor_scope) if limit is not None else []), 200
 
     try:
+        if limit is not None:
+            items, next_continuation = search_session_summaries_page(query_term, limit, continuation)
+            return jsonify(_session_page_body(items, next_continuation, cursor_scope)), 200
         results = search_session_summaries_by_query(query_term)
         return jsonify(results), 200
     except Exception as e:
+        if continuation and _is_rejected_continuation(e):
+            return jsonify({"error": "Cursor has expired; start again from the first page"}), 400
         logger.error(f"Error in /sessions/search (therapist {user_id}, query '{query_term}'): {e}", exc_info=True)
         return jsonify({"error": "Internal server error"}), 500
 
@@ -241,6 +296,14 @@ def upload_audio_session_direct_to_blob(): # Renamed for clarity
         logger.error(f"Error user {current_user_id} uploading audio directly to blob for session {session_id_str}: {e_blob_flask}", exc_info=True)
         return jsonify({"error": "Server error during file storage."}), 500
 
+    return _register_uploaded_session(user, current_user_id, metadata, session_id_str,
+                                      original_filename, blob_client, blob_name_in_storage, blob_url)
+
+
+def _register_uploaded_session(user, current_user_id, metadata, session_id_str,
+                               original_filename, blob_client, blob_name_in_storage, blob_url):
+    """Creates the header/processing documents for a stored audio blob and queues STT.
+    Shared by the single-request upload and the resumable chunked upload."""
     # --- Helper to parse actor metadata ---
     def parse_actor_meta(actor_str_or_dict, actor_type_name):
         if isinstance(actor_str_or_dict, str):
@@ -370,4 +433,207 @@ def upload_audio_session_direct_to_blob(): # Renamed for clarity
         "session_id": session_id_str,
         "status": "UPLOAD_COMPLETE_STT_QUEUED",
         "message": "Audio received and queued for speech-to-text processing."
-    }), 202
\ No newline at end of file
+    }), 202
+
+
+# --- Resumable chunked upload ---
+# The client sends the WAV stream in fixed-size chunks (PUT with Upload-Offset and
+# Upload-Checksum headers). Each chunk is staged as an uncommitted block on the target blob,
+# so the upload state survives dropped connections and worker restarts: the next expected
+# offset is derived from the staged blocks, and "complete" commits them in order.
+
+CHUNKED_UPLOAD_MAX_CHUNK_SIZE = 8 * 1024 * 1024
+CHUNKED_UPLOAD_MANIFEST_NAME = "upload.json"
+
+
+def _chunk_block_id(offset):
+    return f"{offset:020d}"
+
+
+def _get_upload_container_client():
+    container_client = flask_blob_service_client.get_container_client(config.AUDIO_UPLOAD_BLOB_CONTAINER_NAME)
+    if not container_client.exists():
+        container_client.create_container()
+        logger.info(f"Container '{config.AUDIO_UPLOAD_BLOB_CONTAINER_NAME}' did not exist and was created.")
+    return container_client
+
+
+def _load_chunked_upload(upload_id, current_user_id):
+    """Returns (manifest, container_client, error_response)."""
+    if not flask_blob_service_client:
+        return None, None, (jsonify({"error": "File storage service not available."}), 503)
+    container_client = _get_upload_container_client()
+    try:
+        manifest_blob = container_client.get_blob_client(f"{upload_id}/{CHUNKED_UPLOAD_MANIFEST_NAME}")
+        manifest = json.loads(manifest_blob.download_blob().readall())
+    except Exception:
+        return None, None, (jsonify({"error": "Upload not found"}), 404)
+    if manifest.get("owner_id") != current_user_id:
+        return None, None, (jsonify({"error": "Upload not found"}), 404)
+    return manifest, container_client, None
+
+
+def _staged_next_offset(blob_client):
+    """Next expected offset = end of the contiguous run of staged blocks starting at 0."""
+    try:
+        _, uncommitted = blob_client.get_block_list(block_list_type="uncommitted")
+    except ResourceNotFoundError:
+        return 0, []  # Blob does not exist yet: nothing staged
+    sizes_by_offset = {}
+    for block in uncommitted:
+        try:
+            sizes_by_offset[int(block.id)] = block.size
+        except (TypeError, ValueError):
+            continue
+    offset, ordered_ids = 0, []
+    while offset in sizes_by_offset:
+        ordered_ids.append(_chunk_block_id(offset))
+        offset += sizes_by_offset[offset]
+    return offset, ordered_ids
+
+
+def _chunked_upload_status_body(upload_id, manifest, next_offset, status="IN_PROGRESS"):
+    return {
+        "upload_id": upload_id,
+        "next_offset": next_offset,
+        "total_size": manifest.get("total_size", 0),
+        "status": status,
+    }
+
+
+@sessions_bp.route('/upload/chunked', methods=['POST'])
+@jwt_required()
+def start_chunked_upload():
+    current_user_id = get_jwt_identity()
+    if not get_user_by_id(current_user_id):
+        return jsonify({"error": "User not found or unauthorized"}), 401
+    if not flask_blob_service_client:
+        return jsonify({"error": "File storage service not available."}), 503
+
+    body = request.get_json(silent=True) or {}
+    file_name = os.path.basename(str(body.get("file_name", "")))
+    total_size = body.get("total_size")
+    metadata_json_string = body.get("metadata")
+    if not file_name or not isinstance(total_size, int) or total_size <= 0 or not metadata_json_string:
+        return jsonify({"error": "file_name, positive total_size and metadata are required"}), 400
+    try:
+        json.loads(metadata_json_string)
+    except (TypeError, json.JSONDecodeError):
+        return jsonify({"error": "Invalid JSON in metadata"}), 400
+
+    upload_id = str(uuid.uuid4())  # Becomes the session id on completion
+    manifest = {
+        "upload_id": upload_id,
+        "owner_id": current_user_id,
+        "file_name": file_name,
+        "content_type": body.get("content_type") or "application/octet-stream",
+        "total_size": total_size,
+        "metadata": metadata_json_string,
+        "created_at": datetime.now(timezone.utc).isoformat(),
+    }
+    try:
+        container_client = _get_upload_container_client()
+        container_client.get_blob_client(f"{upload_id}/{CHUNKED_UPLOAD_MANIFEST_NAME}").upload_blob(
+            json.dumps(manifest), overwrite=True)
+    except Exception as e:
+        logger.error(f"Error creating chunked upload for user {current_user_id}: {e}", exc_info=True)
+        return jsonify({"error": "Server error during file storage."}), 500
+
+    logger.info(f"User {current_user_id} started chunked upload {upload_id} ({total_size} bytes).")
+    return jsonify(_chunked_upload_status_body(upload_id, manifest, 0)), 201
+
+
+@sessions_bp.route('/upload/chunked/<string:upload_id>', methods=['GET'])
+@jwt_required()
+def get_chunked_upload_status(upload_id):
+    manifest, container_client, error = _load_chunked_upload(upload_id, get_jwt_identity())
+    if error:
+        return error
+    if manifest.get("completed_session_id"):
+        return jsonify(_chunked_upload_status_body(upload_id, manifest, manifest["total_size"], "COMPLETE")), 200
+    blob_client = container_client.get_blob_client(f"{upload_id}/{manifest['file_name']}")
+    next_offset, _ = _staged_next_offset(blob_client)
+    return jsonify(_chunked_upload_status_body(upload_id, manifest, next_offset)), 200
+
+
+@sessions_bp.route('/upload/chunked/<string:upload_id>', methods=['PUT'])
+@jwt_required()
+def upload_chunk(upload_id):
+    manifest, container_client, error = _load_chunked_upload(upload_id, get_jwt_identity())
+    if error:
+        return error
+
+    try:
+        offset = int(request.headers.get("Upload-Offset", ""))
+    except ValueError:
+        return jsonify({"error": "Missing or invalid Upload-Offset header"}), 400
+    checksum_header = request.headers.get("Upload-Checksum", "")
+    algorithm, _, expected_digest = checksum_header.partition(" ")
+    if algorithm.lower() != "sha256" or not expected_digest:
+        return jsonify({"error": "Upload-Checksum must be 'sha256 <base64>'"}), 400
+
+    data = request.get_data(cache=False)
+    if not data or len(data) > CHUNKED_UPLOAD_MAX_CHUNK_SIZE or offset + len(data) > manifest["total_size"]:
+        return jsonify({"error": "Chunk is empty, too large or past the declared size"}), 400
+    if base64.b64encode(hashlib.sha256(data).digest()).decode("ascii") != expected_digest:
+        logger.warning(f"Checksum mismatch for upload {upload_id} at offset {offset}.")
+        return jsonify({"error": "Checksum mismatch"}), 422
+
+    blob_client = container_client.get_blob_client(f"{upload_id}/{manifest['file_name']}")
+    next_offset, _ = _staged_next_offset(blob_client)
+    if offset != next_offset:
+        # Client is behind (lost ack) or ahead; tell it where to continue.
+        return jsonify(_chunked_upload_status_body(upload_id, manifest, next_offset, "OFFSET_MISMATCH")), 409
+
+    try:
+        blob_client.stage_block(block_id=_chunk_block_id(offset), data=data, length=len(data))
+    except Exception as e:
+        logger.error(f"Error staging chunk for upload {upload_id} at offset {offset}: {e}", exc_info=True)
+        return jsonify({"error": "Server error during file storage."}), 500
+
+    return jsonify(_chunked_upload_status_body(upload_id, manifest, offset + len(data))), 200
+
+
+@sessions_bp.route('/upload/chunked/<string:upload_id>/complete', methods=['POST'])
+@jwt_required()
+def complete_chunked_upload(upload_id):
+    current_user_id = get_jwt_identity()
+    user = get_user_by_id(current_user_id)
+    if not user:
+        return jsonify({"error": "User not found or unauthorized"}), 401
+    manifest, container_client, error = _load_chunked_upload(upload_id, current_user_id)
+    if error:
+        return error
+
+    if manifest.get("completed_session_id"):
+        # Retried "complete" after a lost response: answer the same way again.
+        return jsonify({
+            "session_id": manifest["completed_session_id"],
+            "status": "UPLOAD_COMPLETE_STT_QUEUED",
+            "message": "Audio received and queued for speech-to-text processing."
+        }), 202
+
+    blob_name_in_storage = f"{upload_id}/{manifest['file_name']}"
+    blob_client = container_client.get_blob_client(blob_name_in_storage)
+    next_offset, ordered_block_ids = _staged_next_offset(blob_client)
+    if next_offset != manifest["total_size"]:
+        return jsonify(_chunked_upload_status_body(upload_id, manifest, next_offset, "INCOMPLETE")), 409
+
+    try:
+        blob_client.commit_block_list(ordered_block_ids,
+                                      content_settings=ContentSettings(content_type=manifest["content_type"]))
+    except Exception as e:
+        logger.error(f"Error committing chunked upload {upload_id}: {e}", exc_info=True)
+        return jsonify({"error": "Server error during file storage."}), 500
+    logger.info(f"User {current_user_id} completed chunked upload {upload_id} -> {blob_client.url}")
+
+    response = _register_uploaded_session(user, current_user_id, json.loads(manifest["metadata"]), upload_id,
+                                          manifest["file_name"], blob_client, blob_name_in_storage, blob_client.url)
+    if response[1] == 202:
+        manifest["completed_session_id"] = upload_id
+        try:
+            container_client.get_blob_client(f"{upload_id}/{CHUNKED_UPLOAD_MANIFEST_NAME}").upload_blob(
+                json.dumps(manifest), overwrite=True)
+        except Exception as e:
+            logger.warning(f"Could not mark chunked upload {upload_id} as completed: {e}")
+    return response
@@ -530,6 +530,35 @@ def test_13_patient_get_own_sessions():
              print(f"Session {processed_session_id} was finalized but may not belong to logged-in patient {patient_context['user_id']}.")
     else:
         print(f"Patient {patient_context['user_id']} has no finalized sessions listed. This may be expected if no sessions were for them.")
+
+    # Walking the paged form one session at a time must return the same sessions, in order
+    paged_ids, cursor = [], None
+    for _ in range(2 * len(data) + 5): # Cosmos may return an empty page before the last
+        params = {"limit": 1}
+        if cursor:
+            params["cursor"] = cursor
+        page_response = requests.get(f"{BASE_URL}/sessions/me", headers=get_headers(patient_context["token"]), params=params)
+        assert page_response.status_code == 200, f"Failed to get page of patient's sessions: {page_response.text}"
+        page = page_response.json()
+        assert isinstance(page.get("items"), list), "Paged sessions response has no items list."
+        paged_ids.extend(s.get("id") for s in page["items"])
+        cursor = page.get("nextCursor")
+        if not cursor:
+            break
+    assert paged_ids == [s.get("id") for s in data], "Paged sessions differ from the unpaged list."
+    print(f"Paged listing returned the same {len(paged_ids)} session(s).")
+
+    # Cursors the server did not issue for this listing are rejected before they reach Cosmos
+    first_page = requests.get(f"{BASE_URL}/sessions/me", headers=get_headers(patient_context["token"]), params={"limit": 1}).json()
+    bad_cursors = ["not-a-cursor!!", "eyJ0b2tlbiI6IisifQ=="] # Malformed; unsigned continuation token
+    if first_page.get("nextCursor"):
+        issued = first_page["nextCursor"]
+        bad_cursors.append(issued[:-4] + ("AAAA" if not issued.endswith("AAAA") else "BBBB")) # Tampered
+    for bad_cursor in bad_cursors:
+        bad_response = requests.get(f"{BASE_URL}/sessions/me", headers=get_headers(patient_context["token"]),
+                                    params={"limit": 1, "cursor": bad_cursor})
+        assert bad_response.status_code == 400, f"Cursor {bad_cursor!r} gave {bad_response.status_code}, expected 400"
+    print(f"{len(bad_cursors)} malformed or tampered cursor(s) rejected with 400.")
     print("Patient Get Own Sessions - API call successful.")
 
 